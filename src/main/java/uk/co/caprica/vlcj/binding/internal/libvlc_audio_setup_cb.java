@@ -20,6 +20,7 @@
 package uk.co.caprica.vlcj.binding.internal;
 
 import com.sun.jna.Callback;
+import com.sun.jna.Pointer;
 import com.sun.jna.ptr.IntByReference;
 import com.sun.jna.ptr.PointerByReference;
 
@@ -34,10 +35,10 @@ public interface libvlc_audio_setup_cb extends Callback {
      * This is called when the media player needs to create a new audio output.
      *
      * @param data pointer to the data pointer passed to libvlc_audio_set_callbacks()
-     * @param format 4 bytes sample format
+     * @param format 4 bytes sample format, may be changed by the callback to select a different format
      * @param rate sample rate
      * @param channels channels count
      * @return 0 on success, anything else to skip audio playback
      */
-    int setup(PointerByReference data, String format, IntByReference rate, IntByReference channels);
+    int setup(PointerByReference data, Pointer format, IntByReference rate, IntByReference channels);
 }
@@ -0,0 +1,88 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.binding.support;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import com.sun.jna.Pointer;
+
+/**
+ * A re-usable heap {@link ByteBuffer} for copying data out of, and in to, native memory.
+ * <p>
+ * The native library passes a different buffer to each invocation of callbacks such as the audio
+ * play and media read callbacks, and creating a new direct buffer view for each of them creates a
+ * steady stream of garbage. Instead, the data is copied with a single bulk copy between the native
+ * buffer and an array that is kept for re-use, the array only being replaced if a larger buffer is
+ * needed - so once warmed up no garbage is created.
+ * <p>
+ * The buffer must only be used by one thread at a time.
+ */
+public final class NativeBufferCopy {
+
+    /**
+     * Array backing the buffer.
+     */
+    private byte[] array = new byte[0];
+
+    /**
+     * Buffer wrapping the array, with native byte order.
+     */
+    private ByteBuffer buffer = ByteBuffer.wrap(array).order(ByteOrder.nativeOrder());
+
+    /**
+     * Copy data from native memory.
+     *
+     * @param memory native buffer
+     * @param length number of bytes to copy
+     * @return buffer containing the data, with position zero and limit equal to the length
+     */
+    public ByteBuffer copyFrom(Pointer memory, int length) {
+        ByteBuffer result = buffer(length);
+        memory.read(0, array, 0, length);
+        return result;
+    }
+
+    /**
+     * Get the buffer, to fill with data before it is copied to native memory.
+     *
+     * @param length maximum number of bytes to fill
+     * @return buffer, with position zero and limit equal to the length
+     */
+    public ByteBuffer buffer(int length) {
+        if(array.length < length) {
+            array = new byte[length];
+            buffer = ByteBuffer.wrap(array).order(ByteOrder.nativeOrder());
+        }
+        buffer.clear();
+        buffer.limit(length);
+        return buffer;
+    }
+
+    /**
+     * Copy data, from the start of the buffer, to native memory.
+     *
+     * @param memory native buffer
+     * @param length number of bytes to copy
+     */
+    public void copyTo(Pointer memory, int length) {
+        memory.write(0, array, 0, length);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.binding.support;
+
+import java.nio.ByteBuffer;
+
+import com.sun.jna.Pointer;
+
+/**
+ * A direct {@link ByteBuffer} view of a native buffer, so that data can be read straight into, or
+ * out of, native memory without an intermediate copy.
+ * <p>
+ * The view is created with {@link Pointer#getByteBuffer(long, long)}, and kept for as long as the
+ * native library keeps passing the same buffer. A new view - one small object - is only created
+ * when the buffer address changes or a larger buffer is needed, so if the native library re-uses
+ * its buffers no garbage is created at all.
+ * <p>
+ * A view must only be used while the native buffer it was obtained for is valid, typically for the
+ * duration of a single callback. The view must only be used by one thread at a time.
+ */
+public final class NativeBufferView {
+
+    /**
+     * Address of the native buffer the view was created for.
+     */
+    private long address;
+
+    /**
+     * View of the native buffer, or <code>null</code> if none has been created yet.
+     */
+    private ByteBuffer view;
+
+    /**
+     * Get a view of a native buffer.
+     *
+     * @param memory native buffer
+     * @param length number of bytes to view
+     * @return view, with position zero and limit equal to the length
+     */
+    public ByteBuffer view(Pointer memory, int length) {
+        long memoryAddress = Pointer.nativeValue(memory);
+        if(view == null || address != memoryAddress || view.capacity() < length) {
+            view = memory.getByteBuffer(0, length);
+            address = memoryAddress;
+        }
+        view.clear();
+        view.limit(length);
+        return view;
+    }
+}
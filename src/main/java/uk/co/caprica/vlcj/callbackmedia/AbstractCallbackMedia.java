@@ -40,6 +40,12 @@ import java.io.IOException;
  * <p>
  * In most cases it is likely preferable to deal instead with a Java byte array buffer, for this
  * purpose the {@link DefaultCallbackMedia} sub-class should be used instead of this class.
+ * <p>
+ * The callback implementations themselves create no objects, so if the template methods do not
+ * either (as is the case for {@link ChannelCallbackMedia} reading a file) vlcj creates no garbage
+ * when the media is read. JNA itself still creates a few small objects each time it dispatches a
+ * native callback (the argument array and the <code>Pointer</code> and <code>size_t</code>
+ * arguments), which can not be avoided with an interface-mapped callback.
  */
 public abstract class AbstractCallbackMedia implements CallbackMedia {
 
@@ -171,17 +177,28 @@ public abstract class AbstractCallbackMedia implements CallbackMedia {
      */
     private class Read implements libvlc_media_read_cb {
 
+        /**
+         * Re-usable result, JNA converts it to a native value as soon as the callback returns.
+         * <p>
+         * Setting the value of a <code>size_t</code> boxes it, so the value is only set when it
+         * changes - reads usually return the same number of bytes each time.
+         */
+        private final size_t result = new size_t();
+
         @Override
         public size_t read(Pointer opaque, Pointer buf, size_t len) {
-            int result;
+            long value;
             try {
                 int bytesRead = onRead(buf, len.intValue());
-                result = bytesRead >= 0 ? bytesRead : END_OF_STREAM;
+                value = bytesRead >= 0 ? bytesRead : END_OF_STREAM;
             }
             catch (IOException e) {
-                result = ERROR;
+                value = ERROR;
+            }
+            if (result.longValue() != value) {
+                result.setValue(value);
             }
-            return new size_t(result);
+            return result;
         }
     }
 
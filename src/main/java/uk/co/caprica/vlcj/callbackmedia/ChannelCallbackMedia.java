@@ -0,0 +1,138 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+package uk.co.caprica.vlcj.callbackmedia;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.co.caprica.vlcj.binding.support.NativeBufferView;
+
+import com.sun.jna.Pointer;
+
+/**
+ * Implementation of a {@link CallbackMedia} media that reads media data from a NIO channel.
+ * <p>
+ * Unlike {@link DefaultCallbackMedia}, each read may fill as much of the native buffer as the
+ * native library asks for, rather than being limited to the size of an IO buffer. The channel reads
+ * directly into the native buffer, through a direct {@link ByteBuffer} view of it, so there is no
+ * copy in Java at all - and a {@link FileChannel} copies straight from the file into the native
+ * buffer, rather than through a temporary buffer of its own.
+ * <p>
+ * The view is re-used for as long as the native library passes the same buffer, otherwise a new
+ * view - one small object - is created for the read. That is far cheaper than the extra copy of the
+ * media data it avoids.
+ * <p>
+ * A sub-class need only provide an implementation for {@link #onOpenChannel()}, and
+ * {@link #onGetSize()}.
+ * <p>
+ * The channel must be in blocking mode. If the media is seekable the channel must be a
+ * {@link FileChannel}, the position of which is set when the native library seeks.
+ */
+public abstract class ChannelCallbackMedia extends AbstractCallbackMedia {
+
+    /**
+     * Log.
+     */
+    private final Logger logger = LoggerFactory.getLogger(ChannelCallbackMedia.class);
+
+    /**
+     * View of the native buffer.
+     */
+    private final NativeBufferView view = new NativeBufferView();
+
+    /**
+     * Channel.
+     */
+    private ReadableByteChannel channel;
+
+    /**
+     * Create a new media instance.
+     *
+     * @param seekable <code>true</code> if the media is seekable; <code>false</code> if it is not
+     */
+    public ChannelCallbackMedia(boolean seekable) {
+        super(seekable);
+    }
+
+    @Override
+    protected final boolean onOpen() {
+        try {
+            channel = onOpenChannel();
+            return true;
+        }
+        catch (IOException e) {
+            logger.error("Failed to open channel", e);
+            return false;
+        }
+    }
+
+    @Override
+    protected final int onRead(Pointer buffer, int bufferSize) throws IOException {
+        return channel.read(view.view(buffer, bufferSize));
+    }
+
+    @Override
+    protected final boolean onSeek(long offset) {
+        if (channel instanceof FileChannel) {
+            try {
+                ((FileChannel) channel).position(offset);
+                return true;
+            }
+            catch (IOException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected final void onClose() {
+        try {
+            onCloseChannel(channel);
+        }
+        catch (IOException e) {
+        }
+        channel = null;
+    }
+
+    /**
+     * Template method to open a new channel.
+     *
+     * @return channel
+     * @throws IOException if an error occurs
+     */
+    protected abstract ReadableByteChannel onOpenChannel() throws IOException;
+
+    /**
+     * Template method to close the channel.
+     * <p>
+     * The default implementation simply closes the channel.
+     *
+     * @param channel channel to close (the same that was returned by {@link #onOpenChannel()})
+     * @throws IOException if an error occurs
+     */
+    protected void onCloseChannel(ReadableByteChannel channel) throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,451 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+package uk.co.caprica.vlcj.callbackmedia.nonseekable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.co.caprica.vlcj.binding.support.NativeBufferCopy;
+import uk.co.caprica.vlcj.callbackmedia.AbstractCallbackMedia;
+
+import com.sun.jna.Pointer;
+
+/**
+ * Implementation of <em>seekable</em> media that caches the input stream of non-seekable media in
+ * a temporary file.
+ * <p>
+ * A background thread reads the input stream and writes everything it reads to the file, and the
+ * native library is served from the file. The native library may therefore seek anywhere within
+ * the data read so far, e.g. to rewind a live source or to let a demuxer probe the media, without
+ * reading the stream again. Seeking beyond the data read so far is also allowed, a read then waits
+ * until the stream reaches that position. The stream continues to be read while the native library
+ * reads earlier data, so a live source keeps being consumed at its own rate.
+ * <p>
+ * The file may be limited to a maximum size, in which case it is used as a ring - only the most
+ * recent data is kept, and the native library may only seek within that. The stream is never read
+ * so far ahead that data not yet read by the native library would be overwritten, so if playback
+ * falls that far behind (e.g. it is paused) reading from the stream stops until it catches up.
+ * <p>
+ * The temporary file is deleted when the media is closed.
+ * <p>
+ * The wrapped media is only used to open and close the stream, it must not itself be played.
+ */
+public class DiskCachedInputStreamMedia extends AbstractCallbackMedia {
+
+    /**
+     * Size of each read from the input stream.
+     */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Log.
+     */
+    private final Logger logger = LoggerFactory.getLogger(DiskCachedInputStreamMedia.class);
+
+    /**
+     * Media that provides the input stream.
+     */
+    private final NonSeekableInputStreamMedia media;
+
+    /**
+     * Directory for the temporary file, or <code>null</code> for the default temporary directory.
+     */
+    private final File directory;
+
+    /**
+     * Maximum size of the temporary file, or zero for no limit.
+     */
+    private final long maximumSize;
+
+    /**
+     * Re-usable buffer for the data copied to the native buffer.
+     */
+    private final NativeBufferCopy copy = new NativeBufferCopy();
+
+    /**
+     * Array used by the background thread to read from the input stream.
+     */
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+
+    /**
+     * Buffer wrapping the chunk array, used to write it to the file.
+     */
+    private final ByteBuffer chunkBuffer = ByteBuffer.wrap(chunk);
+
+    /**
+     * Guards the positions and the stream state, and is used to wait for data or space.
+     */
+    private final Object lock = new Object();
+
+    // Guarded by lock
+
+    /**
+     * Total number of bytes read from the stream and written to the file.
+     */
+    private long head;
+
+    /**
+     * Number of bytes the fill thread is currently writing to the file after the head.
+     * <p>
+     * In a limited size file this write overwrites the oldest data, so that data may no longer be
+     * seeked to.
+     */
+    private int pending;
+
+    /**
+     * Read position of the native library.
+     */
+    private long position;
+
+    private boolean running;
+
+    private boolean endOfStream;
+
+    private IOException error;
+
+    private InputStream inputStream;
+
+    private Thread thread;
+
+    private File file;
+
+    private RandomAccessFile randomAccessFile;
+
+    /**
+     * File channel, used for positional reads and writes by both threads.
+     */
+    private FileChannel channel;
+
+    /**
+     * Create a media instance that caches the whole stream in the default temporary directory.
+     *
+     * @param media media that provides the input stream
+     */
+    public DiskCachedInputStreamMedia(NonSeekableInputStreamMedia media) {
+        this(media, null, 0);
+    }
+
+    /**
+     * Create a media instance.
+     *
+     * @param media media that provides the input stream
+     * @param directory directory for the temporary file, or <code>null</code> for the default temporary directory
+     * @param maximumSize maximum size of the temporary file, in bytes, or zero for no limit
+     */
+    public DiskCachedInputStreamMedia(NonSeekableInputStreamMedia media, File directory, long maximumSize) {
+        super(true);
+        if(maximumSize < 0) {
+            throw new IllegalArgumentException("maximumSize must not be negative");
+        }
+        if(maximumSize > 0 && maximumSize < CHUNK_SIZE) {
+            throw new IllegalArgumentException("maximumSize must be at least " + CHUNK_SIZE);
+        }
+        this.media = media;
+        this.directory = directory;
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Get the number of bytes read from the stream so far.
+     *
+     * @return byte count
+     */
+    public final long bytesCached() {
+        synchronized(lock) {
+            return head;
+        }
+    }
+
+    /**
+     * Get the earliest position that may currently be seeked to.
+     *
+     * @return position, always zero if the size of the file is not limited
+     */
+    public final long earliestPosition() {
+        synchronized(lock) {
+            return earliest();
+        }
+    }
+
+    @Override
+    protected long onGetSize() {
+        return media.size();
+    }
+
+    @Override
+    protected boolean onOpen() {
+        InputStream stream;
+        try {
+            file = File.createTempFile("vlcj-media-cache", ".tmp", directory);
+            file.deleteOnExit();
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            channel = randomAccessFile.getChannel();
+            stream = media.onOpenStream();
+        }
+        catch (IOException e) {
+            logger.error("Failed to open stream", e);
+            deleteFile();
+            return false;
+        }
+        synchronized(lock) {
+            head = 0;
+            pending = 0;
+            position = 0;
+            endOfStream = false;
+            error = null;
+            inputStream = stream;
+            running = true;
+            thread = new Thread(new Fill(stream), "vlcj-media-cache");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return true;
+    }
+
+    @Override
+    protected int onRead(Pointer buffer, int bufferSize) throws IOException {
+        long readPosition;
+        int count;
+        synchronized(lock) {
+            while(position >= head && running && !endOfStream && error == null) {
+                try {
+                    lock.wait();
+                }
+                catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if(position >= head) {
+                if(error != null) {
+                    throw error;
+                }
+                return -1;
+            }
+            readPosition = position;
+            count = (int) Math.min(bufferSize, head - position);
+        }
+        ByteBuffer target = copy.buffer(count);
+        // The fill thread never overwrites data at or after the read position, so no lock is needed
+        while(target.hasRemaining()) {
+            long filePosition = filePosition(readPosition + target.position());
+            if(maximumSize > 0) {
+                target.limit(target.position() + (int) Math.min(target.remaining(), maximumSize - filePosition));
+            }
+            if(channel.read(target, filePosition) < 0) {
+                throw new IOException("Unexpected end of cache file");
+            }
+            target.limit(count);
+        }
+        copy.copyTo(buffer, count);
+        synchronized(lock) {
+            position = readPosition + count;
+            lock.notifyAll();
+        }
+        return count;
+    }
+
+    @Override
+    protected boolean onSeek(long offset) {
+        synchronized(lock) {
+            if(offset < earliest()) {
+                return false;
+            }
+            position = offset;
+            lock.notifyAll();
+            return true;
+        }
+    }
+
+    @Override
+    protected void onClose() {
+        InputStream stream;
+        Thread fillThread;
+        synchronized(lock) {
+            running = false;
+            stream = inputStream;
+            fillThread = thread;
+            inputStream = null;
+            thread = null;
+            lock.notifyAll();
+        }
+        // Closing the stream also releases the background thread if it is blocked reading it
+        try {
+            media.onCloseStream(stream);
+        }
+        catch (IOException e) {
+        }
+        if(fillThread != null) {
+            try {
+                fillThread.join(5000);
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        deleteFile();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(60);
+        sb.append(getClass().getSimpleName()).append('[');
+        sb.append("maximumSize=").append(maximumSize).append(',');
+        sb.append("bytesCached=").append(bytesCached()).append(',');
+        sb.append("earliestPosition=").append(earliestPosition()).append(']');
+        return sb.toString();
+    }
+
+    /**
+     * Get the earliest position still in the file and not about to be overwritten.
+     * <p>
+     * Must be invoked while holding the lock.
+     *
+     * @return earliest position
+     */
+    private long earliest() {
+        return maximumSize > 0 ? Math.max(0, head + pending - maximumSize) : 0;
+    }
+
+    /**
+     * Get the number of bytes that may be written after the head without overwriting data the
+     * native library has not read yet.
+     * <p>
+     * Must be invoked while holding the lock.
+     *
+     * @return number of bytes
+     */
+    private long space() {
+        return maximumSize > 0 ? maximumSize - (head - Math.min(position, head)) : Long.MAX_VALUE;
+    }
+
+    private long filePosition(long streamPosition) {
+        return maximumSize > 0 ? streamPosition % maximumSize : streamPosition;
+    }
+
+    private void deleteFile() {
+        if(randomAccessFile != null) {
+            try {
+                randomAccessFile.close();
+            }
+            catch (IOException e) {
+            }
+            randomAccessFile = null;
+            channel = null;
+        }
+        if(file != null) {
+            if(!file.delete()) {
+                logger.warn("Failed to delete cache file {}", file);
+            }
+            file = null;
+        }
+    }
+
+    /**
+     * Reads the input stream into the file.
+     */
+    private final class Fill implements Runnable {
+
+        private final InputStream stream;
+
+        private Fill(InputStream stream) {
+            this.stream = stream;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while(true) {
+                    long writePosition;
+                    int space;
+                    synchronized(lock) {
+                        while(true) {
+                            if(!running) {
+                                return;
+                            }
+                            // Never overwrite data the native library has not read yet
+                            space = (int) Math.min(CHUNK_SIZE, space());
+                            if(space > 0) {
+                                writePosition = head;
+                                break;
+                            }
+                            lock.wait();
+                        }
+                    }
+                    int count = stream.read(chunk, 0, space);
+                    if(count < 0) {
+                        synchronized(lock) {
+                            endOfStream = true;
+                            lock.notifyAll();
+                        }
+                        return;
+                    }
+                    synchronized(lock) {
+                        // The native library may have seeked back while the stream was read
+                        while(running && space() < count) {
+                            lock.wait();
+                        }
+                        if(!running) {
+                            return;
+                        }
+                        // Seeking to data this write overwrites is refused from now on
+                        pending = count;
+                    }
+                    write(writePosition, count);
+                    synchronized(lock) {
+                        head += count;
+                        pending = 0;
+                        lock.notifyAll();
+                    }
+                }
+            }
+            catch(IOException e) {
+                synchronized(lock) {
+                    if(running) {
+                        logger.error("Failed to cache stream", e);
+                        error = e;
+                    }
+                    lock.notifyAll();
+                }
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void write(long streamPosition, int count) throws IOException {
+            chunkBuffer.clear().limit(count);
+            while(chunkBuffer.hasRemaining()) {
+                long filePosition = filePosition(streamPosition + chunkBuffer.position());
+                if(maximumSize > 0) {
+                    chunkBuffer.limit(chunkBuffer.position() + (int) Math.min(chunkBuffer.remaining(), maximumSize - filePosition));
+                }
+                channel.write(chunkBuffer, filePosition);
+                chunkBuffer.limit(count);
+            }
+        }
+    }
+}
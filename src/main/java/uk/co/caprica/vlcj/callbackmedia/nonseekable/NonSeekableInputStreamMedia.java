@@ -82,6 +82,15 @@ public abstract class NonSeekableInputStreamMedia extends NonSeekableCallbackMed
         }
     }
 
+    /**
+     * Get the size of the media, for media that wraps this media to read its stream.
+     *
+     * @return size of the media, or 0 if the size is not known
+     */
+    final long size() {
+        return onGetSize();
+    }
+
     /**
      * Template method to open a new stream.
      *
@@ -0,0 +1,415 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+package uk.co.caprica.vlcj.callbackmedia.nonseekable;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.co.caprica.vlcj.callbackmedia.AbstractCallbackMedia;
+
+import com.sun.jna.Pointer;
+
+/**
+ * Implementation of non-seekable media that reads ahead from the input stream of another media
+ * instance on a background thread.
+ * <p>
+ * Ordinarily the native library reads from the input stream synchronously, on its own input
+ * thread, so any delay in the stream (e.g. a network hiccup) immediately stalls playback. Instead,
+ * a background thread reads the stream into a ring buffer, and the native library is served from
+ * that buffer with a single copy into the native buffer - it only has to wait if the buffer has run
+ * dry.
+ * <p>
+ * The background thread fills the buffer up to the high watermark, and then waits until the
+ * buffer has drained to the low watermark before reading from the stream again, so the stream is
+ * read in bursts rather than a little at a time.
+ * <p>
+ * The buffer fill level, the number and duration of stalls, and the throughput of the stream
+ * itself may be used to choose a buffer size suitable for a particular deployment.
+ * <p>
+ * The wrapped media is only used to open and close the stream, it must not itself be played.
+ */
+public class PrefetchingInputStreamMedia extends AbstractCallbackMedia {
+
+    /**
+     * Default ring buffer capacity.
+     */
+    private static final int DEFAULT_CAPACITY = 8 * 1024 * 1024;
+
+    /**
+     * Size of each read from the input stream.
+     */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Log.
+     */
+    private final Logger logger = LoggerFactory.getLogger(PrefetchingInputStreamMedia.class);
+
+    /**
+     * Media that provides the input stream.
+     */
+    private final NonSeekableInputStreamMedia media;
+
+    private final int capacity;
+
+    private final int lowWatermark;
+
+    private final int highWatermark;
+
+    /**
+     * Ring buffer storage.
+     */
+    private final byte[] ring;
+
+    /**
+     * Guards the buffer positions and the stream state, and is used to wait for data or space.
+     */
+    private final Object lock = new Object();
+
+    // Guarded by lock
+
+    /**
+     * Total number of bytes written to the ring buffer.
+     */
+    private long head;
+
+    /**
+     * Total number of bytes read from the ring buffer.
+     */
+    private long tail;
+
+    private boolean running;
+
+    /**
+     * Has the buffer been filled to the low watermark since the media was opened?
+     */
+    private boolean primed;
+
+    private boolean endOfStream;
+
+    private IOException error;
+
+    private InputStream inputStream;
+
+    private Thread thread;
+
+    // Statistics
+
+    private volatile long stalls;
+
+    private volatile long stallTime;
+
+    private volatile long bytesFetched;
+
+    private volatile long fetchTime;
+
+    /**
+     * Create a media instance with a default buffer size and watermarks.
+     * <p>
+     * The buffer is re-filled whenever it is half empty.
+     *
+     * @param media media that provides the input stream
+     */
+    public PrefetchingInputStreamMedia(NonSeekableInputStreamMedia media) {
+        this(media, DEFAULT_CAPACITY, DEFAULT_CAPACITY / 2, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a media instance.
+     *
+     * @param media media that provides the input stream
+     * @param capacity ring buffer capacity, in bytes
+     * @param lowWatermark fill level, in bytes, at or below which the buffer is re-filled
+     * @param highWatermark fill level, in bytes, at or above which the buffer stops being filled
+     */
+    public PrefetchingInputStreamMedia(NonSeekableInputStreamMedia media, int capacity, int lowWatermark, int highWatermark) {
+        super(false);
+        if(capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be greater than zero");
+        }
+        if(lowWatermark < 0 || lowWatermark >= highWatermark || highWatermark > capacity) {
+            throw new IllegalArgumentException("Watermarks must satisfy 0 <= lowWatermark < highWatermark <= capacity");
+        }
+        this.media = media;
+        this.capacity = capacity;
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        this.ring = new byte[capacity];
+    }
+
+    /**
+     * Get the ring buffer capacity.
+     *
+     * @return capacity, in bytes
+     */
+    public final int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Get the number of bytes currently buffered.
+     *
+     * @return fill level, in bytes
+     */
+    public final int fill() {
+        synchronized(lock) {
+            return (int) (head - tail);
+        }
+    }
+
+    /**
+     * Number of times the native library had to wait because the buffer was empty.
+     * <p>
+     * Waiting before the buffer has first been filled to the low watermark, after the media is
+     * opened, does not count as a stall.
+     *
+     * @return stall count
+     */
+    public final long stalls() {
+        return stalls;
+    }
+
+    /**
+     * Total time the native library has spent waiting because the buffer was empty, including
+     * while the buffer was first being filled.
+     *
+     * @return stall time, in nanoseconds
+     */
+    public final long stallTime() {
+        return stallTime;
+    }
+
+    /**
+     * Total number of bytes read from the input stream.
+     *
+     * @return byte count
+     */
+    public final long bytesFetched() {
+        return bytesFetched;
+    }
+
+    /**
+     * Get the throughput of the input stream.
+     * <p>
+     * This is measured only while reading from the stream, not while waiting for the buffer to
+     * drain, so it is the rate at which the stream can deliver data.
+     *
+     * @return throughput, in bytes per second, or zero if nothing has been read yet
+     */
+    public final double throughput() {
+        long time = fetchTime;
+        return time > 0 ? bytesFetched * 1000000000.0 / time : 0;
+    }
+
+    @Override
+    protected long onGetSize() {
+        return media.size();
+    }
+
+    @Override
+    protected boolean onOpen() {
+        InputStream stream;
+        try {
+            stream = media.onOpenStream();
+        }
+        catch (IOException e) {
+            logger.error("Failed to open stream", e);
+            return false;
+        }
+        synchronized(lock) {
+            head = 0;
+            tail = 0;
+            primed = false;
+            endOfStream = false;
+            error = null;
+            inputStream = stream;
+            running = true;
+            thread = new Thread(new Prefetch(stream), "vlcj-media-prefetch");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return true;
+    }
+
+    @Override
+    protected int onRead(Pointer buffer, int bufferSize) throws IOException {
+        int available;
+        synchronized(lock) {
+            if(head == tail && running && !endOfStream && error == null) {
+                if(primed) {
+                    stalls++;
+                }
+                long start = System.nanoTime();
+                while(head == tail && running && !endOfStream && error == null) {
+                    try {
+                        lock.wait();
+                    }
+                    catch(InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                stallTime += System.nanoTime() - start;
+            }
+            available = (int) (head - tail);
+            if(available == 0) {
+                if(error != null) {
+                    throw error;
+                }
+                return -1;
+            }
+        }
+        int count = Math.min(bufferSize, available);
+        int offset = (int) (tail % capacity);
+        int first = Math.min(count, capacity - offset);
+        buffer.write(0, ring, offset, first);
+        if(first < count) {
+            buffer.write(first, ring, 0, count - first);
+        }
+        synchronized(lock) {
+            tail += count;
+            if(head - tail <= lowWatermark) {
+                lock.notifyAll();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    protected final boolean onSeek(long offset) {
+        return false;
+    }
+
+    @Override
+    protected void onClose() {
+        InputStream stream;
+        Thread prefetchThread;
+        synchronized(lock) {
+            running = false;
+            stream = inputStream;
+            prefetchThread = thread;
+            inputStream = null;
+            thread = null;
+            lock.notifyAll();
+        }
+        // Closing the stream also releases the background thread if it is blocked reading it
+        try {
+            media.onCloseStream(stream);
+        }
+        catch (IOException e) {
+        }
+        if(prefetchThread != null) {
+            try {
+                prefetchThread.join(5000);
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(60);
+        sb.append(getClass().getSimpleName()).append('[');
+        sb.append("capacity=").append(capacity).append(',');
+        sb.append("fill=").append(fill()).append(',');
+        sb.append("stalls=").append(stalls).append(',');
+        sb.append("bytesFetched=").append(bytesFetched).append(']');
+        return sb.toString();
+    }
+
+    /**
+     * Reads the input stream into the ring buffer.
+     */
+    private final class Prefetch implements Runnable {
+
+        private final InputStream stream;
+
+        private Prefetch(InputStream stream) {
+            this.stream = stream;
+        }
+
+        @Override
+        public void run() {
+            boolean filling = true;
+            try {
+                while(true) {
+                    long position;
+                    int space;
+                    synchronized(lock) {
+                        while(true) {
+                            if(!running) {
+                                return;
+                            }
+                            long fill = head - tail;
+                            if(fill >= highWatermark) {
+                                filling = false;
+                            }
+                            else if(fill <= lowWatermark) {
+                                filling = true;
+                            }
+                            if(filling) {
+                                position = head;
+                                // Read straight into the ring buffer, never past its end
+                                space = (int) Math.min(Math.min(highWatermark - fill, CHUNK_SIZE), capacity - head % capacity);
+                                break;
+                            }
+                            lock.wait();
+                        }
+                    }
+                    long start = System.nanoTime();
+                    int count = stream.read(ring, (int) (position % capacity), space);
+                    fetchTime += System.nanoTime() - start;
+                    if(count < 0) {
+                        synchronized(lock) {
+                            primed = true;
+                            endOfStream = true;
+                            lock.notifyAll();
+                        }
+                        return;
+                    }
+                    bytesFetched += count;
+                    synchronized(lock) {
+                        head += count;
+                        if(head - tail >= lowWatermark) {
+                            primed = true;
+                        }
+                        lock.notifyAll();
+                    }
+                }
+            }
+            catch(IOException e) {
+                synchronized(lock) {
+                    if(running) {
+                        logger.error("Failed to read stream", e);
+                        error = e;
+                    }
+                    lock.notifyAll();
+                }
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+package uk.co.caprica.vlcj.callbackmedia.seekable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+import uk.co.caprica.vlcj.callbackmedia.ChannelCallbackMedia;
+
+/**
+ * Implementation of seekable media that reads a file through a {@link FileChannel}.
+ * <p>
+ * This avoids the limited read size of {@link RandomAccessFileMedia}, which is significant for
+ * high bit-rate media.
+ */
+public class FileChannelMedia extends ChannelCallbackMedia {
+
+    /**
+     * File to read media data from.
+     */
+    private final File file;
+
+    /**
+     * Create a media instance.
+     *
+     * @param file file to read media data from
+     */
+    public FileChannelMedia(File file) {
+        super(true);
+        this.file = file;
+    }
+
+    @Override
+    protected long onGetSize() {
+        return file.length();
+    }
+
+    @Override
+    protected ReadableByteChannel onOpenChannel() throws IOException {
+        return new RandomAccessFile(file, "r").getChannel();
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+package uk.co.caprica.vlcj.callbackmedia.seekable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.co.caprica.vlcj.binding.support.NativeBufferView;
+import uk.co.caprica.vlcj.callbackmedia.AbstractCallbackMedia;
+
+import com.sun.jna.Pointer;
+
+/**
+ * Implementation of seekable media that maps a file into memory.
+ * <p>
+ * Each read is a single copy from the mapped file straight into the native buffer, through a
+ * direct {@link ByteBuffer} view of it, and each seek simply
+ * moves the read position, so there is no system call for either once the relevant part of the
+ * file is mapped. This suits editing applications, where scrubbing causes the native library to
+ * seek very frequently.
+ * <p>
+ * The file is mapped in fixed-size windows, so files larger than 2GB are supported. The most
+ * recently used windows are kept mapped, so that moving back and forth between a few positions
+ * does not map the file again. A window that is no longer kept is unmapped when it is garbage
+ * collected.
+ * <p>
+ * The number and size of the windows determine how much address space is used, which may need to
+ * be reduced on a 32-bit JVM.
+ */
+public class MappedFileMedia extends AbstractCallbackMedia {
+
+    /**
+     * Default size of each mapped window.
+     */
+    private static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Default number of mapped windows to keep.
+     */
+    private static final int DEFAULT_WINDOW_COUNT = 4;
+
+    /**
+     * Log.
+     */
+    private final Logger logger = LoggerFactory.getLogger(MappedFileMedia.class);
+
+    /**
+     * File to read media data from.
+     */
+    private final File file;
+
+    private final int windowSize;
+
+    /**
+     * Mapped windows, most recently used first.
+     */
+    private final MappedByteBuffer[] windows;
+
+    /**
+     * Offset within the file of each mapped window.
+     */
+    private final long[] windowOffsets;
+
+    /**
+     * View of the native buffer.
+     */
+    private final NativeBufferView view = new NativeBufferView();
+
+    private RandomAccessFile randomAccessFile;
+
+    /**
+     * Size of the file when it was opened.
+     */
+    private long size;
+
+    /**
+     * Current read position.
+     */
+    private long position;
+
+    /**
+     * Create a media instance with a default window size and count.
+     *
+     * @param file file to read media data from
+     */
+    public MappedFileMedia(File file) {
+        this(file, DEFAULT_WINDOW_SIZE, DEFAULT_WINDOW_COUNT);
+    }
+
+    /**
+     * Create a media instance.
+     *
+     * @param file file to read media data from
+     * @param windowSize size of each mapped window, in bytes
+     * @param windowCount number of mapped windows to keep
+     */
+    public MappedFileMedia(File file, int windowSize, int windowCount) {
+        super(true);
+        if(windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize must be greater than zero");
+        }
+        if(windowCount <= 0) {
+            throw new IllegalArgumentException("windowCount must be greater than zero");
+        }
+        this.file = file;
+        this.windowSize = windowSize;
+        this.windows = new MappedByteBuffer[windowCount];
+        this.windowOffsets = new long[windowCount];
+    }
+
+    @Override
+    protected long onGetSize() {
+        return file.length();
+    }
+
+    @Override
+    protected boolean onOpen() {
+        try {
+            randomAccessFile = new RandomAccessFile(file, "r");
+            size = randomAccessFile.length();
+            position = 0;
+            return true;
+        }
+        catch (IOException e) {
+            logger.error("Failed to open file", e);
+            return false;
+        }
+    }
+
+    @Override
+    protected int onRead(Pointer buffer, int bufferSize) throws IOException {
+        if(position >= size) {
+            return -1;
+        }
+        ByteBuffer target = view.view(buffer, bufferSize);
+        while(target.hasRemaining() && position < size) {
+            MappedByteBuffer window = window(position);
+            int offset = (int) (position % windowSize);
+            int count = Math.min(target.remaining(), window.capacity() - offset);
+            window.limit(offset + count).position(offset);
+            target.put(window);
+            position += count;
+        }
+        return target.position();
+    }
+
+    @Override
+    protected boolean onSeek(long offset) {
+        if(offset < 0 || offset > size) {
+            return false;
+        }
+        position = offset;
+        return true;
+    }
+
+    @Override
+    protected void onClose() {
+        for(int i = 0; i < windows.length; i ++ ) {
+            windows[i] = null;
+        }
+        try {
+            randomAccessFile.close();
+        }
+        catch (IOException e) {
+        }
+        randomAccessFile = null;
+    }
+
+    /**
+     * Get the mapped window containing a position, mapping it if necessary.
+     *
+     * @param position position within the file
+     * @return mapped window
+     * @throws IOException if the window could not be mapped
+     */
+    private MappedByteBuffer window(long position) throws IOException {
+        long windowOffset = position - position % windowSize;
+        int index = 0;
+        while(index < windows.length - 1 && windows[index] != null && windowOffsets[index] != windowOffset) {
+            index++;
+        }
+        MappedByteBuffer window = windows[index];
+        if(window == null || windowOffsets[index] != windowOffset) {
+            // Not mapped, replace the least recently used window
+            window = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, windowOffset, Math.min(windowSize, size - windowOffset));
+        }
+        // Move the window to the front
+        System.arraycopy(windows, 0, windows, 1, index);
+        System.arraycopy(windowOffsets, 0, windowOffsets, 1, index);
+        windows[0] = window;
+        windowOffsets[0] = windowOffset;
+        return window;
+    }
+}
@@ -23,7 +23,9 @@ import uk.co.caprica.vlcj.player.direct.BufferFormatCallback;
 import uk.co.caprica.vlcj.player.direct.DefaultDirectMediaPlayer;
 import uk.co.caprica.vlcj.player.direct.DirectMediaPlayer;
 import uk.co.caprica.vlcj.player.direct.RenderCallback;
+import uk.co.caprica.vlcj.player.direct.RenderDispatchPolicy;
 import uk.co.caprica.vlcj.player.directaudio.AudioCallback;
+import uk.co.caprica.vlcj.player.directaudio.AudioFormatCallback;
 import uk.co.caprica.vlcj.player.directaudio.DefaultDirectAudioPlayer;
 import uk.co.caprica.vlcj.player.directaudio.DirectAudioPlayer;
 import uk.co.caprica.vlcj.player.embedded.DefaultEmbeddedMediaPlayer;
@@ -64,6 +66,36 @@ public final class MediaPlayerService extends BaseService {
         return new DefaultDirectMediaPlayer(libvlc, instance, bufferFormatCallback, renderCallback);
     }
 
+    /**
+     * Create a new direct video rendering media player with multiple native frame buffers.
+     * <p>
+     * Using more than one frame buffer prevents a slow render callback, or a slow client
+     * application holding the buffer lock, from stalling the native video decoder.
+     *
+     * @param bufferFormatCallback callback to set the desired buffer format
+     * @param renderCallback callback to receive the video frame data
+     * @param bufferCount number of native frame buffers, e.g. 2 for double-buffering, 3 for triple-buffering
+     * @return media player instance
+     */
+    public DirectMediaPlayer newDirectMediaPlayer(BufferFormatCallback bufferFormatCallback, RenderCallback renderCallback, int bufferCount) {
+        return new DefaultDirectMediaPlayer(libvlc, instance, bufferFormatCallback, renderCallback, bufferCount);
+    }
+
+    /**
+     * Create a new direct video rendering media player that invokes the render callback on a
+     * dedicated thread rather than on the native video thread.
+     *
+     * @param bufferFormatCallback callback to set the desired buffer format
+     * @param renderCallback callback to receive the video frame data
+     * @param bufferCount number of native frame buffers, should be at least two more than the dispatch queue size
+     * @param dispatchPolicy policy to use when the dispatch queue is full
+     * @param dispatchQueueSize maximum number of frames waiting to be dispatched
+     * @return media player instance
+     */
+    public DirectMediaPlayer newDirectMediaPlayer(BufferFormatCallback bufferFormatCallback, RenderCallback renderCallback, int bufferCount, RenderDispatchPolicy dispatchPolicy, int dispatchQueueSize) {
+        return new DefaultDirectMediaPlayer(libvlc, instance, bufferFormatCallback, renderCallback, bufferCount, dispatchPolicy, dispatchQueueSize);
+    }
+
     /**
      * Create a new direct audio media player.
      *
@@ -77,6 +109,17 @@ public final class MediaPlayerService extends BaseService {
         return new DefaultDirectAudioPlayer(libvlc, instance, format, rate, channels, audioCallback);
     }
 
+    /**
+     * Create a new direct audio media player that negotiates the audio format.
+     *
+     * @param audioFormatCallback callback to negotiate the decoded audio format
+     * @param audioCallback callback
+     * @return media player instance
+     */
+    public DirectAudioPlayer newDirectAudioPlayer(AudioFormatCallback audioFormatCallback, AudioCallback audioCallback) {
+        return new DefaultDirectAudioPlayer(libvlc, instance, audioFormatCallback, audioCallback);
+    }
+
     /**
      * Create a new headless media player.
      * <p>
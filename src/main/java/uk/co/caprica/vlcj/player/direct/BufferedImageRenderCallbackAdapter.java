@@ -0,0 +1,110 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.direct;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+import com.sun.jna.Memory;
+
+/**
+ * A render call-back adapter implementation that provides each video frame as a
+ * {@link BufferedImage}, ready to draw.
+ * <p>
+ * The media player must be sending pixels in the RV32 format.
+ * <p>
+ * Each frame is copied from the native frame buffer into the image's own pixel array with a single
+ * bulk copy (a copy for each line if the lines are padded) - there is no intermediate array, and
+ * no conversion when the image is set, as there is when an application copies an array of RGB data
+ * into an image itself. The image is created when the buffer format changes and re-used after that,
+ * so rendering a frame does not create any garbage.
+ * <p>
+ * An image that reads the native frame buffer directly, without any copy at all, would need a
+ * custom raster - Java2D can only draw such an image through its general, per-pixel, path, which
+ * is well over ten times slower than copying the frame and drawing an ordinary image. This image is
+ * an ordinary {@link BufferedImage#TYPE_INT_RGB} image, so it is drawn with a straight blit.
+ * <p>
+ * The image is updated on the native video thread. To draw a complete frame from another thread,
+ * synchronise on this adapter while drawing, for example:
+ * <pre>
+ * synchronized(renderCallback) {
+ *     BufferedImage image = renderCallback.image();
+ *     if (image != null) {
+ *         g.drawImage(image, 0, 0, null);
+ *     }
+ * }
+ * </pre>
+ */
+public abstract class BufferedImageRenderCallbackAdapter implements RenderCallback {
+
+    /**
+     * Format of the current image.
+     */
+    private BufferFormat imageFormat;
+
+    /**
+     * Current image, or <code>null</code> if no frame has been rendered yet.
+     */
+    private BufferedImage image;
+
+    /**
+     * Pixel array of the current image.
+     */
+    private int[] pixels;
+
+    @Override
+    public final synchronized void display(DirectMediaPlayer mediaPlayer, Memory[] nativeBuffers, BufferFormat bufferFormat) {
+        int width = bufferFormat.getWidth();
+        int height = bufferFormat.getHeight();
+        if(bufferFormat != imageFormat) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            imageFormat = bufferFormat;
+        }
+        Memory nativeBuffer = nativeBuffers[0];
+        int pitch = bufferFormat.getPitches()[0];
+        if(pitch == width * 4) {
+            nativeBuffer.read(0, pixels, 0, width * height);
+        }
+        else {
+            for(int y = 0; y < height; y ++ ) {
+                nativeBuffer.read((long) y * pitch, pixels, y * width, width);
+            }
+        }
+        onDisplay(mediaPlayer, image);
+    }
+
+    /**
+     * Get the image containing the most recently rendered frame.
+     *
+     * @return image, or <code>null</code> if no frame has been rendered yet
+     */
+    public final synchronized BufferedImage image() {
+        return image;
+    }
+
+    /**
+     * Template method invoked when a new frame of video data is ready.
+     *
+     * @param mediaPlayer media player
+     * @param image image containing the frame
+     */
+    protected abstract void onDisplay(DirectMediaPlayer mediaPlayer, BufferedImage image);
+}
@@ -63,11 +63,49 @@ public class DefaultDirectMediaPlayer extends DefaultMediaPlayer implements Dire
     private final Logger logger = LoggerFactory.getLogger(DefaultDirectMediaPlayer.class);
 
     /**
-     * Use a semaphore with a single permit to ensure that the lock, display, unlock cycle goes in a
-     * serial manner.
+     * Default number of native frame buffers.
+     */
+    private static final int DEFAULT_BUFFER_COUNT = 1;
+
+    /**
+     * Use a semaphore with a single permit to ensure that client applications lock and unlock the
+     * native buffers in a serial manner.
      */
     private final Semaphore semaphore = new Semaphore(1);
 
+    /**
+     * Ring of native frame buffers shared by the native callbacks and client applications.
+     */
+    private final FrameBufferRing frameBuffers;
+
+    /**
+     * Pool of native memory, re-used each time the video format changes.
+     */
+    private final NativeBufferPool bufferPool = new NativeBufferPool();
+
+    /**
+     * Decides which decoded frames are delivered to the render callback.
+     */
+    private final FrameDecimator frameDecimator = new FrameDecimator();
+
+    /**
+     * Recorder of video callback latencies, disabled by default.
+     */
+    private final FrameLatencyRecorder latencyRecorder = new FrameLatencyRecorder();
+
+    /**
+     * Optional dispatcher used to invoke the render callback on a dedicated thread.
+     */
+    private final RenderDispatcher renderDispatcher;
+
+    /**
+     * Native picture identifiers, one for each frame buffer.
+     * <p>
+     * The identifier returned by the lock callback is passed back by the native library to the
+     * unlock and display callbacks, it is simply the frame buffer index plus one.
+     */
+    private final Pointer[] pictures;
+
     /**
      * Component to call back to set up video buffers.
      */
@@ -125,9 +163,25 @@ public class DefaultDirectMediaPlayer extends DefaultMediaPlayer implements Dire
     private BufferFormat bufferFormat;
 
     /**
-     * Native memory buffers, one for each plane.
+     * Buffers the native decoder fills, and the frame is discarded, when no frame buffer can be
+     * locked - created on demand for the current buffer format, and only used by the lock callback.
+     */
+    private Memory[] scratchBuffers;
+
+    /**
+     * Format of the scratch buffers.
+     */
+    private BufferFormat scratchFormat;
+
+    /**
+     * Index of the frame buffer currently locked by a client application, or -1.
+     */
+    private int heldBuffer = -1;
+
+    /**
+     * Generation of the frame buffers when the current client lock was taken.
      */
-    private Memory[] nativeBuffers;
+    private int heldGeneration;
 
     /**
      * Create a new media player.
@@ -155,9 +209,61 @@ public class DefaultDirectMediaPlayer extends DefaultMediaPlayer implements Dire
      * @param renderCallback callback to receive the video frame data
      */
     public DefaultDirectMediaPlayer(LibVlc libvlc, libvlc_instance_t instance, BufferFormatCallback bufferFormatCallback, RenderCallback renderCallback) {
+        this(libvlc, instance, bufferFormatCallback, renderCallback, DEFAULT_BUFFER_COUNT);
+    }
+
+    /**
+     * Create a new media player with multiple native frame buffers.
+     * <p>
+     * With more than one frame buffer the native decoder can fill one buffer while the render
+     * callback, or a client application holding {@link #lock()}, is still using another - so a slow
+     * consumer no longer stalls the native video thread. Two buffers gives double-buffering, three
+     * buffers gives triple-buffering.
+     * <p>
+     * See {@link #frameBufferStatistics(FrameBufferStatistics)} to help choose a suitable number of
+     * buffers.
+     *
+     * @param libvlc native library interface
+     * @param instance libvlc instance
+     * @param bufferFormatCallback callback to set the desired buffer format
+     * @param renderCallback callback to receive the video frame data
+     * @param bufferCount number of native frame buffers, must be at least one
+     */
+    public DefaultDirectMediaPlayer(LibVlc libvlc, libvlc_instance_t instance, BufferFormatCallback bufferFormatCallback, RenderCallback renderCallback, int bufferCount) {
+        this(libvlc, instance, bufferFormatCallback, renderCallback, bufferCount, null, 0);
+    }
+
+    /**
+     * Create a new media player that invokes the render callback asynchronously.
+     * <p>
+     * The display callback on the native video thread only publishes a reference to the filled frame
+     * buffer, the render callback is then invoked on a dedicated dispatch thread. Any work done in
+     * the render callback therefore no longer adds to the decoding latency.
+     * <p>
+     * Each frame waiting in the dispatch queue, and the frame being rendered, holds one of the native
+     * frame buffers - so the number of frame buffers should be at least two more than the queue size,
+     * otherwise the native decoder will stall waiting for a free buffer.
+     * <p>
+     * See {@link #renderDispatchStatistics(RenderDispatchStatistics)} to monitor the dispatch queue.
+     *
+     * @param libvlc native library interface
+     * @param instance libvlc instance
+     * @param bufferFormatCallback callback to set the desired buffer format
+     * @param renderCallback callback to receive the video frame data
+     * @param bufferCount number of native frame buffers, must be at least one
+     * @param dispatchPolicy policy to use when the dispatch queue is full, or <code>null</code> to invoke the render callback synchronously
+     * @param dispatchQueueSize maximum number of frames waiting to be dispatched, must be at least one if a policy is specified
+     */
+    public DefaultDirectMediaPlayer(LibVlc libvlc, libvlc_instance_t instance, BufferFormatCallback bufferFormatCallback, RenderCallback renderCallback, int bufferCount, RenderDispatchPolicy dispatchPolicy, int dispatchQueueSize) {
         super(libvlc, instance);
         this.bufferFormatCallback = bufferFormatCallback;
         this.renderCallback = renderCallback;
+        this.frameBuffers = new FrameBufferRing(bufferCount, bufferPool);
+        this.renderDispatcher = dispatchPolicy != null ? new RenderDispatcher(this, renderCallback, frameBuffers, latencyRecorder, dispatchPolicy, dispatchQueueSize) : null;
+        this.pictures = new Pointer[bufferCount];
+        for(int i = 0; i < bufferCount; i ++ ) {
+            pictures[i] = new Pointer(i + 1);
+        }
         // Create the callbacks
         this.setup = new SetupCallback();
         this.cleanup = new CleanupCallback();
@@ -167,6 +273,9 @@ public class DefaultDirectMediaPlayer extends DefaultMediaPlayer implements Dire
         // Install the native video callbacks
         libvlc.libvlc_video_set_format_callbacks(mediaPlayerInstance(), setup, cleanup);
         libvlc.libvlc_video_set_callbacks(mediaPlayerInstance(), lock, unlock, display, null);
+        if(renderDispatcher != null) {
+            renderDispatcher.start();
+        }
     }
 
     /**
@@ -181,14 +290,129 @@ public class DefaultDirectMediaPlayer extends DefaultMediaPlayer implements Dire
     @Override
     public final Memory[] lock() {
         semaphore.acquireUninterruptibly();
-        return nativeBuffers;
+        // The hold and its generation must be taken together, otherwise a format change in between
+        // would leave the hold attributed to the wrong buffers
+        synchronized(frameBuffers) {
+            heldBuffer = frameBuffers.hold();
+            heldGeneration = frameBuffers.generation();
+            return heldBuffer != -1 ? frameBuffers.buffers(heldBuffer) : null;
+        }
     }
 
     @Override
     public final void unlock() {
+        if(heldBuffer != -1) {
+            frameBuffers.release(heldBuffer, heldGeneration);
+            heldBuffer = -1;
+        }
         semaphore.release();
     }
 
+    @Override
+    public final void setFrameInterval(int frameInterval) {
+        frameDecimator.setFrameInterval(frameInterval);
+    }
+
+    @Override
+    public final int getFrameInterval() {
+        return frameDecimator.getFrameInterval();
+    }
+
+    @Override
+    public final void setMaximumFrameRate(double maximumFrameRate) {
+        frameDecimator.setMaximumFrameRate(maximumFrameRate);
+    }
+
+    @Override
+    public final double getMaximumFrameRate() {
+        return frameDecimator.getMaximumFrameRate();
+    }
+
+    @Override
+    public final void setLatencyStatisticsEnabled(boolean enabled) {
+        latencyRecorder.setEnabled(enabled);
+    }
+
+    @Override
+    public final boolean isLatencyStatisticsEnabled() {
+        return latencyRecorder.isEnabled();
+    }
+
+    @Override
+    public final void resetLatencyStatistics() {
+        latencyRecorder.reset();
+    }
+
+    @Override
+    public final void latencyStatistics(FrameLatencyStatistics statistics) {
+        latencyRecorder.statistics(statistics);
+    }
+
+    @Override
+    public final void frameBufferStatistics(FrameBufferStatistics statistics) {
+        frameBuffers.statistics(statistics);
+        bufferPool.statistics(statistics);
+    }
+
+    @Override
+    public final boolean renderDispatchStatistics(RenderDispatchStatistics statistics) {
+        if(renderDispatcher != null) {
+            renderDispatcher.statistics(statistics);
+            return true;
+        }
+        else {
+            return false;
+        }
+    }
+
+    @Override
+    protected void onBeforeRelease() {
+        if(renderDispatcher != null) {
+            renderDispatcher.stop();
+        }
+    }
+
+    @Override
+    protected void onAfterRelease() {
+        // The native media player has gone, so the native decoder can not be using the buffers any
+        // more - buffers still held by a client are freed when they are released
+        frameBuffers.free();
+        bufferPool.dispose();
+    }
+
+    /**
+     * Get scratch buffers for the current buffer format.
+     *
+     * @return scratch buffers, one for each plane, or <code>null</code> if the format has not been set
+     */
+    private Memory[] scratchBuffers() {
+        BufferFormat format = bufferFormat;
+        if(format == null) {
+            return null;
+        }
+        if(format != scratchFormat) {
+            int[] pitchValues = format.getPitches();
+            int[] lineValues = format.getLines();
+            Memory[] buffers = new Memory[format.getPlaneCount()];
+            for(int i = 0; i < buffers.length; i ++ ) {
+                buffers[i] = new Memory(pitchValues[i] * lineValues[i] + 32).align(32);
+            }
+            scratchBuffers = buffers;
+            scratchFormat = format;
+        }
+        return scratchBuffers;
+    }
+
+    /**
+     * Get the index of the frame buffer identified by a native picture identifier.
+     *
+     * @param picture native picture identifier, as returned by the lock callback
+     * @return frame buffer index, or -1 if there is none
+     */
+    private static int bufferIndex(Pointer picture) {
+        return picture != null ? (int) Pointer.nativeValue(picture) - 1 : -1;
+    }
+
     /**
      * Implementation of a callback invoked by the native library to set up the
      * required video buffer characteristics.
@@ -215,13 +439,24 @@ public class DefaultDirectMediaPlayer extends DefaultMediaPlayer implements Dire
             int[] lineValues = bufferFormat.getLines();
             pitches.getPointer().write(0, pitchValues, 0, pitchValues.length);
             lines.getPointer().write(0, lineValues, 0, lineValues.length);
+            // Return any previous buffers to the pool (buffers that are still held are
+            // retired until they are released), then free surplus pooled memory
+            frameBuffers.free();
+            bufferPool.trim();
             // Memory must be aligned correctly (on a 32-byte boundary) for the libvlc
             // API functions (extra bytes are allocated to allow for enough memory if
             // the alignment needs to be changed)
-            nativeBuffers = new Memory[bufferFormat.getPlaneCount()];
-            for(int i = 0; i < bufferFormat.getPlaneCount(); i ++ ) {
-                nativeBuffers[i] = new Memory(pitchValues[i] * lineValues[i] + 32).align(32);
+            int planeCount = bufferFormat.getPlaneCount();
+            Memory[][] nativeBuffers = new Memory[frameBuffers.bufferCount()][planeCount];
+            Memory[] pooledBuffers = new Memory[nativeBuffers.length * planeCount];
+            for(int buffer = 0; buffer < nativeBuffers.length; buffer ++ ) {
+                for(int i = 0; i < planeCount; i ++ ) {
+                    Memory memory = bufferPool.acquire(pitchValues[i] * lineValues[i] + 32);
+                    pooledBuffers[buffer * planeCount + i] = memory;
+                    nativeBuffers[buffer][i] = memory.align(32);
+                }
             }
+            frameBuffers.allocate(nativeBuffers, pooledBuffers);
             logger.trace("format finished");
             return pitchValues.length;
         }
@@ -237,9 +472,8 @@ public class DefaultDirectMediaPlayer extends DefaultMediaPlayer implements Dire
         @Override
         public void cleanup(Pointer opaque) {
             logger.trace("cleanup");
-            if(nativeBuffers != null) {
-                nativeBuffers = null;
-            }
+            // Keep the native memory for re-use when the next format is set up
+            frameBuffers.free();
             logger.trace("cleanup finished");
         }
     }
@@ -254,15 +488,29 @@ public class DefaultDirectMediaPlayer extends DefaultMediaPlayer implements Dire
         @Override
         public Pointer lock(Pointer opaque, PointerByReference planes) {
             logger.trace("lock");
-            // Acquire the single permit from the semaphore to ensure that the
-            // memory buffer is not trashed while display() is invoked
+            // Acquire a free frame buffer, this will only wait if every buffer is
+            // still in use by the render callback or a client application
             logger.trace("acquire");
-            semaphore.acquireUninterruptibly();
-            logger.trace("acquired");
+            long start = latencyRecorder.start();
+            int buffer = frameBuffers.lockForDecode();
+            latencyRecorder.lockWait(start);
+            logger.trace("acquired {}", buffer);
+            Memory[] nativeBuffers = buffer != -1 ? frameBuffers.buffers(buffer) : null;
+            if(nativeBuffers == null) {
+                // The native decoder writes the frame whatever is returned here, so it must always
+                // be given valid memory - the frame is decoded into scratch buffers and discarded,
+                // the unlock and display callbacks ignore the missing picture identifier
+                nativeBuffers = scratchBuffers();
+                if(nativeBuffers != null) {
+                    planes.getPointer().write(0, nativeBuffers, 0, nativeBuffers.length);
+                }
+                logger.trace("lock finished without a frame buffer");
+                return null;
+            }
             // Set the pre-allocated buffers to use for each plane
             planes.getPointer().write(0, nativeBuffers, 0, nativeBuffers.length);
             logger.trace("lock finished");
-            return null;
+            return pictures[buffer];
         }
     }
 
@@ -276,9 +524,12 @@ public class DefaultDirectMediaPlayer extends DefaultMediaPlayer implements Dire
         @Override
         public void unlock(Pointer opaque, Pointer picture, Pointer plane) {
             logger.trace("unlock");
-            // Release the semaphore
+            // Mark the frame buffer as filled
             logger.trace("release");
-            semaphore.release();
+            int buffer = bufferIndex(picture);
+            if(buffer != -1) {
+                frameBuffers.unlockForDecode(buffer);
+            }
             logger.trace("released");
             logger.trace("unlock finished");
         }
@@ -294,8 +545,40 @@ public class DefaultDirectMediaPlayer extends DefaultMediaPlayer implements Dire
         @Override
         public void display(Pointer opaque, Pointer picture) {
             logger.trace("display");
-            // Invoke the callback
-            DefaultDirectMediaPlayer.this.renderCallback.display(DefaultDirectMediaPlayer.this, nativeBuffers, bufferFormat);
+            int buffer = bufferIndex(picture);
+            if(buffer == -1) {
+                return;
+            }
+            latencyRecorder.frame();
+            // Decimated frames go straight back to the decoder, the previous frame stays published
+            if(!frameDecimator.accept()) {
+                frameBuffers.skip(buffer);
+                return;
+            }
+            // Publish the frame buffer and invoke the callback
+            Memory[] nativeBuffers = frameBuffers.beginDisplay(buffer);
+            if(renderDispatcher != null) {
+                // Hold the frame buffer until the dispatch thread is finished with it
+                int generation = frameBuffers.pin(buffer);
+                frameBuffers.endDisplay(buffer);
+                if(nativeBuffers != null) {
+                    renderDispatcher.dispatch(buffer, generation, bufferFormat);
+                }
+                else {
+                    frameBuffers.release(buffer, generation);
+                }
+                return;
+            }
+            try {
+                if(nativeBuffers != null) {
+                    long start = latencyRecorder.start();
+                    DefaultDirectMediaPlayer.this.renderCallback.display(DefaultDirectMediaPlayer.this, nativeBuffers, bufferFormat);
+                    latencyRecorder.render(start);
+                }
+            }
+            finally {
+                frameBuffers.endDisplay(buffer);
+            }
             logger.trace("display finished");
         }
     }
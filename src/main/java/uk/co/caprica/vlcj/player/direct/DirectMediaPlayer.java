@@ -49,8 +49,16 @@ public interface DirectMediaPlayer extends MediaPlayer {
      * <p>
      * To mitigate this, a defensive copy of the array could have been returned, but this would be
      * added overhead (even though slight) that can be avoided.
+     * <p>
+     * If the media player was created with more than one frame buffer, the returned buffers are
+     * those of the most recently displayed frame and holding the lock does <em>not</em> prevent the
+     * native video player from filling other buffers.
+     * <p>
+     * The buffers are available as soon as the video format has been set, even before the first
+     * frame has been displayed (in which case their contents are undefined).
      *
-     * @return native memory buffers, may be <code>null</code>
+     * @return native memory buffers, <code>null</code> if the video format has not been set or the
+     *         buffers have been cleaned up
      */
     Memory[] lock();
 
@@ -58,4 +66,91 @@ public interface DirectMediaPlayer extends MediaPlayer {
      * Unlock the native memory buffers.
      */
     void unlock();
+
+    /**
+     * Deliver only every Nth decoded frame.
+     * <p>
+     * Skipped frames are returned straight to the native decoder - they are neither passed to the
+     * render callback nor made available via {@link #lock()}, so they cost nothing in Java.
+     * <p>
+     * This may be combined with {@link #setMaximumFrameRate(double)}, in which case a frame must
+     * satisfy both limits to be delivered.
+     *
+     * @param frameInterval deliver every Nth frame, 1 (the default) to deliver every frame
+     */
+    void setFrameInterval(int frameInterval);
+
+    /**
+     * Get the current frame interval.
+     *
+     * @return frame interval, 1 if every frame is delivered
+     */
+    int getFrameInterval();
+
+    /**
+     * Deliver decoded frames no more often than a particular rate, measured by wall-clock time.
+     * <p>
+     * Skipped frames are returned straight to the native decoder - they are neither passed to the
+     * render callback nor made available via {@link #lock()}.
+     * <p>
+     * This is useful e.g. to show many thumbnail-sized players without paying to render every
+     * frame of each one.
+     *
+     * @param maximumFrameRate maximum frames per second, or zero (the default) for no limit
+     */
+    void setMaximumFrameRate(double maximumFrameRate);
+
+    /**
+     * Get the current maximum frame rate.
+     *
+     * @return maximum frames per second, or zero if there is no limit
+     */
+    double getMaximumFrameRate();
+
+    /**
+     * Enable or disable recording of video callback latencies.
+     * <p>
+     * When enabled, the time the native decoder waits for a frame buffer, the time taken by the
+     * render callback and the interval between frames are recorded into fixed-size histograms
+     * that can be queried at any time via {@link #latencyStatistics(FrameLatencyStatistics)}.
+     * <p>
+     * Recording is disabled by default. When disabled there is no measurable overhead.
+     *
+     * @param enabled <code>true</code> to record latencies; <code>false</code> to stop recording
+     */
+    void setLatencyStatisticsEnabled(boolean enabled);
+
+    /**
+     * Is recording of video callback latencies enabled?
+     *
+     * @return <code>true</code> if latencies are being recorded; <code>false</code> otherwise
+     */
+    boolean isLatencyStatisticsEnabled();
+
+    /**
+     * Discard all recorded video callback latencies.
+     */
+    void resetLatencyStatistics();
+
+    /**
+     * Get the current video callback latency histograms.
+     *
+     * @param statistics statistics instance to fill
+     */
+    void latencyStatistics(FrameLatencyStatistics statistics);
+
+    /**
+     * Get the current native frame buffer counters.
+     *
+     * @param statistics statistics instance to fill
+     */
+    void frameBufferStatistics(FrameBufferStatistics statistics);
+
+    /**
+     * Get the current asynchronous render dispatch counters.
+     *
+     * @param statistics statistics instance to fill
+     * @return <code>true</code> if the statistics were filled; <code>false</code> if the render callback is invoked synchronously
+     */
+    boolean renderDispatchStatistics(RenderDispatchStatistics statistics);
 }
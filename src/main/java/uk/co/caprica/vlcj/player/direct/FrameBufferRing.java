@@ -0,0 +1,494 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.direct;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sun.jna.Memory;
+
+/**
+ * A ring of native video frame buffers shared between the native video callbacks and client
+ * applications.
+ * <p>
+ * Each slot in the ring holds one set of native buffers (one buffer per plane) and moves through a
+ * simple life-cycle:
+ * <ul>
+ *   <li>free - available to be handed to the native decoder;</li>
+ *   <li>decoding - locked by the native decoder, between the lock and unlock callbacks;</li>
+ *   <li>decoded - filled by the native decoder, waiting for the display callback;</li>
+ *   <li>displaying - the render callback is being invoked for this slot;</li>
+ *   <li>published - the most recently displayed frame, or a superseded frame still held by a client.</li>
+ * </ul>
+ * The native decoder always prefers a free slot. Only if there is no free slot will the most
+ * recently published frame be reused (if no client holds it), and only if that is not possible will
+ * the native decoder wait.
+ * <p>
+ * With a single slot this reduces exactly to the behaviour of a single set of buffers guarded by a
+ * single permit.
+ * <p>
+ * When the buffers are replaced, e.g. because the video format changed, any of the previous buffers
+ * that are still held (by a client or by a frame waiting to be dispatched to the render callback)
+ * are retired rather than returned to the pool straight away. The native memory for a retired
+ * generation is only returned to the pool once every one of its holds has been released, so it can
+ * never be re-used by the native decoder, or freed, while it is still being read.
+ * <p>
+ * All methods are synchronised on the ring instance, every critical section is short.
+ */
+final class FrameBufferRing {
+
+    private static final int FREE = 0;
+
+    private static final int DECODING = 1;
+
+    private static final int DECODED = 2;
+
+    private static final int DISPLAYING = 3;
+
+    private static final int PUBLISHED = 4;
+
+    /**
+     * Number of slots in the ring.
+     */
+    private final int bufferCount;
+
+    /**
+     * Pool to return native memory to once nothing can still be using it.
+     */
+    private final NativeBufferPool pool;
+
+    /**
+     * Previous generations of buffers that are still held.
+     */
+    private final List<RetiredBuffers> retired = new ArrayList<RetiredBuffers>();
+
+    /**
+     * Current state of each slot.
+     */
+    private final int[] states;
+
+    /**
+     * Number of client holds for each slot.
+     */
+    private final int[] holds;
+
+    /**
+     * Native buffers for each slot, one buffer for each plane.
+     */
+    private Memory[][] buffers;
+
+    /**
+     * Native memory acquired from the pool for the current buffers.
+     */
+    private Memory[] pooledBuffers;
+
+    /**
+     * Incremented each time the buffers are replaced, so stale client holds can be ignored.
+     */
+    private int generation;
+
+    /**
+     * Index of the most recently published slot, or -1 if there is none.
+     */
+    private int latest = -1;
+
+    /**
+     * Has the most recently published slot been locked by a client?
+     */
+    private boolean latestConsumed;
+
+    /**
+     * Index of the slot most recently given to the native decoder.
+     */
+    private int next = -1;
+
+    private long displayedFrames;
+
+    private long droppedFrames;
+
+    private long overwrittenFrames;
+
+    private long stalledFrames;
+
+    private long skippedFrames;
+
+    /**
+     * Create a frame buffer ring.
+     *
+     * @param bufferCount number of slots, must be at least one
+     * @param pool pool to return native memory to when it is no longer used
+     */
+    FrameBufferRing(int bufferCount, NativeBufferPool pool) {
+        if(bufferCount < 1) {
+            throw new IllegalArgumentException("bufferCount must be at least one");
+        }
+        this.bufferCount = bufferCount;
+        this.pool = pool;
+        this.states = new int[bufferCount];
+        this.holds = new int[bufferCount];
+    }
+
+    /**
+     * Get the number of slots in the ring.
+     *
+     * @return number of slots
+     */
+    int bufferCount() {
+        return bufferCount;
+    }
+
+    /**
+     * Install a new set of native buffers, one set for each slot.
+     * <p>
+     * Any previous buffers are retired.
+     *
+     * @param buffers native buffers, indexed by slot and then by plane
+     * @param pooledBuffers native memory from the pool backing the buffers, returned to the pool
+     *                      when the buffers are no longer used
+     */
+    synchronized void allocate(Memory[][] buffers, Memory[] pooledBuffers) {
+        retire();
+        this.buffers = buffers;
+        this.pooledBuffers = pooledBuffers;
+        generation++;
+        for(int i = 0; i < bufferCount; i ++ ) {
+            states[i] = FREE;
+            holds[i] = 0;
+        }
+        latest = -1;
+        next = -1;
+        notifyAll();
+    }
+
+    /**
+     * Discard the current native buffers.
+     * <p>
+     * The native memory is returned to the pool immediately if no slot is held, otherwise it is
+     * retired until every hold has been released.
+     */
+    synchronized void free() {
+        retire();
+        buffers = null;
+        generation++;
+        for(int i = 0; i < bufferCount; i ++ ) {
+            states[i] = FREE;
+            holds[i] = 0;
+        }
+        latest = -1;
+        notifyAll();
+    }
+
+    /**
+     * Get the number of previous generations of buffers that are still held.
+     *
+     * @return number of retired generations
+     */
+    synchronized int retiredCount() {
+        return retired.size();
+    }
+
+    private void retire() {
+        if(pooledBuffers != null) {
+            int outstanding = 0;
+            for(int i = 0; i < bufferCount; i ++ ) {
+                outstanding += holds[i];
+            }
+            if(outstanding == 0) {
+                pool.release(pooledBuffers);
+            }
+            else {
+                retired.add(new RetiredBuffers(generation, holds.clone(), outstanding, pooledBuffers));
+            }
+            pooledBuffers = null;
+        }
+    }
+
+    /**
+     * Get the native buffers for a slot.
+     *
+     * @param slot slot index
+     * @return native buffers for the slot, one for each plane
+     */
+    synchronized Memory[] buffers(int slot) {
+        return buffers != null ? buffers[slot] : null;
+    }
+
+    /**
+     * Get the native buffers for a slot, provided they have not been replaced since a particular
+     * generation.
+     *
+     * @param slot slot index
+     * @param holdGeneration generation of the buffers when the slot was held
+     * @return native buffers for the slot, or <code>null</code> if the buffers have been replaced
+     */
+    synchronized Memory[] buffers(int slot, int holdGeneration) {
+        return buffers != null && holdGeneration == generation ? buffers[slot] : null;
+    }
+
+    /**
+     * Lock a slot for the native decoder to fill.
+     * <p>
+     * A free slot that is held by a client is never used. This will only block if every slot is
+     * either in use by the native decoder, being displayed or held by a client.
+     *
+     * @return slot index, or -1 if there are no buffers
+     */
+    synchronized int lockForDecode() {
+        boolean stalled = false;
+        while(buffers != null) {
+            for(int i = 1; i <= bufferCount; i ++ ) {
+                int slot = (next + i) % bufferCount;
+                if(states[slot] == FREE && holds[slot] == 0) {
+                    return decode(slot);
+                }
+            }
+            if(latest != -1 && states[latest] == PUBLISHED && holds[latest] == 0) {
+                if(!latestConsumed) {
+                    overwrittenFrames++;
+                    latestConsumed = true;
+                }
+                return decode(latest);
+            }
+            if(!stalled) {
+                stalled = true;
+                stalledFrames++;
+            }
+            try {
+                wait();
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private int decode(int slot) {
+        states[slot] = DECODING;
+        next = slot;
+        return slot;
+    }
+
+    /**
+     * The native decoder has finished filling a slot.
+     *
+     * @param slot slot index
+     */
+    synchronized void unlockForDecode(int slot) {
+        if(states[slot] == DECODING) {
+            states[slot] = DECODED;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Begin displaying a slot, making it the most recently published frame.
+     *
+     * @param slot slot index
+     * @return native buffers for the slot, may be <code>null</code> if the buffers were freed
+     */
+    synchronized Memory[] beginDisplay(int slot) {
+        if(buffers == null) {
+            return null;
+        }
+        if(latest != -1 && latest != slot) {
+            if(!latestConsumed) {
+                droppedFrames++;
+            }
+            if(states[latest] == PUBLISHED && holds[latest] == 0) {
+                states[latest] = FREE;
+            }
+        }
+        states[slot] = DISPLAYING;
+        latest = slot;
+        latestConsumed = false;
+        displayedFrames++;
+        return buffers[slot];
+    }
+
+    /**
+     * Skip a decoded slot without displaying it, returning it straight to the native decoder.
+     * <p>
+     * The most recently published frame is unaffected, so clients continue to see the last frame
+     * that was actually displayed.
+     *
+     * @param slot slot index
+     */
+    synchronized void skip(int slot) {
+        if(states[slot] == DECODED) {
+            states[slot] = FREE;
+            skippedFrames++;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Finish displaying a slot.
+     *
+     * @param slot slot index
+     */
+    synchronized void endDisplay(int slot) {
+        if(states[slot] == DISPLAYING) {
+            states[slot] = PUBLISHED;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Hold the most recently published slot on behalf of a client.
+     * <p>
+     * If no frame has been published yet since the buffers were installed, a slot that is not being
+     * filled by the native decoder is held instead, so a client can access the buffers as soon as
+     * the format has been set. The native decoder will not fill a slot while it is held.
+     * <p>
+     * If the native decoder is currently filling the slot, this will wait for the decoder to finish
+     * - the native decoder itself is never blocked by this method.
+     *
+     * @return slot index, or -1 if there are no buffers
+     */
+    synchronized int hold() {
+        while(buffers != null) {
+            if(latest != -1) {
+                if(states[latest] != DECODING) {
+                    holds[latest]++;
+                    latestConsumed = true;
+                    return latest;
+                }
+            }
+            else {
+                for(int i = 0; i < bufferCount; i ++ ) {
+                    if(states[i] != DECODING) {
+                        holds[i]++;
+                        return i;
+                    }
+                }
+            }
+            try {
+                wait();
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Hold a particular slot, e.g. while a displayed frame waits to be dispatched to a render
+     * callback.
+     * <p>
+     * The hold must later be released by {@link #release(int, int)}.
+     *
+     * @param slot slot index
+     * @return generation of the buffers, to be passed when the slot is released
+     */
+    synchronized int pin(int slot) {
+        holds[slot]++;
+        return generation;
+    }
+
+    /**
+     * Get the current generation of buffers.
+     *
+     * @return generation
+     */
+    synchronized int generation() {
+        return generation;
+    }
+
+    /**
+     * Release a slot previously held by a client.
+     * <p>
+     * If the hold was for a previous generation of buffers, and this was the last such hold, the
+     * native memory for that generation is returned to the pool.
+     *
+     * @param slot slot index
+     * @param holdGeneration generation of the buffers when the slot was held
+     */
+    synchronized void release(int slot, int holdGeneration) {
+        if(holdGeneration == generation) {
+            if(holds[slot] > 0) {
+                holds[slot]--;
+                if(holds[slot] == 0 && slot != latest && states[slot] == PUBLISHED) {
+                    states[slot] = FREE;
+                }
+                notifyAll();
+            }
+        }
+        else {
+            for(int i = 0; i < retired.size(); i ++ ) {
+                RetiredBuffers buffers = retired.get(i);
+                if(buffers.generation == holdGeneration) {
+                    if(buffers.release(slot)) {
+                        retired.remove(i);
+                        pool.release(buffers.pooledBuffers);
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Fill a statistics object with the current counters.
+     *
+     * @param statistics statistics to fill
+     */
+    synchronized void statistics(FrameBufferStatistics statistics) {
+        statistics.apply(bufferCount, displayedFrames, droppedFrames, overwrittenFrames, stalledFrames, skippedFrames);
+    }
+
+    /**
+     * A previous generation of buffers with slots that are still held.
+     */
+    private static final class RetiredBuffers {
+
+        private final int generation;
+
+        private final int[] holds;
+
+        private final Memory[] pooledBuffers;
+
+        private int outstanding;
+
+        private RetiredBuffers(int generation, int[] holds, int outstanding, Memory[] pooledBuffers) {
+            this.generation = generation;
+            this.holds = holds;
+            this.outstanding = outstanding;
+            this.pooledBuffers = pooledBuffers;
+        }
+
+        /**
+         * Release a hold on a slot.
+         *
+         * @param slot slot index
+         * @return <code>true</code> if no slot is held any more; <code>false</code> otherwise
+         */
+        private boolean release(int slot) {
+            if(holds[slot] > 0) {
+                holds[slot]--;
+                outstanding--;
+            }
+            return outstanding == 0;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.direct;
+
+/**
+ * Counters for the native video frame buffers used by a {@link DirectMediaPlayer}.
+ * <p>
+ * An instance of this class may be re-used to avoid creating garbage when polling the statistics.
+ */
+public class FrameBufferStatistics {
+
+    private int  bufferCount;
+    private long displayedFrames;
+    private long droppedFrames;
+    private long overwrittenFrames;
+    private long stalledFrames;
+    private long skippedFrames;
+    private long poolHits;
+    private long poolMisses;
+    private long residentBytes;
+    private long idleBytes;
+
+    /**
+     * Number of frame buffers in use by the media player.
+     *
+     * @return buffer count
+     */
+    public int bufferCount() {
+        return bufferCount;
+    }
+
+    /**
+     * Number of frames passed to the render callback.
+     *
+     * @return displayed frame count
+     */
+    public long displayedFrames() {
+        return displayedFrames;
+    }
+
+    /**
+     * Number of displayed frames that were superseded by a newer frame before any client locked
+     * them via {@link DirectMediaPlayer#lock()}.
+     * <p>
+     * This is only meaningful for applications that poll for frames rather than, or as well as,
+     * using a render callback.
+     *
+     * @return dropped frame count
+     */
+    public long droppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * Number of displayed frames that were re-used by the native decoder, because no free buffer
+     * was available, before any client locked them via {@link DirectMediaPlayer#lock()}.
+     *
+     * @return overwritten frame count
+     */
+    public long overwrittenFrames() {
+        return overwrittenFrames;
+    }
+
+    /**
+     * Number of times the native decoder had to wait for a free buffer.
+     * <p>
+     * If this value increases steadily, more buffers should be used.
+     *
+     * @return stalled frame count
+     */
+    public long stalledFrames() {
+        return stalledFrames;
+    }
+
+    /**
+     * Number of decoded frames that were skipped, without being passed to the render callback or
+     * made available to {@link DirectMediaPlayer#lock()}, because of the frame interval or maximum
+     * frame rate set on the media player.
+     *
+     * @return skipped frame count
+     */
+    public long skippedFrames() {
+        return skippedFrames;
+    }
+
+    /**
+     * Number of native buffers that were re-used from the buffer pool when the video format changed.
+     *
+     * @return pool hit count
+     */
+    public long poolHits() {
+        return poolHits;
+    }
+
+    /**
+     * Number of native buffers that had to be newly allocated when the video format changed.
+     *
+     * @return pool miss count
+     */
+    public long poolMisses() {
+        return poolMisses;
+    }
+
+    /**
+     * Total size of the native buffers currently allocated by the media player, whether in use or
+     * idle in the buffer pool.
+     *
+     * @return resident bytes
+     */
+    public long residentBytes() {
+        return residentBytes;
+    }
+
+    /**
+     * Total size of the native buffers idle in the buffer pool.
+     *
+     * @return idle bytes
+     */
+    public long idleBytes() {
+        return idleBytes;
+    }
+
+    final void apply(int bufferCount, long displayedFrames, long droppedFrames, long overwrittenFrames, long stalledFrames, long skippedFrames) {
+        this.bufferCount       = bufferCount;
+        this.displayedFrames   = displayedFrames;
+        this.droppedFrames     = droppedFrames;
+        this.overwrittenFrames = overwrittenFrames;
+        this.stalledFrames     = stalledFrames;
+        this.skippedFrames     = skippedFrames;
+    }
+
+    final void applyPool(long poolHits, long poolMisses, long residentBytes, long idleBytes) {
+        this.poolHits      = poolHits;
+        this.poolMisses    = poolMisses;
+        this.residentBytes = residentBytes;
+        this.idleBytes     = idleBytes;
+    }
+
+}
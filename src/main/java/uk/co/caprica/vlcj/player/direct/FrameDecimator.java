@@ -0,0 +1,156 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.direct;
+
+/**
+ * Decides which displayed frames are delivered to the render callback.
+ * <p>
+ * Two independent limits may be applied, a frame must pass both to be delivered:
+ * <ul>
+ *   <li>frame interval - only every Nth frame is delivered;</li>
+ *   <li>maximum frame rate - frames are delivered no more often than a wall-clock budget allows.</li>
+ * </ul>
+ * The limits may be changed at any time from any thread, the decision itself is only ever made by
+ * the native video thread. Only the limits are shared between threads, all of the decision state
+ * belongs to the video thread - a change of frame rate limit is noticed there, rather than the
+ * decision state being reset by the thread that changed the limit.
+ */
+final class FrameDecimator {
+
+    /**
+     * Deliver only every Nth frame.
+     */
+    private volatile int frameInterval = 1;
+
+    /**
+     * Minimum time between delivered frames, in nanoseconds, or zero for no limit.
+     */
+    private volatile long minimumPeriod;
+
+    // Video thread state
+
+    /**
+     * Number of frames seen since the last frame was delivered because of the frame interval.
+     */
+    private int count;
+
+    /**
+     * Earliest time the next frame may be delivered, from {@link System#nanoTime()}.
+     */
+    private long nextDue;
+
+    /**
+     * Minimum time between delivered frames that the current schedule was made for, in nanoseconds.
+     */
+    private long period;
+
+    /**
+     * Has any frame yet been delivered under the current frame rate limit?
+     */
+    private boolean started;
+
+    /**
+     * Set the frame interval.
+     *
+     * @param frameInterval deliver every Nth frame, 1 to deliver every frame
+     */
+    void setFrameInterval(int frameInterval) {
+        if(frameInterval < 1) {
+            throw new IllegalArgumentException("frameInterval must be at least one");
+        }
+        this.frameInterval = frameInterval;
+    }
+
+    /**
+     * Get the frame interval.
+     *
+     * @return frame interval
+     */
+    int getFrameInterval() {
+        return frameInterval;
+    }
+
+    /**
+     * Set the maximum frame rate.
+     *
+     * @param maximumFrameRate maximum number of frames per second to deliver, or zero for no limit
+     */
+    void setMaximumFrameRate(double maximumFrameRate) {
+        if(maximumFrameRate < 0) {
+            throw new IllegalArgumentException("maximumFrameRate must not be negative");
+        }
+        this.minimumPeriod = maximumFrameRate > 0 ? (long) (1000000000L / maximumFrameRate) : 0;
+    }
+
+    /**
+     * Get the maximum frame rate.
+     *
+     * @return maximum frames per second, or zero if there is no limit
+     */
+    double getMaximumFrameRate() {
+        long period = minimumPeriod;
+        return period > 0 ? 1000000000.0 / period : 0;
+    }
+
+    /**
+     * Decide whether or not the current frame should be delivered.
+     * <p>
+     * Must only be invoked by the native video thread.
+     *
+     * @return <code>true</code> if the frame should be delivered; <code>false</code> if it should be skipped
+     */
+    boolean accept() {
+        return accept(System.nanoTime());
+    }
+
+    /**
+     * Decide whether or not a frame should be delivered.
+     * <p>
+     * Must only be invoked by the native video thread.
+     *
+     * @param now current time, from {@link System#nanoTime()}
+     * @return <code>true</code> if the frame should be delivered; <code>false</code> if it should be skipped
+     */
+    boolean accept(long now) {
+        int interval = frameInterval;
+        if(interval > 1) {
+            if(++count < interval) {
+                return false;
+            }
+            count = 0;
+        }
+        long minimum = minimumPeriod;
+        if(minimum != period) {
+            // The limit has changed, so start a new schedule
+            period = minimum;
+            started = false;
+        }
+        if(period > 0) {
+            if(started && now - nextDue < 0) {
+                return false;
+            }
+            // Schedule from the previous due time to keep the average rate, but never let the
+            // schedule fall so far behind that a burst of frames would be delivered to catch up
+            nextDue = started && now - nextDue < period ? nextDue + period : now + period;
+            started = true;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.direct;
+
+/**
+ * Records latencies for the video callbacks into fixed-size histograms.
+ * <p>
+ * Recording is disabled by default, in which case each method returns immediately without even
+ * reading the clock.
+ */
+final class FrameLatencyRecorder {
+
+    private final LatencyHistogram lockWait = new LatencyHistogram();
+
+    private final LatencyHistogram render = new LatencyHistogram();
+
+    private final LatencyHistogram frameInterval = new LatencyHistogram();
+
+    private volatile boolean enabled;
+
+    /**
+     * Time of the previous display callback, or zero if there is none.
+     */
+    private long lastFrame;
+
+    /**
+     * Enable or disable recording.
+     *
+     * @param enabled <code>true</code> to record latencies; <code>false</code> to stop recording
+     */
+    synchronized void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        lastFrame = 0;
+    }
+
+    /**
+     * Is recording enabled?
+     *
+     * @return <code>true</code> if latencies are being recorded; <code>false</code> otherwise
+     */
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Get the start time of a measurement.
+     *
+     * @return current time, or zero if recording is disabled
+     */
+    long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record the time spent waiting for a frame buffer.
+     *
+     * @param start value previously returned by {@link #start()}
+     */
+    void lockWait(long start) {
+        if(start != 0) {
+            long elapsed = System.nanoTime() - start;
+            synchronized(this) {
+                lockWait.record(elapsed);
+            }
+        }
+    }
+
+    /**
+     * Record the time spent in the render callback.
+     *
+     * @param start value previously returned by {@link #start()}
+     */
+    void render(long start) {
+        if(start != 0) {
+            long elapsed = System.nanoTime() - start;
+            synchronized(this) {
+                render.record(elapsed);
+            }
+        }
+    }
+
+    /**
+     * Record the arrival of a display callback.
+     */
+    void frame() {
+        if(enabled) {
+            long now = System.nanoTime();
+            synchronized(this) {
+                if(lastFrame != 0) {
+                    frameInterval.record(now - lastFrame);
+                }
+                lastFrame = now;
+            }
+        }
+    }
+
+    /**
+     * Discard all recorded latencies.
+     */
+    synchronized void reset() {
+        lockWait.reset();
+        render.reset();
+        frameInterval.reset();
+        lastFrame = 0;
+    }
+
+    /**
+     * Fill a statistics object with the current histograms.
+     *
+     * @param statistics statistics to fill
+     */
+    synchronized void statistics(FrameLatencyStatistics statistics) {
+        lockWait.copyTo(statistics.lockWait());
+        render.copyTo(statistics.render());
+        frameInterval.copyTo(statistics.frameInterval());
+    }
+}
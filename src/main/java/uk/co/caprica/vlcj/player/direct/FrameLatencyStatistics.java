@@ -0,0 +1,67 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.direct;
+
+/**
+ * Latency histograms for the video callbacks of a {@link DirectMediaPlayer}.
+ * <p>
+ * An instance of this class may be re-used to avoid creating garbage when polling the statistics.
+ *
+ * @see DirectMediaPlayer#setLatencyStatisticsEnabled(boolean)
+ */
+public class FrameLatencyStatistics {
+
+    private final LatencyHistogram lockWait = new LatencyHistogram();
+    private final LatencyHistogram render = new LatencyHistogram();
+    private final LatencyHistogram frameInterval = new LatencyHistogram();
+
+    /**
+     * Time the native decoder waited in the lock callback for a free frame buffer.
+     * <p>
+     * High values mean the render callback, or a client holding the media player lock, is too slow
+     * to keep up with the video.
+     *
+     * @return lock wait histogram
+     */
+    public LatencyHistogram lockWait() {
+        return lockWait;
+    }
+
+    /**
+     * Time taken by the render callback to process each frame.
+     *
+     * @return render histogram
+     */
+    public LatencyHistogram render() {
+        return render;
+    }
+
+    /**
+     * Time between successive display callbacks from the native video thread.
+     * <p>
+     * The spread of this histogram shows the jitter of the video output.
+     *
+     * @return frame interval histogram
+     */
+    public LatencyHistogram frameInterval() {
+        return frameInterval;
+    }
+
+}
@@ -0,0 +1,337 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.direct;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.co.caprica.vlcj.binding.internal.libvlc_media_t;
+import uk.co.caprica.vlcj.player.MediaPlayerEventAdapter;
+import uk.co.caprica.vlcj.player.MediaPlayerEventListener;
+import uk.co.caprica.vlcj.player.base.MediaPlayer;
+
+import com.sun.jna.Memory;
+
+/**
+ * A render callback that records raw video frames into a memory-mapped file.
+ * <p>
+ * The file is allocated up-front as a ring of fixed-size slots, one frame per slot. Recording a
+ * frame is a single copy from the native frame buffer into the mapped file - there are no streams,
+ * no system calls and no garbage on the video thread, the operating system writes the pages back
+ * to disk in its own time. When the ring is full, the oldest frame is overwritten, so the file
+ * always contains the most recent frames.
+ * <p>
+ * Each frame is stored with a small header containing its sequence number, the media time when it
+ * was displayed, the time it was captured and its buffer format. Frames larger than a slot are not
+ * recorded, but are counted.
+ * <p>
+ * Asking the media player for the time would mean a native call for every frame, so instead the
+ * media time is the one most recently reported by the media player's time changed events - the
+ * listener returned by {@link #eventListener()} must be added to the media player for this,
+ * otherwise the media time is recorded as -1. The capture time is always recorded.
+ * <p>
+ * A recording can be replayed through any {@link RenderCallback} by a {@link FrameRecordingReader}.
+ * <p>
+ * Recording can be combined with normal rendering by supplying a delegate render callback, which is
+ * invoked after the frame has been recorded.
+ * <p>
+ * The file is mapped until this recorder is garbage collected, even after {@link #close()}.
+ */
+public class FrameRecorder implements RenderCallback {
+
+    /**
+     * File identifier, "VLCJFRM1".
+     */
+    static final long MAGIC = 0x564c434a46524d31L;
+
+    /**
+     * File format version.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Size of the file header.
+     */
+    static final int HEADER_SIZE = 4096;
+
+    /**
+     * Size of the header at the start of each slot.
+     */
+    static final int SLOT_HEADER_SIZE = 96;
+
+    /**
+     * Maximum number of planes in a frame.
+     */
+    static final int MAX_PLANES = 4;
+
+    static final int HEADER_MAGIC = 0;
+    static final int HEADER_VERSION = 8;
+    static final int HEADER_SLOT_COUNT = 12;
+    static final int HEADER_SLOT_SIZE = 16;
+    static final int HEADER_FRAME_COUNT = 24;
+
+    static final int SLOT_SEQUENCE = 0;
+    static final int SLOT_MEDIA_TIME = 8;
+    static final int SLOT_CAPTURE_TIME = 16;
+    static final int SLOT_CHROMA = 24;
+    static final int SLOT_WIDTH = 28;
+    static final int SLOT_HEIGHT = 32;
+    static final int SLOT_PLANE_COUNT = 36;
+    static final int SLOT_PITCHES = 40;
+    static final int SLOT_LINES = 56;
+    static final int SLOT_DATA_LENGTH = 72;
+
+    /**
+     * Slot sizes are rounded up to a multiple of this value, so frame data is page-aligned.
+     */
+    private static final int SLOT_GRANULARITY = 4096;
+
+    /**
+     * Log.
+     */
+    private final Logger logger = LoggerFactory.getLogger(FrameRecorder.class);
+
+    /**
+     * Optional render callback to invoke after each frame is recorded.
+     */
+    private final RenderCallback delegate;
+
+    private final MediaPlayerEventListener eventListener = new TimeEventListener();
+
+    private final RandomAccessFile file;
+
+    private final MappedByteBuffer header;
+
+    /**
+     * Mapping for each slot.
+     */
+    private final MappedByteBuffer[] slots;
+
+    private final int slotSize;
+
+    /**
+     * Cached views of the native frame buffers.
+     */
+    private final NativeBufferViews views = new NativeBufferViews();
+
+    /**
+     * Time recording started, from {@link System#nanoTime()}.
+     */
+    private final long startTime;
+
+    /**
+     * Media time most recently reported by the media player, in milliseconds, or -1 if not known.
+     */
+    private volatile long mediaTime = -1;
+
+    private long recordedFrames;
+
+    private long droppedFrames;
+
+    private boolean closed;
+
+    /**
+     * Create a frame recorder.
+     *
+     * @param file file to record to, any existing file is overwritten
+     * @param slotCount number of frames the file can hold
+     * @param maxFrameSize size of the largest frame that can be recorded, in bytes
+     * @throws IOException if the file can not be created
+     */
+    public FrameRecorder(File file, int slotCount, int maxFrameSize) throws IOException {
+        this(file, slotCount, maxFrameSize, null);
+    }
+
+    /**
+     * Create a frame recorder.
+     *
+     * @param file file to record to, any existing file is overwritten
+     * @param slotCount number of frames the file can hold
+     * @param maxFrameSize size of the largest frame that can be recorded, in bytes
+     * @param delegate render callback to invoke after each frame is recorded, may be <code>null</code>
+     * @throws IOException if the file can not be created
+     */
+    public FrameRecorder(File file, int slotCount, int maxFrameSize, RenderCallback delegate) throws IOException {
+        if(slotCount < 1) {
+            throw new IllegalArgumentException("slotCount must be at least one");
+        }
+        if(maxFrameSize < 1 || maxFrameSize > Integer.MAX_VALUE - SLOT_HEADER_SIZE - SLOT_GRANULARITY) {
+            throw new IllegalArgumentException("Invalid maxFrameSize " + maxFrameSize);
+        }
+        this.delegate = delegate;
+        this.slotSize = (SLOT_HEADER_SIZE + maxFrameSize + SLOT_GRANULARITY - 1) / SLOT_GRANULARITY * SLOT_GRANULARITY;
+        this.slots = new MappedByteBuffer[slotCount];
+        this.file = new RandomAccessFile(file, "rw");
+        try {
+            this.file.setLength(0);
+            this.file.setLength(HEADER_SIZE + (long) slotCount * slotSize);
+            FileChannel channel = this.file.getChannel();
+            this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            for(int i = 0; i < slotCount; i ++ ) {
+                slots[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + (long) i * slotSize, slotSize);
+                // Fault the pages in now rather than on the video thread
+                slots[i].load();
+            }
+        }
+        catch(IOException e) {
+            this.file.close();
+            throw e;
+        }
+        header.putLong(HEADER_MAGIC, MAGIC);
+        header.putInt(HEADER_VERSION, VERSION);
+        header.putInt(HEADER_SLOT_COUNT, slotCount);
+        header.putInt(HEADER_SLOT_SIZE, slotSize);
+        header.putLong(HEADER_FRAME_COUNT, 0);
+        this.startTime = System.nanoTime();
+    }
+
+    @Override
+    public final void display(DirectMediaPlayer mediaPlayer, Memory[] nativeBuffers, BufferFormat bufferFormat) {
+        record(mediaTime, nativeBuffers, bufferFormat);
+        if(delegate != null) {
+            delegate.display(mediaPlayer, nativeBuffers, bufferFormat);
+        }
+    }
+
+    private synchronized void record(long mediaTime, Memory[] nativeBuffers, BufferFormat bufferFormat) {
+        if(closed) {
+            return;
+        }
+        int[] pitches = bufferFormat.getPitches();
+        int[] lines = bufferFormat.getLines();
+        int planeCount = pitches.length;
+        long dataLength = 0;
+        for(int i = 0; i < planeCount; i ++ ) {
+            dataLength += (long) pitches[i] * lines[i];
+        }
+        if(planeCount > MAX_PLANES || nativeBuffers.length < planeCount || SLOT_HEADER_SIZE + dataLength > slotSize) {
+            droppedFrames++;
+            return;
+        }
+        MappedByteBuffer slot = slots[(int) (recordedFrames % slots.length)];
+        slot.clear();
+        slot.position(SLOT_HEADER_SIZE);
+        views.format(bufferFormat);
+        for(int i = 0; i < planeCount; i ++ ) {
+            ByteBuffer plane = views.byteBuffer(nativeBuffers[i]);
+            plane.limit(pitches[i] * lines[i]);
+            slot.put(plane);
+        }
+        slot.putLong(SLOT_SEQUENCE, recordedFrames);
+        slot.putLong(SLOT_MEDIA_TIME, mediaTime);
+        slot.putLong(SLOT_CAPTURE_TIME, System.nanoTime() - startTime);
+        // The buffer format requires four characters, but never read past the end of the chroma
+        String chroma = bufferFormat.getChroma();
+        for(int i = 0; i < 4; i ++ ) {
+            slot.put(SLOT_CHROMA + i, i < chroma.length() ? (byte) chroma.charAt(i) : 0);
+        }
+        slot.putInt(SLOT_WIDTH, bufferFormat.getWidth());
+        slot.putInt(SLOT_HEIGHT, bufferFormat.getHeight());
+        slot.putInt(SLOT_PLANE_COUNT, planeCount);
+        for(int i = 0; i < MAX_PLANES; i ++ ) {
+            slot.putInt(SLOT_PITCHES + i * 4, i < planeCount ? pitches[i] : 0);
+            slot.putInt(SLOT_LINES + i * 4, i < planeCount ? lines[i] : 0);
+        }
+        slot.putInt(SLOT_DATA_LENGTH, (int) dataLength);
+        // Only count the frame in the file header once the slot is complete
+        recordedFrames++;
+        header.putLong(HEADER_FRAME_COUNT, recordedFrames);
+    }
+
+    /**
+     * Get the media player event listener that provides the media time to this recorder.
+     * <p>
+     * The listener must be added to the media player.
+     *
+     * @return event listener
+     */
+    public final MediaPlayerEventListener eventListener() {
+        return eventListener;
+    }
+
+    /**
+     * Get the number of frames recorded so far.
+     * <p>
+     * If this is more than the number of slots, only the most recent frames are still in the file.
+     *
+     * @return recorded frame count
+     */
+    public final synchronized long recordedFrames() {
+        return recordedFrames;
+    }
+
+    /**
+     * Get the number of frames that were not recorded because they were too large for a slot.
+     *
+     * @return dropped frame count
+     */
+    public final synchronized long droppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * Stop recording, write the recorded frames to disk and close the file.
+     * <p>
+     * Frames displayed after this are passed straight to the delegate render callback, if any.
+     */
+    public final synchronized void close() {
+        if(!closed) {
+            closed = true;
+            for(MappedByteBuffer slot : slots) {
+                slot.force();
+            }
+            header.force();
+            try {
+                file.close();
+            }
+            catch(IOException e) {
+                logger.warn("Failed to close frame recording", e);
+            }
+        }
+    }
+
+    /**
+     * Receives the media time from the media player.
+     */
+    private final class TimeEventListener extends MediaPlayerEventAdapter {
+
+        @Override
+        public void mediaChanged(MediaPlayer mediaPlayer, libvlc_media_t media) {
+            mediaTime = -1;
+        }
+
+        @Override
+        public void timeChanged(MediaPlayer mediaPlayer, long newTime) {
+            mediaTime = newTime;
+        }
+
+        @Override
+        public void stopped(MediaPlayer mediaPlayer) {
+            mediaTime = -1;
+        }
+    }
+}
@@ -0,0 +1,344 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.direct;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.jna.Memory;
+
+/**
+ * Reads a recording made by a {@link FrameRecorder} and replays the frames through a
+ * {@link RenderCallback}.
+ * <p>
+ * Frames are read in the order they were recorded, oldest first. Each frame is copied from the
+ * mapped file into native memory, re-used for every frame with the same buffer format, so the
+ * render callback sees exactly the same kind of buffers as it would from a media player.
+ * <p>
+ * For example:
+ * <pre>
+ * FrameRecordingReader reader = new FrameRecordingReader(file);
+ * try {
+ *     while (reader.next()) {
+ *         reader.render(renderCallback, null);
+ *     }
+ * }
+ * finally {
+ *     reader.close();
+ * }
+ * </pre>
+ * This class is not thread-safe.
+ */
+public class FrameRecordingReader {
+
+    /**
+     * Log.
+     */
+    private final Logger logger = LoggerFactory.getLogger(FrameRecordingReader.class);
+
+    private final RandomAccessFile file;
+
+    /**
+     * Mapping for each slot, created on demand.
+     */
+    private final MappedByteBuffer[] slots;
+
+    private final int slotSize;
+
+    /**
+     * Sequence number of the oldest frame still in the recording.
+     */
+    private final long firstSequence;
+
+    /**
+     * Number of frames in the recording.
+     */
+    private final int frameCount;
+
+    /**
+     * Index of the current frame, or -1 before the first.
+     */
+    private int index = -1;
+
+    /**
+     * Slot of the current frame.
+     */
+    private MappedByteBuffer slot;
+
+    private long sequence;
+
+    private long mediaTime;
+
+    private long captureTime;
+
+    private BufferFormat bufferFormat;
+
+    /**
+     * Native buffers, one for each plane of the current buffer format.
+     */
+    private Memory[] nativeBuffers;
+
+    /**
+     * Views of the native buffers.
+     */
+    private ByteBuffer[] nativeViews;
+
+    /**
+     * Open a recording.
+     *
+     * @param file recording file
+     * @throws IOException if the file can not be read or is not a frame recording
+     */
+    public FrameRecordingReader(File file) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = this.file.getChannel();
+            if(channel.size() < FrameRecorder.HEADER_SIZE) {
+                throw new IOException("Not a frame recording: " + file);
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, FrameRecorder.HEADER_SIZE);
+            if(header.getLong(FrameRecorder.HEADER_MAGIC) != FrameRecorder.MAGIC) {
+                throw new IOException("Not a frame recording: " + file);
+            }
+            if(header.getInt(FrameRecorder.HEADER_VERSION) != FrameRecorder.VERSION) {
+                throw new IOException("Unsupported frame recording version " + header.getInt(FrameRecorder.HEADER_VERSION));
+            }
+            int slotCount = header.getInt(FrameRecorder.HEADER_SLOT_COUNT);
+            this.slotSize = header.getInt(FrameRecorder.HEADER_SLOT_SIZE);
+            long recordedFrames = header.getLong(FrameRecorder.HEADER_FRAME_COUNT);
+            if(slotCount < 1 || slotSize < FrameRecorder.SLOT_HEADER_SIZE || channel.size() < FrameRecorder.HEADER_SIZE + (long) slotCount * slotSize) {
+                throw new IOException("Corrupt frame recording: " + file);
+            }
+            this.slots = new MappedByteBuffer[slotCount];
+            this.frameCount = (int) Math.min(recordedFrames, slotCount);
+            this.firstSequence = recordedFrames - frameCount;
+        }
+        catch(IOException e) {
+            this.file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Get the number of frames in the recording.
+     *
+     * @return frame count
+     */
+    public final int frameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Move to the next frame.
+     *
+     * @return <code>true</code> if there is a next frame; <code>false</code> if the end of the recording has been reached
+     * @throws IOException if the frame can not be read
+     */
+    public final boolean next() throws IOException {
+        if(index + 1 >= frameCount) {
+            return false;
+        }
+        index++;
+        long expectedSequence = firstSequence + index;
+        slot = slot((int) (expectedSequence % slots.length));
+        sequence = slot.getLong(FrameRecorder.SLOT_SEQUENCE);
+        if(sequence != expectedSequence) {
+            throw new IOException("Corrupt frame recording, expected frame " + expectedSequence + " but found " + sequence);
+        }
+        mediaTime = slot.getLong(FrameRecorder.SLOT_MEDIA_TIME);
+        captureTime = slot.getLong(FrameRecorder.SLOT_CAPTURE_TIME);
+        readBufferFormat();
+        return true;
+    }
+
+    /**
+     * Return to the start of the recording.
+     */
+    public final void rewind() {
+        index = -1;
+        slot = null;
+    }
+
+    /**
+     * Get the sequence number of the current frame.
+     * <p>
+     * Sequence numbers count every frame recorded, so the first frame in a recording that wrapped
+     * around will not be zero.
+     *
+     * @return sequence number
+     */
+    public final long sequence() {
+        return sequence;
+    }
+
+    /**
+     * Get the media time when the current frame was displayed.
+     *
+     * @return media time, in milliseconds, or -1 if it is not known
+     */
+    public final long mediaTime() {
+        return mediaTime;
+    }
+
+    /**
+     * Get the time the current frame was captured, relative to the start of the recording.
+     *
+     * @return capture time, in nanoseconds
+     */
+    public final long captureTime() {
+        return captureTime;
+    }
+
+    /**
+     * Get the buffer format of the current frame.
+     * <p>
+     * The same instance is returned for consecutive frames with the same format.
+     *
+     * @return buffer format
+     */
+    public final BufferFormat bufferFormat() {
+        return bufferFormat;
+    }
+
+    /**
+     * Render the current frame.
+     *
+     * @param renderCallback render callback to invoke
+     * @param mediaPlayer media player to pass to the render callback, may be <code>null</code>
+     */
+    public final void render(RenderCallback renderCallback, DirectMediaPlayer mediaPlayer) {
+        if(slot == null) {
+            throw new IllegalStateException("No current frame");
+        }
+        int[] pitches = bufferFormat.getPitches();
+        int[] lines = bufferFormat.getLines();
+        int position = FrameRecorder.SLOT_HEADER_SIZE;
+        for(int i = 0; i < pitches.length; i ++ ) {
+            int length = pitches[i] * lines[i];
+            slot.limit(position + length);
+            slot.position(position);
+            ByteBuffer view = nativeViews[i];
+            view.clear();
+            view.put(slot);
+            position += length;
+        }
+        renderCallback.display(mediaPlayer, nativeBuffers, bufferFormat);
+    }
+
+    /**
+     * Replay every remaining frame of the recording.
+     *
+     * @param renderCallback render callback to invoke for each frame
+     * @param mediaPlayer media player to pass to the render callback, may be <code>null</code>
+     * @param paced <code>true</code> to replay the frames with their original timing; <code>false</code> to replay them as fast as possible
+     * @return number of frames replayed
+     * @throws IOException if a frame can not be read
+     */
+    public final int replay(RenderCallback renderCallback, DirectMediaPlayer mediaPlayer, boolean paced) throws IOException {
+        int count = 0;
+        long replayStart = System.nanoTime();
+        long recordingStart = 0;
+        while(next()) {
+            if(paced) {
+                if(count == 0) {
+                    recordingStart = captureTime;
+                }
+                long delay = (captureTime - recordingStart) - (System.nanoTime() - replayStart);
+                if(delay > 0) {
+                    try {
+                        Thread.sleep(delay / 1000000, (int) (delay % 1000000));
+                    }
+                    catch(InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+            render(renderCallback, mediaPlayer);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Close the recording.
+     */
+    public final void close() {
+        try {
+            file.close();
+        }
+        catch(IOException e) {
+            logger.warn("Failed to close frame recording", e);
+        }
+    }
+
+    private MappedByteBuffer slot(int index) throws IOException {
+        MappedByteBuffer result = slots[index];
+        if(result == null) {
+            result = file.getChannel().map(FileChannel.MapMode.READ_ONLY, FrameRecorder.HEADER_SIZE + (long) index * slotSize, slotSize);
+            slots[index] = result;
+        }
+        return result;
+    }
+
+    private void readBufferFormat() throws IOException {
+        char[] chromaChars = new char[4];
+        for(int i = 0; i < 4; i ++ ) {
+            chromaChars[i] = (char) slot.get(FrameRecorder.SLOT_CHROMA + i);
+        }
+        int width = slot.getInt(FrameRecorder.SLOT_WIDTH);
+        int height = slot.getInt(FrameRecorder.SLOT_HEIGHT);
+        int planeCount = slot.getInt(FrameRecorder.SLOT_PLANE_COUNT);
+        if(planeCount < 1 || planeCount > FrameRecorder.MAX_PLANES) {
+            throw new IOException("Corrupt frame recording, invalid plane count " + planeCount);
+        }
+        int[] pitches = new int[planeCount];
+        int[] lines = new int[planeCount];
+        for(int i = 0; i < planeCount; i ++ ) {
+            pitches[i] = slot.getInt(FrameRecorder.SLOT_PITCHES + i * 4);
+            lines[i] = slot.getInt(FrameRecorder.SLOT_LINES + i * 4);
+        }
+        if(bufferFormat != null && bufferFormat.getWidth() == width && bufferFormat.getHeight() == height && bufferFormat.getChroma().equals(new String(chromaChars)) && Arrays.equals(bufferFormat.getPitches(), pitches) && Arrays.equals(bufferFormat.getLines(), lines)) {
+            return;
+        }
+        long dataLength = 0;
+        for(int i = 0; i < planeCount; i ++ ) {
+            dataLength += (long) pitches[i] * lines[i];
+        }
+        if(dataLength > slotSize - FrameRecorder.SLOT_HEADER_SIZE) {
+            throw new IOException("Corrupt frame recording, frame too large");
+        }
+        bufferFormat = new BufferFormat(new String(chromaChars), width, height, pitches, lines);
+        nativeBuffers = new Memory[planeCount];
+        nativeViews = new ByteBuffer[planeCount];
+        for(int i = 0; i < planeCount; i ++ ) {
+            nativeBuffers[i] = new Memory((long) pitches[i] * lines[i] + 32).align(32);
+            nativeViews[i] = nativeBuffers[i].getByteBuffer(0, (long) pitches[i] * lines[i]);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.direct;
+
+/**
+ * A fixed-size histogram of latencies.
+ * <p>
+ * Values are recorded in nanoseconds into buckets whose widths double, the first bucket holds
+ * values under one microsecond and the last bucket holds everything over about four seconds. The
+ * histogram never grows, so recording a value never creates any garbage.
+ * <p>
+ * An instance of this class may be re-used to avoid creating garbage when polling the statistics.
+ */
+public class LatencyHistogram {
+
+    /**
+     * Number of buckets.
+     */
+    private static final int BUCKET_COUNT = 24;
+
+    /**
+     * Number of nanoseconds in the unit used to size the buckets.
+     */
+    private static final long UNIT = 1000;
+
+    private final long[] frequencies = new long[BUCKET_COUNT];
+
+    private long count;
+
+    private long min;
+
+    private long max;
+
+    private long total;
+
+    /**
+     * Number of buckets in the histogram.
+     *
+     * @return bucket count
+     */
+    public int bucketCount() {
+        return BUCKET_COUNT;
+    }
+
+    /**
+     * Exclusive upper bound of the values held by a bucket.
+     * <p>
+     * The lower bound of a bucket is the upper bound of the previous bucket, or zero for the first.
+     *
+     * @param bucket bucket index
+     * @return upper bound, in nanoseconds, or {@link Long#MAX_VALUE} for the last bucket
+     */
+    public long bucketUpperBound(int bucket) {
+        return bucket < BUCKET_COUNT - 1 ? UNIT << bucket : Long.MAX_VALUE;
+    }
+
+    /**
+     * Number of values recorded in a bucket.
+     *
+     * @param bucket bucket index
+     * @return frequency
+     */
+    public long frequency(int bucket) {
+        return frequencies[bucket];
+    }
+
+    /**
+     * Number of values recorded.
+     *
+     * @return count
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Smallest value recorded.
+     *
+     * @return minimum, in nanoseconds, or zero if nothing has been recorded
+     */
+    public long min() {
+        return min;
+    }
+
+    /**
+     * Largest value recorded.
+     *
+     * @return maximum, in nanoseconds, or zero if nothing has been recorded
+     */
+    public long max() {
+        return max;
+    }
+
+    /**
+     * Average of all values recorded.
+     *
+     * @return mean, in nanoseconds, or zero if nothing has been recorded
+     */
+    public long mean() {
+        return count > 0 ? total / count : 0;
+    }
+
+    /**
+     * Estimate a percentile.
+     * <p>
+     * The result is the upper bound of the bucket containing the percentile, limited to the largest
+     * recorded value, so it is never an under-estimate.
+     *
+     * @param percentile percentile, from 0 to 100
+     * @return value at the percentile, in nanoseconds, or zero if nothing has been recorded
+     */
+    public long percentile(double percentile) {
+        if(percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+        if(count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for(int i = 0; i < BUCKET_COUNT; i ++ ) {
+            seen += frequencies[i];
+            if(seen >= rank && seen > 0) {
+                return Math.min(bucketUpperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Record a value.
+     *
+     * @param value value, in nanoseconds
+     */
+    final void record(long value) {
+        if(value < 0) {
+            value = 0;
+        }
+        int bucket = 64 - Long.numberOfLeadingZeros(value / UNIT);
+        frequencies[bucket < BUCKET_COUNT ? bucket : BUCKET_COUNT - 1]++;
+        if(count == 0 || value < min) {
+            min = value;
+        }
+        if(value > max) {
+            max = value;
+        }
+        total += value;
+        count++;
+    }
+
+    /**
+     * Copy the recorded values into another histogram.
+     *
+     * @param target histogram to fill
+     */
+    final void copyTo(LatencyHistogram target) {
+        System.arraycopy(frequencies, 0, target.frequencies, 0, BUCKET_COUNT);
+        target.count = count;
+        target.min   = min;
+        target.max   = max;
+        target.total = total;
+    }
+
+    /**
+     * Discard all recorded values.
+     */
+    final void reset() {
+        for(int i = 0; i < BUCKET_COUNT; i ++ ) {
+            frequencies[i] = 0;
+        }
+        count = 0;
+        min   = 0;
+        max   = 0;
+        total = 0;
+    }
+}
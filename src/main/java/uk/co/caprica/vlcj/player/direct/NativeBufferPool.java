@@ -0,0 +1,193 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.direct;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import com.sun.jna.Memory;
+
+/**
+ * Pool of native memory buffers, re-used each time the video format changes.
+ * <p>
+ * Requested sizes are rounded up to a fixed granularity, so buffers for the same (or a very
+ * similar) video format are interchangeable. Buffers returned to the pool are kept for re-use, up
+ * to the largest number of bytes that has ever been in use at one time - so a play-list of media
+ * with the same format never allocates new native memory after the first item, and a change to a
+ * different format only keeps as much idle memory as is needed.
+ * <p>
+ * Unlike an ordinary {@link Memory} instance, which is only freed when it is garbage collected,
+ * buffers are freed explicitly, either when they are trimmed from the pool or when the pool is
+ * disposed. A buffer is never freed while it is in use, i.e. between being acquired and being
+ * released.
+ */
+final class NativeBufferPool {
+
+    /**
+     * Granularity of buffer sizes.
+     */
+    private static final long GRANULARITY = 4096;
+
+    /**
+     * Every buffer allocated by the pool, in use or idle.
+     */
+    private final List<PooledMemory> buffers = new ArrayList<PooledMemory>();
+
+    /**
+     * Buffers available for re-use, least recently returned first.
+     */
+    private final LinkedList<PooledMemory> idle = new LinkedList<PooledMemory>();
+
+    private long hits;
+
+    private long misses;
+
+    private long residentBytes;
+
+    private long idleBytes;
+
+    private long maxInUseBytes;
+
+    private boolean disposed;
+
+    /**
+     * Get a buffer from the pool, allocating a new one if necessary.
+     *
+     * @param size minimum size of the buffer, in bytes
+     * @return native buffer, at least as large as the requested size
+     */
+    synchronized Memory acquire(long size) {
+        if(disposed) {
+            throw new IllegalStateException("pool has been disposed");
+        }
+        long bucketSize = bucketSize(size);
+        for(Iterator<PooledMemory> i = idle.iterator(); i.hasNext(); ) {
+            PooledMemory buffer = i.next();
+            if(buffer.size() == bucketSize) {
+                i.remove();
+                idleBytes -= bucketSize;
+                hits++;
+                updateInUse();
+                return buffer;
+            }
+        }
+        misses++;
+        PooledMemory buffer = new PooledMemory(bucketSize);
+        buffers.add(buffer);
+        residentBytes += bucketSize;
+        updateInUse();
+        return buffer;
+    }
+
+    /**
+     * Return buffers to the pool.
+     * <p>
+     * The buffers must not be used after they have been returned.
+     *
+     * @param returned buffers previously acquired from this pool, may be <code>null</code>
+     */
+    synchronized void release(Memory[] returned) {
+        if(returned != null) {
+            for(Memory buffer : returned) {
+                if(buffer instanceof PooledMemory && !idle.contains(buffer)) {
+                    if(disposed) {
+                        free((PooledMemory) buffer);
+                    }
+                    else {
+                        idle.add((PooledMemory) buffer);
+                        idleBytes += buffer.size();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Free idle buffers until the idle memory is no larger than the most memory that has ever been
+     * in use at one time.
+     * <p>
+     * This must only be invoked when none of the idle buffers can still be referenced elsewhere.
+     */
+    synchronized void trim() {
+        while(!idle.isEmpty() && idleBytes > maxInUseBytes) {
+            PooledMemory buffer = idle.removeFirst();
+            idleBytes -= buffer.size();
+            free(buffer);
+        }
+    }
+
+    /**
+     * Free every idle buffer.
+     * <p>
+     * Buffers still in use are not freed here, since something may still be reading them - any
+     * buffer returned to the pool after this will be freed immediately instead.
+     */
+    synchronized void dispose() {
+        disposed = true;
+        for(PooledMemory buffer : idle) {
+            free(buffer);
+        }
+        idle.clear();
+        idleBytes = 0;
+    }
+
+    /**
+     * Fill a statistics object with the current pool counters.
+     *
+     * @param statistics statistics to fill
+     */
+    synchronized void statistics(FrameBufferStatistics statistics) {
+        statistics.applyPool(hits, misses, residentBytes, idleBytes);
+    }
+
+    private void updateInUse() {
+        long inUseBytes = residentBytes - idleBytes;
+        if(inUseBytes > maxInUseBytes) {
+            maxInUseBytes = inUseBytes;
+        }
+    }
+
+    private void free(PooledMemory buffer) {
+        if(buffers.remove(buffer)) {
+            residentBytes -= buffer.size();
+            buffer.free();
+        }
+    }
+
+    private static long bucketSize(long size) {
+        return (size + GRANULARITY - 1) / GRANULARITY * GRANULARITY;
+    }
+
+    /**
+     * Native memory that can be freed explicitly.
+     */
+    private static final class PooledMemory extends Memory {
+
+        private PooledMemory(long size) {
+            super(size);
+        }
+
+        private void free() {
+            dispose();
+        }
+    }
+}
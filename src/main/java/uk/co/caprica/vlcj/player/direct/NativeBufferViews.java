@@ -0,0 +1,173 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.direct;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import com.sun.jna.Memory;
+
+/**
+ * Cache of NIO buffer views over native frame buffers.
+ * <p>
+ * Creating a view over native memory creates new buffer objects, doing that for every frame of
+ * video creates a steady stream of garbage. The native buffers used by a media player only change
+ * when the video format changes, so views are created the first time a native buffer is seen and
+ * re-used after that.
+ * <p>
+ * The cache is keyed by native buffer identity. It is told the buffer format of each frame, and is
+ * emptied whenever that changes, so it only ever holds the buffers of the current format - one for
+ * each plane of each frame buffer of the media player, however many frame buffers there are. Since
+ * the same buffer format instance may be used again when the format is next set, possibly with
+ * different native buffers, the cache does not grow beyond a maximum capacity - when a new buffer is
+ * seen and the cache is full the oldest entry is replaced.
+ * <p>
+ * The views returned from this cache are rewound before being returned, they are not thread-safe.
+ */
+final class NativeBufferViews {
+
+    /**
+     * Initial number of views to cache.
+     */
+    private static final int INITIAL_CAPACITY = 4;
+
+    /**
+     * Maximum number of views to cache.
+     */
+    private static final int MAXIMUM_CAPACITY = 256;
+
+    /**
+     * Buffer format of the native buffers that have cached views.
+     */
+    private BufferFormat bufferFormat;
+
+    /**
+     * Native buffers that have cached views.
+     */
+    private Memory[] buffers = new Memory[INITIAL_CAPACITY];
+
+    /**
+     * Cached byte views, one for each native buffer.
+     */
+    private ByteBuffer[] byteViews = new ByteBuffer[INITIAL_CAPACITY];
+
+    /**
+     * Cached integer views, one for each native buffer, created on demand.
+     */
+    private IntBuffer[] intViews = new IntBuffer[INITIAL_CAPACITY];
+
+    /**
+     * Number of cache entries in use.
+     */
+    private int size;
+
+    /**
+     * Index of the next cache entry to replace once the cache is at its maximum capacity.
+     */
+    private int next;
+
+    /**
+     * Set the buffer format of the frame whose native buffers are about to be viewed.
+     * <p>
+     * If the buffer format has changed, all cached views are discarded.
+     *
+     * @param bufferFormat buffer format
+     */
+    void format(BufferFormat bufferFormat) {
+        if(bufferFormat != this.bufferFormat) {
+            clear();
+            this.bufferFormat = bufferFormat;
+        }
+    }
+
+    /**
+     * Get a byte view over a native buffer.
+     * <p>
+     * The view covers the entire native buffer and has native byte order.
+     *
+     * @param buffer native buffer
+     * @return rewound byte view
+     */
+    ByteBuffer byteBuffer(Memory buffer) {
+        int index = index(buffer);
+        ByteBuffer result = byteViews[index];
+        result.clear();
+        return result;
+    }
+
+    /**
+     * Get an integer view over a native buffer.
+     * <p>
+     * The view covers the entire native buffer and has native byte order.
+     *
+     * @param buffer native buffer
+     * @return rewound integer view
+     */
+    IntBuffer intBuffer(Memory buffer) {
+        int index = index(buffer);
+        IntBuffer result = intViews[index];
+        if(result == null) {
+            result = byteViews[index].asIntBuffer();
+            intViews[index] = result;
+        }
+        result.clear();
+        return result;
+    }
+
+    /**
+     * Discard all cached views.
+     */
+    void clear() {
+        buffers = new Memory[INITIAL_CAPACITY];
+        byteViews = new ByteBuffer[INITIAL_CAPACITY];
+        intViews = new IntBuffer[INITIAL_CAPACITY];
+        size = 0;
+        next = 0;
+        bufferFormat = null;
+    }
+
+    private int index(Memory buffer) {
+        for(int i = 0; i < size; i ++ ) {
+            if(buffers[i] == buffer) {
+                return i;
+            }
+        }
+        int index;
+        if(size < buffers.length) {
+            index = size++;
+        }
+        else if(size < MAXIMUM_CAPACITY) {
+            int capacity = Math.min(size * 2, MAXIMUM_CAPACITY);
+            buffers = Arrays.copyOf(buffers, capacity);
+            byteViews = Arrays.copyOf(byteViews, capacity);
+            intViews = Arrays.copyOf(intViews, capacity);
+            index = size++;
+        }
+        else {
+            index = next;
+            next = (next + 1) % buffers.length;
+        }
+        buffers[index] = buffer;
+        byteViews[index] = buffer.getByteBuffer(0L, buffer.size());
+        intViews[index] = null;
+        return index;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.direct;
+
+import java.nio.ByteBuffer;
+
+import com.sun.jna.Memory;
+
+/**
+ * A render call-back adapter implementation that provides a {@link ByteBuffer} view of each plane
+ * of a video frame.
+ * <p>
+ * This adapter can be used with any pixel format, including multi-plane formats like I420. Each
+ * view has native byte order, position zero and a limit of the plane pitch multiplied by the
+ * number of lines in the plane.
+ * <p>
+ * The views directly access the native buffers, no video data is copied. The views are created
+ * once, the first time each native buffer is seen, and re-used after that - so rendering a frame
+ * does not create any garbage.
+ * <p>
+ * The views are only valid for the duration of the call to
+ * {@link #onDisplay(DirectMediaPlayer, ByteBuffer[], BufferFormat)}, a sub-class must not keep a
+ * reference to them.
+ */
+public abstract class PlanarRenderCallbackAdapter implements RenderCallback {
+
+    /**
+     * Cached views of the native buffers.
+     */
+    private final NativeBufferViews views = new NativeBufferViews();
+
+    /**
+     * Array of views passed to the template method, re-used for each frame.
+     */
+    private ByteBuffer[] planes = new ByteBuffer[0];
+
+    @Override
+    public void display(DirectMediaPlayer mediaPlayer, Memory[] nativeBuffers, BufferFormat bufferFormat) {
+        if(planes.length != nativeBuffers.length) {
+            planes = new ByteBuffer[nativeBuffers.length];
+        }
+        views.format(bufferFormat);
+        int[] pitches = bufferFormat.getPitches();
+        int[] lines = bufferFormat.getLines();
+        for(int i = 0; i < nativeBuffers.length; i ++ ) {
+            ByteBuffer plane = views.byteBuffer(nativeBuffers[i]);
+            plane.limit(pitches[i] * lines[i]);
+            planes[i] = plane;
+        }
+        onDisplay(mediaPlayer, planes, bufferFormat);
+    }
+
+    /**
+     * Template method invoked when a new frame of video data is ready.
+     *
+     * @param mediaPlayer media player
+     * @param planes view of the video data for each plane
+     * @param bufferFormat information about the format of the buffer used
+     */
+    protected abstract void onDisplay(DirectMediaPlayer mediaPlayer, ByteBuffer[] planes, BufferFormat bufferFormat);
+}
@@ -32,6 +32,9 @@ import com.sun.jna.Memory;
  * <p>
  * This is probably the most <em>inefficient</em> implementation possible of a render callback,
  * ordinarily the video data should be written directly to some other construct (like a texture).
+ * <p>
+ * The views used to access the native buffers are created once, the first time each native buffer
+ * is seen, and re-used after that - so rendering a frame does not create any garbage.
  */
 public abstract class RenderCallbackAdapter implements RenderCallback {
 
@@ -40,6 +43,11 @@ public abstract class RenderCallbackAdapter implements RenderCallback {
      */
     private final int[] rgbBuffer;
 
+    /**
+     * Cached views of the native buffers.
+     */
+    private final NativeBufferViews views = new NativeBufferViews();
+
     /**
      * Create a new render call-back.
      *
@@ -51,7 +59,8 @@ public abstract class RenderCallbackAdapter implements RenderCallback {
 
     @Override
     public void display(DirectMediaPlayer mediaPlayer, Memory[] nativeBuffer, BufferFormat bufferFormat) {
-        nativeBuffer[0].getByteBuffer(0L, nativeBuffer[0].size()).asIntBuffer().get(rgbBuffer(), 0, bufferFormat.getHeight() * bufferFormat.getWidth());
+        views.format(bufferFormat);
+        views.intBuffer(nativeBuffer[0]).get(rgbBuffer(), 0, bufferFormat.getHeight() * bufferFormat.getWidth());
         onDisplay(mediaPlayer, rgbBuffer());
     }
 
@@ -0,0 +1,48 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.direct;
+
+/**
+ * Enumeration of policies used when frames are dispatched asynchronously to a {@link RenderCallback}
+ * and the dispatch queue is full.
+ */
+public enum RenderDispatchPolicy {
+
+    /**
+     * Block the native video thread until the render callback has caught up.
+     */
+    BLOCK,
+
+    /**
+     * Discard the oldest frame waiting in the queue to make room for the new frame.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Discard the new frame, keeping the frames already waiting in the queue.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Discard every frame waiting in the queue whenever a new frame arrives, so the render callback
+     * only ever sees the most recent frame.
+     */
+    LATEST_ONLY
+}
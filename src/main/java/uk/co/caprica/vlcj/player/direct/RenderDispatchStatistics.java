@@ -0,0 +1,135 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.direct;
+
+/**
+ * Counters for the asynchronous dispatch of frames to a {@link RenderCallback}.
+ * <p>
+ * An instance of this class may be re-used to avoid creating garbage when polling the statistics.
+ * <p>
+ * Lag is the time between a frame being displayed by the native video thread and the render
+ * callback starting to process it on the dispatch thread.
+ */
+public class RenderDispatchStatistics {
+
+    private RenderDispatchPolicy policy;
+    private int                  queueCapacity;
+    private int                  queueDepth;
+    private int                  maxQueueDepth;
+    private long                 dispatchedFrames;
+    private long                 droppedFrames;
+    private long                 lastLag;
+    private long                 maxLag;
+    private long                 averageLag;
+
+    /**
+     * Policy used when the dispatch queue is full.
+     *
+     * @return dispatch policy
+     */
+    public RenderDispatchPolicy policy() {
+        return policy;
+    }
+
+    /**
+     * Maximum number of frames that may wait in the dispatch queue.
+     *
+     * @return queue capacity
+     */
+    public int queueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Number of frames currently waiting in the dispatch queue.
+     *
+     * @return queue depth
+     */
+    public int queueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Highest number of frames that have waited in the dispatch queue.
+     *
+     * @return maximum queue depth
+     */
+    public int maxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /**
+     * Number of frames passed to the render callback.
+     *
+     * @return dispatched frame count
+     */
+    public long dispatchedFrames() {
+        return dispatchedFrames;
+    }
+
+    /**
+     * Number of frames discarded because of the dispatch policy.
+     *
+     * @return dropped frame count
+     */
+    public long droppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * Lag of the most recently dispatched frame.
+     *
+     * @return lag, in nanoseconds
+     */
+    public long lastLag() {
+        return lastLag;
+    }
+
+    /**
+     * Highest lag of any dispatched frame.
+     *
+     * @return lag, in nanoseconds
+     */
+    public long maxLag() {
+        return maxLag;
+    }
+
+    /**
+     * Average lag of all dispatched frames.
+     *
+     * @return lag, in nanoseconds
+     */
+    public long averageLag() {
+        return averageLag;
+    }
+
+    final void apply(RenderDispatchPolicy policy, int queueCapacity, int queueDepth, int maxQueueDepth, long dispatchedFrames, long droppedFrames, long lastLag, long maxLag, long totalLag) {
+        this.policy           = policy;
+        this.queueCapacity    = queueCapacity;
+        this.queueDepth       = queueDepth;
+        this.maxQueueDepth    = maxQueueDepth;
+        this.dispatchedFrames = dispatchedFrames;
+        this.droppedFrames    = droppedFrames;
+        this.lastLag          = lastLag;
+        this.maxLag           = maxLag;
+        this.averageLag       = dispatchedFrames > 0 ? totalLag / dispatchedFrames : 0;
+    }
+
+}
@@ -0,0 +1,281 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009-2019 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.direct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.jna.Memory;
+
+/**
+ * Dispatches displayed frames to a {@link RenderCallback} on a dedicated thread.
+ * <p>
+ * The native video thread only enqueues a reference to a frame buffer, which is held in the
+ * {@link FrameBufferRing} until the render callback has finished with it. The queue itself is a
+ * fixed-size circular array so dispatching a frame does not create any garbage.
+ */
+final class RenderDispatcher implements Runnable {
+
+    /**
+     * Log.
+     */
+    private final Logger logger = LoggerFactory.getLogger(RenderDispatcher.class);
+
+    private final DirectMediaPlayer mediaPlayer;
+
+    private final RenderCallback renderCallback;
+
+    private final FrameBufferRing frameBuffers;
+
+    private final FrameLatencyRecorder latencyRecorder;
+
+    private final RenderDispatchPolicy policy;
+
+    private final int capacity;
+
+    /**
+     * Queued frame buffer indices.
+     */
+    private final int[] slots;
+
+    /**
+     * Buffer generation for each queued frame.
+     */
+    private final int[] generations;
+
+    /**
+     * Buffer format for each queued frame.
+     */
+    private final BufferFormat[] formats;
+
+    /**
+     * Time each queued frame was displayed, from {@link System#nanoTime()}.
+     */
+    private final long[] times;
+
+    /**
+     * Thread used to invoke the render callback.
+     */
+    private final Thread thread;
+
+    private int head;
+
+    private int count;
+
+    private boolean running = true;
+
+    private int maxQueueDepth;
+
+    private long dispatchedFrames;
+
+    private long droppedFrames;
+
+    private long lastLag;
+
+    private long maxLag;
+
+    private long totalLag;
+
+    /**
+     * Create a render dispatcher.
+     *
+     * @param mediaPlayer media player
+     * @param renderCallback render callback to dispatch frames to
+     * @param frameBuffers frame buffers
+     * @param latencyRecorder recorder for render callback latencies
+     * @param policy policy used when the queue is full
+     * @param queueSize maximum number of frames waiting in the queue, must be at least one
+     */
+    RenderDispatcher(DirectMediaPlayer mediaPlayer, RenderCallback renderCallback, FrameBufferRing frameBuffers, FrameLatencyRecorder latencyRecorder, RenderDispatchPolicy policy, int queueSize) {
+        if(policy == null) {
+            throw new IllegalArgumentException("policy can not be null");
+        }
+        if(queueSize < 1) {
+            throw new IllegalArgumentException("queueSize must be at least one");
+        }
+        this.mediaPlayer = mediaPlayer;
+        this.renderCallback = renderCallback;
+        this.frameBuffers = frameBuffers;
+        this.latencyRecorder = latencyRecorder;
+        this.policy = policy;
+        this.capacity = policy == RenderDispatchPolicy.LATEST_ONLY ? 1 : queueSize;
+        this.slots = new int[capacity];
+        this.generations = new int[capacity];
+        this.formats = new BufferFormat[capacity];
+        this.times = new long[capacity];
+        this.thread = new Thread(this, "vlcj-render-dispatch");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Start the dispatch thread.
+     */
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Stop the dispatch thread, discarding any frames still waiting in the queue.
+     */
+    void stop() {
+        synchronized(this) {
+            running = false;
+            notifyAll();
+        }
+        thread.interrupt();
+        try {
+            thread.join(5000);
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized(this) {
+            while(count > 0) {
+                discardHead();
+            }
+        }
+    }
+
+    /**
+     * Enqueue a displayed frame.
+     * <p>
+     * The frame buffer must already have been held via {@link FrameBufferRing#pin(int)}, ownership
+     * of that hold passes to the dispatcher.
+     * <p>
+     * This method is invoked on the native video thread and will only block if the policy is
+     * {@link RenderDispatchPolicy#BLOCK} and the queue is full.
+     *
+     * @param slot frame buffer index
+     * @param generation generation of the frame buffer
+     * @param bufferFormat buffer format of the frame
+     */
+    synchronized void dispatch(int slot, int generation, BufferFormat bufferFormat) {
+        if(!running) {
+            frameBuffers.release(slot, generation);
+            return;
+        }
+        if(count == capacity) {
+            switch(policy) {
+                case BLOCK:
+                    while(running && count == capacity) {
+                        try {
+                            wait();
+                        }
+                        catch(InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            break;
+                        }
+                    }
+                    if(!running || count == capacity) {
+                        droppedFrames++;
+                        frameBuffers.release(slot, generation);
+                        return;
+                    }
+                    break;
+                case DROP_NEWEST:
+                    droppedFrames++;
+                    frameBuffers.release(slot, generation);
+                    return;
+                case DROP_OLDEST:
+                case LATEST_ONLY:
+                    droppedFrames++;
+                    discardHead();
+                    break;
+            }
+        }
+        int tail = (head + count) % capacity;
+        slots[tail] = slot;
+        generations[tail] = generation;
+        formats[tail] = bufferFormat;
+        times[tail] = System.nanoTime();
+        count++;
+        if(count > maxQueueDepth) {
+            maxQueueDepth = count;
+        }
+        notifyAll();
+    }
+
+    private void discardHead() {
+        frameBuffers.release(slots[head], generations[head]);
+        formats[head] = null;
+        head = (head + 1) % capacity;
+        count--;
+    }
+
+    @Override
+    public void run() {
+        logger.debug("run()");
+        for(;;) {
+            int slot;
+            int generation;
+            BufferFormat bufferFormat;
+            synchronized(this) {
+                while(running && count == 0) {
+                    try {
+                        wait();
+                    }
+                    catch(InterruptedException e) {
+                    }
+                }
+                if(!running) {
+                    break;
+                }
+                slot = slots[head];
+                generation = generations[head];
+                bufferFormat = formats[head];
+                long lag = System.nanoTime() - times[head];
+                formats[head] = null;
+                head = (head + 1) % capacity;
+                count--;
+                lastLag = lag;
+                totalLag += lag;
+                if(lag > maxLag) {
+                    maxLag = lag;
+                }
+                dispatchedFrames++;
+                notifyAll();
+            }
+            try {
+                Memory[] nativeBuffers = frameBuffers.buffers(slot, generation);
+                if(nativeBuffers != null) {
+                    long start = latencyRecorder.start();
+                    renderCallback.display(mediaPlayer, nativeBuffers, bufferFormat);
+                    latencyRecorder.render(start);
+                }
+            }
+            catch(RuntimeException e) {
+                logger.error("Render callback failed", e);
+            }
+            finally {
+                frameBuffers.release(slot, generation);
+            }
+        }
+        logger.debug("runner exits");
+    }
+
+    /**
+     * Fill a statistics object with the current counters.
+     *
+     * @param statistics statistics to fill
+     */
+    synchronized void statistics(RenderDispatchStatistics statistics) {
+        statistics.apply(policy, capacity, count, maxQueueDepth, dispatchedFrames, droppedFrames, lastLag, maxLag, totalLag);
+    }
+}
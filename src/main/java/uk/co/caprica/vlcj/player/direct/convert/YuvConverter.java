@@ -0,0 +1,399 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.direct.convert;
+
+import java.nio.ByteBuffer;
+
+import uk.co.caprica.vlcj.player.direct.BufferFormat;
+
+/**
+ * Converts YUV video frames to packed RGB pixels.
+ * <p>
+ * Requesting an RGB format like RV32 from the native media player means the conversion is done by
+ * the native video thread, adding to the decoding latency. Instead, a YUV format can be requested
+ * (see the buffer formats in {@link uk.co.caprica.vlcj.player.direct.format}) and the frame converted
+ * here - ideally on a different thread, e.g. by using asynchronous render dispatch.
+ * <p>
+ * The supported chroma formats are I420, YV12, NV12 and YUY2. Conversion uses the ITU-R BT.601
+ * coefficients for limited range ("studio swing") video, in fixed-point integer arithmetic.
+ * <p>
+ * Each frame is divided into horizontal stripes which are converted in parallel, one stripe by the
+ * calling thread and the rest by a fixed set of worker threads. Converting a frame creates no
+ * garbage.
+ * <p>
+ * The output is one integer per pixel with the red, green and blue components in bits 16-23, 8-15
+ * and 0-7 respectively - the same layout as RV32, and as used by a {@link java.awt.image.BufferedImage}
+ * of type {@link java.awt.image.BufferedImage#TYPE_INT_RGB}.
+ * <p>
+ * A converter is thread-safe, but converts only one frame at a time. When a converter is no longer
+ * needed {@link #release()} must be invoked to stop the worker threads.
+ */
+public final class YuvConverter {
+
+    private static final int I420 = 0;
+
+    private static final int YV12 = 1;
+
+    private static final int NV12 = 2;
+
+    private static final int YUY2 = 3;
+
+    /**
+     * Offset of zero in the clamp table, large enough for the most negative intermediate value.
+     */
+    private static final int CLAMP_OFFSET = 512;
+
+    /**
+     * Lookup table to clamp intermediate component values to the range 0-255 without branching.
+     */
+    private static final int[] CLAMP = clampTable();
+
+    /**
+     * Number of stripes each frame is divided into.
+     */
+    private final int stripes;
+
+    /**
+     * Worker threads, one for each stripe except the first.
+     */
+    private final Thread[] workers;
+
+    /**
+     * Monitor used to co-ordinate the worker threads.
+     */
+    private final Object monitor = new Object();
+
+    private int layout;
+
+    private int width;
+
+    private int height;
+
+    private int[] pitches;
+
+    private ByteBuffer[] planes;
+
+    private int[] rgb;
+
+    /**
+     * Incremented for each frame, so workers know there is a new frame to convert.
+     */
+    private long frame;
+
+    /**
+     * Number of stripes still to be converted by the workers.
+     */
+    private int pending;
+
+    /**
+     * First failure reported by a worker for the current frame.
+     */
+    private RuntimeException failure;
+
+    private boolean running = true;
+
+    /**
+     * Create a converter that uses every available processor.
+     */
+    public YuvConverter() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a converter.
+     *
+     * @param threads number of threads to convert each frame with, including the calling thread
+     */
+    public YuvConverter(int threads) {
+        if(threads < 1) {
+            throw new IllegalArgumentException("threads must be at least one");
+        }
+        this.stripes = threads;
+        this.workers = new Thread[threads - 1];
+        for(int i = 0; i < workers.length; i ++ ) {
+            workers[i] = new Thread(new Worker(i + 1), "vlcj-yuv-converter-" + (i + 1));
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Is a chroma format supported by this converter?
+     *
+     * @param chroma chroma format, e.g. "I420"
+     * @return <code>true</code> if the format is supported; <code>false</code> if it is not
+     */
+    public static boolean isSupported(String chroma) {
+        return layout(chroma) != -1;
+    }
+
+    /**
+     * Convert a frame.
+     *
+     * @param bufferFormat format of the frame
+     * @param planes video data for each plane of the frame, absolute positions are used so the buffer positions are ignored
+     * @param rgb array to receive the converted pixels, must hold at least width * height values
+     * @throws IllegalArgumentException if the chroma format is not supported or the buffers are too small
+     */
+    public void convert(BufferFormat bufferFormat, ByteBuffer[] planes, int[] rgb) {
+        int layout = layout(bufferFormat.getChroma());
+        if(layout == -1) {
+            throw new IllegalArgumentException("Unsupported chroma " + bufferFormat.getChroma());
+        }
+        if(planes.length < bufferFormat.getPlaneCount()) {
+            throw new IllegalArgumentException("Not enough planes for " + bufferFormat.getChroma());
+        }
+        if(rgb.length < bufferFormat.getWidth() * bufferFormat.getHeight()) {
+            throw new IllegalArgumentException("RGB buffer is too small");
+        }
+        synchronized(this) {
+            synchronized(monitor) {
+                if(!running) {
+                    throw new IllegalStateException("Converter has been released");
+                }
+                this.layout = layout;
+                this.width = bufferFormat.getWidth();
+                this.height = bufferFormat.getHeight();
+                this.pitches = bufferFormat.getPitches();
+                this.planes = planes;
+                this.rgb = rgb;
+                this.failure = null;
+                this.pending = workers.length;
+                frame++;
+                monitor.notifyAll();
+            }
+            RuntimeException result = null;
+            try {
+                convertStripe(0);
+            }
+            catch(RuntimeException e) {
+                result = e;
+            }
+            synchronized(monitor) {
+                boolean interrupted = false;
+                while(pending > 0) {
+                    try {
+                        monitor.wait();
+                    }
+                    catch(InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if(interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                if(result == null) {
+                    result = failure;
+                }
+                this.planes = null;
+                this.rgb = null;
+            }
+            if(result != null) {
+                throw result;
+            }
+        }
+    }
+
+    /**
+     * Stop the worker threads.
+     */
+    public void release() {
+        synchronized(monitor) {
+            running = false;
+            monitor.notifyAll();
+        }
+    }
+
+    private static int layout(String chroma) {
+        if("I420".equals(chroma)) {
+            return I420;
+        }
+        else if("YV12".equals(chroma)) {
+            return YV12;
+        }
+        else if("NV12".equals(chroma)) {
+            return NV12;
+        }
+        else if("YUY2".equals(chroma)) {
+            return YUY2;
+        }
+        else {
+            return -1;
+        }
+    }
+
+    /**
+     * Convert one stripe of the current frame.
+     * <p>
+     * Stripes always start on an even line so that vertically sub-sampled chroma lines are never
+     * split between stripes.
+     *
+     * @param stripe stripe number
+     */
+    private void convertStripe(int stripe) {
+        int pairs = (height + 1) / 2;
+        int startLine = (int) ((long) pairs * stripe / stripes) * 2;
+        int endLine = Math.min(height, (int) ((long) pairs * (stripe + 1) / stripes) * 2);
+        switch(layout) {
+            case I420:
+                convertPlanar(planes[0], planes[1], planes[2], startLine, endLine);
+                break;
+            case YV12:
+                convertPlanar(planes[0], planes[2], planes[1], startLine, endLine);
+                break;
+            case NV12:
+                convertSemiPlanar(planes[0], planes[1], startLine, endLine);
+                break;
+            case YUY2:
+                convertPacked(planes[0], startLine, endLine);
+                break;
+        }
+    }
+
+    private void convertPlanar(ByteBuffer yPlane, ByteBuffer uPlane, ByteBuffer vPlane, int startLine, int endLine) {
+        int yPitch = pitches[0];
+        int uPitch = pitches[layout == I420 ? 1 : 2];
+        int vPitch = pitches[layout == I420 ? 2 : 1];
+        int width = this.width;
+        int[] rgb = this.rgb;
+        for(int line = startLine; line < endLine; line ++ ) {
+            int yRow = line * yPitch;
+            int uRow = (line >> 1) * uPitch;
+            int vRow = (line >> 1) * vPitch;
+            int out = line * width;
+            for(int x = 0; x < width; x += 2) {
+                boolean both = x + 1 < width;
+                int c = x >> 1;
+                convertPair(rgb, out + x, both, yPlane.get(yRow + x), both ? yPlane.get(yRow + x + 1) : 0, uPlane.get(uRow + c), vPlane.get(vRow + c));
+            }
+        }
+    }
+
+    private void convertSemiPlanar(ByteBuffer yPlane, ByteBuffer uvPlane, int startLine, int endLine) {
+        int yPitch = pitches[0];
+        int uvPitch = pitches[1];
+        int width = this.width;
+        int[] rgb = this.rgb;
+        for(int line = startLine; line < endLine; line ++ ) {
+            int yRow = line * yPitch;
+            int uvRow = (line >> 1) * uvPitch;
+            int out = line * width;
+            for(int x = 0; x < width; x += 2) {
+                boolean both = x + 1 < width;
+                convertPair(rgb, out + x, both, yPlane.get(yRow + x), both ? yPlane.get(yRow + x + 1) : 0, uvPlane.get(uvRow + x), uvPlane.get(uvRow + x + 1));
+            }
+        }
+    }
+
+    private void convertPacked(ByteBuffer plane, int startLine, int endLine) {
+        int pitch = pitches[0];
+        int width = this.width;
+        int[] rgb = this.rgb;
+        for(int line = startLine; line < endLine; line ++ ) {
+            int row = line * pitch;
+            int out = line * width;
+            for(int x = 0; x < width; x += 2) {
+                int pair = row + (x << 1);
+                convertPair(rgb, out + x, x + 1 < width, plane.get(pair), plane.get(pair + 2), plane.get(pair + 1), plane.get(pair + 3));
+            }
+        }
+    }
+
+    /**
+     * Convert a horizontal pair of pixels that share the same chroma samples.
+     *
+     * @param rgb output pixels
+     * @param index index of the first output pixel
+     * @param both <code>true</code> to convert both pixels; <code>false</code> to convert only the first (at the end of an odd width line)
+     * @param y0 luma for the first pixel
+     * @param y1 luma for the second pixel
+     * @param u blue-difference chroma
+     * @param v red-difference chroma
+     */
+    private static void convertPair(int[] rgb, int index, boolean both, byte y0, byte y1, byte u, byte v) {
+        int d = (u & 0xff) - 128;
+        int e = (v & 0xff) - 128;
+        int r = 409 * e;
+        int g = -100 * d - 208 * e;
+        int b = 516 * d;
+        int c = 298 * ((y0 & 0xff) - 16) + 128;
+        int[] clamp = CLAMP;
+        rgb[index] = clamp[((c + r) >> 8) + CLAMP_OFFSET] << 16 | clamp[((c + g) >> 8) + CLAMP_OFFSET] << 8 | clamp[((c + b) >> 8) + CLAMP_OFFSET];
+        if(both) {
+            c = 298 * ((y1 & 0xff) - 16) + 128;
+            rgb[index + 1] = clamp[((c + r) >> 8) + CLAMP_OFFSET] << 16 | clamp[((c + g) >> 8) + CLAMP_OFFSET] << 8 | clamp[((c + b) >> 8) + CLAMP_OFFSET];
+        }
+    }
+
+    private static int[] clampTable() {
+        int[] result = new int[CLAMP_OFFSET * 2 + 256];
+        for(int i = 0; i < result.length; i ++ ) {
+            result[i] = Math.max(0, Math.min(255, i - CLAMP_OFFSET));
+        }
+        return result;
+    }
+
+    /**
+     * Worker that converts one stripe of each frame.
+     */
+    private final class Worker implements Runnable {
+
+        private final int stripe;
+
+        private Worker(int stripe) {
+            this.stripe = stripe;
+        }
+
+        @Override
+        public void run() {
+            long done = 0;
+            for(;;) {
+                synchronized(monitor) {
+                    while(running && frame == done) {
+                        try {
+                            monitor.wait();
+                        }
+                        catch(InterruptedException e) {
+                        }
+                    }
+                    if(frame == done) {
+                        return;
+                    }
+                    done = frame;
+                }
+                RuntimeException result = null;
+                try {
+                    convertStripe(stripe);
+                }
+                catch(RuntimeException e) {
+                    result = e;
+                }
+                synchronized(monitor) {
+                    if(result != null && failure == null) {
+                        failure = result;
+                    }
+                    if(--pending == 0) {
+                        monitor.notifyAll();
+                    }
+                }
+            }
+        }
+    }
+}
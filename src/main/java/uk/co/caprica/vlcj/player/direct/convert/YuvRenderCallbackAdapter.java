@@ -0,0 +1,84 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.direct.convert;
+
+import java.nio.ByteBuffer;
+
+import uk.co.caprica.vlcj.player.direct.BufferFormat;
+import uk.co.caprica.vlcj.player.direct.DirectMediaPlayer;
+import uk.co.caprica.vlcj.player.direct.PlanarRenderCallbackAdapter;
+
+/**
+ * A render call-back adapter implementation that converts YUV video frames to an array of RGB
+ * integer data for an entire video frame.
+ * <p>
+ * The media player must be sending pixels in one of the formats supported by {@link YuvConverter}.
+ * <p>
+ * The resulting data has the same layout as that provided by
+ * {@link uk.co.caprica.vlcj.player.direct.RenderCallbackAdapter} for RV32, but the colour conversion
+ * is done here rather than by the native video thread. Using this adapter together with
+ * asynchronous render dispatch moves the conversion off the native video thread entirely.
+ */
+public abstract class YuvRenderCallbackAdapter extends PlanarRenderCallbackAdapter {
+
+    /**
+     * Video data buffer.
+     */
+    private final int[] rgbBuffer;
+
+    /**
+     * Converter.
+     */
+    private final YuvConverter converter;
+
+    /**
+     * Create a new render call-back.
+     *
+     * @param rgbBuffer video data buffer
+     * @param converter converter to use
+     */
+    public YuvRenderCallbackAdapter(int[] rgbBuffer, YuvConverter converter) {
+        this.rgbBuffer = rgbBuffer;
+        this.converter = converter;
+    }
+
+    @Override
+    protected final void onDisplay(DirectMediaPlayer mediaPlayer, ByteBuffer[] planes, BufferFormat bufferFormat) {
+        converter.convert(bufferFormat, planes, rgbBuffer);
+        onDisplay(mediaPlayer, rgbBuffer);
+    }
+
+    /**
+     * Get the video data buffer.
+     *
+     * @return video buffer
+     */
+    public int[] rgbBuffer() {
+        return rgbBuffer;
+    }
+
+    /**
+     * Template method invoked when a new frame of video data is ready.
+     *
+     * @param mediaPlayer media player
+     * @param rgbBuffer video data buffer
+     */
+    protected abstract void onDisplay(DirectMediaPlayer mediaPlayer, int[] rgbBuffer);
+}
@@ -0,0 +1,5 @@
+/**
+ * Provides conversion of YUV video frames to packed RGB pixels for the direct video rendering
+ * media player.
+ */
+package uk.co.caprica.vlcj.player.direct.convert;
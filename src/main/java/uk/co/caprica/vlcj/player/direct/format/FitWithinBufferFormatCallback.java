@@ -0,0 +1,64 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.direct.format;
+
+/**
+ * Buffer format callback that scales the video down to fit within a bounding box.
+ * <p>
+ * Video that already fits is not scaled up.
+ */
+public class FitWithinBufferFormatCallback extends ScaledBufferFormatCallback {
+
+    private final int maxWidth;
+
+    private final int maxHeight;
+
+    /**
+     * Create a buffer format callback for RV32 with the default pitch alignment.
+     *
+     * @param maxWidth maximum width, must be &gt; 0
+     * @param maxHeight maximum height, must be &gt; 0
+     */
+    public FitWithinBufferFormatCallback(int maxWidth, int maxHeight) {
+        this("RV32", maxWidth, maxHeight, DEFAULT_ALIGNMENT);
+    }
+
+    /**
+     * Create a buffer format callback.
+     *
+     * @param chroma pixel format
+     * @param maxWidth maximum width, must be &gt; 0
+     * @param maxHeight maximum height, must be &gt; 0
+     * @param alignment pitch alignment in bytes, must be a power of two
+     */
+    public FitWithinBufferFormatCallback(String chroma, int maxWidth, int maxHeight, int alignment) {
+        super(chroma, alignment);
+        if(maxWidth < 1 || maxHeight < 1) {
+            throw new IllegalArgumentException("Invalid bounding box " + maxWidth + "x" + maxHeight);
+        }
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+    }
+
+    @Override
+    protected double scale(double displayWidth, int sourceHeight) {
+        return Math.min(1.0, Math.min(maxWidth / displayWidth, (double) maxHeight / sourceHeight));
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.direct.format;
+
+/**
+ * Buffer format callback that scales the video to a fixed width, the height follows from the
+ * aspect ratio.
+ * <p>
+ * For the chroma sub-sampled formats an odd width is rounded down to an even number.
+ */
+public class FixedWidthBufferFormatCallback extends ScaledBufferFormatCallback {
+
+    private final int width;
+
+    /**
+     * Create a buffer format callback for RV32 with the default pitch alignment.
+     *
+     * @param width width, must be &gt; 0
+     */
+    public FixedWidthBufferFormatCallback(int width) {
+        this("RV32", width, DEFAULT_ALIGNMENT);
+    }
+
+    /**
+     * Create a buffer format callback.
+     *
+     * @param chroma pixel format
+     * @param width width, must be &gt; 0
+     * @param alignment pitch alignment in bytes, must be a power of two
+     */
+    public FixedWidthBufferFormatCallback(String chroma, int width, int alignment) {
+        super(chroma, alignment);
+        if(width < 1) {
+            throw new IllegalArgumentException("Invalid width " + width);
+        }
+        this.width = width;
+    }
+
+    @Override
+    protected double scale(double displayWidth, int sourceHeight) {
+        return width / displayWidth;
+    }
+}
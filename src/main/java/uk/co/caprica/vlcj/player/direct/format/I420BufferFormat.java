@@ -0,0 +1,64 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.direct.format;
+
+import uk.co.caprica.vlcj.player.direct.BufferFormat;
+
+/**
+ * Implementation of a buffer format for I420.
+ * <p>
+ * I420 is a planar YUV 4:2:0 format with three planes - a full resolution luma (Y) plane followed
+ * by U and V chroma planes at half the width and half the height.
+ * <p>
+ * For odd widths or heights the chroma planes are rounded up, so the last chroma sample covers a
+ * single pixel.
+ */
+public class I420BufferFormat extends BufferFormat {
+
+    /**
+     * Creates an I420 buffer format with the given width and height.
+     *
+     * @param width width of the buffer
+     * @param height height of the buffer
+     */
+    public I420BufferFormat(int width, int height) {
+        super("I420", width, height, new int[] {width, chromaWidth(width), chromaWidth(width)}, new int[] {height, chromaHeight(height), chromaHeight(height)});
+    }
+
+    /**
+     * Get the number of chroma samples in each line, i.e. half the width rounded up.
+     *
+     * @param width width
+     * @return number of chroma samples
+     */
+    private static int chromaWidth(int width) {
+        return (width + 1) / 2;
+    }
+
+    /**
+     * Get the number of chroma lines, i.e. half the height rounded up.
+     *
+     * @param height height
+     * @return number of chroma lines
+     */
+    private static int chromaHeight(int height) {
+        return (height + 1) / 2;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.direct.format;
+
+/**
+ * Buffer format callback that scales the video down so each frame has no more than a fixed number
+ * of pixels, whatever its aspect ratio.
+ * <p>
+ * This gives a predictable cost per frame for analysis, e.g. a budget of 76800 pixels is 320x240
+ * for 4:3 video and 368x207 for 16:9 video. The scaled height is rounded down to a whole line, and
+ * reduced further if rounding the width would take the frame over budget, so buffers may safely be
+ * sized from the budget - the only exception is video so wide that even a single line is over
+ * budget. Video that is already within the budget is not scaled up.
+ */
+public class PixelBudgetBufferFormatCallback extends ScaledBufferFormatCallback {
+
+    private final long maxPixels;
+
+    /**
+     * Create a buffer format callback for RV32 with the default pitch alignment.
+     *
+     * @param maxPixels maximum number of pixels in each frame, must be &gt; 0
+     */
+    public PixelBudgetBufferFormatCallback(long maxPixels) {
+        this("RV32", maxPixels, DEFAULT_ALIGNMENT);
+    }
+
+    /**
+     * Create a buffer format callback.
+     *
+     * @param chroma pixel format
+     * @param maxPixels maximum number of pixels in each frame, must be &gt; 0
+     * @param alignment pitch alignment in bytes, must be a power of two
+     */
+    public PixelBudgetBufferFormatCallback(String chroma, long maxPixels, int alignment) {
+        super(chroma, alignment);
+        if(maxPixels < 1) {
+            throw new IllegalArgumentException("Invalid pixel budget " + maxPixels);
+        }
+        this.maxPixels = maxPixels;
+    }
+
+    @Override
+    protected double scale(double displayWidth, int sourceHeight) {
+        double scale = Math.sqrt(maxPixels / (displayWidth * sourceHeight));
+        if(scale >= 1.0) {
+            return 1.0;
+        }
+        // Choose a whole number of lines, with the width rounded just as the scaled size is
+        int height = Math.max(1, (int) Math.floor(sourceHeight * scale));
+        while(height > 1 && Math.round(displayWidth * ((double) height / sourceHeight)) * height > maxPixels) {
+            height--;
+        }
+        return (double) height / sourceHeight;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.direct.format;
+
+import uk.co.caprica.vlcj.player.direct.BufferFormat;
+import uk.co.caprica.vlcj.player.direct.BufferFormatCallback;
+
+/**
+ * Base implementation of a buffer format callback that asks the native library to scale the video
+ * before it is delivered.
+ * <p>
+ * Scaling in the native library is done once, by an optimised scaler, so an application that only
+ * needs a reduced resolution (e.g. for thumbnails or motion analysis) touches far fewer bytes per
+ * frame than if it scaled each frame itself.
+ * <p>
+ * The video is scaled uniformly so the aspect ratio is preserved. The source width is first
+ * corrected by the sample aspect ratio, if one has been set, so that anamorphic video is displayed
+ * with the correct shape.
+ * <p>
+ * The scaled width and height are rounded to whole pixels, never less than one, and for the
+ * chroma sub-sampled formats (I420, YV12, NV12 and YUY2) they are rounded down to an even number so
+ * that every chroma sample covers a whole block of pixels. The pitch of every plane is then rounded
+ * up to a multiple of the alignment, 32 bytes by default, which suits the SIMD routines used by the
+ * native scaler and by Java.
+ * <p>
+ * Sub-classes need only provide the scale factor.
+ */
+public abstract class ScaledBufferFormatCallback implements BufferFormatCallback {
+
+    /**
+     * Default pitch alignment, in bytes.
+     */
+    public static final int DEFAULT_ALIGNMENT = 32;
+
+    /**
+     * Pixel format.
+     */
+    private final String chroma;
+
+    /**
+     * Pitch alignment, in bytes.
+     */
+    private final int alignment;
+
+    /**
+     * Sample aspect ratio numerator.
+     */
+    private volatile int sarNum = 1;
+
+    /**
+     * Sample aspect ratio denominator.
+     */
+    private volatile int sarDen = 1;
+
+    /**
+     * Create a buffer format callback.
+     *
+     * @param chroma pixel format, one of RV32, RV24, RV16, I420, YV12, NV12 or YUY2
+     * @param alignment pitch alignment in bytes, must be a power of two
+     */
+    protected ScaledBufferFormatCallback(String chroma, int alignment) {
+        if(bytesPerPixel(chroma) == 0) {
+            throw new IllegalArgumentException("Unsupported chroma " + chroma);
+        }
+        if(alignment < 1 || (alignment & (alignment - 1)) != 0) {
+            throw new IllegalArgumentException("alignment must be a power of two");
+        }
+        this.chroma = chroma;
+        this.alignment = alignment;
+    }
+
+    /**
+     * Set the sample aspect ratio of the video.
+     * <p>
+     * The native library does not pass the sample aspect ratio to the buffer format callback, so if
+     * the video is anamorphic it must be set here, e.g. from the video track information, before
+     * the video starts playing.
+     *
+     * @param sarNum sample aspect ratio numerator, must be &gt; 0
+     * @param sarDen sample aspect ratio denominator, must be &gt; 0
+     */
+    public final void setSampleAspectRatio(int sarNum, int sarDen) {
+        if(sarNum < 1 || sarDen < 1) {
+            throw new IllegalArgumentException("Invalid sample aspect ratio " + sarNum + ":" + sarDen);
+        }
+        this.sarNum = sarNum;
+        this.sarDen = sarDen;
+    }
+
+    @Override
+    public final BufferFormat getBufferFormat(int sourceWidth, int sourceHeight) {
+        double displayWidth = (double) sourceWidth * sarNum / sarDen;
+        double scale = scale(displayWidth, sourceHeight);
+        int width = size(displayWidth * scale);
+        int height = size(sourceHeight * scale);
+        return bufferFormat(width, height);
+    }
+
+    /**
+     * Create the buffer format for a particular scaled size.
+     *
+     * @param width scaled width
+     * @param height scaled height
+     * @return buffer format
+     */
+    protected final BufferFormat bufferFormat(int width, int height) {
+        if(subsampled()) {
+            width = even(width);
+            height = even(height);
+        }
+        int chromaWidth = (width + 1) / 2;
+        int chromaHeight = (height + 1) / 2;
+        int[] pitches;
+        int[] lines;
+        if("I420".equals(chroma) || "YV12".equals(chroma)) {
+            pitches = new int[] {align(width), align(chromaWidth), align(chromaWidth)};
+            lines = new int[] {height, chromaHeight, chromaHeight};
+        }
+        else if("NV12".equals(chroma)) {
+            pitches = new int[] {align(width), align(chromaWidth * 2)};
+            lines = new int[] {height, chromaHeight};
+        }
+        else if("YUY2".equals(chroma)) {
+            pitches = new int[] {align(chromaWidth * 4)};
+            lines = new int[] {height};
+        }
+        else {
+            pitches = new int[] {align(width * bytesPerPixel(chroma))};
+            lines = new int[] {height};
+        }
+        return new BufferFormat(chroma, width, height, pitches, lines);
+    }
+
+    /**
+     * Get the scale factor to apply to the video.
+     *
+     * @param displayWidth width of the video, corrected by the sample aspect ratio
+     * @param sourceHeight height of the video
+     * @return scale factor, must be &gt; 0
+     */
+    protected abstract double scale(double displayWidth, int sourceHeight);
+
+    private boolean subsampled() {
+        return "I420".equals(chroma) || "YV12".equals(chroma) || "NV12".equals(chroma) || "YUY2".equals(chroma);
+    }
+
+    private int align(int pitch) {
+        return (pitch + alignment - 1) & ~(alignment - 1);
+    }
+
+    private static int size(double value) {
+        return Math.max(1, (int) Math.round(value));
+    }
+
+    private static int even(int value) {
+        return Math.max(2, value & ~1);
+    }
+
+    private static int bytesPerPixel(String chroma) {
+        if("RV32".equals(chroma)) {
+            return 4;
+        }
+        else if("RV24".equals(chroma)) {
+            return 3;
+        }
+        else if("RV16".equals(chroma)) {
+            return 2;
+        }
+        else if("I420".equals(chroma) || "YV12".equals(chroma) || "NV12".equals(chroma) || "YUY2".equals(chroma)) {
+            return 1;
+        }
+        else {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.directaudio;
+
+/**
+ * Specifies the format of the decoded audio delivered to a {@link DirectAudioPlayer}.
+ * <p>
+ * The format is a four character sample format code, e.g. "S16N" for signed 16-bit samples in
+ * native byte order or "FL32" for 32-bit floating point samples, together with the sample rate and
+ * the number of channels.
+ */
+public class AudioBufferFormat {
+
+    /**
+     * Sample format.
+     */
+    private final String format;
+
+    /**
+     * Sample rate, in Hz.
+     */
+    private final int rate;
+
+    /**
+     * Number of channels.
+     */
+    private final int channels;
+
+    /**
+     * Constructs a new audio buffer format.
+     *
+     * @param format sample format, must be exactly 4 characters and cannot contain non-ASCII characters
+     * @param rate sample rate, must be &gt; 0
+     * @param channels number of channels, must be &gt; 0
+     * @throws IllegalArgumentException if any parameter is invalid
+     */
+    public AudioBufferFormat(String format, int rate, int channels) {
+        validate(format, rate, channels);
+        this.format = format;
+        this.rate = rate;
+        this.channels = channels;
+    }
+
+    /**
+     * Get the sample format.
+     *
+     * @return sample format
+     */
+    public final String getFormat() {
+        return format;
+    }
+
+    /**
+     * Get the sample rate.
+     *
+     * @return sample rate, in Hz
+     */
+    public final int getRate() {
+        return rate;
+    }
+
+    /**
+     * Get the number of channels.
+     *
+     * @return number of channels
+     */
+    public final int getChannels() {
+        return channels;
+    }
+
+    /**
+     * Get the size of one sample for a single channel.
+     * <p>
+     * This is derived from the number in the sample format code, e.g. 2 for "S16N" and 4 for "FL32".
+     *
+     * @return sample size in bytes, or zero if the sample format is not recognised
+     */
+    public final int getSampleSize() {
+        int bits = 0;
+        for(int i = 0; i < format.length(); i ++ ) {
+            char c = format.charAt(i);
+            if(c >= '0' && c <= '9') {
+                bits = bits * 10 + (c - '0');
+            }
+        }
+        return bits % 8 == 0 ? bits / 8 : 0;
+    }
+
+    /**
+     * Get the block size, i.e. the size of one sample for every channel.
+     * <p>
+     * This is the block size to use with the audio callback adapters.
+     *
+     * @return block size in bytes, or zero if the sample format is not recognised
+     */
+    public final int getBlockSize() {
+        return getSampleSize() * channels;
+    }
+
+    @Override
+    public final String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(getClass().getSimpleName()).append('[');
+        sb.append("format=").append(format).append(',');
+        sb.append("rate=").append(rate).append(',');
+        sb.append("channels=").append(channels).append(']');
+        return sb.toString();
+    }
+
+    /**
+     * Validate the audio buffer format.
+     *
+     * @param format
+     * @param rate
+     * @param channels
+     * @throws IllegalArgumentException if any parameter is invalid
+     */
+    private void validate(String format, int rate, int channels) {
+        if(format == null || format.length() != 4) {
+            throw new IllegalArgumentException("format must be exactly 4 characters");
+        }
+        for(int i = 0; i < 4; i ++ ) {
+            if(format.charAt(i) > 127) {
+                throw new IllegalArgumentException("format must contain only ASCII characters");
+            }
+        }
+        if(rate <= 0) {
+            throw new IllegalArgumentException("rate must be greater than zero");
+        }
+        if(channels <= 0) {
+            throw new IllegalArgumentException("channels must be greater than zero");
+        }
+    }
+}
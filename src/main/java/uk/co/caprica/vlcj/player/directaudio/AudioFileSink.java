@@ -0,0 +1,423 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.directaudio;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.co.caprica.vlcj.binding.support.NativeBufferCopy;
+
+import com.sun.jna.Pointer;
+
+/**
+ * An {@link AudioCallback} that writes the audio samples to a WAV or raw file.
+ * <p>
+ * The play callback only copies the samples into an {@link AudioRingBuffer}, a background thread
+ * collects them into large batches and writes each batch to the file with a single
+ * {@link FileChannel} write. Batches are a multiple of the file system block size and, apart from
+ * the first and the last, start at an offset aligned to that size.
+ * <p>
+ * Samples are never dropped. If the file can not be written fast enough the play callback waits
+ * for space in the ring buffer, this is counted as a stall - with a large enough ring buffer this
+ * only happens when ripping much faster than real-time on a slow disk.
+ * <p>
+ * The WAV header is written with provisional sizes when the file is opened, and patched with the
+ * real sizes every time the audio is drained and when the sink is closed. Flushes are ignored, every
+ * sample that was played is written.
+ * <p>
+ * The sink must be closed with {@link #close()} when the media player has finished.
+ */
+public class AudioFileSink implements AudioCallback, Runnable {
+
+    /**
+     * Size of the WAV header.
+     */
+    private static final int WAV_HEADER_SIZE = 44;
+
+    /**
+     * File system block size.
+     */
+    private static final int BLOCK_ALIGNMENT = 4096;
+
+    /**
+     * Default ring buffer capacity.
+     */
+    private static final int DEFAULT_CAPACITY = 4 * 1024 * 1024;
+
+    /**
+     * Default batch size.
+     */
+    private static final int DEFAULT_BATCH_SIZE = 256 * 1024;
+
+    /**
+     * Time the writer thread waits when there is nothing to write, in nanoseconds.
+     */
+    private static final long IDLE_WAIT = 5000000;
+
+    /**
+     * Time the play callback waits for space in the ring buffer, in nanoseconds.
+     */
+    private static final long STALL_WAIT = 100000;
+
+    /**
+     * Log.
+     */
+    private final Logger logger = LoggerFactory.getLogger(AudioFileSink.class);
+
+    private final AudioBufferFormat format;
+
+    private final AudioFileType type;
+
+    private final int blockSize;
+
+    private final RandomAccessFile file;
+
+    private final FileChannel channel;
+
+    private final AudioRingBuffer ringBuffer;
+
+    /**
+     * Re-usable copy of the native samples.
+     */
+    private final NativeBufferCopy copy = new NativeBufferCopy();
+
+    /**
+     * Batch of samples waiting to be written, only used by the writer thread.
+     */
+    private final ByteBuffer batch;
+
+    /**
+     * WAV header, only used by the writer thread once the file is open.
+     */
+    private final ByteBuffer header = ByteBuffer.allocate(WAV_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    private final Thread thread;
+
+    /**
+     * Number of drain requests, only updated by the native audio thread.
+     */
+    private volatile long drainRequests;
+
+    /**
+     * Number of drain requests completed, only updated by the writer thread.
+     */
+    private volatile long drainsCompleted;
+
+    private volatile boolean running = true;
+
+    private volatile long dataBytes;
+
+    private volatile long writes;
+
+    private volatile long stalls;
+
+    private volatile IOException failure;
+
+    private boolean closed;
+
+    /**
+     * Create an audio file sink with default buffer sizes.
+     *
+     * @param file file to write, any existing file is overwritten
+     * @param type type of file
+     * @param format audio format, the block size must be known
+     * @throws IOException if the file can not be created
+     */
+    public AudioFileSink(File file, AudioFileType type, AudioBufferFormat format) throws IOException {
+        this(file, type, format, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Create an audio file sink.
+     *
+     * @param file file to write, any existing file is overwritten
+     * @param type type of file
+     * @param format audio format, the block size must be known
+     * @param capacity capacity of the ring buffer in bytes, must be a power of two
+     * @param batchSize size of each write in bytes, rounded up to a multiple of the file system block size
+     * @throws IOException if the file can not be created
+     */
+    public AudioFileSink(File file, AudioFileType type, AudioBufferFormat format, int capacity, int batchSize) throws IOException {
+        if(format.getBlockSize() == 0) {
+            throw new IllegalArgumentException("Unknown sample size for format " + format.getFormat());
+        }
+        if(type == AudioFileType.WAV && wavFormatTag(format) == 0) {
+            throw new IllegalArgumentException("Format " + format.getFormat() + " can not be written to a WAV file");
+        }
+        this.format = format;
+        this.type = type;
+        this.blockSize = format.getBlockSize();
+        this.ringBuffer = new AudioRingBuffer(capacity);
+        this.batch = ByteBuffer.allocateDirect((Math.max(batchSize, 1) + BLOCK_ALIGNMENT - 1) / BLOCK_ALIGNMENT * BLOCK_ALIGNMENT);
+        this.file = new RandomAccessFile(file, "rw");
+        this.channel = this.file.getChannel();
+        try {
+            this.file.setLength(0);
+            if(type == AudioFileType.WAV) {
+                writeHeader();
+                channel.position(WAV_HEADER_SIZE);
+                // Make the first batch end on a block boundary, so every later batch is aligned
+                batch.limit(batch.capacity() - WAV_HEADER_SIZE);
+            }
+        }
+        catch(IOException e) {
+            this.file.close();
+            throw e;
+        }
+        this.thread = new Thread(this, "vlcj-audio-file-sink");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Get the audio format.
+     *
+     * @return audio format
+     */
+    public final AudioBufferFormat format() {
+        return format;
+    }
+
+    /**
+     * Get the ring buffer, e.g. to inspect its counters.
+     *
+     * @return ring buffer
+     */
+    public final AudioRingBuffer ringBuffer() {
+        return ringBuffer;
+    }
+
+    /**
+     * Get the number of sample bytes written to the file so far.
+     *
+     * @return bytes written, excluding any header
+     */
+    public final long bytesWritten() {
+        return dataBytes;
+    }
+
+    /**
+     * Get the number of writes made to the file so far.
+     *
+     * @return write count
+     */
+    public final long writes() {
+        return writes;
+    }
+
+    /**
+     * Get the number of play callbacks that had to wait for the file to be written.
+     *
+     * @return stall count
+     */
+    public final long stalls() {
+        return stalls;
+    }
+
+    @Override
+    public final void play(DirectAudioPlayer mediaPlayer, Pointer samples, int sampleCount, long pts) {
+        if(!running) {
+            return;
+        }
+        ByteBuffer source = copy.copyFrom(samples, sampleCount * blockSize);
+        ringBuffer.write(source, blockSize);
+        if(source.hasRemaining()) {
+            stalls++;
+            do {
+                LockSupport.unpark(thread);
+                LockSupport.parkNanos(STALL_WAIT);
+                ringBuffer.write(source, blockSize);
+            }
+            while(source.hasRemaining() && running);
+        }
+        if(ringBuffer.available() >= batch.capacity()) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    @Override
+    public final void pause(DirectAudioPlayer mediaPlayer, long pts) {
+    }
+
+    @Override
+    public final void resume(DirectAudioPlayer mediaPlayer, long pts) {
+    }
+
+    @Override
+    public final void flush(DirectAudioPlayer mediaPlayer, long pts) {
+    }
+
+    @Override
+    public final void drain(DirectAudioPlayer mediaPlayer) {
+        drain();
+    }
+
+    /**
+     * Write every sample played so far to the file and patch the WAV header.
+     *
+     * @return <code>true</code> if the file was written successfully; <code>false</code> otherwise
+     */
+    public final boolean drain() {
+        long request;
+        synchronized(this) {
+            request = ++drainRequests;
+        }
+        LockSupport.unpark(thread);
+        while(drainsCompleted < request && thread.isAlive()) {
+            LockSupport.parkNanos(STALL_WAIT);
+        }
+        return failure == null && drainsCompleted >= request;
+    }
+
+    /**
+     * Write every sample played so far, patch the WAV header and close the file.
+     *
+     * @throws IOException if the file could not be written
+     */
+    public final void close() throws IOException {
+        synchronized(this) {
+            if(closed) {
+                return;
+            }
+            closed = true;
+        }
+        drain();
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        file.close();
+        if(failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public final void run() {
+        logger.debug("run()");
+        long drained = 0;
+        try {
+            while(running) {
+                int count = ringBuffer.read(batch);
+                if(!batch.hasRemaining()) {
+                    writeBatch();
+                }
+                else if(count == 0) {
+                    long request = drainRequests;
+                    if(request != drained) {
+                        writeBatch();
+                        if(type == AudioFileType.WAV) {
+                            writeHeader();
+                        }
+                        channel.force(false);
+                        drained = request;
+                        drainsCompleted = request;
+                    }
+                    else {
+                        LockSupport.parkNanos(IDLE_WAIT);
+                    }
+                }
+            }
+        }
+        catch(IOException e) {
+            logger.error("Failed to write audio file", e);
+            failure = e;
+            running = false;
+        }
+        logger.debug("runner exits");
+    }
+
+    /**
+     * Write the current batch to the file.
+     *
+     * @throws IOException if the file can not be written
+     */
+    private void writeBatch() throws IOException {
+        batch.flip();
+        int length = batch.remaining();
+        while(batch.hasRemaining()) {
+            channel.write(batch);
+        }
+        batch.clear();
+        if(length > 0) {
+            dataBytes += length;
+            writes++;
+        }
+    }
+
+    /**
+     * Write the WAV header for the current data size.
+     *
+     * @throws IOException if the file can not be written
+     */
+    private void writeHeader() throws IOException {
+        long dataSize = Math.min(dataBytes, 0xffffffffL - 36);
+        int bytesPerSample = format.getSampleSize();
+        header.clear();
+        header.putInt(0x46464952); // "RIFF"
+        header.putInt((int) (36 + dataSize));
+        header.putInt(0x45564157); // "WAVE"
+        header.putInt(0x20746d66); // "fmt "
+        header.putInt(16);
+        header.putShort((short) wavFormatTag(format));
+        header.putShort((short) format.getChannels());
+        header.putInt(format.getRate());
+        header.putInt(format.getRate() * blockSize);
+        header.putShort((short) blockSize);
+        header.putShort((short) (bytesPerSample * 8));
+        header.putInt(0x61746164); // "data"
+        header.putInt((int) dataSize);
+        header.flip();
+        long position = 0;
+        while(header.hasRemaining()) {
+            position += channel.write(header, position);
+        }
+    }
+
+    /**
+     * Get the WAV format tag for an audio format.
+     *
+     * @param format audio format
+     * @return 1 for integer PCM, 3 for floating point, or zero if the format can not be written to a WAV file
+     */
+    private static int wavFormatTag(AudioBufferFormat format) {
+        String sampleFormat = format.getFormat();
+        boolean littleEndian = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+        if("FL32".equals(sampleFormat) && littleEndian || "f32l".equals(sampleFormat)) {
+            return 3;
+        }
+        if(("S16N".equals(sampleFormat) || "S32N".equals(sampleFormat)) && littleEndian || "s16l".equals(sampleFormat) || "s32l".equals(sampleFormat) || "s24l".equals(sampleFormat)) {
+            return 1;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.directaudio;
+
+/**
+ * Enumeration of file types written by an {@link AudioFileSink}.
+ */
+public enum AudioFileType {
+
+    /**
+     * RIFF WAVE file, a 44 byte header followed by the samples.
+     * <p>
+     * The sample format must be little-endian integer PCM (e.g. "S16N" on a little-endian machine) or
+     * 32-bit floating point ("FL32"), and the file must be smaller than 4GB.
+     */
+    WAV,
+
+    /**
+     * Raw samples with no header, in any sample format.
+     */
+    RAW
+}
@@ -0,0 +1,44 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.directaudio;
+
+/**
+ * Callback invoked by the {@link DirectAudioPlayer} to negotiate the format of the decoded audio.
+ * <p>
+ * This is the audio equivalent of the video buffer format callback. It is invoked each time the
+ * native library creates a new audio output, with the format of the audio as it comes from the
+ * decoder. Accepting that format as it is avoids a resampling or remixing stage in the native
+ * library, changing any part of it makes the native library convert the audio.
+ * <p>
+ * The callback is invoked by a <em>native</em> thread.
+ */
+public interface AudioFormatCallback {
+
+    /**
+     * Returns an {@link AudioBufferFormat} instance specifying the format of the audio samples
+     * that the {@link DirectAudioPlayer} should deliver.
+     *
+     * @param sourceFormat sample format of the decoded audio
+     * @param sourceRate sample rate of the decoded audio, in Hz
+     * @param sourceChannels number of channels of the decoded audio
+     * @return audio format, or <code>null</code> to play no audio for the current media
+     */
+    AudioBufferFormat getAudioFormat(String sourceFormat, int sourceRate, int sourceChannels);
+}
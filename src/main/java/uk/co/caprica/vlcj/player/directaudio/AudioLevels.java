@@ -0,0 +1,146 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.directaudio;
+
+/**
+ * Snapshot of the audio levels measured by a {@link MeteringAudioCallback} over one window.
+ * <p>
+ * Levels are linear, relative to full scale, so a full scale square wave has a peak and RMS of 1.
+ * <p>
+ * An instance of this class may be re-used to avoid creating garbage when polling the levels.
+ */
+public class AudioLevels {
+
+    private int      channels;
+    private long     sequence;
+    private long     pts;
+    private float[]  peak = new float[0];
+    private float[]  rms = new float[0];
+    private int[]    clips = new int[0];
+    private long[]   totalClips = new long[0];
+
+    /**
+     * Number of channels.
+     *
+     * @return channel count
+     */
+    public int channels() {
+        return channels;
+    }
+
+    /**
+     * Number of windows measured so far, zero if no window has been completed yet.
+     *
+     * @return window sequence number
+     */
+    public long sequence() {
+        return sequence;
+    }
+
+    /**
+     * Presentation time stamp of the buffer containing the first sample of the window.
+     *
+     * @return presentation time stamp
+     */
+    public long pts() {
+        return pts;
+    }
+
+    /**
+     * Peak absolute sample value in the window.
+     *
+     * @param channel channel index
+     * @return peak level, from 0 to 1
+     */
+    public float peak(int channel) {
+        return peak[channel];
+    }
+
+    /**
+     * Root mean square of the samples in the window.
+     *
+     * @param channel channel index
+     * @return RMS level, from 0 to 1
+     */
+    public float rms(int channel) {
+        return rms[channel];
+    }
+
+    /**
+     * Peak level in decibels relative to full scale.
+     *
+     * @param channel channel index
+     * @return peak level in dBFS, negative infinity for silence
+     */
+    public double peakDb(int channel) {
+        return decibels(peak[channel]);
+    }
+
+    /**
+     * RMS level in decibels relative to full scale.
+     *
+     * @param channel channel index
+     * @return RMS level in dBFS, negative infinity for silence
+     */
+    public double rmsDb(int channel) {
+        return decibels(rms[channel]);
+    }
+
+    /**
+     * Number of clipped samples in the window.
+     *
+     * @param channel channel index
+     * @return clipped sample count
+     */
+    public int clips(int channel) {
+        return clips[channel];
+    }
+
+    /**
+     * Number of clipped samples since metering started.
+     *
+     * @param channel channel index
+     * @return clipped sample count
+     */
+    public long totalClips(int channel) {
+        return totalClips[channel];
+    }
+
+    private static double decibels(float level) {
+        return 20 * Math.log10(level);
+    }
+
+    final void apply(int channels, long sequence, long pts, float[] peak, float[] rms, int[] clips, long[] totalClips) {
+        if(this.channels != channels || this.peak.length != channels) {
+            this.peak       = new float[channels];
+            this.rms        = new float[channels];
+            this.clips      = new int[channels];
+            this.totalClips = new long[channels];
+        }
+        this.channels = channels;
+        this.sequence = sequence;
+        this.pts      = pts;
+        System.arraycopy(peak, 0, this.peak, 0, channels);
+        System.arraycopy(rms, 0, this.rms, 0, channels);
+        System.arraycopy(clips, 0, this.clips, 0, channels);
+        System.arraycopy(totalClips, 0, this.totalClips, 0, channels);
+    }
+
+}
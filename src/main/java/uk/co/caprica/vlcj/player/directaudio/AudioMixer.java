@@ -0,0 +1,407 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.directaudio;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Mixes the audio from several {@link DirectAudioPlayer} instances into a single stream.
+ * <p>
+ * Each media player is given its own {@link AudioMixerInput}, created by {@link #newInput(float)},
+ * which buffers the samples from the native audio thread of that media player. A single mixer
+ * thread reads a fixed period of samples from every input, lines them up using their timestamps,
+ * applies the gain of each input, and passes the mixed period to {@link #onMix(byte[], int, long)}.
+ * <p>
+ * Every media player delivers the same format, signed 16-bit native-endian samples at the sample
+ * rate and channel count of the mixer, so the mix is a plain integer sum with saturation. The
+ * mixer thread works entirely in pre-allocated arrays and creates no garbage.
+ * <p>
+ * A period is mixed as soon as every playing input has a full period of samples, or after waiting
+ * one period for a late input - in which case that input contributes what it has and the rest is
+ * counted as an underrun. An input whose samples are earlier than the mix has them discarded, an
+ * input whose samples are later is delayed, and if every input jumps (e.g. after a seek) the mix
+ * timeline is reset.
+ * <p>
+ * The mixer thread must be started with {@link #start()} and should be stopped with
+ * {@link #stop()} when the media players have been released.
+ */
+public abstract class AudioMixer implements Runnable {
+
+    /**
+     * Sample format used by every input.
+     */
+    private static final String FORMAT = "S16N";
+
+    /**
+     * Default capacity of each input ring buffer.
+     */
+    private static final int DEFAULT_CAPACITY = 256 * 1024;
+
+    /**
+     * Time the mixer thread waits when there is nothing to mix, in nanoseconds.
+     */
+    private static final long IDLE_WAIT = 1000000;
+
+    /**
+     * Largest timing difference between an input and the mix that is not corrected, in milliseconds.
+     */
+    private static final int ALIGNMENT_TOLERANCE = 2;
+
+    /**
+     * Timing difference between every input and the mix that resets the mix timeline, in microseconds.
+     */
+    private static final long RESYNC_THRESHOLD = 1000000;
+
+    /**
+     * Log.
+     */
+    private final Logger logger = LoggerFactory.getLogger(AudioMixer.class);
+
+    private final AudioBufferFormat format;
+
+    private final int channels;
+
+    private final int periodSamples;
+
+    private final int periodBytes;
+
+    private final int capacity;
+
+    /**
+     * Time to wait for a late input, in nanoseconds.
+     */
+    private final long maximumWait;
+
+    /**
+     * Alignment tolerance, in samples.
+     */
+    private final long tolerance;
+
+    /**
+     * Mixed samples for the current period.
+     */
+    private final int[] accumulator;
+
+    /**
+     * Mixed period passed to the template method.
+     */
+    private final byte[] output;
+
+    private final ByteBuffer outputBuffer;
+
+    /**
+     * Current inputs, replaced (never modified) when an input is added or removed.
+     */
+    private volatile AudioMixerInput[] inputs = new AudioMixerInput[0];
+
+    private volatile boolean running;
+
+    private volatile Thread thread;
+
+    /**
+     * Has the mix timeline been set?
+     */
+    private boolean synced;
+
+    /**
+     * Timestamp of the start of the mix timeline, in microseconds.
+     */
+    private long basePts;
+
+    /**
+     * Number of samples mixed since the start of the mix timeline.
+     */
+    private long mixedSamples;
+
+    /**
+     * Time the mixer started waiting for a late input, from {@link System#nanoTime()}.
+     */
+    private long waitStart;
+
+    private boolean waiting;
+
+    private volatile long periods;
+
+    private volatile long mixTime;
+
+    /**
+     * Create an audio mixer with a default input buffer capacity.
+     *
+     * @param rate sample rate, in Hz
+     * @param channels number of channels
+     * @param periodSamples number of samples (per channel) in each mixed period
+     */
+    public AudioMixer(int rate, int channels, int periodSamples) {
+        this(rate, channels, periodSamples, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create an audio mixer.
+     *
+     * @param rate sample rate, in Hz
+     * @param channels number of channels
+     * @param periodSamples number of samples (per channel) in each mixed period
+     * @param capacity capacity of each input ring buffer in bytes, must be a power of two
+     */
+    public AudioMixer(int rate, int channels, int periodSamples, int capacity) {
+        this.format = new AudioBufferFormat(FORMAT, rate, channels);
+        if(periodSamples < 1) {
+            throw new IllegalArgumentException("periodSamples must be at least one");
+        }
+        if(capacity < periodSamples * format.getBlockSize()) {
+            throw new IllegalArgumentException("capacity must hold at least one period");
+        }
+        this.channels = channels;
+        this.periodSamples = periodSamples;
+        this.periodBytes = periodSamples * format.getBlockSize();
+        this.capacity = capacity;
+        this.maximumWait = periodSamples * 1000000000L / rate;
+        this.tolerance = (long) rate * ALIGNMENT_TOLERANCE / 1000;
+        this.accumulator = new int[periodSamples * channels];
+        this.output = new byte[periodBytes];
+        this.outputBuffer = ByteBuffer.wrap(output).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Get the audio format of every input, and of the mixed output.
+     *
+     * @return audio format
+     */
+    public final AudioBufferFormat format() {
+        return format;
+    }
+
+    /**
+     * Create a new input and add it to the mix.
+     *
+     * @param gain initial gain, 1.0 for unity
+     * @return input, to be used as the audio callback and audio format callback of a media player
+     */
+    public final synchronized AudioMixerInput newInput(float gain) {
+        if(gain < 0) {
+            throw new IllegalArgumentException("gain must not be negative");
+        }
+        AudioMixerInput input = new AudioMixerInput(this, gain, capacity, periodSamples);
+        AudioMixerInput[] current = inputs;
+        AudioMixerInput[] replacement = Arrays.copyOf(current, current.length + 1);
+        replacement[current.length] = input;
+        inputs = replacement;
+        return input;
+    }
+
+    /**
+     * Remove an input from the mix.
+     * <p>
+     * The media player using the input should already have been stopped.
+     *
+     * @param input input to remove
+     */
+    public final synchronized void removeInput(AudioMixerInput input) {
+        AudioMixerInput[] current = inputs;
+        for(int i = 0; i < current.length; i ++ ) {
+            if(current[i] == input) {
+                AudioMixerInput[] replacement = new AudioMixerInput[current.length - 1];
+                System.arraycopy(current, 0, replacement, 0, i);
+                System.arraycopy(current, i + 1, replacement, i, current.length - i - 1);
+                inputs = replacement;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Get the number of periods mixed so far.
+     *
+     * @return period count
+     */
+    public final long periods() {
+        return periods;
+    }
+
+    /**
+     * Get the total time spent mixing, excluding the time spent in {@link #onMix(byte[], int, long)}.
+     *
+     * @return mixing time, in nanoseconds
+     */
+    public final long mixTime() {
+        return mixTime;
+    }
+
+    /**
+     * Get the total CPU time used by the mixer thread, including the time spent in
+     * {@link #onMix(byte[], int, long)}.
+     *
+     * @return CPU time in nanoseconds, or -1 if the mixer is not running or CPU time is not available
+     */
+    public final long cpuTime() {
+        Thread current = thread;
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if(current == null || !threadBean.isThreadCpuTimeSupported()) {
+            return -1;
+        }
+        return threadBean.getThreadCpuTime(current.getId());
+    }
+
+    /**
+     * Start the mixer thread.
+     */
+    public final synchronized void start() {
+        if(thread == null) {
+            running = true;
+            thread = new Thread(this, "vlcj-audio-mixer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stop the mixer thread.
+     */
+    public final synchronized void stop() {
+        if(thread != null) {
+            running = false;
+            LockSupport.unpark(thread);
+            try {
+                thread.join(5000);
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    /**
+     * Get the mixer thread, so inputs can wake it.
+     *
+     * @return mixer thread, or <code>null</code> if it is not running
+     */
+    final Thread thread() {
+        return thread;
+    }
+
+    @Override
+    public final void run() {
+        logger.debug("run()");
+        while(running) {
+            if(!mixPeriod()) {
+                LockSupport.parkNanos(IDLE_WAIT);
+            }
+        }
+        logger.debug("runner exits");
+    }
+
+    /**
+     * Mix one period, if the inputs are ready.
+     *
+     * @return <code>true</code> if a period was mixed; <code>false</code> if the mixer should wait
+     */
+    private boolean mixPeriod() {
+        AudioMixerInput[] current = inputs;
+        long now = System.nanoTime();
+        boolean anyData = false;
+        boolean anyActive = false;
+        boolean ready = true;
+        long earliestPts = Long.MAX_VALUE;
+        for(int i = 0; i < current.length; i ++ ) {
+            AudioMixerInput input = current[i];
+            int available = input.ringBuffer().available();
+            boolean active = input.active(now);
+            if(available > 0) {
+                anyData = true;
+                earliestPts = Math.min(earliestPts, input.readPts());
+            }
+            if(active) {
+                anyActive = true;
+                ready &= available >= periodBytes;
+            }
+        }
+        if(!anyData) {
+            if(!anyActive) {
+                synced = false;
+            }
+            return false;
+        }
+        if(!ready) {
+            if(!waiting) {
+                waiting = true;
+                waitStart = now;
+                return false;
+            }
+            if(now - waitStart < maximumWait) {
+                return false;
+            }
+        }
+        waiting = false;
+        long start = System.nanoTime();
+        long pts = basePts + mixedSamples * 1000000 / format.getRate();
+        if(!synced || Math.abs(earliestPts - pts) > RESYNC_THRESHOLD) {
+            synced = true;
+            basePts = earliestPts;
+            mixedSamples = 0;
+            pts = earliestPts;
+        }
+        Arrays.fill(accumulator, 0);
+        for(int i = 0; i < current.length; i ++ ) {
+            AudioMixerInput input = current[i];
+            input.mix(accumulator, periodSamples, channels, pts, tolerance, input.active(now));
+        }
+        for(int i = 0; i < accumulator.length; i ++ ) {
+            int sample = accumulator[i];
+            if(sample > Short.MAX_VALUE) {
+                sample = Short.MAX_VALUE;
+            }
+            else if(sample < Short.MIN_VALUE) {
+                sample = Short.MIN_VALUE;
+            }
+            outputBuffer.putShort(i << 1, (short) sample);
+        }
+        mixedSamples += periodSamples;
+        periods++;
+        mixTime += System.nanoTime() - start;
+        try {
+            onMix(output, periodBytes, pts);
+        }
+        catch(RuntimeException e) {
+            logger.error("Audio mixer output failed", e);
+        }
+        return true;
+    }
+
+    /**
+     * Template method invoked on the mixer thread with each mixed period.
+     * <p>
+     * This method may block, e.g. writing to a Java Sound line, which then paces the mixer. The
+     * data array is re-used for every invocation.
+     *
+     * @param data mixed samples, in the format of the mixer
+     * @param length number of bytes of mixed samples
+     * @param pts timestamp of the first sample, in microseconds
+     */
+    protected abstract void onMix(byte[] data, int length, long pts);
+}
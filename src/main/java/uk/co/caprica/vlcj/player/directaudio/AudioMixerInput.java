@@ -0,0 +1,289 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.directaudio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.jna.Pointer;
+
+/**
+ * One input of an {@link AudioMixer}.
+ * <p>
+ * An input is both the audio callback and the audio format callback for one
+ * {@link DirectAudioPlayer}, so the media player always delivers samples in the format of the
+ * mixer, for example:
+ * <pre>
+ * AudioMixerInput input = mixer.newInput(0.5f);
+ * DirectAudioPlayer mediaPlayer = factory.mediaPlayers().newDirectAudioPlayer(input, input);
+ * </pre>
+ * The play callback copies the samples, and their timestamp, into a ring buffer and returns
+ * immediately. Everything else happens on the mixer thread.
+ * <p>
+ * An input stops taking part in the mix while it is paused, after it has been drained, or if no
+ * samples have been played for a while - so a media player that is stopped does not hold up the
+ * other inputs.
+ */
+public final class AudioMixerInput implements AudioCallback, AudioFormatCallback {
+
+    /**
+     * Time after the last play callback that the input is considered idle, in nanoseconds.
+     */
+    private static final long IDLE_TIMEOUT = 500000000L;
+
+    /**
+     * Time to wait for the mixer to drain the buffer, in milliseconds.
+     */
+    private static final long DRAIN_TIMEOUT = 2000;
+
+    /**
+     * Log.
+     */
+    private final Logger logger = LoggerFactory.getLogger(AudioMixerInput.class);
+
+    private final AudioMixer mixer;
+
+    private final AudioRingBuffer ringBuffer;
+
+    private final int blockSize;
+
+    private final int rate;
+
+    /**
+     * Samples read by the mixer thread for the current period.
+     */
+    private final ByteBuffer samples;
+
+    /**
+     * Requested gain.
+     */
+    private volatile float gain;
+
+    /**
+     * Gain applied at the end of the last mixed period, only used by the mixer thread.
+     */
+    private float appliedGain;
+
+    /**
+     * Timestamp, in microseconds, that byte position zero of the ring buffer would have had.
+     * <p>
+     * Storing a single value means the mixer thread never sees a timestamp from one play callback
+     * paired with a position from another.
+     */
+    private volatile long ptsOrigin;
+
+    private volatile boolean playing;
+
+    private volatile long lastPlay;
+
+    private volatile long underruns;
+
+    private volatile long underrunSamples;
+
+    private volatile long skippedSamples;
+
+    AudioMixerInput(AudioMixer mixer, float gain, int capacity, int periodSamples) {
+        this.mixer = mixer;
+        this.blockSize = mixer.format().getBlockSize();
+        this.rate = mixer.format().getRate();
+        this.ringBuffer = new AudioRingBuffer(capacity);
+        this.samples = ByteBuffer.allocate(periodSamples * blockSize).order(ByteOrder.nativeOrder());
+        this.gain = gain;
+        this.appliedGain = gain;
+    }
+
+    /**
+     * Set the gain.
+     * <p>
+     * The change is applied gradually over the next mixed period, so it does not click.
+     *
+     * @param gain gain, 1.0 for unity
+     */
+    public void setGain(float gain) {
+        if(gain < 0) {
+            throw new IllegalArgumentException("gain must not be negative");
+        }
+        this.gain = gain;
+    }
+
+    /**
+     * Get the gain.
+     *
+     * @return gain
+     */
+    public float getGain() {
+        return gain;
+    }
+
+    /**
+     * Get the ring buffer, e.g. to inspect its counters.
+     *
+     * @return ring buffer
+     */
+    public AudioRingBuffer ringBuffer() {
+        return ringBuffer;
+    }
+
+    /**
+     * Number of mixed periods this input could not completely fill while it was playing.
+     *
+     * @return underrun count
+     */
+    public long underruns() {
+        return underruns;
+    }
+
+    /**
+     * Number of samples (per channel) replaced by silence because of underruns.
+     *
+     * @return underrun samples
+     */
+    public long underrunSamples() {
+        return underrunSamples;
+    }
+
+    /**
+     * Number of samples (per channel) discarded because they were too late for the mix.
+     *
+     * @return skipped samples
+     */
+    public long skippedSamples() {
+        return skippedSamples;
+    }
+
+    @Override
+    public AudioBufferFormat getAudioFormat(String sourceFormat, int sourceRate, int sourceChannels) {
+        return mixer.format();
+    }
+
+    @Override
+    public void play(DirectAudioPlayer mediaPlayer, Pointer samples, int sampleCount, long pts) {
+        ptsOrigin = pts - ringBuffer.bytesWritten() / blockSize * 1000000 / rate;
+        ringBuffer.write(samples, sampleCount * blockSize, blockSize);
+        lastPlay = System.nanoTime();
+        playing = true;
+        LockSupport.unpark(mixer.thread());
+    }
+
+    @Override
+    public void pause(DirectAudioPlayer mediaPlayer, long pts) {
+        playing = false;
+    }
+
+    @Override
+    public void resume(DirectAudioPlayer mediaPlayer, long pts) {
+        lastPlay = System.nanoTime();
+        playing = true;
+    }
+
+    @Override
+    public void flush(DirectAudioPlayer mediaPlayer, long pts) {
+        ringBuffer.flush();
+    }
+
+    @Override
+    public void drain(DirectAudioPlayer mediaPlayer) {
+        playing = false;
+        if(!ringBuffer.drain(DRAIN_TIMEOUT)) {
+            logger.debug("Timed out draining mixer input");
+        }
+    }
+
+    /**
+     * Is the input currently expected to supply samples?
+     *
+     * @param now current time, from {@link System#nanoTime()}
+     * @return <code>true</code> if the input is playing; <code>false</code> if it is paused, drained or idle
+     */
+    boolean active(long now) {
+        return playing && now - lastPlay < IDLE_TIMEOUT;
+    }
+
+    /**
+     * Get the timestamp of the next sample the mixer will read.
+     *
+     * @return timestamp, in microseconds
+     */
+    long readPts() {
+        return ptsOrigin + ringBuffer.readPosition() / blockSize * 1000000 / rate;
+    }
+
+    /**
+     * Add the samples for one period to the mix.
+     * <p>
+     * Must only be invoked by the mixer thread.
+     *
+     * @param accumulator mixed samples for the period, interleaved
+     * @param periodSamples number of samples (per channel) in the period
+     * @param channels number of channels
+     * @param pts timestamp of the first sample in the period, in microseconds
+     * @param tolerance largest timing difference, in samples, that is not corrected
+     * @param active is the input expected to supply samples
+     */
+    void mix(int[] accumulator, int periodSamples, int channels, long pts, long tolerance, boolean active) {
+        int available = ringBuffer.available() / blockSize;
+        int start = 0;
+        if(available > 0) {
+            long offset = (readPts() - pts) * rate / 1000000;
+            if(offset > tolerance) {
+                if(offset >= periodSamples) {
+                    // Not due yet
+                    return;
+                }
+                start = (int) offset;
+            }
+            else if(offset < -tolerance) {
+                int skip = (int) Math.min(-offset, available);
+                ringBuffer.skip(skip * blockSize);
+                skippedSamples += skip;
+                available -= skip;
+            }
+        }
+        int wanted = periodSamples - start;
+        int count = Math.min(wanted, available);
+        if(count < wanted && active) {
+            underruns++;
+            underrunSamples += wanted - count;
+        }
+        float from = appliedGain;
+        float to = gain;
+        appliedGain = to;
+        if(count == 0) {
+            return;
+        }
+        samples.clear();
+        samples.limit(count * blockSize);
+        ringBuffer.read(samples);
+        float step = (to - from) / periodSamples;
+        int index = start * channels;
+        int byteIndex = 0;
+        for(int i = 0; i < count; i ++ ) {
+            float g = from + step * (start + i);
+            for(int c = 0; c < channels; c ++ ) {
+                accumulator[index++] += (int) (samples.getShort(byteIndex) * g);
+                byteIndex += 2;
+            }
+        }
+    }
+}
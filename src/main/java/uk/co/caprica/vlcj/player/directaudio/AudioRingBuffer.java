@@ -0,0 +1,399 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.directaudio;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.jna.Pointer;
+
+/**
+ * A lock-free single-producer single-consumer ring buffer of audio sample data.
+ * <p>
+ * The producer is the native audio thread, writing samples from the play callback, and the
+ * consumer is an application thread, e.g. one writing to a Java Sound line or a network socket.
+ * Neither side ever blocks the other - if the consumer falls behind, samples that do not fit are
+ * discarded and counted as an overrun; if the producer falls behind, the consumer finds the buffer
+ * empty and this is counted as an underrun.
+ * <p>
+ * Only one thread may write and only one (other) thread may read. The capacity is a power of two,
+ * so positions are mapped to the buffer with a mask rather than a division. Positions are never
+ * reset, so they also count the total number of bytes written and read.
+ * <p>
+ * A flush, requested by the producer, discards everything written so far the next time the
+ * consumer reads.
+ */
+public final class AudioRingBuffer {
+
+    /**
+     * Sample data.
+     */
+    private final byte[] data;
+
+    private final int capacity;
+
+    private final int mask;
+
+    /**
+     * Position of the next byte to write, only updated by the producer.
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Position of the next byte to read, only updated by the consumer.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Position up to which data has been flushed, only updated by the producer.
+     */
+    private volatile long flushPosition;
+
+    private volatile long overruns;
+
+    private volatile long overrunBytes;
+
+    private volatile long underruns;
+
+    private volatile long flushedBytes;
+
+    /**
+     * Was the buffer empty the last time the consumer tried to read?
+     */
+    private boolean empty = true;
+
+    /**
+     * Create a ring buffer.
+     *
+     * @param capacity capacity in bytes, must be a power of two
+     */
+    public AudioRingBuffer(int capacity) {
+        if(capacity < 1 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.data = new byte[capacity];
+    }
+
+    /**
+     * Get the capacity.
+     *
+     * @return capacity, in bytes
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Get the number of bytes waiting to be read.
+     *
+     * @return available bytes
+     */
+    public int available() {
+        return (int) (head.get() - Math.max(tail.get(), flushPosition));
+    }
+
+    /**
+     * Get the number of bytes that can currently be written without an overrun.
+     * <p>
+     * Must only be invoked by the producer.
+     *
+     * @return free space, in bytes
+     */
+    public int writable() {
+        return capacity - (int) (head.get() - tail.get());
+    }
+
+    /**
+     * Write native sample data.
+     * <p>
+     * Must only be invoked by the producer. If there is not enough space, only as many whole
+     * blocks as will fit are written and the rest is discarded.
+     * <p>
+     * The samples are copied straight from native memory into the buffer.
+     *
+     * @param samples native sample data
+     * @param length number of bytes to write
+     * @param blockSize size of each sample block, the amount written is always a whole number of blocks
+     * @return number of bytes written
+     */
+    public int write(Pointer samples, int length, int blockSize) {
+        long h = head.get();
+        int count = writeCount(h, length, blockSize);
+        if(count > 0) {
+            int index = (int) (h & mask);
+            int first = Math.min(count, capacity - index);
+            samples.read(0, data, index, first);
+            if(first < count) {
+                samples.read(first, data, 0, count - first);
+            }
+            // Publish the data only after it has been copied
+            head.lazySet(h + count);
+        }
+        return count;
+    }
+
+    /**
+     * Write sample data.
+     * <p>
+     * Must only be invoked by the producer. The data from the current position to the limit of the
+     * source buffer is written. If there is not enough space, only as many whole blocks as will
+     * fit are written and the rest is discarded - the source position is left after the last byte
+     * written.
+     *
+     * @param source sample data
+     * @param blockSize size of each sample block, the amount written is always a whole number of blocks
+     * @return number of bytes written
+     */
+    public int write(ByteBuffer source, int blockSize) {
+        long h = head.get();
+        int count = writeCount(h, source.remaining(), blockSize);
+        if(count > 0) {
+            int index = (int) (h & mask);
+            int first = Math.min(count, capacity - index);
+            source.get(data, index, first);
+            if(first < count) {
+                source.get(data, 0, count - first);
+            }
+            // Publish the data only after it has been copied
+            head.lazySet(h + count);
+        }
+        return count;
+    }
+
+    /**
+     * Read sample data.
+     * <p>
+     * Must only be invoked by the consumer.
+     *
+     * @param data array to read into
+     * @param offset offset in the array
+     * @param length maximum number of bytes to read, should be a whole number of sample blocks
+     * @return number of bytes read, zero if the buffer is empty
+     */
+    public int read(byte[] data, int offset, int length) {
+        long t = skipFlushed();
+        int count = Math.min(length, (int) (head.get() - t));
+        if(count <= 0) {
+            underflow();
+            return 0;
+        }
+        empty = false;
+        int index = (int) (t & mask);
+        int first = Math.min(count, capacity - index);
+        System.arraycopy(this.data, index, data, offset, first);
+        if(first < count) {
+            System.arraycopy(this.data, 0, data, offset + first, count - first);
+        }
+        tail.lazySet(t + count);
+        return count;
+    }
+
+    /**
+     * Read sample data.
+     * <p>
+     * Must only be invoked by the consumer. Data is read into the target buffer from its current
+     * position up to its limit, the position is left after the last byte read.
+     *
+     * @param target buffer to read into
+     * @return number of bytes read, zero if the buffer is empty
+     */
+    public int read(ByteBuffer target) {
+        long t = skipFlushed();
+        int count = Math.min(target.remaining(), (int) (head.get() - t));
+        if(count <= 0) {
+            underflow();
+            return 0;
+        }
+        empty = false;
+        int index = (int) (t & mask);
+        int first = Math.min(count, capacity - index);
+        target.put(data, index, first);
+        if(first < count) {
+            target.put(data, 0, count - first);
+        }
+        tail.lazySet(t + count);
+        return count;
+    }
+
+    /**
+     * Discard sample data without reading it.
+     * <p>
+     * Must only be invoked by the consumer.
+     *
+     * @param length maximum number of bytes to discard, should be a whole number of sample blocks
+     * @return number of bytes discarded
+     */
+    public int skip(int length) {
+        long t = skipFlushed();
+        int count = Math.min(length, (int) (head.get() - t));
+        if(count <= 0) {
+            return 0;
+        }
+        tail.lazySet(t + count);
+        return count;
+    }
+
+    /**
+     * Get the position of the next byte the consumer will read, taking any flush into account.
+     * <p>
+     * Together with {@link #bytesWritten()} this lets the consumer relate what it reads to what the
+     * producer wrote, e.g. to work out the timestamp of the next sample.
+     *
+     * @return read position
+     */
+    public long readPosition() {
+        return Math.max(tail.get(), flushPosition);
+    }
+
+    /**
+     * Discard everything written so far.
+     * <p>
+     * Must only be invoked by the producer, the data is actually discarded the next time the
+     * consumer reads.
+     */
+    public void flush() {
+        long h = head.get();
+        long t = tail.get();
+        if(h > t) {
+            flushedBytes += h - Math.max(t, flushPosition);
+        }
+        flushPosition = h;
+    }
+
+    /**
+     * Wait until the consumer has read everything written so far.
+     * <p>
+     * Must only be invoked by the producer.
+     *
+     * @param timeout maximum time to wait, in milliseconds
+     * @return <code>true</code> if the buffer is empty; <code>false</code> if the timeout expired first
+     */
+    public boolean drain(long timeout) {
+        long deadline = System.nanoTime() + timeout * 1000000;
+        long h = head.get();
+        while(tail.get() < h && flushPosition < h) {
+            if(System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            try {
+                Thread.sleep(1);
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Total number of bytes written.
+     *
+     * @return bytes written
+     */
+    public long bytesWritten() {
+        return head.get();
+    }
+
+    /**
+     * Total number of bytes read, or discarded by a flush.
+     *
+     * @return bytes read or flushed
+     */
+    public long bytesRead() {
+        return tail.get();
+    }
+
+    /**
+     * Number of writes that did not fit in the buffer.
+     *
+     * @return overrun count
+     */
+    public long overruns() {
+        return overruns;
+    }
+
+    /**
+     * Number of bytes discarded because they did not fit in the buffer.
+     *
+     * @return overrun bytes
+     */
+    public long overrunBytes() {
+        return overrunBytes;
+    }
+
+    /**
+     * Number of times the consumer found the buffer empty after previously reading data.
+     *
+     * @return underrun count
+     */
+    public long underruns() {
+        return underruns;
+    }
+
+    /**
+     * Number of bytes discarded by flushes.
+     * <p>
+     * This is approximate, since the consumer may still be reading while the flush is requested.
+     *
+     * @return flushed bytes
+     */
+    public long flushedBytes() {
+        return flushedBytes;
+    }
+
+    /**
+     * Get the number of bytes to write, counting an overrun if they do not all fit.
+     *
+     * @param h write position
+     * @param length number of bytes to be written
+     * @param blockSize size of each sample block
+     * @return number of bytes that fit, a whole number of blocks if they do not all fit
+     */
+    private int writeCount(long h, int length, int blockSize) {
+        int space = capacity - (int) (h - tail.get());
+        int count = length;
+        if(count > space) {
+            count = space - space % blockSize;
+            overruns++;
+            overrunBytes += length - count;
+        }
+        return count;
+    }
+
+    private long skipFlushed() {
+        long t = tail.get();
+        long f = flushPosition;
+        if(f > t) {
+            tail.lazySet(f);
+            return f;
+        }
+        return t;
+    }
+
+    private void underflow() {
+        if(!empty) {
+            empty = true;
+            underruns++;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.directaudio;
+
+import java.nio.ByteBuffer;
+
+import uk.co.caprica.vlcj.binding.support.NativeBufferCopy;
+
+import com.sun.jna.Pointer;
+
+/**
+ * Implementation of an {@link AudioCallbackAdapter} that provides the native sample data as a
+ * {@link ByteBuffer}, assuming a known fixed block size.
+ * <p>
+ * The samples are copied, with a single bulk copy, into a heap buffer that is re-used for every
+ * play callback, so in the steady state no garbage is created. Unlike
+ * {@link DefaultAudioCallbackAdapter} no array is created for each play callback.
+ * <p>
+ * The buffer is only valid until {@link #onPlay(DirectAudioPlayer, ByteBuffer, int, long)} returns,
+ * it must not be kept or used by any other thread. The buffer has native byte order.
+ */
+public abstract class ByteBufferAudioCallbackAdapter extends AudioCallbackAdapter {
+
+    /**
+     * Fixed block size for each sample.
+     */
+    protected final int blockSize;
+
+    /**
+     * Re-usable copy of the native samples.
+     */
+    private final NativeBufferCopy copy = new NativeBufferCopy();
+
+    /**
+     * Create an audio callback.
+     *
+     * @param blockSize block size for each sample
+     */
+    public ByteBufferAudioCallbackAdapter(int blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public final void play(DirectAudioPlayer mediaPlayer, Pointer samples, int sampleCount, long pts) {
+        onPlay(mediaPlayer, copy.copyFrom(samples, sampleCount * blockSize), sampleCount, pts);
+    }
+
+    /**
+     * Template method to receive the decoded samples.
+     *
+     * @param mediaPlayer media player
+     * @param data sample data, only valid until this method returns
+     * @param sampleCount number of samples
+     * @param pts presentation time stamp
+     */
+    protected abstract void onPlay(DirectAudioPlayer mediaPlayer, ByteBuffer data, int sampleCount, long pts);
+}
@@ -19,25 +19,32 @@
 
 package uk.co.caprica.vlcj.player.directaudio;
 
+import java.nio.charset.Charset;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import uk.co.caprica.vlcj.binding.LibVlc;
+import uk.co.caprica.vlcj.binding.internal.libvlc_audio_cleanup_cb;
 import uk.co.caprica.vlcj.binding.internal.libvlc_audio_drain_cb;
 import uk.co.caprica.vlcj.binding.internal.libvlc_audio_flush_cb;
 import uk.co.caprica.vlcj.binding.internal.libvlc_audio_pause_cb;
 import uk.co.caprica.vlcj.binding.internal.libvlc_audio_play_cb;
 import uk.co.caprica.vlcj.binding.internal.libvlc_audio_resume_cb;
+import uk.co.caprica.vlcj.binding.internal.libvlc_audio_setup_cb;
 import uk.co.caprica.vlcj.binding.internal.libvlc_instance_t;
 import uk.co.caprica.vlcj.player.embedded.DefaultEmbeddedMediaPlayer;
 
 import com.sun.jna.Pointer;
+import com.sun.jna.ptr.IntByReference;
+import com.sun.jna.ptr.PointerByReference;
 
 /**
  * Media player implementation that provides direct access to the audio buffer data.
  * <p>
  * Client applications specify the decoded audio buffer format, the sample rate (in Hz) and the
- * number of audio channels.
+ * number of audio channels - or they negotiate the format with an {@link AudioFormatCallback}, which
+ * can accept the format of the decoded audio as it is and so avoid any conversion.
  * <p>
  * The standard format for the decoded audio is "S16N".
  * <p>
@@ -59,6 +66,11 @@ public class DefaultDirectAudioPlayer extends DefaultEmbeddedMediaPlayer impleme
      */
     private final Logger logger = LoggerFactory.getLogger(DefaultDirectAudioPlayer.class);
 
+    /**
+     * Character set of the native sample format.
+     */
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
     /**
      * Play callback.
      * <p>
@@ -99,11 +111,37 @@ public class DefaultDirectAudioPlayer extends DefaultEmbeddedMediaPlayer impleme
      */
     private final libvlc_audio_drain_cb drainCallback;
 
+    /**
+     * Setup callback, only used when the audio format is negotiated.
+     * <p>
+     * A hard reference to the callback must be kept otherwise the callback will get garbage
+     * collected and cause a native crash.
+     */
+    private final libvlc_audio_setup_cb setupCallback;
+
+    /**
+     * Cleanup callback, only used when the audio format is negotiated.
+     * <p>
+     * A hard reference to the callback must be kept otherwise the callback will get garbage
+     * collected and cause a native crash.
+     */
+    private final libvlc_audio_cleanup_cb cleanupCallback;
+
+    /**
+     * Component to call back to negotiate the audio format, may be <code>null</code>.
+     */
+    private final AudioFormatCallback audioFormatCallback;
+
     /**
      * Audio callback receives native callback events.
      */
     private final AudioCallback audioCallback;
 
+    /**
+     * Current audio format.
+     */
+    private volatile AudioBufferFormat audioFormat;
+
     /**
      * Create a direct audio player.
      *
@@ -116,16 +154,95 @@ public class DefaultDirectAudioPlayer extends DefaultEmbeddedMediaPlayer impleme
      */
     public DefaultDirectAudioPlayer(LibVlc libvlc, libvlc_instance_t instance, String format, int rate, int channels, AudioCallback audioCallback) {
         super(libvlc, instance);
+        this.audioFormatCallback = null;
         this.audioCallback = audioCallback;
+        this.audioFormat = new AudioBufferFormat(format, rate, channels);
         this.playCallback = new PlayCallback();
         this.pauseCallback = new PauseCallback();
         this.resumeCallback = new ResumeCallback();
         this.flushCallback = new FlushCallback();
         this.drainCallback = new DrainCallback();
+        this.setupCallback = null;
+        this.cleanupCallback = null;
         libvlc.libvlc_audio_set_format(mediaPlayerInstance(), format, rate, channels);
         libvlc.libvlc_audio_set_callbacks(mediaPlayerInstance(), playCallback, pauseCallback, resumeCallback, flushCallback, drainCallback, null);
     }
 
+    /**
+     * Create a direct audio player that negotiates the audio format.
+     * <p>
+     * The audio format callback is invoked each time the native library creates a new audio output,
+     * and may accept the decoded audio format as it is to avoid any conversion in the native
+     * library.
+     *
+     * @param libvlc native library instance
+     * @param instance libvlc instance
+     * @param audioFormatCallback audio format callback
+     * @param audioCallback audio callback
+     */
+    public DefaultDirectAudioPlayer(LibVlc libvlc, libvlc_instance_t instance, AudioFormatCallback audioFormatCallback, AudioCallback audioCallback) {
+        super(libvlc, instance);
+        if(audioFormatCallback == null) {
+            throw new IllegalArgumentException("audioFormatCallback can not be null");
+        }
+        this.audioFormatCallback = audioFormatCallback;
+        this.audioCallback = audioCallback;
+        this.playCallback = new PlayCallback();
+        this.pauseCallback = new PauseCallback();
+        this.resumeCallback = new ResumeCallback();
+        this.flushCallback = new FlushCallback();
+        this.drainCallback = new DrainCallback();
+        this.setupCallback = new SetupCallback();
+        this.cleanupCallback = new CleanupCallback();
+        libvlc.libvlc_audio_set_format_callbacks(mediaPlayerInstance(), setupCallback, cleanupCallback);
+        libvlc.libvlc_audio_set_callbacks(mediaPlayerInstance(), playCallback, pauseCallback, resumeCallback, flushCallback, drainCallback, null);
+    }
+
+    @Override
+    public final AudioBufferFormat getAudioFormat() {
+        return audioFormat;
+    }
+
+    /**
+     * Implementation of a callback invoked by the native library to set up the audio format.
+     * <p>
+     * The sample format is passed in and out via a native character buffer, so it is read and
+     * written directly rather than as a string.
+     */
+    private final class SetupCallback implements libvlc_audio_setup_cb {
+
+        @Override
+        public int setup(PointerByReference data, Pointer format, IntByReference rate, IntByReference channels) {
+            String sourceFormat = new String(format.getByteArray(0, 4), US_ASCII);
+            logger.debug("setup(format={},rate={},channels={})", sourceFormat, rate.getValue(), channels.getValue());
+            AudioBufferFormat result = audioFormatCallback.getAudioFormat(sourceFormat, rate.getValue(), channels.getValue());
+            if(result == null) {
+                logger.debug("audio rejected");
+                audioFormat = null;
+                return -1;
+            }
+            format.write(0, result.getFormat().getBytes(US_ASCII), 0, 4);
+            rate.setValue(result.getRate());
+            channels.setValue(result.getChannels());
+            audioFormat = result;
+            logger.debug("audioFormat={}", result);
+            return 0;
+        }
+    }
+
+    /**
+     * Implementation of a callback invoked by the native library when the audio output is
+     * destroyed.
+     */
+    private final class CleanupCallback implements libvlc_audio_cleanup_cb {
+
+        @Override
+        public void cleanup(Pointer data) {
+            logger.debug("cleanup()");
+            audioFormat = null;
+        }
+    }
+
     /**
      * Implementation of a callback invoked by the native library to play a series of samples.
      */
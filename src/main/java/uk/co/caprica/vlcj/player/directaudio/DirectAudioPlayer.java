@@ -30,4 +30,13 @@ import uk.co.caprica.vlcj.player.embedded.EmbeddedMediaPlayer;
  * JavaSound) to actually play the audio.
  */
 public interface DirectAudioPlayer extends EmbeddedMediaPlayer {
+
+    /**
+     * Get the current audio format.
+     * <p>
+     * If the audio format is negotiated, this is only available while there is an audio output.
+     *
+     * @return audio format, or <code>null</code> if there is none
+     */
+    AudioBufferFormat getAudioFormat();
 }
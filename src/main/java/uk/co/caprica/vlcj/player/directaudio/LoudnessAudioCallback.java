@@ -0,0 +1,614 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.directaudio;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import uk.co.caprica.vlcj.binding.support.NativeBufferCopy;
+
+import com.sun.jna.Pointer;
+
+/**
+ * An {@link AudioCallback} decorator that measures loudness the way ITU-R BS.1770 and EBU R128
+ * specify.
+ * <p>
+ * Each channel is passed through the two-stage K-weighting filter, and the weighted energy is
+ * summed in 100ms steps. From these steps the momentary (400ms) and short-term (3s) loudness are
+ * updated ten times a second, and every block is added to histograms from which the gated
+ * integrated loudness and the loudness range are found. The true peak is measured by 4x
+ * oversampling each channel with a polyphase interpolation filter.
+ * <p>
+ * Everything is done incrementally on the native audio thread, in pre-allocated arrays, so the
+ * measurement creates no garbage and never holds on to the samples. With a media player that
+ * decodes faster than real-time it is limited only by the speed of the filters.
+ * <p>
+ * When the audio is drained, at the end of the media, a {@link LoudnessResult} is created, made
+ * available from {@link #result()} and passed to the listener, if there is one. The measurement
+ * then carries on, e.g. for the next media item, unless it is {@link #reset()}.
+ * <p>
+ * The sample format must be either "S16N" or "FL32". By default every channel has a weight of
+ * one, except for six channels which are taken to be in the native library's order (left, right,
+ * left surround, right surround, centre, low frequency) - the surround channels then have a weight
+ * of 1.41 and the low frequency channel is ignored.
+ * <p>
+ * Every callback is passed on to the delegate audio callback, if there is one, after measuring.
+ */
+public class LoudnessAudioCallback implements AudioCallback {
+
+    /**
+     * Absolute gate, in LUFS.
+     */
+    private static final double ABSOLUTE_GATE = -70;
+
+    /**
+     * Upper limit of the histograms, in LUFS.
+     */
+    private static final double HISTOGRAM_MAXIMUM = 10;
+
+    /**
+     * Width of each histogram bin, in LU.
+     */
+    private static final double HISTOGRAM_RESOLUTION = 0.01;
+
+    private static final int HISTOGRAM_BINS = (int) Math.round((HISTOGRAM_MAXIMUM - ABSOLUTE_GATE) / HISTOGRAM_RESOLUTION);
+
+    /**
+     * Number of 100ms steps in a momentary block.
+     */
+    private static final int MOMENTARY_STEPS = 4;
+
+    /**
+     * Number of 100ms steps in a short-term block.
+     */
+    private static final int SHORT_TERM_STEPS = 30;
+
+    /**
+     * True peak oversampling factor.
+     */
+    private static final int OVERSAMPLING = 4;
+
+    /**
+     * True peak interpolation filter taps per phase.
+     */
+    private static final int TAPS = 12;
+
+    /**
+     * True peak interpolation filter cut-off, as a fraction of the Nyquist frequency.
+     */
+    private static final double CUTOFF = 0.9;
+
+    /**
+     * True peak interpolation filter, by phase then tap.
+     */
+    private static final double[][] INTERPOLATION = interpolationFilter();
+
+    /**
+     * Delegate audio callback, may be <code>null</code>.
+     */
+    private final AudioCallback delegate;
+
+    private final LoudnessListener listener;
+
+    private final boolean floatingPoint;
+
+    private final int channels;
+
+    private final int sampleSize;
+
+    private final double[] weights;
+
+    /**
+     * Number of samples (per channel) in each 100ms step.
+     */
+    private final int stepSamples;
+
+    /**
+     * Re-usable copy of the native samples.
+     */
+    private final NativeBufferCopy copy = new NativeBufferCopy();
+
+    // K-weighting filter coefficients, shelving stage then high-pass stage
+
+    private final double sb0, sb1, sb2, sa1, sa2;
+
+    private final double hb0, hb1, hb2, ha1, ha2;
+
+    // Measurement state, only used by the native audio thread
+
+    /**
+     * Filter state, two values per channel for each stage.
+     */
+    private final double[] shelfState;
+
+    private final double[] highPassState;
+
+    /**
+     * Recent input samples for each channel, each written twice so the taps never wrap.
+     */
+    private final double[][] history;
+
+    private int historyIndex;
+
+    private final double[] truePeak;
+
+    private final double[] samplePeak;
+
+    /**
+     * Weighted energy of the most recent 100ms steps.
+     */
+    private final double[] steps = new double[SHORT_TERM_STEPS];
+
+    private long stepCount;
+
+    private double stepEnergy;
+
+    private int stepSampleCount;
+
+    private long sampleCount;
+
+    private final long[] momentaryCounts = new long[HISTOGRAM_BINS];
+
+    private final double[] momentaryEnergy = new double[HISTOGRAM_BINS];
+
+    private final long[] shortTermCounts = new long[HISTOGRAM_BINS];
+
+    private final double[] shortTermEnergy = new double[HISTOGRAM_BINS];
+
+    private double maximumMomentary = Double.NEGATIVE_INFINITY;
+
+    private double maximumShortTerm = Double.NEGATIVE_INFINITY;
+
+    private volatile double momentaryLoudness = Double.NEGATIVE_INFINITY;
+
+    private volatile double shortTermLoudness = Double.NEGATIVE_INFINITY;
+
+    private volatile boolean resetRequested;
+
+    private volatile LoudnessResult result;
+
+    /**
+     * Create a loudness measuring audio callback with default channel weights.
+     *
+     * @param delegate audio callback to pass every callback on to, may be <code>null</code>
+     * @param format audio format, the sample format must be "S16N" or "FL32"
+     * @param listener listener to receive the result at the end of the media, may be <code>null</code>
+     */
+    public LoudnessAudioCallback(AudioCallback delegate, AudioBufferFormat format, LoudnessListener listener) {
+        this(delegate, format, listener, defaultWeights(format.getChannels()));
+    }
+
+    /**
+     * Create a loudness measuring audio callback.
+     *
+     * @param delegate audio callback to pass every callback on to, may be <code>null</code>
+     * @param format audio format, the sample format must be "S16N" or "FL32"
+     * @param listener listener to receive the result at the end of the media, may be <code>null</code>
+     * @param weights weight of each channel, e.g. 1.41 for a surround channel or zero to ignore a channel
+     */
+    public LoudnessAudioCallback(AudioCallback delegate, AudioBufferFormat format, LoudnessListener listener, double[] weights) {
+        if("S16N".equals(format.getFormat())) {
+            this.floatingPoint = false;
+        }
+        else if("FL32".equals(format.getFormat())) {
+            this.floatingPoint = true;
+        }
+        else {
+            throw new IllegalArgumentException("Unsupported sample format " + format.getFormat());
+        }
+        if(weights.length != format.getChannels()) {
+            throw new IllegalArgumentException("There must be one weight for each channel");
+        }
+        this.delegate = delegate;
+        this.listener = listener;
+        this.channels = format.getChannels();
+        this.sampleSize = format.getSampleSize();
+        this.weights = weights.clone();
+        this.stepSamples = Math.max(1, format.getRate() / 10);
+        double rate = format.getRate();
+        // Shelving filter, modelling the acoustic effect of the head
+        double k = Math.tan(Math.PI * 1681.974450955533 / rate);
+        double q = 0.7071752369554196;
+        double vh = Math.pow(10, 3.999843853973347 / 20);
+        double vb = Math.pow(vh, 0.4996667741545416);
+        double a0 = 1 + k / q + k * k;
+        this.sb0 = (vh + vb * k / q + k * k) / a0;
+        this.sb1 = 2 * (k * k - vh) / a0;
+        this.sb2 = (vh - vb * k / q + k * k) / a0;
+        this.sa1 = 2 * (k * k - 1) / a0;
+        this.sa2 = (1 - k / q + k * k) / a0;
+        // High-pass filter, the revised low-frequency B-weighting curve
+        k = Math.tan(Math.PI * 38.13547087602444 / rate);
+        q = 0.5003270373238773;
+        a0 = 1 + k / q + k * k;
+        this.hb0 = 1;
+        this.hb1 = -2;
+        this.hb2 = 1;
+        this.ha1 = 2 * (k * k - 1) / a0;
+        this.ha2 = (1 - k / q + k * k) / a0;
+        this.shelfState = new double[channels * 2];
+        this.highPassState = new double[channels * 2];
+        this.history = new double[channels][TAPS * 2];
+        this.truePeak = new double[channels];
+        this.samplePeak = new double[channels];
+    }
+
+    /**
+     * Get the result of the last drain.
+     *
+     * @return loudness result, or <code>null</code> if the audio has not been drained yet
+     */
+    public final LoudnessResult result() {
+        return result;
+    }
+
+    /**
+     * Get the loudness of the most recent 400ms.
+     *
+     * @return momentary loudness, in LUFS
+     */
+    public final double momentaryLoudness() {
+        return momentaryLoudness;
+    }
+
+    /**
+     * Get the loudness of the most recent three seconds.
+     *
+     * @return short-term loudness, in LUFS
+     */
+    public final double shortTermLoudness() {
+        return shortTermLoudness;
+    }
+
+    /**
+     * Start a new measurement.
+     * <p>
+     * May be invoked from any thread, the measurement is reset before the next samples are measured.
+     */
+    public final void reset() {
+        resetRequested = true;
+    }
+
+    @Override
+    public final void play(DirectAudioPlayer mediaPlayer, Pointer samples, int sampleCount, long pts) {
+        if(resetRequested) {
+            resetRequested = false;
+            clear();
+        }
+        measure(copy.copyFrom(samples, sampleCount * channels * sampleSize), sampleCount);
+        if(delegate != null) {
+            delegate.play(mediaPlayer, samples, sampleCount, pts);
+        }
+    }
+
+    @Override
+    public final void pause(DirectAudioPlayer mediaPlayer, long pts) {
+        if(delegate != null) {
+            delegate.pause(mediaPlayer, pts);
+        }
+    }
+
+    @Override
+    public final void resume(DirectAudioPlayer mediaPlayer, long pts) {
+        if(delegate != null) {
+            delegate.resume(mediaPlayer, pts);
+        }
+    }
+
+    @Override
+    public final void flush(DirectAudioPlayer mediaPlayer, long pts) {
+        if(delegate != null) {
+            delegate.flush(mediaPlayer, pts);
+        }
+    }
+
+    @Override
+    public final void drain(DirectAudioPlayer mediaPlayer) {
+        LoudnessResult result = new LoudnessResult(
+            sampleCount,
+            gatedLoudness(momentaryCounts, momentaryEnergy, -10),
+            loudnessRange(),
+            shortTermLoudness,
+            maximumMomentary,
+            maximumShortTerm,
+            decibels(truePeak),
+            decibels(samplePeak)
+        );
+        this.result = result;
+        if(listener != null) {
+            listener.loudness(this, result);
+        }
+        if(delegate != null) {
+            delegate.drain(mediaPlayer);
+        }
+    }
+
+    /**
+     * Measure a buffer of samples.
+     *
+     * @param data samples
+     * @param count number of samples per channel
+     */
+    private void measure(ByteBuffer data, int count) {
+        int index = 0;
+        for(int i = 0; i < count; i ++ ) {
+            double energy = 0;
+            int h = historyIndex;
+            for(int c = 0; c < channels; c ++ ) {
+                double x;
+                if(floatingPoint) {
+                    x = data.getFloat(index);
+                    index += 4;
+                }
+                else {
+                    x = data.getShort(index) / 32768.0;
+                    index += 2;
+                }
+                // Peaks
+                double[] samples = history[c];
+                samples[h] = x;
+                samples[h + TAPS] = x;
+                double peak = x < 0 ? -x : x;
+                if(peak > samplePeak[c]) {
+                    samplePeak[c] = peak;
+                }
+                if(peak > truePeak[c]) {
+                    truePeak[c] = peak;
+                }
+                for(int p = 1; p < OVERSAMPLING; p ++ ) {
+                    double[] filter = INTERPOLATION[p];
+                    double y = 0;
+                    for(int t = 0; t < TAPS; t ++ ) {
+                        y += filter[t] * samples[h + TAPS - t];
+                    }
+                    if(y < 0) {
+                        y = -y;
+                    }
+                    if(y > truePeak[c]) {
+                        truePeak[c] = y;
+                    }
+                }
+                // K-weighting, direct form II transposed
+                int s = c * 2;
+                double y = sb0 * x + shelfState[s];
+                shelfState[s] = sb1 * x - sa1 * y + shelfState[s + 1];
+                shelfState[s + 1] = sb2 * x - sa2 * y;
+                double z = hb0 * y + highPassState[s];
+                highPassState[s] = hb1 * y - ha1 * z + highPassState[s + 1];
+                highPassState[s + 1] = hb2 * y - ha2 * z;
+                energy += weights[c] * z * z;
+            }
+            historyIndex = h + 1 == TAPS ? 0 : h + 1;
+            stepEnergy += energy;
+            if(++stepSampleCount == stepSamples) {
+                step();
+            }
+        }
+        sampleCount += count;
+    }
+
+    /**
+     * Complete a 100ms step, and update the momentary and short-term loudness.
+     */
+    private void step() {
+        steps[(int) (stepCount % SHORT_TERM_STEPS)] = stepEnergy;
+        stepCount++;
+        stepEnergy = 0;
+        stepSampleCount = 0;
+        if(stepCount >= MOMENTARY_STEPS) {
+            double energy = blockEnergy(MOMENTARY_STEPS);
+            double loudness = loudness(energy);
+            momentaryLoudness = loudness;
+            maximumMomentary = Math.max(maximumMomentary, loudness);
+            addToHistogram(momentaryCounts, momentaryEnergy, loudness, energy);
+        }
+        if(stepCount >= SHORT_TERM_STEPS) {
+            double energy = blockEnergy(SHORT_TERM_STEPS);
+            double loudness = loudness(energy);
+            shortTermLoudness = loudness;
+            maximumShortTerm = Math.max(maximumShortTerm, loudness);
+            addToHistogram(shortTermCounts, shortTermEnergy, loudness, energy);
+        }
+    }
+
+    /**
+     * Get the mean weighted energy of the most recent steps.
+     *
+     * @param count number of steps
+     * @return mean energy per sample
+     */
+    private double blockEnergy(int count) {
+        double sum = 0;
+        for(int i = 1; i <= count; i ++ ) {
+            sum += steps[(int) ((stepCount - i) % SHORT_TERM_STEPS)];
+        }
+        return sum / ((long) count * stepSamples);
+    }
+
+    private static void addToHistogram(long[] counts, double[] energies, double loudness, double energy) {
+        if(loudness >= ABSOLUTE_GATE) {
+            int bin = Math.min(HISTOGRAM_BINS - 1, (int) ((loudness - ABSOLUTE_GATE) / HISTOGRAM_RESOLUTION));
+            counts[bin]++;
+            energies[bin] += energy;
+        }
+    }
+
+    /**
+     * Get the loudness of the blocks in a histogram, after the absolute and a relative gate.
+     *
+     * @param counts number of blocks in each bin
+     * @param energies total energy of the blocks in each bin
+     * @param relativeGate relative gate, in LU
+     * @return gated loudness, in LUFS
+     */
+    private static double gatedLoudness(long[] counts, double[] energies, double relativeGate) {
+        int first = relativeGateBin(counts, energies, relativeGate);
+        if(first < 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        long count = 0;
+        double energy = 0;
+        for(int i = first; i < HISTOGRAM_BINS; i ++ ) {
+            count += counts[i];
+            energy += energies[i];
+        }
+        return count > 0 ? loudness(energy / count) : Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Get the loudness range, from the short-term histogram.
+     *
+     * @return loudness range, in LU
+     */
+    private double loudnessRange() {
+        int first = relativeGateBin(shortTermCounts, shortTermEnergy, -20);
+        if(first < 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        long count = 0;
+        for(int i = first; i < HISTOGRAM_BINS; i ++ ) {
+            count += shortTermCounts[i];
+        }
+        if(count == 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        double low = percentile(first, count, 0.10);
+        double high = percentile(first, count, 0.95);
+        return high - low;
+    }
+
+    /**
+     * Get the loudness of a percentile of the gated short-term histogram.
+     *
+     * @param first first bin after the gate
+     * @param count number of blocks after the gate
+     * @param fraction percentile, as a fraction
+     * @return loudness at the percentile, in LUFS
+     */
+    private double percentile(int first, long count, double fraction) {
+        long target = (long) Math.ceil(count * fraction);
+        long seen = 0;
+        for(int i = first; i < HISTOGRAM_BINS; i ++ ) {
+            seen += shortTermCounts[i];
+            if(seen >= Math.max(1, target)) {
+                return ABSOLUTE_GATE + (i + 0.5) * HISTOGRAM_RESOLUTION;
+            }
+        }
+        return HISTOGRAM_MAXIMUM;
+    }
+
+    /**
+     * Get the first histogram bin at or above a relative gate.
+     *
+     * @param counts number of blocks in each bin
+     * @param energies total energy of the blocks in each bin
+     * @param relativeGate relative gate, in LU below the loudness of every block above the absolute gate
+     * @return first bin index, or -1 if no block is above the absolute gate
+     */
+    private static int relativeGateBin(long[] counts, double[] energies, double relativeGate) {
+        long count = 0;
+        double energy = 0;
+        for(int i = 0; i < HISTOGRAM_BINS; i ++ ) {
+            count += counts[i];
+            energy += energies[i];
+        }
+        if(count == 0) {
+            return -1;
+        }
+        double gate = loudness(energy / count) + relativeGate;
+        return Math.max(0, (int) Math.ceil((gate - ABSOLUTE_GATE) / HISTOGRAM_RESOLUTION));
+    }
+
+    private void clear() {
+        Arrays.fill(shelfState, 0);
+        Arrays.fill(highPassState, 0);
+        for(int c = 0; c < channels; c ++ ) {
+            Arrays.fill(history[c], 0);
+        }
+        Arrays.fill(truePeak, 0);
+        Arrays.fill(samplePeak, 0);
+        Arrays.fill(steps, 0);
+        Arrays.fill(momentaryCounts, 0);
+        Arrays.fill(momentaryEnergy, 0);
+        Arrays.fill(shortTermCounts, 0);
+        Arrays.fill(shortTermEnergy, 0);
+        historyIndex = 0;
+        stepCount = 0;
+        stepEnergy = 0;
+        stepSampleCount = 0;
+        sampleCount = 0;
+        maximumMomentary = Double.NEGATIVE_INFINITY;
+        maximumShortTerm = Double.NEGATIVE_INFINITY;
+        momentaryLoudness = Double.NEGATIVE_INFINITY;
+        shortTermLoudness = Double.NEGATIVE_INFINITY;
+    }
+
+    private static double loudness(double energy) {
+        return energy > 0 ? -0.691 + 10 * Math.log10(energy) : Double.NEGATIVE_INFINITY;
+    }
+
+    private static double[] decibels(double[] values) {
+        double[] result = new double[values.length];
+        for(int i = 0; i < values.length; i ++ ) {
+            result[i] = 20 * Math.log10(values[i]);
+        }
+        return result;
+    }
+
+    private static double[] defaultWeights(int channels) {
+        double[] weights = new double[channels];
+        Arrays.fill(weights, 1.0);
+        if(channels == 6) {
+            weights[2] = 1.41;
+            weights[3] = 1.41;
+            weights[5] = 0;
+        }
+        return weights;
+    }
+
+    /**
+     * Create the true peak interpolation filter, a windowed sinc split into one set of taps for each
+     * phase, each normalised to unity gain.
+     *
+     * @return filter taps, by phase
+     */
+    private static double[][] interpolationFilter() {
+        double[][] filter = new double[OVERSAMPLING][TAPS];
+        int length = OVERSAMPLING * TAPS;
+        int centre = length / 2;
+        for(int p = 0; p < OVERSAMPLING; p ++ ) {
+            double sum = 0;
+            for(int t = 0; t < TAPS; t ++ ) {
+                // Tap t of phase p applies to the sample t steps back, for a point p / OVERSAMPLING
+                // of a sample after the centre of the filter
+                double n = t * OVERSAMPLING + p - centre;
+                double x = Math.PI * CUTOFF * n / OVERSAMPLING;
+                double sinc = n == 0 ? 1 : Math.sin(x) / x;
+                double window = 0.5 + 0.5 * Math.cos(Math.PI * n / centre);
+                filter[p][t] = sinc * window;
+                sum += filter[p][t];
+            }
+            for(int t = 0; t < TAPS; t ++ ) {
+                filter[p][t] /= sum;
+            }
+        }
+        return filter;
+    }
+}
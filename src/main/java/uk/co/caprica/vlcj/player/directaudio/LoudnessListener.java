@@ -0,0 +1,38 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.directaudio;
+
+/**
+ * Specification for a component that is interested in the loudness measured by a
+ * {@link LoudnessAudioCallback}.
+ */
+public interface LoudnessListener {
+
+    /**
+     * Invoked when the audio has been drained, i.e. at the end of the media.
+     * <p>
+     * This is invoked by a <em>native</em> thread, before the drain is passed on to any delegate
+     * audio callback, and should return quickly.
+     *
+     * @param source callback that measured the loudness
+     * @param result loudness of all of the audio measured since the callback was created or reset
+     */
+    void loudness(LoudnessAudioCallback source, LoudnessResult result);
+}
@@ -0,0 +1,170 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.directaudio;
+
+/**
+ * Loudness measured by a {@link LoudnessAudioCallback}.
+ * <p>
+ * Loudness values are in LUFS, loudness range in LU and peak values in dB relative to full scale.
+ * A value that could not be measured, e.g. the integrated loudness of silence, is
+ * {@link Double#NEGATIVE_INFINITY}.
+ */
+public final class LoudnessResult {
+
+    private final long sampleCount;
+    private final double integratedLoudness;
+    private final double loudnessRange;
+    private final double shortTermLoudness;
+    private final double maximumMomentaryLoudness;
+    private final double maximumShortTermLoudness;
+    private final double[] truePeak;
+    private final double[] samplePeak;
+
+    LoudnessResult(long sampleCount, double integratedLoudness, double loudnessRange, double shortTermLoudness, double maximumMomentaryLoudness, double maximumShortTermLoudness, double[] truePeak, double[] samplePeak) {
+        this.sampleCount              = sampleCount;
+        this.integratedLoudness       = integratedLoudness;
+        this.loudnessRange            = loudnessRange;
+        this.shortTermLoudness        = shortTermLoudness;
+        this.maximumMomentaryLoudness = maximumMomentaryLoudness;
+        this.maximumShortTermLoudness = maximumShortTermLoudness;
+        this.truePeak                 = truePeak;
+        this.samplePeak               = samplePeak;
+    }
+
+    /**
+     * Number of samples (per channel) measured.
+     *
+     * @return sample count
+     */
+    public long sampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * Gated loudness of the whole programme.
+     *
+     * @return integrated loudness, in LUFS
+     */
+    public double integratedLoudness() {
+        return integratedLoudness;
+    }
+
+    /**
+     * Spread of the short-term loudness, between its 10th and 95th percentiles after gating.
+     *
+     * @return loudness range, in LU
+     */
+    public double loudnessRange() {
+        return loudnessRange;
+    }
+
+    /**
+     * Loudness of the last three seconds.
+     *
+     * @return short-term loudness, in LUFS
+     */
+    public double shortTermLoudness() {
+        return shortTermLoudness;
+    }
+
+    /**
+     * Highest loudness of any 400ms block.
+     *
+     * @return maximum momentary loudness, in LUFS
+     */
+    public double maximumMomentaryLoudness() {
+        return maximumMomentaryLoudness;
+    }
+
+    /**
+     * Highest loudness of any three second block.
+     *
+     * @return maximum short-term loudness, in LUFS
+     */
+    public double maximumShortTermLoudness() {
+        return maximumShortTermLoudness;
+    }
+
+    /**
+     * Number of channels.
+     *
+     * @return channel count
+     */
+    public int channels() {
+        return truePeak.length;
+    }
+
+    /**
+     * Highest true (inter-sample) peak of any channel.
+     *
+     * @return true peak, in dBTP
+     */
+    public double truePeak() {
+        return max(truePeak);
+    }
+
+    /**
+     * Highest true (inter-sample) peak of a channel.
+     *
+     * @param channel channel index
+     * @return true peak, in dBTP
+     */
+    public double truePeak(int channel) {
+        return truePeak[channel];
+    }
+
+    /**
+     * Highest sample peak of any channel.
+     *
+     * @return sample peak, in dBFS
+     */
+    public double samplePeak() {
+        return max(samplePeak);
+    }
+
+    /**
+     * Highest sample peak of a channel.
+     *
+     * @param channel channel index
+     * @return sample peak, in dBFS
+     */
+    public double samplePeak(int channel) {
+        return samplePeak[channel];
+    }
+
+    private static double max(double[] values) {
+        double result = Double.NEGATIVE_INFINITY;
+        for(double value : values) {
+            result = Math.max(result, value);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(120);
+        sb.append(getClass().getSimpleName()).append('[');
+        sb.append("integratedLoudness=").append(integratedLoudness).append(',');
+        sb.append("loudnessRange=").append(loudnessRange).append(',');
+        sb.append("maximumShortTermLoudness=").append(maximumShortTermLoudness).append(',');
+        sb.append("truePeak=").append(truePeak()).append(']');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.directaudio;
+
+import java.nio.ByteBuffer;
+
+import uk.co.caprica.vlcj.binding.support.NativeBufferCopy;
+
+import com.sun.jna.Pointer;
+
+/**
+ * An {@link AudioCallback} decorator that meters the audio passing through it.
+ * <p>
+ * For each channel the peak level, the RMS level and the number of clipped samples are measured
+ * incrementally over windows of a fixed number of samples. When a window completes, a snapshot of
+ * the levels is published and the next window begins. The samples are copied from native memory
+ * into a re-used array and no garbage is created for each buffer, only one small snapshot for each
+ * window, so metering can run on a large number of players at once.
+ * <p>
+ * Snapshots are immutable and are published without locks - {@link #levels(AudioLevels)} may be
+ * invoked from any thread at any time, and will never block the native audio thread.
+ * <p>
+ * The sample format must be either "S16N" (signed 16-bit, native byte order) or "FL32" (32-bit
+ * floating point, native byte order). A 16-bit sample is clipped if it is at either extreme, a
+ * floating point sample is clipped if its magnitude is one or more.
+ * <p>
+ * Every callback is passed on to the delegate audio callback, if there is one, after metering.
+ */
+public class MeteringAudioCallback implements AudioCallback {
+
+    /**
+     * Delegate audio callback, may be <code>null</code>.
+     */
+    private final AudioCallback delegate;
+
+    /**
+     * Are the samples floating point?
+     */
+    private final boolean floatingPoint;
+
+    private final int channels;
+
+    private final int sampleSize;
+
+    /**
+     * Number of samples, per channel, in each window.
+     */
+    private final int windowSamples;
+
+    /**
+     * Re-usable copy of the native samples.
+     */
+    private final NativeBufferCopy copy = new NativeBufferCopy();
+
+    // Accumulators for the current window, only used by the native audio thread
+
+    private final float[] windowPeak;
+
+    private final double[] windowSumSquares;
+
+    private final int[] windowClips;
+
+    private int windowCount;
+
+    /**
+     * Presentation time stamp of the buffer containing the first sample of the current window.
+     */
+    private long windowPts;
+
+    /**
+     * Number of clipped samples since metering started, only used by the native audio thread.
+     */
+    private final long[] totalClips;
+
+    private long sequence;
+
+    /**
+     * Most recently published snapshot.
+     */
+    private volatile Snapshot snapshot;
+
+    /**
+     * Create a metering audio callback.
+     *
+     * @param delegate audio callback to pass every callback on to, may be <code>null</code>
+     * @param format sample format, "S16N" or "FL32"
+     * @param channels number of channels
+     * @param windowSamples number of samples per channel in each window, e.g. one tenth of the sample rate for 100ms windows
+     */
+    public MeteringAudioCallback(AudioCallback delegate, String format, int channels, int windowSamples) {
+        if("S16N".equals(format)) {
+            this.floatingPoint = false;
+            this.sampleSize = 2;
+        }
+        else if("FL32".equals(format)) {
+            this.floatingPoint = true;
+            this.sampleSize = 4;
+        }
+        else {
+            throw new IllegalArgumentException("Unsupported sample format " + format);
+        }
+        if(channels < 1) {
+            throw new IllegalArgumentException("channels must be at least one");
+        }
+        if(windowSamples < 1) {
+            throw new IllegalArgumentException("windowSamples must be at least one");
+        }
+        this.delegate = delegate;
+        this.channels = channels;
+        this.windowSamples = windowSamples;
+        this.windowPeak = new float[channels];
+        this.windowSumSquares = new double[channels];
+        this.windowClips = new int[channels];
+        this.totalClips = new long[channels];
+        this.snapshot = new Snapshot(0, 0, new float[channels], new float[channels], new int[channels], new long[channels]);
+    }
+
+    /**
+     * Create a metering audio callback for a particular audio format.
+     *
+     * @param delegate audio callback to pass every callback on to, may be <code>null</code>
+     * @param format audio format, the sample format must be "S16N" or "FL32"
+     * @param windowMillis duration of each window, in milliseconds
+     */
+    public MeteringAudioCallback(AudioCallback delegate, AudioBufferFormat format, int windowMillis) {
+        this(delegate, format.getFormat(), format.getChannels(), Math.max(1, (int) ((long) format.getRate() * windowMillis / 1000)));
+    }
+
+    @Override
+    public final void play(DirectAudioPlayer mediaPlayer, Pointer samples, int sampleCount, long pts) {
+        meter(copy.copyFrom(samples, sampleCount * channels * sampleSize), sampleCount, pts);
+        if(delegate != null) {
+            delegate.play(mediaPlayer, samples, sampleCount, pts);
+        }
+    }
+
+    @Override
+    public final void pause(DirectAudioPlayer mediaPlayer, long pts) {
+        if(delegate != null) {
+            delegate.pause(mediaPlayer, pts);
+        }
+    }
+
+    @Override
+    public final void resume(DirectAudioPlayer mediaPlayer, long pts) {
+        if(delegate != null) {
+            delegate.resume(mediaPlayer, pts);
+        }
+    }
+
+    @Override
+    public final void flush(DirectAudioPlayer mediaPlayer, long pts) {
+        if(delegate != null) {
+            delegate.flush(mediaPlayer, pts);
+        }
+    }
+
+    @Override
+    public final void drain(DirectAudioPlayer mediaPlayer) {
+        if(delegate != null) {
+            delegate.drain(mediaPlayer);
+        }
+    }
+
+    /**
+     * Get the levels for the most recently completed window.
+     * <p>
+     * This never blocks and may be invoked from any thread.
+     *
+     * @param levels levels instance to fill
+     */
+    public final void levels(AudioLevels levels) {
+        Snapshot snapshot = this.snapshot;
+        levels.apply(channels, snapshot.sequence, snapshot.pts, snapshot.peak, snapshot.rms, snapshot.clips, snapshot.totalClips);
+    }
+
+    /**
+     * Meter a buffer of samples.
+     *
+     * @param data samples
+     * @param sampleCount number of samples per channel
+     * @param pts presentation time stamp
+     */
+    private void meter(ByteBuffer data, int sampleCount, long pts) {
+        int index = 0;
+        for(int i = 0; i < sampleCount; i ++ ) {
+            if(windowCount == 0) {
+                windowPts = pts;
+            }
+            for(int c = 0; c < channels; c ++ ) {
+                float value;
+                boolean clipped;
+                if(floatingPoint) {
+                    value = data.getFloat(index);
+                    index += 4;
+                    if(value < 0) {
+                        value = -value;
+                    }
+                    clipped = value >= 1.0f;
+                }
+                else {
+                    short sample = data.getShort(index);
+                    index += 2;
+                    clipped = sample == Short.MAX_VALUE || sample == Short.MIN_VALUE;
+                    value = (sample < 0 ? -sample : sample) / 32768f;
+                }
+                if(value > windowPeak[c]) {
+                    windowPeak[c] = value;
+                }
+                windowSumSquares[c] += value * value;
+                if(clipped) {
+                    windowClips[c]++;
+                }
+            }
+            if(++windowCount == windowSamples) {
+                publish();
+            }
+        }
+    }
+
+    /**
+     * Publish the current window and start the next.
+     */
+    private void publish() {
+        float[] peak = new float[channels];
+        float[] rms = new float[channels];
+        int[] clips = new int[channels];
+        for(int c = 0; c < channels; c ++ ) {
+            peak[c] = windowPeak[c];
+            rms[c] = (float) Math.sqrt(windowSumSquares[c] / windowCount);
+            clips[c] = windowClips[c];
+            totalClips[c] += windowClips[c];
+            windowPeak[c] = 0;
+            windowSumSquares[c] = 0;
+            windowClips[c] = 0;
+        }
+        snapshot = new Snapshot(++sequence, windowPts, peak, rms, clips, totalClips.clone());
+        windowCount = 0;
+    }
+
+    /**
+     * Immutable levels for one window.
+     */
+    private static final class Snapshot {
+
+        private final long sequence;
+
+        private final long pts;
+
+        private final float[] peak;
+
+        private final float[] rms;
+
+        private final int[] clips;
+
+        private final long[] totalClips;
+
+        private Snapshot(long sequence, long pts, float[] peak, float[] rms, int[] clips, long[] totalClips) {
+            this.sequence = sequence;
+            this.pts = pts;
+            this.peak = peak;
+            this.rms = rms;
+            this.clips = clips;
+            this.totalClips = totalClips;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.directaudio;
+
+/**
+ * Audio format callback that keeps the sample rate and number of channels of the decoded audio,
+ * optionally converting only the sample format.
+ * <p>
+ * With no sample format, the decoded audio is delivered exactly as it is, so the native library does
+ * no conversion at all. Fixing the sample format, e.g. to "S16N" or "FL32", still avoids any
+ * resampling or remixing while giving the application a sample format it knows how to handle.
+ */
+public class NativeAudioFormatCallback implements AudioFormatCallback {
+
+    /**
+     * Sample format to convert to, or <code>null</code> to keep the decoded sample format.
+     */
+    private final String format;
+
+    /**
+     * Create an audio format callback that accepts the decoded audio format unchanged.
+     */
+    public NativeAudioFormatCallback() {
+        this(null);
+    }
+
+    /**
+     * Create an audio format callback that converts only the sample format.
+     *
+     * @param format sample format, or <code>null</code> to keep the decoded sample format
+     */
+    public NativeAudioFormatCallback(String format) {
+        this.format = format;
+    }
+
+    @Override
+    public AudioBufferFormat getAudioFormat(String sourceFormat, int sourceRate, int sourceChannels) {
+        return new AudioBufferFormat(format != null ? format : sourceFormat, sourceRate, sourceChannels);
+    }
+}
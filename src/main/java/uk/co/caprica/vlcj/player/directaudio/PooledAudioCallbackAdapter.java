@@ -0,0 +1,134 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.directaudio;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+import com.sun.jna.Pointer;
+
+/**
+ * Implementation of an {@link AudioCallbackAdapter} that copies the native sample data into pooled
+ * <code>byte[]</code> arrays, assuming a known fixed block size.
+ * <p>
+ * This is for applications that need the samples in a heap array, e.g. to pass to Java Sound or to
+ * hand off to another thread. Unlike {@link DefaultAudioCallbackAdapter} a new array is not created
+ * for each play callback, arrays are instead taken from a pool and must be returned to it by
+ * {@link #release(byte[])} when the application has finished with them. Returning the array may be
+ * done from any thread, either before {@link #onPlay(DirectAudioPlayer, byte[], int, int, long)}
+ * returns or at some later time.
+ * <p>
+ * The arrays may be larger than the sample data, the number of valid bytes is passed with each
+ * array. A new array is only created if the pool is empty or the pooled array is too small, so
+ * once the pool has warmed up no garbage is created.
+ */
+public abstract class PooledAudioCallbackAdapter extends AudioCallbackAdapter {
+
+    /**
+     * Default number of arrays to keep in the pool.
+     */
+    private static final int DEFAULT_POOL_SIZE = 8;
+
+    /**
+     * Fixed block size for each sample.
+     */
+    protected final int blockSize;
+
+    /**
+     * Arrays available for re-use.
+     */
+    private final ArrayBlockingQueue<byte[]> pool;
+
+    /**
+     * Number of arrays that had to be created.
+     */
+    private volatile long allocations;
+
+    /**
+     * Create an audio callback with a default pool size.
+     *
+     * @param blockSize block size for each sample
+     */
+    public PooledAudioCallbackAdapter(int blockSize) {
+        this(blockSize, DEFAULT_POOL_SIZE);
+    }
+
+    /**
+     * Create an audio callback.
+     *
+     * @param blockSize block size for each sample
+     * @param poolSize maximum number of arrays to keep in the pool
+     */
+    public PooledAudioCallbackAdapter(int blockSize, int poolSize) {
+        if(poolSize < 1) {
+            throw new IllegalArgumentException("poolSize must be at least one");
+        }
+        this.blockSize = blockSize;
+        this.pool = new ArrayBlockingQueue<byte[]>(poolSize);
+    }
+
+    @Override
+    public final void play(DirectAudioPlayer mediaPlayer, Pointer samples, int sampleCount, long pts) {
+        int length = sampleCount * blockSize;
+        byte[] data = pool.poll();
+        if(data == null || data.length < length) {
+            data = new byte[length];
+            allocations++;
+        }
+        samples.read(0, data, 0, length);
+        onPlay(mediaPlayer, data, length, sampleCount, pts);
+    }
+
+    /**
+     * Return an array to the pool.
+     * <p>
+     * The array must not be used after it has been returned. If the pool is already full, the
+     * array is discarded.
+     *
+     * @param data array previously passed to {@link #onPlay(DirectAudioPlayer, byte[], int, int, long)}
+     */
+    public final void release(byte[] data) {
+        pool.offer(data);
+    }
+
+    /**
+     * Get the number of arrays that have been created because none was available in the pool.
+     * <p>
+     * If this value increases steadily, arrays are not being released or the pool is too small.
+     *
+     * @return number of arrays created
+     */
+    public final long allocations() {
+        return allocations;
+    }
+
+    /**
+     * Template method to receive the decoded samples.
+     * <p>
+     * The array must be returned to the pool by {@link #release(byte[])} when it is no longer
+     * needed.
+     *
+     * @param mediaPlayer media player
+     * @param data sample data, may be larger than the number of valid bytes
+     * @param length number of valid bytes in the sample data
+     * @param sampleCount number of samples
+     * @param pts presentation time stamp
+     */
+    protected abstract void onPlay(DirectAudioPlayer mediaPlayer, byte[] data, int length, int sampleCount, long pts);
+}
@@ -0,0 +1,482 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+package uk.co.caprica.vlcj.player.directaudio;
+
+import uk.co.caprica.vlcj.binding.internal.libvlc_media_t;
+import uk.co.caprica.vlcj.factory.MediaPlayerFactory;
+import uk.co.caprica.vlcj.player.MediaPlayerEventAdapter;
+import uk.co.caprica.vlcj.player.MediaPlayerEventListener;
+import uk.co.caprica.vlcj.player.base.MediaPlayer;
+
+import com.sun.jna.Pointer;
+
+/**
+ * An {@link AudioCallback} decorator that keeps track of the current media time, so that it can be
+ * asked for as often as needed without calling the native library.
+ * <p>
+ * The presentation time stamp passed with each buffer of samples is the native clock time (see
+ * {@link uk.co.caprica.vlcj.factory.ApplicationService#clock()}) at which the first of those
+ * samples will be heard. The offset between the native clock and {@link System#nanoTime()} is
+ * measured once, when the clock first needs it and again after each flush, so from then on the
+ * amount of audio that has been presented at any moment can be worked out in Java alone.
+ * <p>
+ * The media time itself comes from the time changed events sent by the media player, which are
+ * delivered anyway and need no polling - the listener returned by {@link #eventListener()} must be
+ * added to the media player for this. Each event anchors the media time to the audio timeline,
+ * between events {@link #time()} interpolates along that timeline. Small differences between the
+ * interpolated and reported times are corrected gradually so the time does not jitter, large ones
+ * (e.g. after a seek) immediately.
+ * <p>
+ * Because the audio timeline never runs past the end of the samples actually received, the time
+ * stops if the audio stalls, and it stops while the audio is paused. After a flush, the time is
+ * held at its last value until the media player reports a new one, or {@link #sync(long)} is
+ * invoked. Before any audio has been received, e.g. while the media is starting, the time is
+ * interpolated from the system clock instead.
+ * <p>
+ * The native library does not report changes to the playback rate, so {@link #setRate(float)}
+ * should be invoked whenever the rate of the media player is changed.
+ * <p>
+ * Every callback is passed on to the delegate audio callback, if there is one.
+ * <p>
+ * For example:
+ * <pre>
+ * PresentationClock clock = new PresentationClock(factory, audioCallback, format);
+ * DirectAudioPlayer mediaPlayer = factory.mediaPlayers().newDirectAudioPlayer(format.getFormat(), format.getRate(), format.getChannels(), clock);
+ * mediaPlayer.events().addMediaPlayerEventListener(clock.eventListener());
+ * ...
+ * long time = clock.time();
+ * </pre>
+ */
+public class PresentationClock implements AudioCallback {
+
+    /**
+     * Difference between the reported and interpolated media times, in microseconds, above which
+     * the media time is corrected immediately rather than gradually.
+     */
+    private static final long RESYNC_THRESHOLD = 250000;
+
+    /**
+     * Fraction of a small difference between the reported and interpolated media times that is
+     * corrected with each time changed event.
+     */
+    private static final int SLEW_DIVISOR = 8;
+
+    /**
+     * Difference between the expected and actual presentation time stamps, in microseconds, above
+     * which the audio timeline is restarted.
+     */
+    private static final long DISCONTINUITY_THRESHOLD = 20000;
+
+    /**
+     * Number of attempts made to measure the offset between the native clock and the system clock,
+     * the attempt that took the least time is used.
+     */
+    private static final int CALIBRATION_ROUNDS = 5;
+
+    private final MediaPlayerFactory factory;
+
+    /**
+     * Delegate audio callback, may be <code>null</code>.
+     */
+    private final AudioCallback delegate;
+
+    /**
+     * Sample rate, in Hz.
+     */
+    private final int rate;
+
+    private final MediaPlayerEventListener eventListener = new ClockEventListener();
+
+    // Clock state, guarded by this - all times are in microseconds
+
+    private boolean calibrated;
+
+    /**
+     * Native clock time minus system clock time.
+     */
+    private long clockOffset;
+
+    /**
+     * Is the audio timeline in use, rather than the system clock?
+     */
+    private boolean audio;
+
+    /**
+     * Native clock time at which the first sample of the audio timeline is presented.
+     */
+    private long audioOrigin;
+
+    /**
+     * Number of samples received since the audio timeline started.
+     */
+    private long audioSamples;
+
+    /**
+     * Has the media time ever been known since the media started?
+     */
+    private boolean known;
+
+    /**
+     * Is the media time anchored to the current timeline?
+     */
+    private boolean anchored;
+
+    /**
+     * Media time at the anchor point.
+     */
+    private long anchorTime;
+
+    /**
+     * Timeline position at the anchor point.
+     */
+    private long anchorTimeline;
+
+    private boolean paused;
+
+    /**
+     * Media time while the clock is not running, i.e. paused or not anchored.
+     */
+    private long frozenTime;
+
+    private float playbackRate = 1.0f;
+
+    private volatile long resyncs;
+
+    /**
+     * Create a presentation clock.
+     *
+     * @param factory factory used to read the native clock
+     * @param delegate audio callback to pass every callback on to, may be <code>null</code>
+     * @param format audio format
+     */
+    public PresentationClock(MediaPlayerFactory factory, AudioCallback delegate, AudioBufferFormat format) {
+        this.factory = factory;
+        this.delegate = delegate;
+        this.rate = format.getRate();
+    }
+
+    /**
+     * Get the media player event listener that provides the media time to this clock.
+     * <p>
+     * The listener must be added to the media player.
+     *
+     * @return event listener
+     */
+    public final MediaPlayerEventListener eventListener() {
+        return eventListener;
+    }
+
+    /**
+     * Get the current media time.
+     * <p>
+     * This does not call the native library and may be invoked from any thread.
+     *
+     * @return media time, in milliseconds, or -1 if the media time is not known yet
+     */
+    public final synchronized long time() {
+        if(!known) {
+            return -1;
+        }
+        long time = calibrated ? mediaTime(System.nanoTime() / 1000 + clockOffset) : frozenTime;
+        return Math.max(0, time / 1000);
+    }
+
+    /**
+     * Set the media time.
+     * <p>
+     * This may be used when the application already knows the new media time, e.g. after setting it,
+     * rather than waiting for the media player to report it.
+     *
+     * @param time media time, in milliseconds
+     */
+    public final synchronized void sync(long time) {
+        anchor(time * 1000);
+    }
+
+    /**
+     * Set the playback rate.
+     * <p>
+     * This should be invoked whenever the rate of the media player is changed.
+     *
+     * @param rate playback rate, where 1.0 is normal speed
+     */
+    public final synchronized void setRate(float rate) {
+        if(rate <= 0) {
+            throw new IllegalArgumentException("rate must be greater than zero");
+        }
+        if(anchored && calibrated) {
+            long now = now();
+            anchorTime = mediaTime(now);
+            anchorTimeline = timeline(now);
+        }
+        this.playbackRate = rate;
+    }
+
+    /**
+     * Get the playback rate.
+     *
+     * @return playback rate
+     */
+    public final synchronized float getRate() {
+        return playbackRate;
+    }
+
+    /**
+     * Is the clock paused?
+     *
+     * @return <code>true</code> if the audio is paused; <code>false</code> if it is not
+     */
+    public final synchronized boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Is the clock anchored to a media time reported since the last flush?
+     *
+     * @return <code>true</code> if the time is being interpolated; <code>false</code> if it is being held
+     */
+    public final synchronized boolean isSynchronised() {
+        return anchored;
+    }
+
+    /**
+     * Number of times the media time was corrected immediately, because the reported time was too
+     * far from the interpolated time.
+     *
+     * @return resync count
+     */
+    public final long resyncs() {
+        return resyncs;
+    }
+
+    /**
+     * Read the native clock.
+     * <p>
+     * This is only invoked when the offset between the native clock and the system clock is
+     * measured, never by {@link #time()}.
+     *
+     * @return native clock time, in microseconds
+     */
+    protected long nativeClock() {
+        return factory.application().clock();
+    }
+
+    @Override
+    public final void play(DirectAudioPlayer mediaPlayer, Pointer samples, int sampleCount, long pts) {
+        synchronized(this) {
+            long now = now();
+            // Samples that were dropped or inserted by the native library restart the timeline
+            if(!audio || Math.abs(pts - (audioOrigin + audioSamples * 1000000 / rate)) > DISCONTINUITY_THRESHOLD) {
+                if(anchored && !paused) {
+                    anchorTime = mediaTime(now);
+                }
+                audio = true;
+                audioOrigin = pts;
+                audioSamples = sampleCount;
+                anchorTimeline = timeline(now);
+            }
+            else {
+                audioSamples += sampleCount;
+            }
+        }
+        if(delegate != null) {
+            delegate.play(mediaPlayer, samples, sampleCount, pts);
+        }
+    }
+
+    @Override
+    public final void pause(DirectAudioPlayer mediaPlayer, long pts) {
+        synchronized(this) {
+            if(!paused) {
+                frozenTime = mediaTime(now());
+                paused = true;
+            }
+        }
+        if(delegate != null) {
+            delegate.pause(mediaPlayer, pts);
+        }
+    }
+
+    @Override
+    public final void resume(DirectAudioPlayer mediaPlayer, long pts) {
+        synchronized(this) {
+            if(paused) {
+                paused = false;
+                audio = false;
+                anchorTime = frozenTime;
+                anchorTimeline = timeline(now());
+            }
+        }
+        if(delegate != null) {
+            delegate.resume(mediaPlayer, pts);
+        }
+    }
+
+    @Override
+    public final void flush(DirectAudioPlayer mediaPlayer, long pts) {
+        synchronized(this) {
+            frozenTime = mediaTime(now());
+            anchored = false;
+            audio = false;
+            // Measure the clock offset again before the next timeline starts
+            calibrated = false;
+        }
+        if(delegate != null) {
+            delegate.flush(mediaPlayer, pts);
+        }
+    }
+
+    @Override
+    public final void drain(DirectAudioPlayer mediaPlayer) {
+        if(delegate != null) {
+            delegate.drain(mediaPlayer);
+        }
+    }
+
+    /**
+     * Anchor the media time to the current timeline.
+     *
+     * @param time media time, in microseconds
+     */
+    private void anchor(long time) {
+        long now = now();
+        if(paused) {
+            frozenTime = time;
+        }
+        anchorTime = time;
+        anchorTimeline = timeline(now);
+        anchored = true;
+        known = true;
+    }
+
+    /**
+     * Apply a media time reported by the media player.
+     *
+     * @param time media time, in microseconds
+     */
+    private synchronized void reported(long time) {
+        if(!anchored || paused) {
+            anchor(time);
+            return;
+        }
+        long error = time - mediaTime(now());
+        if(Math.abs(error) > RESYNC_THRESHOLD) {
+            anchorTime += error;
+            resyncs++;
+        }
+        else {
+            anchorTime += error / SLEW_DIVISOR;
+        }
+    }
+
+    private synchronized void reset() {
+        known = false;
+        anchored = false;
+        audio = false;
+        paused = false;
+        frozenTime = 0;
+    }
+
+    /**
+     * Get the media time at a particular native clock time.
+     *
+     * @param now native clock time
+     * @return media time
+     */
+    private long mediaTime(long now) {
+        if(!anchored || paused) {
+            return frozenTime;
+        }
+        return anchorTime + (long) ((timeline(now) - anchorTimeline) * playbackRate);
+    }
+
+    /**
+     * Get the position on the current timeline at a particular native clock time.
+     * <p>
+     * The audio timeline is the amount of audio that has been presented, so it does not move until
+     * the first sample is presented and never exceeds the amount of audio received.
+     *
+     * @param now native clock time
+     * @return timeline position
+     */
+    private long timeline(long now) {
+        if(audio) {
+            return Math.max(0, Math.min(now - audioOrigin, audioSamples * 1000000 / rate));
+        }
+        return now;
+    }
+
+    /**
+     * Get the current native clock time, measuring the clock offset first if necessary.
+     *
+     * @return native clock time
+     */
+    private long now() {
+        if(!calibrated) {
+            calibrate();
+        }
+        return System.nanoTime() / 1000 + clockOffset;
+    }
+
+    private void calibrate() {
+        long best = Long.MAX_VALUE;
+        for(int i = 0; i < CALIBRATION_ROUNDS; i ++ ) {
+            long before = System.nanoTime();
+            long clock = nativeClock();
+            long after = System.nanoTime();
+            if(after - before < best) {
+                best = after - before;
+                clockOffset = clock - (before / 1000 + (after - before) / 2000);
+            }
+        }
+        calibrated = true;
+    }
+
+    @Override
+    public final String toString() {
+        StringBuilder sb = new StringBuilder(60);
+        sb.append(getClass().getSimpleName()).append('[');
+        sb.append("time=").append(time()).append(',');
+        sb.append("rate=").append(getRate()).append(',');
+        sb.append("paused=").append(isPaused()).append(',');
+        sb.append("synchronised=").append(isSynchronised()).append(']');
+        return sb.toString();
+    }
+
+    /**
+     * Receives the media time from the media player.
+     */
+    private final class ClockEventListener extends MediaPlayerEventAdapter {
+
+        @Override
+        public void mediaChanged(MediaPlayer mediaPlayer, libvlc_media_t media) {
+            reset();
+        }
+
+        @Override
+        public void timeChanged(MediaPlayer mediaPlayer, long newTime) {
+            reported(newTime * 1000);
+        }
+
+        @Override
+        public void stopped(MediaPlayer mediaPlayer) {
+            reset();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.directaudio;
+
+/**
+ * Fast Fourier transform of real-valued data.
+ * <p>
+ * A real sequence of N values is packed into a complex sequence of N/2 values, transformed with an
+ * iterative radix-2 complex FFT, and then separated into the first N/2+1 bins of the spectrum - half
+ * the work of a complex transform of the same size.
+ * <p>
+ * All tables and work arrays are allocated up front, a transform creates no garbage. An instance
+ * must only be used by one thread at a time.
+ */
+final class RealFft {
+
+    private final int size;
+
+    /**
+     * Size of the complex transform.
+     */
+    private final int half;
+
+    private final int[] bitReverse;
+
+    /**
+     * Twiddle factors for the complex transform.
+     */
+    private final float[] cos;
+
+    private final float[] sin;
+
+    /**
+     * Twiddle factors for separating the real spectrum.
+     */
+    private final float[] realCos;
+
+    private final float[] realSin;
+
+    private final float[] re;
+
+    private final float[] im;
+
+    /**
+     * Create a transform.
+     *
+     * @param size number of real input values, a power of two, at least 4
+     */
+    RealFft(int size) {
+        if(size < 4 || (size & (size - 1)) != 0) {
+            throw new IllegalArgumentException("size must be a power of two, at least 4");
+        }
+        this.size = size;
+        this.half = size / 2;
+        this.bitReverse = new int[half];
+        int bits = Integer.numberOfTrailingZeros(half);
+        for(int i = 0; i < half; i ++ ) {
+            bitReverse[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+        this.cos = new float[half / 2];
+        this.sin = new float[half / 2];
+        for(int i = 0; i < half / 2; i ++ ) {
+            double angle = 2 * Math.PI * i / half;
+            cos[i] = (float) Math.cos(angle);
+            sin[i] = (float) Math.sin(angle);
+        }
+        this.realCos = new float[half + 1];
+        this.realSin = new float[half + 1];
+        for(int i = 0; i <= half; i ++ ) {
+            double angle = 2 * Math.PI * i / size;
+            realCos[i] = (float) Math.cos(angle);
+            realSin[i] = (float) Math.sin(angle);
+        }
+        this.re = new float[half];
+        this.im = new float[half];
+    }
+
+    /**
+     * Get the number of real input values.
+     *
+     * @return size
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Transform real values and compute the magnitude of each frequency bin.
+     *
+     * @param input real input values, at least {@link #size()} of them, not modified
+     * @param magnitudes array to receive the magnitudes of bins zero to N/2 inclusive
+     */
+    void magnitudes(float[] input, float[] magnitudes) {
+        for(int i = 0; i < half; i ++ ) {
+            int j = bitReverse[i];
+            re[j] = input[2 * i];
+            im[j] = input[2 * i + 1];
+        }
+        for(int length = 2; length <= half; length <<= 1) {
+            int halfLength = length >> 1;
+            int step = half / length;
+            for(int start = 0; start < half; start += length) {
+                for(int k = 0; k < halfLength; k ++ ) {
+                    float wr = cos[k * step];
+                    float wi = -sin[k * step];
+                    int a = start + k;
+                    int b = a + halfLength;
+                    float tr = re[b] * wr - im[b] * wi;
+                    float ti = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+        for(int k = 0; k <= half; k ++ ) {
+            int p = k == half ? 0 : k;
+            int q = k == 0 ? 0 : half - k;
+            float a = re[p];
+            float b = im[p];
+            float c = re[q];
+            float d = im[q];
+            // Even and odd parts of the spectrum
+            float er = (a + c) * 0.5f;
+            float ei = (b - d) * 0.5f;
+            float or = (b + d) * 0.5f;
+            float oi = (c - a) * 0.5f;
+            float wr = realCos[k];
+            float wi = -realSin[k];
+            float xr = er + wr * or - wi * oi;
+            float xi = ei + wr * oi + wi * or;
+            magnitudes[k] = (float) Math.sqrt(xr * xr + xi * xi);
+        }
+    }
+}
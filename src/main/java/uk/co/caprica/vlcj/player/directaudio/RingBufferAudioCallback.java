@@ -0,0 +1,214 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.directaudio;
+
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.jna.Pointer;
+
+/**
+ * Implementation of an {@link AudioCallback} that decouples the native audio thread from the
+ * application via an {@link AudioRingBuffer}.
+ * <p>
+ * The play callback only copies the samples into the ring buffer and returns immediately. A
+ * dedicated consumer thread reads the samples back out and passes them to
+ * {@link #onSamples(byte[], int)}, which is free to block, e.g. writing to a Java Sound line or a
+ * network socket, without stalling the native audio output or disturbing its clock.
+ * <p>
+ * The flush callback discards any samples not yet consumed, and the drain callback waits (up to a
+ * time limit) for the consumer to finish the samples already written. While paused, the consumer
+ * thread stops reading.
+ * <p>
+ * The consumer thread must be started with {@link #start()} before the media is played, and
+ * should be stopped with {@link #stop()} when the media player is released.
+ */
+public abstract class RingBufferAudioCallback extends AudioCallbackAdapter implements Runnable {
+
+    /**
+     * Default time to wait for the consumer to drain the buffer, in milliseconds.
+     */
+    private static final long DEFAULT_DRAIN_TIMEOUT = 2000;
+
+    /**
+     * Time the consumer thread waits when there is nothing to read, in nanoseconds.
+     */
+    private static final long IDLE_WAIT = 1000000;
+
+    /**
+     * Log.
+     */
+    private final Logger logger = LoggerFactory.getLogger(RingBufferAudioCallback.class);
+
+    /**
+     * Fixed block size for each sample.
+     */
+    protected final int blockSize;
+
+    private final AudioRingBuffer ringBuffer;
+
+    /**
+     * Array used by the consumer thread to read samples.
+     */
+    private final byte[] chunk;
+
+    private final long drainTimeout;
+
+    private volatile boolean paused;
+
+    private volatile boolean running;
+
+    private volatile Thread thread;
+
+    /**
+     * Create an audio callback.
+     *
+     * @param blockSize block size for each sample
+     * @param capacity capacity of the ring buffer in bytes, must be a power of two
+     * @param chunkSize maximum number of bytes passed to each invocation of {@link #onSamples(byte[], int)}
+     */
+    public RingBufferAudioCallback(int blockSize, int capacity, int chunkSize) {
+        this(blockSize, capacity, chunkSize, DEFAULT_DRAIN_TIMEOUT);
+    }
+
+    /**
+     * Create an audio callback.
+     *
+     * @param blockSize block size for each sample
+     * @param capacity capacity of the ring buffer in bytes, must be a power of two
+     * @param chunkSize maximum number of bytes passed to each invocation of {@link #onSamples(byte[], int)}
+     * @param drainTimeout maximum time to wait for the consumer when the buffer is drained, in milliseconds
+     */
+    public RingBufferAudioCallback(int blockSize, int capacity, int chunkSize, long drainTimeout) {
+        if(blockSize < 1) {
+            throw new IllegalArgumentException("blockSize must be at least one");
+        }
+        if(chunkSize < blockSize) {
+            throw new IllegalArgumentException("chunkSize must be at least one block");
+        }
+        this.blockSize = blockSize;
+        this.ringBuffer = new AudioRingBuffer(capacity);
+        // Always read whole sample blocks
+        this.chunk = new byte[chunkSize - chunkSize % blockSize];
+        this.drainTimeout = drainTimeout;
+    }
+
+    /**
+     * Get the ring buffer, e.g. to inspect its counters.
+     *
+     * @return ring buffer
+     */
+    public final AudioRingBuffer ringBuffer() {
+        return ringBuffer;
+    }
+
+    /**
+     * Start the consumer thread.
+     */
+    public final synchronized void start() {
+        if(thread == null) {
+            running = true;
+            thread = new Thread(this, "vlcj-audio-consumer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stop the consumer thread.
+     * <p>
+     * Any samples still in the buffer are not consumed.
+     */
+    public final synchronized void stop() {
+        if(thread != null) {
+            running = false;
+            LockSupport.unpark(thread);
+            try {
+                thread.join(5000);
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    @Override
+    public final void play(DirectAudioPlayer mediaPlayer, Pointer samples, int sampleCount, long pts) {
+        ringBuffer.write(samples, sampleCount * blockSize, blockSize);
+        LockSupport.unpark(thread);
+    }
+
+    @Override
+    public final void pause(DirectAudioPlayer mediaPlayer, long pts) {
+        paused = true;
+    }
+
+    @Override
+    public final void resume(DirectAudioPlayer mediaPlayer, long pts) {
+        paused = false;
+        LockSupport.unpark(thread);
+    }
+
+    @Override
+    public final void flush(DirectAudioPlayer mediaPlayer, long pts) {
+        ringBuffer.flush();
+    }
+
+    @Override
+    public final void drain(DirectAudioPlayer mediaPlayer) {
+        if(!ringBuffer.drain(drainTimeout)) {
+            logger.debug("Timed out draining audio buffer");
+        }
+    }
+
+    @Override
+    public final void run() {
+        logger.debug("run()");
+        while(running) {
+            int length = paused ? 0 : ringBuffer.read(chunk, 0, chunk.length);
+            if(length > 0) {
+                try {
+                    onSamples(chunk, length);
+                }
+                catch(RuntimeException e) {
+                    logger.error("Audio consumer failed", e);
+                }
+            }
+            else {
+                LockSupport.parkNanos(IDLE_WAIT);
+            }
+        }
+        logger.debug("runner exits");
+    }
+
+    /**
+     * Template method invoked on the consumer thread to process samples.
+     * <p>
+     * This method may block, the native audio thread is not affected. The data array is re-used
+     * for every invocation.
+     *
+     * @param data sample data
+     * @param length number of valid bytes in the sample data, always a whole number of sample blocks
+     */
+    protected abstract void onSamples(byte[] data, int length);
+}
@@ -0,0 +1,213 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.directaudio;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Frequency spectrum analysis for any number of {@link DirectAudioPlayer} instances.
+ * <p>
+ * Each media player is given a {@link SpectrumAudioCallback}, created by
+ * {@link #newCallback(AudioCallback, AudioBufferFormat, SpectrumListener)}, which collects the
+ * most recent samples. A single analyser thread wakes at a fixed rate and, for each callback that
+ * has received new samples, applies a Hann window to the latest samples, runs a real-valued FFT
+ * and reduces the spectrum to logarithmically spaced frequency bands, which are passed to the
+ * listener for that callback.
+ * <p>
+ * The transform, the window and every work array are allocated up front and shared by all of the
+ * callbacks, so analysis creates no garbage and its cost grows only with the number of media
+ * players actually playing.
+ * <p>
+ * The analyser thread must be started with {@link #start()} and should be stopped with
+ * {@link #stop()} when the media players have been released.
+ */
+public class SpectrumAnalyser implements Runnable {
+
+    /**
+     * Log.
+     */
+    private final Logger logger = LoggerFactory.getLogger(SpectrumAnalyser.class);
+
+    private final int bandCount;
+
+    /**
+     * Time between analyses, in nanoseconds.
+     */
+    private final long period;
+
+    private final RealFft fft;
+
+    private final float[] hann;
+
+    private final float[] input;
+
+    /**
+     * Current callbacks, replaced (never modified) when a callback is added or removed.
+     */
+    private volatile SpectrumAudioCallback[] callbacks = new SpectrumAudioCallback[0];
+
+    private volatile boolean running;
+
+    private volatile Thread thread;
+
+    private volatile long analyses;
+
+    private volatile long analysisTime;
+
+    /**
+     * Create a spectrum analyser.
+     *
+     * @param fftSize number of samples analysed each time, a power of two, e.g. 2048
+     * @param bandCount number of frequency bands
+     * @param updateRate number of times per second to analyse each media player
+     */
+    public SpectrumAnalyser(int fftSize, int bandCount, double updateRate) {
+        if(bandCount < 1) {
+            throw new IllegalArgumentException("bandCount must be at least one");
+        }
+        if(updateRate <= 0) {
+            throw new IllegalArgumentException("updateRate must be positive");
+        }
+        this.fft = new RealFft(fftSize);
+        this.bandCount = bandCount;
+        this.period = (long) (1000000000L / updateRate);
+        this.hann = new float[fftSize];
+        for(int i = 0; i < fftSize; i ++ ) {
+            hann[i] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / fftSize));
+        }
+        this.input = new float[fftSize];
+    }
+
+    /**
+     * Create a new callback and add it to the analyser.
+     *
+     * @param delegate audio callback to pass every callback on to, may be <code>null</code>
+     * @param format audio format, the sample format must be "S16N" or "FL32"
+     * @param listener listener to receive the spectrum
+     * @return audio callback for the media player
+     */
+    public final synchronized SpectrumAudioCallback newCallback(AudioCallback delegate, AudioBufferFormat format, SpectrumListener listener) {
+        if(listener == null) {
+            throw new IllegalArgumentException("listener must not be null");
+        }
+        SpectrumAudioCallback callback = new SpectrumAudioCallback(delegate, format, listener, fft.size(), bandCount);
+        SpectrumAudioCallback[] current = callbacks;
+        SpectrumAudioCallback[] replacement = Arrays.copyOf(current, current.length + 1);
+        replacement[current.length] = callback;
+        callbacks = replacement;
+        return callback;
+    }
+
+    /**
+     * Remove a callback from the analyser.
+     *
+     * @param callback callback to remove
+     */
+    public final synchronized void removeCallback(SpectrumAudioCallback callback) {
+        SpectrumAudioCallback[] current = callbacks;
+        for(int i = 0; i < current.length; i ++ ) {
+            if(current[i] == callback) {
+                SpectrumAudioCallback[] replacement = new SpectrumAudioCallback[current.length - 1];
+                System.arraycopy(current, 0, replacement, 0, i);
+                System.arraycopy(current, i + 1, replacement, i, current.length - i - 1);
+                callbacks = replacement;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Get the number of spectra produced so far, for all callbacks.
+     *
+     * @return analysis count
+     */
+    public final long analyses() {
+        return analyses;
+    }
+
+    /**
+     * Get the total time spent analysing, excluding the time spent in the listeners.
+     *
+     * @return analysis time, in nanoseconds
+     */
+    public final long analysisTime() {
+        return analysisTime;
+    }
+
+    /**
+     * Start the analyser thread.
+     */
+    public final synchronized void start() {
+        if(thread == null) {
+            running = true;
+            thread = new Thread(this, "vlcj-spectrum-analyser");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stop the analyser thread.
+     */
+    public final synchronized void stop() {
+        if(thread != null) {
+            running = false;
+            LockSupport.unpark(thread);
+            try {
+                thread.join(5000);
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    @Override
+    public final void run() {
+        logger.debug("run()");
+        long next = System.nanoTime();
+        while(running) {
+            SpectrumAudioCallback[] current = callbacks;
+            for(int i = 0; i < current.length; i ++ ) {
+                long start = System.nanoTime();
+                if(current[i].analyse(fft, hann, input)) {
+                    analyses++;
+                    analysisTime += System.nanoTime() - start;
+                    try {
+                        current[i].publish();
+                    }
+                    catch(RuntimeException e) {
+                        logger.error("Spectrum listener failed", e);
+                    }
+                }
+            }
+            long now = System.nanoTime();
+            // Keep the average rate, but never try to catch up with a burst of analyses
+            next = now - next < period ? next + period : now + period;
+            LockSupport.parkNanos(next - now);
+        }
+        logger.debug("runner exits");
+    }
+}
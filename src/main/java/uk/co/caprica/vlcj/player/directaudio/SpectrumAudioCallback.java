@@ -0,0 +1,301 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.directaudio;
+
+import java.nio.ByteBuffer;
+
+import uk.co.caprica.vlcj.binding.support.NativeBufferCopy;
+
+import com.sun.jna.Pointer;
+
+/**
+ * An {@link AudioCallback} decorator that collects audio for a {@link SpectrumAnalyser}.
+ * <p>
+ * Instances are created by {@link SpectrumAnalyser#newCallback(AudioCallback, AudioBufferFormat, SpectrumListener)}.
+ * <p>
+ * The play callback only mixes the samples down to mono into a ring of the most recent samples,
+ * and then passes the callback on to the delegate - the transform itself is done on the analyser
+ * thread, so no audio buffers are lost however many media players are analysed. The ring is simply
+ * overwritten, the analyser only ever wants the latest samples.
+ * <p>
+ * The ring is guarded by a lock, held by the native audio thread while it adds samples and by the
+ * analyser thread while it copies out the window to analyse, so a window never mixes samples from
+ * before and after the ring was overwritten. The analyser holds the lock for no more than one copy
+ * of the window, which is all the native audio thread can ever wait for - the transform is done
+ * after the lock is released.
+ * <p>
+ * The sample format must be either "S16N" or "FL32".
+ */
+public final class SpectrumAudioCallback implements AudioCallback {
+
+    /**
+     * Lowest frequency of the first band, in Hz.
+     */
+    private static final double MINIMUM_FREQUENCY = 20;
+
+    /**
+     * Highest frequency of the last band, in Hz.
+     */
+    private static final double MAXIMUM_FREQUENCY = 20000;
+
+    /**
+     * Delegate audio callback, may be <code>null</code>.
+     */
+    private final AudioCallback delegate;
+
+    private final SpectrumListener listener;
+
+    private final boolean floatingPoint;
+
+    private final int channels;
+
+    private final int sampleSize;
+
+    private final int rate;
+
+    /**
+     * Re-usable copy of the native samples.
+     */
+    private final NativeBufferCopy copy = new NativeBufferCopy();
+
+    /**
+     * Guards the ring, the position and the timestamp origin.
+     */
+    private final Object lock = new Object();
+
+    /**
+     * Most recent mono samples, written by the native audio thread.
+     */
+    private final float[] ring;
+
+    private final int mask;
+
+    /**
+     * Position of the next sample to write.
+     */
+    private long position;
+
+    /**
+     * Timestamp, in microseconds, that sample position zero would have had.
+     */
+    private long ptsOrigin;
+
+    /**
+     * First FFT bin of each band, and the first bin after the last band.
+     */
+    private final int[] bandBins;
+
+    private final int fftSize;
+
+    // Analysis state, only used by the analyser thread
+
+    private final float[] magnitudes;
+
+    private final float[] bands;
+
+    private long analysedPosition = -1;
+
+    private long analysedPts;
+
+    SpectrumAudioCallback(AudioCallback delegate, AudioBufferFormat format, SpectrumListener listener, int fftSize, int bandCount) {
+        if("S16N".equals(format.getFormat())) {
+            this.floatingPoint = false;
+        }
+        else if("FL32".equals(format.getFormat())) {
+            this.floatingPoint = true;
+        }
+        else {
+            throw new IllegalArgumentException("Unsupported sample format " + format.getFormat());
+        }
+        this.delegate = delegate;
+        this.listener = listener;
+        this.channels = format.getChannels();
+        this.sampleSize = format.getSampleSize();
+        this.rate = format.getRate();
+        this.ring = new float[fftSize * 2];
+        this.mask = ring.length - 1;
+        this.fftSize = fftSize;
+        this.magnitudes = new float[fftSize / 2 + 1];
+        this.bands = new float[bandCount];
+        this.bandBins = new int[bandCount + 1];
+        double maximum = Math.min(MAXIMUM_FREQUENCY, rate / 2.0);
+        double binWidth = (double) rate / fftSize;
+        for(int i = 0; i <= bandCount; i ++ ) {
+            double frequency = MINIMUM_FREQUENCY * Math.pow(maximum / MINIMUM_FREQUENCY, (double) i / bandCount);
+            bandBins[i] = Math.min(fftSize / 2, (int) Math.round(frequency / binWidth));
+        }
+        // Every band covers at least one bin, so low bands repeat a bin rather than being empty
+        for(int i = 0; i < bandCount; i ++ ) {
+            if(bandBins[i + 1] <= bandBins[i]) {
+                bandBins[i + 1] = Math.min(fftSize / 2 + 1, bandBins[i] + 1);
+            }
+        }
+    }
+
+    /**
+     * Get the number of frequency bands.
+     *
+     * @return band count
+     */
+    public int bandCount() {
+        return bands.length;
+    }
+
+    /**
+     * Get the lowest frequency in a band.
+     *
+     * @param band band index
+     * @return frequency, in Hz
+     */
+    public float bandLowerFrequency(int band) {
+        return (float) ((double) bandBins[band] * rate / fftSize);
+    }
+
+    /**
+     * Get the highest frequency in a band.
+     *
+     * @param band band index
+     * @return frequency, in Hz
+     */
+    public float bandUpperFrequency(int band) {
+        return (float) ((double) bandBins[band + 1] * rate / fftSize);
+    }
+
+    @Override
+    public void play(DirectAudioPlayer mediaPlayer, Pointer samples, int sampleCount, long pts) {
+        collect(copy.copyFrom(samples, sampleCount * channels * sampleSize), sampleCount, pts);
+        if(delegate != null) {
+            delegate.play(mediaPlayer, samples, sampleCount, pts);
+        }
+    }
+
+    @Override
+    public void pause(DirectAudioPlayer mediaPlayer, long pts) {
+        if(delegate != null) {
+            delegate.pause(mediaPlayer, pts);
+        }
+    }
+
+    @Override
+    public void resume(DirectAudioPlayer mediaPlayer, long pts) {
+        if(delegate != null) {
+            delegate.resume(mediaPlayer, pts);
+        }
+    }
+
+    @Override
+    public void flush(DirectAudioPlayer mediaPlayer, long pts) {
+        if(delegate != null) {
+            delegate.flush(mediaPlayer, pts);
+        }
+    }
+
+    @Override
+    public void drain(DirectAudioPlayer mediaPlayer) {
+        if(delegate != null) {
+            delegate.drain(mediaPlayer);
+        }
+    }
+
+    /**
+     * Mix samples down to mono and add them to the ring.
+     *
+     * @param data samples
+     * @param sampleCount number of samples per channel
+     * @param pts presentation time stamp of the first sample
+     */
+    private void collect(ByteBuffer data, int sampleCount, long pts) {
+        float scale = floatingPoint ? 1.0f / channels : 1.0f / (32768 * channels);
+        synchronized(lock) {
+            long p = position;
+            ptsOrigin = pts - p * 1000000 / rate;
+            int index = 0;
+            for(int i = 0; i < sampleCount; i ++ ) {
+                float sum = 0;
+                for(int c = 0; c < channels; c ++ ) {
+                    if(floatingPoint) {
+                        sum += data.getFloat(index);
+                        index += 4;
+                    }
+                    else {
+                        sum += data.getShort(index);
+                        index += 2;
+                    }
+                }
+                ring[(int) (p + i) & mask] = sum * scale;
+            }
+            position = p + sampleCount;
+        }
+    }
+
+    /**
+     * Analyse the most recent samples, if there are any new ones.
+     * <p>
+     * Must only be invoked by the analyser thread.
+     *
+     * @param fft transform to use
+     * @param hann window function, the same size as the transform
+     * @param input work array, the same size as the transform
+     * @return <code>true</code> if there is a new analysis to publish; <code>false</code> otherwise
+     */
+    boolean analyse(RealFft fft, float[] hann, float[] input) {
+        int size = input.length;
+        long end;
+        long origin;
+        synchronized(lock) {
+            end = position;
+            if(end == analysedPosition || end < size) {
+                return false;
+            }
+            origin = ptsOrigin;
+            int offset = (int) (end - size) & mask;
+            int first = Math.min(size, ring.length - offset);
+            System.arraycopy(ring, offset, input, 0, first);
+            System.arraycopy(ring, 0, input, first, size - first);
+        }
+        for(int i = 0; i < size; i ++ ) {
+            input[i] *= hann[i];
+        }
+        analysedPosition = end;
+        fft.magnitudes(input, magnitudes);
+        // A full-scale sine wave, after the Hann window, has a magnitude of a quarter of the size
+        float scale = 4.0f / size;
+        for(int b = 0; b < bands.length; b ++ ) {
+            float peak = 0;
+            for(int k = bandBins[b]; k < bandBins[b + 1]; k ++ ) {
+                if(magnitudes[k] > peak) {
+                    peak = magnitudes[k];
+                }
+            }
+            bands[b] = peak > 0 ? Math.max(-120f, (float) (20 * Math.log10(peak * scale))) : -120f;
+        }
+        analysedPts = origin + end * 1000000 / rate;
+        return true;
+    }
+
+    /**
+     * Pass the most recent analysis to the listener.
+     * <p>
+     * Must only be invoked by the analyser thread.
+     */
+    void publish() {
+        listener.spectrum(this, bands, analysedPts);
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.directaudio;
+
+/**
+ * Specification for a component that is interested in the spectrum of the audio played by a
+ * {@link DirectAudioPlayer}.
+ * <p>
+ * The listener is invoked by the {@link SpectrumAnalyser} thread, <em>not</em> a native thread,
+ * but it should still return quickly since one analyser thread serves every media player.
+ */
+public interface SpectrumListener {
+
+    /**
+     * Invoked each time a new spectrum is available.
+     * <p>
+     * The bands array is re-used, the values must be copied if they are needed after this method
+     * returns.
+     *
+     * @param source callback that collected the audio
+     * @param bands level of each frequency band, in dB relative to a full-scale sine wave, lowest frequency first
+     * @param pts presentation time stamp of the end of the analysed audio, in microseconds
+     */
+    void spectrum(SpectrumAudioCallback source, float[] bands, long pts);
+}
@@ -0,0 +1,86 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.directaudio.waveform;
+
+import java.nio.ByteOrder;
+
+import uk.co.caprica.vlcj.player.directaudio.AudioBufferFormat;
+import uk.co.caprica.vlcj.player.directaudio.AudioCallbackAdapter;
+import uk.co.caprica.vlcj.player.directaudio.AudioFormatCallback;
+import uk.co.caprica.vlcj.player.directaudio.DirectAudioPlayer;
+
+import com.sun.jna.Pointer;
+
+/**
+ * Audio callback that reduces the decoded audio of one media item to waveform peaks.
+ * <p>
+ * The audio is requested as signed 16-bit samples at its own sample rate and channel count, so
+ * the native library only has to convert the sample format.
+ */
+final class WaveformAudioCallback extends AudioCallbackAdapter implements AudioFormatCallback {
+
+    private final int samplesPerPeak;
+
+    private volatile WaveformPeakBuilder builder;
+
+    private int blockSize;
+
+    private volatile int rate;
+
+    WaveformAudioCallback(int samplesPerPeak) {
+        this.samplesPerPeak = samplesPerPeak;
+    }
+
+    @Override
+    public AudioBufferFormat getAudioFormat(String sourceFormat, int sourceRate, int sourceChannels) {
+        // Only the first audio output is summarised, e.g. not a change of format part way through
+        if(builder != null) {
+            return null;
+        }
+        AudioBufferFormat format = new AudioBufferFormat("S16N", sourceRate, sourceChannels);
+        blockSize = format.getBlockSize();
+        rate = sourceRate;
+        builder = new WaveformPeakBuilder(sourceChannels, samplesPerPeak);
+        return format;
+    }
+
+    @Override
+    public void play(DirectAudioPlayer mediaPlayer, Pointer samples, int sampleCount, long pts) {
+        builder.add(samples.getByteBuffer(0, (long) sampleCount * blockSize).order(ByteOrder.nativeOrder()), sampleCount);
+    }
+
+    /**
+     * Get the peak builder.
+     *
+     * @return builder, or <code>null</code> if no audio was decoded
+     */
+    WaveformPeakBuilder builder() {
+        return builder;
+    }
+
+    /**
+     * Get the sample rate of the decoded audio.
+     *
+     * @return sample rate, in Hz, or zero if no audio was decoded
+     */
+    int rate() {
+        return rate;
+    }
+}
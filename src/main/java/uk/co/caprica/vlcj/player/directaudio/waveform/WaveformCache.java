@@ -0,0 +1,333 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.directaudio.waveform;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.co.caprica.vlcj.player.MediaResourceLocator;
+
+/**
+ * Disk cache of {@link WaveformPeaks}.
+ * <p>
+ * Each media item is stored in its own binary file in the cache directory, named after a hash of
+ * its MRL. The file records the MRL itself and, for local files, the size and modification time
+ * of the media file - an entry is only used if all of these still match, so a media file that is
+ * replaced or edited is summarised again. Entries for MRLs that are not local files (e.g. streams)
+ * never go stale.
+ * <p>
+ * The peak data is stored as little-endian 16-bit values, exactly as held in memory, so an entry
+ * is read with a few bulk transfers. Entries are written to a temporary file first and then
+ * renamed, so a reader never sees a partial entry.
+ * <p>
+ * The cache may be shared by any number of threads and processes.
+ */
+public class WaveformCache {
+
+    /**
+     * File format identifier.
+     */
+    private static final long MAGIC = 0x564c434a504b5331L; // "VLCJPKS1"
+
+    /**
+     * File format version.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * File name suffix for cache entries.
+     */
+    private static final String SUFFIX = ".peaks";
+
+    /**
+     * Character set for the MRL.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Log.
+     */
+    private final Logger logger = LoggerFactory.getLogger(WaveformCache.class);
+
+    private final File directory;
+
+    /**
+     * Create a cache.
+     *
+     * @param directory directory to hold the cache entries, created if it does not exist
+     */
+    public WaveformCache(File directory) {
+        if(!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Can not create cache directory " + directory);
+        }
+        this.directory = directory;
+    }
+
+    /**
+     * Get the cached peaks for a media item.
+     * <p>
+     * A corrupt entry is treated the same as a missing one.
+     *
+     * @param mrl media resource locator
+     * @return peaks, or <code>null</code> if there are none or they are out of date
+     */
+    public WaveformPeaks get(String mrl) {
+        File file = entryFile(mrl);
+        if(!file.isFile()) {
+            return null;
+        }
+        try {
+            RandomAccessFile in = new RandomAccessFile(file, "r");
+            try {
+                return read(in.getChannel(), mrl);
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch(IOException e) {
+            logger.warn("Failed to read waveform cache entry {}", file, e);
+            return null;
+        }
+        catch(RuntimeException e) {
+            // Sizes are checked while reading, but never let a corrupt entry escape as an exception
+            logger.warn("Corrupt waveform cache entry {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Store the peaks for a media item, replacing any previous entry.
+     *
+     * @param mrl media resource locator
+     * @param peaks peaks to store
+     * @return <code>true</code> if the peaks were stored; <code>false</code> on error
+     */
+    public boolean put(String mrl, WaveformPeaks peaks) {
+        File file = entryFile(mrl);
+        File temporary = new File(directory, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            RandomAccessFile out = new RandomAccessFile(temporary, "rw");
+            try {
+                out.setLength(0);
+                write(out.getChannel(), mrl, peaks);
+            }
+            finally {
+                out.close();
+            }
+            if(!temporary.renameTo(file)) {
+                // Some platforms can not rename over an existing file
+                file.delete();
+                if(!temporary.renameTo(file)) {
+                    throw new IOException("Failed to rename " + temporary + " to " + file);
+                }
+            }
+            return true;
+        }
+        catch(IOException e) {
+            logger.warn("Failed to write waveform cache entry {}", file, e);
+            temporary.delete();
+            return false;
+        }
+    }
+
+    /**
+     * Remove the entry for a media item.
+     *
+     * @param mrl media resource locator
+     */
+    public void remove(String mrl) {
+        entryFile(mrl).delete();
+    }
+
+    private WaveformPeaks read(FileChannel channel, String mrl) throws IOException {
+        long fileSize = channel.size();
+        if(fileSize < 12 || fileSize > Integer.MAX_VALUE) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) fileSize).order(ByteOrder.LITTLE_ENDIAN);
+        while(buffer.hasRemaining()) {
+            if(channel.read(buffer) < 0) {
+                return null;
+            }
+        }
+        buffer.flip();
+        if(buffer.getLong() != MAGIC || buffer.getInt() != VERSION) {
+            return null;
+        }
+        int mrlLength = buffer.getInt();
+        if(mrlLength < 0 || mrlLength > buffer.remaining()) {
+            return corrupt(mrl);
+        }
+        byte[] mrlBytes = new byte[mrlLength];
+        buffer.get(mrlBytes);
+        long[] key = key(mrl);
+        if(!mrl.equals(new String(mrlBytes, UTF8)) || buffer.getLong() != key[0] || buffer.getLong() != key[1]) {
+            return null;
+        }
+        if(buffer.remaining() < 4 + 8 + 8 + 4) {
+            return corrupt(mrl);
+        }
+        int channels = buffer.getInt();
+        long sampleCount = buffer.getLong();
+        long length = buffer.getLong();
+        int levelCount = buffer.getInt();
+        if(channels < 1 || levelCount < 0 || levelCount > buffer.remaining() / 12) {
+            return corrupt(mrl);
+        }
+        long[] samplesPerPeak = new long[levelCount];
+        int[] peakCounts = new int[levelCount];
+        for(int level = 0; level < levelCount; level ++ ) {
+            samplesPerPeak[level] = buffer.getLong();
+            peakCounts[level] = buffer.getInt();
+        }
+        long dataLength = 0;
+        for(int level = 0; level < levelCount; level ++ ) {
+            if(peakCounts[level] < 0 || (long) peakCounts[level] * channels > buffer.remaining()) {
+                return corrupt(mrl);
+            }
+            dataLength += (long) peakCounts[level] * channels * 2 * 2;
+        }
+        if(dataLength != buffer.remaining()) {
+            return corrupt(mrl);
+        }
+        short[][] levels = new short[levelCount][];
+        for(int level = 0; level < levelCount; level ++ ) {
+            levels[level] = new short[peakCounts[level] * channels * 2];
+            buffer.asShortBuffer().get(levels[level]);
+            buffer.position(buffer.position() + levels[level].length * 2);
+        }
+        return new WaveformPeaks(channels, sampleCount, length, samplesPerPeak, peakCounts, levels);
+    }
+
+    private WaveformPeaks corrupt(String mrl) {
+        logger.warn("Corrupt waveform cache entry for {}", mrl);
+        return null;
+    }
+
+    private void write(FileChannel channel, String mrl, WaveformPeaks peaks) throws IOException {
+        byte[] mrlBytes = mrl.getBytes(UTF8);
+        int levelCount = peaks.levelCount();
+        long size = 8 + 4 + 4 + mrlBytes.length + 8 + 8 + 4 + 8 + 8 + 4 + levelCount * 12;
+        for(int level = 0; level < levelCount; level ++ ) {
+            size += peaks.level(level).length * 2;
+        }
+        if(size > Integer.MAX_VALUE) {
+            throw new IOException("Waveform peaks too large to cache");
+        }
+        long[] key = key(mrl);
+        ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putLong(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(mrlBytes.length);
+        buffer.put(mrlBytes);
+        buffer.putLong(key[0]);
+        buffer.putLong(key[1]);
+        buffer.putInt(peaks.channels());
+        buffer.putLong(peaks.sampleCount());
+        buffer.putLong(peaks.length());
+        buffer.putInt(levelCount);
+        for(int level = 0; level < levelCount; level ++ ) {
+            buffer.putLong(peaks.samplesPerPeak(level));
+            buffer.putInt(peaks.peakCount(level));
+        }
+        for(int level = 0; level < levelCount; level ++ ) {
+            short[] data = peaks.level(level);
+            buffer.asShortBuffer().put(data);
+            buffer.position(buffer.position() + data.length * 2);
+        }
+        buffer.flip();
+        while(buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Get the file for the cache entry of a media item.
+     *
+     * @param mrl media resource locator
+     * @return cache entry file
+     */
+    private File entryFile(String mrl) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(mrl.getBytes(UTF8));
+            StringBuilder sb = new StringBuilder(digest.length * 2 + SUFFIX.length());
+            for(byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            return new File(directory, sb.append(SUFFIX).toString());
+        }
+        catch(NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Get the size and modification time of the media file for an MRL.
+     *
+     * @param mrl media resource locator
+     * @return size and modification time, both -1 if the MRL is not a local file
+     */
+    private static long[] key(String mrl) {
+        File file = localFile(mrl);
+        if(file != null && file.isFile()) {
+            return new long[] {file.length(), file.lastModified()};
+        }
+        return new long[] {-1, -1};
+    }
+
+    /**
+     * Get the local file for an MRL.
+     *
+     * @param mrl media resource locator
+     * @return file, or <code>null</code> if the MRL is not a local file
+     */
+    private static File localFile(String mrl) {
+        if(!MediaResourceLocator.isLocation(mrl)) {
+            return new File(mrl);
+        }
+        if(mrl.startsWith("file:")) {
+            try {
+                return new File(new URI(mrl));
+            }
+            catch(URISyntaxException e) {
+                return null;
+            }
+            catch(IllegalArgumentException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
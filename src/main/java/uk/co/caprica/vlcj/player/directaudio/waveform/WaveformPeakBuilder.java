@@ -0,0 +1,169 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.directaudio.waveform;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Reduces a stream of samples to {@link WaveformPeaks}.
+ * <p>
+ * Samples are signed 16-bit, native byte order, interleaved by channel. Only the finest level is
+ * built while samples are added, the coarser levels are derived from it when the peaks are built.
+ * An instance must only be used by one thread at a time.
+ */
+final class WaveformPeakBuilder {
+
+    /**
+     * Initial number of peaks to allow space for.
+     */
+    private static final int INITIAL_CAPACITY = 4096;
+
+    private final int channels;
+
+    private final int samplesPerPeak;
+
+    /**
+     * Minimum and maximum of the current peak, for each channel.
+     */
+    private final short[] current;
+
+    /**
+     * Completed peaks at the finest level.
+     */
+    private short[] peaks;
+
+    private int peakCount;
+
+    /**
+     * Number of samples in the current peak.
+     */
+    private int count;
+
+    private long sampleCount;
+
+    /**
+     * Create a builder.
+     *
+     * @param channels number of channels
+     * @param samplesPerPeak number of samples summarised by each peak at the finest level
+     */
+    WaveformPeakBuilder(int channels, int samplesPerPeak) {
+        this.channels = channels;
+        this.samplesPerPeak = samplesPerPeak;
+        this.current = new short[channels * 2];
+        this.peaks = new short[INITIAL_CAPACITY * channels * 2];
+        reset();
+    }
+
+    /**
+     * Add samples.
+     *
+     * @param data samples, native byte order, from the current position
+     * @param sampleCount number of samples per channel
+     */
+    void add(ByteBuffer data, int sampleCount) {
+        int index = data.position();
+        for(int i = 0; i < sampleCount; i ++ ) {
+            for(int c = 0; c < channels; c ++ ) {
+                short value = data.getShort(index);
+                index += 2;
+                if(value < current[c * 2]) {
+                    current[c * 2] = value;
+                }
+                if(value > current[c * 2 + 1]) {
+                    current[c * 2 + 1] = value;
+                }
+            }
+            if(++count == samplesPerPeak) {
+                complete();
+            }
+        }
+        this.sampleCount += sampleCount;
+    }
+
+    /**
+     * Build the peaks from every sample added so far.
+     *
+     * @param length length of the media, in milliseconds
+     * @return peaks
+     */
+    WaveformPeaks build(long length) {
+        if(count > 0) {
+            complete();
+        }
+        int levelCount = 1;
+        for(int n = peakCount; n > 1; n = (n + 1) / 2) {
+            levelCount++;
+        }
+        long[] samplesPerPeaks = new long[levelCount];
+        int[] peakCounts = new int[levelCount];
+        short[][] levels = new short[levelCount][];
+        samplesPerPeaks[0] = samplesPerPeak;
+        peakCounts[0] = peakCount;
+        levels[0] = Arrays.copyOf(peaks, peakCount * channels * 2);
+        for(int level = 1; level < levelCount; level ++ ) {
+            short[] finer = levels[level - 1];
+            int finerCount = peakCounts[level - 1];
+            int coarserCount = (finerCount + 1) / 2;
+            short[] coarser = new short[coarserCount * channels * 2];
+            int width = channels * 2;
+            for(int peak = 0; peak < coarserCount; peak ++ ) {
+                int a = peak * 2 * width;
+                int b = peak * 2 + 1 < finerCount ? a + width : a;
+                for(int c = 0; c < width; c += 2) {
+                    coarser[peak * width + c] = (short) Math.min(finer[a + c], finer[b + c]);
+                    coarser[peak * width + c + 1] = (short) Math.max(finer[a + c + 1], finer[b + c + 1]);
+                }
+            }
+            samplesPerPeaks[level] = samplesPerPeaks[level - 1] * 2;
+            peakCounts[level] = coarserCount;
+            levels[level] = coarser;
+        }
+        return new WaveformPeaks(channels, sampleCount, length, samplesPerPeaks, peakCounts, levels);
+    }
+
+    /**
+     * Get the number of samples (per channel) added so far.
+     *
+     * @return sample count
+     */
+    long sampleCount() {
+        return sampleCount;
+    }
+
+    private void complete() {
+        int width = channels * 2;
+        if((peakCount + 1) * width > peaks.length) {
+            peaks = Arrays.copyOf(peaks, peaks.length * 2);
+        }
+        System.arraycopy(current, 0, peaks, peakCount * width, width);
+        peakCount++;
+        reset();
+    }
+
+    private void reset() {
+        for(int c = 0; c < channels; c ++ ) {
+            current[c * 2] = Short.MAX_VALUE;
+            current[c * 2 + 1] = Short.MIN_VALUE;
+        }
+        count = 0;
+    }
+}
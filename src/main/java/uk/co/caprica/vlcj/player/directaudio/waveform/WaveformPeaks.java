@@ -0,0 +1,212 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.directaudio.waveform;
+
+/**
+ * Multi-resolution summary of the audio waveform of a media item.
+ * <p>
+ * The summary is a pyramid of levels. At level zero each peak holds the minimum and maximum sample
+ * value, for each channel, of a fixed number of consecutive samples; each following level halves
+ * the number of peaks by combining adjacent pairs, up to a level with a single peak. Any range of
+ * the media can therefore be summarised at any width, by starting from the coarsest level that
+ * still has enough detail, without going back to the samples.
+ * <p>
+ * Sample values are signed 16-bit. Instances are immutable.
+ */
+public final class WaveformPeaks {
+
+    private final int channels;
+
+    private final long sampleCount;
+
+    private final long length;
+
+    /**
+     * Number of samples summarised by each peak, for each level.
+     */
+    private final long[] samplesPerPeak;
+
+    /**
+     * Number of peaks, for each level.
+     */
+    private final int[] peakCounts;
+
+    /**
+     * Minimum and maximum values, for each level, interleaved by peak then channel.
+     */
+    private final short[][] levels;
+
+    WaveformPeaks(int channels, long sampleCount, long length, long[] samplesPerPeak, int[] peakCounts, short[][] levels) {
+        this.channels = channels;
+        this.sampleCount = sampleCount;
+        this.length = length;
+        this.samplesPerPeak = samplesPerPeak;
+        this.peakCounts = peakCounts;
+        this.levels = levels;
+    }
+
+    /**
+     * Get the number of channels.
+     *
+     * @return channel count
+     */
+    public int channels() {
+        return channels;
+    }
+
+    /**
+     * Get the number of samples (per channel) that were summarised.
+     *
+     * @return sample count
+     */
+    public long sampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * Get the length of the media.
+     *
+     * @return length, in milliseconds
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Get the number of levels.
+     *
+     * @return level count
+     */
+    public int levelCount() {
+        return levels.length;
+    }
+
+    /**
+     * Get the number of samples summarised by each peak at a level.
+     *
+     * @param level level, zero for the finest
+     * @return samples per peak
+     */
+    public long samplesPerPeak(int level) {
+        return samplesPerPeak[level];
+    }
+
+    /**
+     * Get the number of peaks at a level.
+     *
+     * @param level level, zero for the finest
+     * @return peak count
+     */
+    public int peakCount(int level) {
+        return peakCounts[level];
+    }
+
+    /**
+     * Get the minimum sample value of a peak.
+     *
+     * @param level level, zero for the finest
+     * @param peak peak index
+     * @param channel channel index
+     * @return minimum value
+     */
+    public short min(int level, int peak, int channel) {
+        return levels[level][(peak * channels + channel) * 2];
+    }
+
+    /**
+     * Get the maximum sample value of a peak.
+     *
+     * @param level level, zero for the finest
+     * @param peak peak index
+     * @param channel channel index
+     * @return maximum value
+     */
+    public short max(int level, int peak, int channel) {
+        return levels[level][(peak * channels + channel) * 2 + 1];
+    }
+
+    /**
+     * Summarise part of the media at a particular width, e.g. one value per pixel.
+     * <p>
+     * Each of the <code>width</code> columns covers an equal share of the time range, and receives
+     * the minimum and maximum sample values of that share. The summary is built from the coarsest
+     * level that has at least one peak per column, so the cost depends only on the width.
+     * <p>
+     * Columns beyond the end of the media are set to zero.
+     *
+     * @param channel channel index
+     * @param startTime start of the range, in milliseconds
+     * @param endTime end of the range, in milliseconds, greater than the start
+     * @param width number of columns
+     * @param min array to receive the minimum value of each column, at least <code>width</code> long
+     * @param max array to receive the maximum value of each column, at least <code>width</code> long
+     */
+    public void peaks(int channel, long startTime, long endTime, int width, short[] min, short[] max) {
+        if(endTime <= startTime || width < 1) {
+            throw new IllegalArgumentException("Invalid range or width");
+        }
+        double startSample = sampleAt(startTime);
+        double samplesPerColumn = (sampleAt(endTime) - startSample) / width;
+        int level = 0;
+        while(level + 1 < levels.length && samplesPerPeak[level + 1] <= samplesPerColumn) {
+            level++;
+        }
+        short[] data = levels[level];
+        long perPeak = samplesPerPeak[level];
+        int count = peakCounts[level];
+        for(int column = 0; column < width; column ++ ) {
+            int first = (int) Math.floor((startSample + column * samplesPerColumn) / perPeak);
+            int last = (int) Math.ceil((startSample + (column + 1) * samplesPerColumn) / perPeak);
+            first = Math.max(first, 0);
+            last = Math.min(Math.max(last, first + 1), count);
+            short columnMin = 0;
+            short columnMax = 0;
+            if(first < last) {
+                columnMin = Short.MAX_VALUE;
+                columnMax = Short.MIN_VALUE;
+                for(int peak = first; peak < last; peak ++ ) {
+                    int index = (peak * channels + channel) * 2;
+                    if(data[index] < columnMin) {
+                        columnMin = data[index];
+                    }
+                    if(data[index + 1] > columnMax) {
+                        columnMax = data[index + 1];
+                    }
+                }
+            }
+            min[column] = columnMin;
+            max[column] = columnMax;
+        }
+    }
+
+    /**
+     * Get the raw peak data for a level, for serialisation.
+     *
+     * @param level level
+     * @return peak data, must not be modified
+     */
+    short[] level(int level) {
+        return levels[level];
+    }
+
+    private double sampleAt(long time) {
+        return length > 0 ? (double) time * sampleCount / length : 0;
+    }
+}
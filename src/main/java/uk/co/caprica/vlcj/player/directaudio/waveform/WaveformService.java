@@ -0,0 +1,212 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.player.directaudio.waveform;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.co.caprica.vlcj.factory.MediaPlayerFactory;
+import uk.co.caprica.vlcj.media.Media;
+import uk.co.caprica.vlcj.player.MediaPlayerEventAdapter;
+import uk.co.caprica.vlcj.player.base.MediaPlayer;
+import uk.co.caprica.vlcj.player.directaudio.DirectAudioPlayer;
+
+/**
+ * Provides {@link WaveformPeaks} for media items, decoding each item only once.
+ * <p>
+ * If the {@link WaveformCache} has up to date peaks for a media item they are returned straight
+ * away. Otherwise the audio is decoded by a {@link DirectAudioPlayer} with no video output, at an
+ * increased playback rate, reduced to peaks as it is decoded (the samples themselves are never
+ * kept), and the peaks are stored in the cache before they are returned.
+ * <p>
+ * Since the native library may resample or time-stretch the audio when it plays faster than
+ * normal, peaks are positioned by their share of the media length rather than by sample rate -
+ * the overall shape is not affected.
+ * <p>
+ * Any number of threads may request peaks at the same time, each decodes with its own media
+ * player.
+ * <p>
+ * Decoding is abandoned if a media item does not start, or does not finish, within the decode
+ * timeout - e.g. a live stream never finishes.
+ */
+public class WaveformService {
+
+    /**
+     * Default number of samples summarised by each peak at the finest level.
+     */
+    private static final int DEFAULT_SAMPLES_PER_PEAK = 256;
+
+    /**
+     * Default playback rate for decoding.
+     */
+    private static final float DEFAULT_DECODE_RATE = 4.0f;
+
+    /**
+     * Default maximum time to wait for a media item to be decoded, in milliseconds.
+     */
+    private static final long DEFAULT_DECODE_TIMEOUT = TimeUnit.MINUTES.toMillis(30);
+
+    /**
+     * Log.
+     */
+    private final Logger logger = LoggerFactory.getLogger(WaveformService.class);
+
+    private final MediaPlayerFactory mediaPlayerFactory;
+
+    private final WaveformCache cache;
+
+    private final int samplesPerPeak;
+
+    private final float decodeRate;
+
+    private final long decodeTimeout;
+
+    /**
+     * Create a waveform service with default settings.
+     *
+     * @param mediaPlayerFactory factory used to create media players for decoding
+     * @param cache cache of peaks
+     */
+    public WaveformService(MediaPlayerFactory mediaPlayerFactory, WaveformCache cache) {
+        this(mediaPlayerFactory, cache, DEFAULT_SAMPLES_PER_PEAK, DEFAULT_DECODE_RATE, DEFAULT_DECODE_TIMEOUT);
+    }
+
+    /**
+     * Create a waveform service.
+     *
+     * @param mediaPlayerFactory factory used to create media players for decoding
+     * @param cache cache of peaks
+     * @param samplesPerPeak number of samples summarised by each peak at the finest level
+     * @param decodeRate playback rate for decoding, the native library may not play audio faster than 4.0
+     * @param decodeTimeout maximum time to wait for a media item to be decoded, in milliseconds
+     */
+    public WaveformService(MediaPlayerFactory mediaPlayerFactory, WaveformCache cache, int samplesPerPeak, float decodeRate, long decodeTimeout) {
+        if(samplesPerPeak < 1) {
+            throw new IllegalArgumentException("samplesPerPeak must be at least one");
+        }
+        if(decodeRate <= 0) {
+            throw new IllegalArgumentException("decodeRate must be positive");
+        }
+        if(decodeTimeout <= 0) {
+            throw new IllegalArgumentException("decodeTimeout must be positive");
+        }
+        this.mediaPlayerFactory = mediaPlayerFactory;
+        this.cache = cache;
+        this.samplesPerPeak = samplesPerPeak;
+        this.decodeRate = decodeRate;
+        this.decodeTimeout = decodeTimeout;
+    }
+
+    /**
+     * Get the peaks for a media item, decoding it if they are not already cached.
+     * <p>
+     * This method blocks until the media item has been decoded.
+     *
+     * @param mrl media resource locator
+     * @return peaks, or <code>null</code> if the media item has no audio, could not be played or did not finish in time
+     * @throws InterruptedException if the current thread is interrupted while waiting for decoding to finish
+     */
+    public WaveformPeaks peaks(String mrl) throws InterruptedException {
+        WaveformPeaks peaks = cache.get(mrl);
+        if(peaks == null) {
+            peaks = decode(mrl);
+            if(peaks != null) {
+                cache.put(mrl, peaks);
+            }
+        }
+        return peaks;
+    }
+
+    /**
+     * Decode a media item and reduce its audio to peaks.
+     *
+     * @param mrl media resource locator
+     * @return peaks, or <code>null</code> if the media item has no audio, could not be played or did not finish in time
+     * @throws InterruptedException if the current thread is interrupted while waiting for decoding to finish
+     */
+    private WaveformPeaks decode(String mrl) throws InterruptedException {
+        logger.debug("decode(mrl={})", mrl);
+        final CountDownLatch startedLatch = new CountDownLatch(1);
+        final CountDownLatch completionLatch = new CountDownLatch(1);
+        final boolean[] failed = new boolean[1];
+        Media media = mediaPlayerFactory.media().newMedia(mrl);
+        if(media == null) {
+            return null;
+        }
+        WaveformAudioCallback callback = new WaveformAudioCallback(samplesPerPeak);
+        DirectAudioPlayer mediaPlayer = mediaPlayerFactory.mediaPlayers().newDirectAudioPlayer(callback, callback);
+        try {
+            mediaPlayer.events().addMediaPlayerEventListener(new MediaPlayerEventAdapter() {
+                @Override
+                public void playing(MediaPlayer mediaPlayer) {
+                    startedLatch.countDown();
+                }
+
+                @Override
+                public void finished(MediaPlayer mediaPlayer) {
+                    startedLatch.countDown();
+                    completionLatch.countDown();
+                }
+
+                @Override
+                public void error(MediaPlayer mediaPlayer) {
+                    failed[0] = true;
+                    startedLatch.countDown();
+                    completionLatch.countDown();
+                }
+            });
+            media.options().addOptions(":no-video");
+            mediaPlayer.media().set(media);
+            long deadline = System.currentTimeMillis() + decodeTimeout;
+            mediaPlayer.controls().play();
+            if(!startedLatch.await(decodeTimeout, TimeUnit.MILLISECONDS)) {
+                logger.warn("Timed out waiting for {} to start", mrl);
+                return null;
+            }
+            // The rate can only be changed once play-back has started
+            mediaPlayer.controls().setRate(decodeRate);
+            if(!completionLatch.await(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+                logger.warn("Timed out waiting for {} to finish", mrl);
+                mediaPlayer.controls().stop();
+                return null;
+            }
+            long length = mediaPlayer.status().getLength();
+            // Stopping waits for the native audio thread, so every sample has been added
+            mediaPlayer.controls().stop();
+            WaveformPeakBuilder builder = callback.builder();
+            if(failed[0] || builder == null || builder.sampleCount() == 0) {
+                logger.debug("No audio decoded for {}", mrl);
+                return null;
+            }
+            if(length <= 0) {
+                // Unknown length, e.g. a stream, so estimate it from the decoded audio
+                length = (long) (builder.sampleCount() * 1000 * decodeRate / callback.rate());
+            }
+            return builder.build(length);
+        }
+        finally {
+            mediaPlayer.release();
+            media.release();
+        }
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * Provides waveform peak summaries of media audio, decoded by the direct audio
+ * media player and cached on disk.
+ */
+package uk.co.caprica.vlcj.player.directaudio.waveform;
@@ -0,0 +1,144 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+package uk.co.caprica.vlcj.player.direct;
+
+import uk.co.caprica.vlcj.test.Checks;
+
+import com.sun.jna.Memory;
+
+/**
+ * Test that frame buffers held across a change of video format are never handed back to the
+ * native decoder, or freed, until they are released.
+ * <p>
+ * The test drives the frame buffer ring and buffer pool directly in the same
+ * way as the direct media player does when the format is set up and cleaned up. It lives in the
+ * same package as the direct media player since those components are package-private.
+ * <p>
+ * A client holds the published frame (as if via {@link DirectMediaPlayer#lock()}) and a second
+ * frame is pinned waiting for the render dispatcher, then the format changes to the same size (so
+ * the pool would ordinarily re-use the same native memory) and the decoder fills every new buffer.
+ * The held frames must keep their contents, survive the pool being disposed, and only be freed
+ * when released.
+ */
+public class FrameBufferHoldTest {
+
+    private static final int BUFFER_COUNT = 2;
+
+    private static final int SIZE = 64 * 48 * 4;
+
+    private static boolean passed = true;
+
+    public static void main(String[] args) {
+        NativeBufferPool pool = new NativeBufferPool();
+        FrameBufferRing ring = new FrameBufferRing(BUFFER_COUNT, pool);
+        FrameBufferStatistics statistics = new FrameBufferStatistics();
+
+        passed &= Checks.check("no buffers before the format is set", ring.hold() == -1);
+        format(ring, pool);
+
+        // Buffers are available as soon as the format is set, and a held slot is not decoded into
+        int early = ring.hold();
+        int earlyGeneration = ring.generation();
+        passed &= Checks.check("buffers available before the first frame", early != -1);
+        int decoding = ring.lockForDecode();
+        passed &= Checks.check("held slot not given to the decoder", decoding != early);
+        ring.unlockForDecode(decoding);
+        ring.skip(decoding);
+        ring.release(early, earlyGeneration);
+
+        // Decode and display two frames, the render dispatcher pins the first and a client holds the second
+        int dispatched = display(ring, (byte) 1);
+        int dispatchedGeneration = ring.pin(dispatched);
+        int published = display(ring, (byte) 2);
+        int held = ring.hold();
+        int heldGeneration = ring.generation();
+        passed &= Checks.check("client holds the published frame", held == published);
+        Memory heldMemory = ring.buffers(held)[0];
+        Memory dispatchedMemory = ring.buffers(dispatched)[0];
+
+        // Format change to the same size
+        ring.free();
+        pool.trim();
+        format(ring, pool);
+        passed &= Checks.check("old buffers retired", ring.retiredCount() == 1);
+        passed &= Checks.check("new buffers do not re-use held memory", !shares(ring, heldMemory) && !shares(ring, dispatchedMemory));
+
+        // The decoder fills every new buffer
+        for(int i = 0; i < BUFFER_COUNT; i ++ ) {
+            display(ring, (byte) 3);
+        }
+        passed &= Checks.check("held frame unchanged", contains(heldMemory, (byte) 2));
+        passed &= Checks.check("dispatched frame unchanged", contains(dispatchedMemory, (byte) 1));
+        passed &= Checks.check("stale dispatch not rendered", ring.buffers(dispatched, dispatchedGeneration) == null);
+
+        // Cleanup and release of the media player
+        ring.free();
+        pool.dispose();
+        pool.statistics(statistics);
+        long resident = statistics.residentBytes();
+        passed &= Checks.check("held buffers survive pool disposal", resident > 0 && contains(heldMemory, (byte) 2));
+
+        ring.release(dispatched, dispatchedGeneration);
+        passed &= Checks.check("retired until every hold is released", ring.retiredCount() == 1);
+        ring.release(held, heldGeneration);
+        passed &= Checks.check("retired buffers returned", ring.retiredCount() == 0);
+        pool.statistics(statistics);
+        passed &= Checks.check("returned buffers freed after disposal", statistics.residentBytes() == 0);
+
+        Checks.exit(passed);
+    }
+
+    private static void format(FrameBufferRing ring, NativeBufferPool pool) {
+        Memory[][] nativeBuffers = new Memory[ring.bufferCount()][1];
+        Memory[] pooledBuffers = new Memory[nativeBuffers.length];
+        for(int i = 0; i < nativeBuffers.length; i ++ ) {
+            pooledBuffers[i] = pool.acquire(SIZE + 32);
+            nativeBuffers[i][0] = pooledBuffers[i].align(32);
+        }
+        ring.allocate(nativeBuffers, pooledBuffers);
+    }
+
+    private static int display(FrameBufferRing ring, byte value) {
+        int slot = ring.lockForDecode();
+        ring.buffers(slot)[0].setMemory(0, SIZE, value);
+        ring.unlockForDecode(slot);
+        ring.beginDisplay(slot);
+        ring.endDisplay(slot);
+        return slot;
+    }
+
+    private static boolean shares(FrameBufferRing ring, Memory memory) {
+        for(int i = 0; i < ring.bufferCount(); i ++ ) {
+            if(ring.buffers(i)[0].equals(memory)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean contains(Memory memory, byte value) {
+        byte[] data = memory.getByteArray(0, SIZE);
+        for(byte b : data) {
+            if(b != value) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+package uk.co.caprica.vlcj.player.direct;
+
+import uk.co.caprica.vlcj.test.Checks;
+
+/**
+ * Test for the frame decimator that decides which displayed frames are delivered to the render
+ * callback.
+ * <p>
+ * Frames are offered at synthetic times rather than in real time, so the results do not depend on
+ * the speed of the machine. The test lives in the same package as the direct media player since the
+ * frame decimator is package-private.
+ */
+public class FrameDecimatorTest {
+
+    /**
+     * One millisecond, in nanoseconds.
+     */
+    private static final long MS = 1000000L;
+
+    private static boolean passed = true;
+
+    public static void main(String[] args) {
+        FrameDecimator decimator = new FrameDecimator();
+        passed &= Checks.check("every frame delivered by default", offer(decimator, 0, 40, 25) == 25);
+
+        decimator = new FrameDecimator();
+        decimator.setFrameInterval(3);
+        passed &= Checks.check("every third frame delivered", pattern(decimator, 9).equals("..x..x..x"));
+        decimator.setFrameInterval(1);
+        passed &= Checks.check("every frame delivered again", pattern(decimator, 3).equals("xxx"));
+
+        // 25 frames per second limited to 10 frames per second, for one second
+        decimator = new FrameDecimator();
+        decimator.setMaximumFrameRate(10);
+        passed &= Checks.check("frame rate limited", offer(decimator, 0, 40, 25) == 10);
+
+        // After a long pause the schedule restarts rather than delivering a burst to catch up
+        decimator = new FrameDecimator();
+        decimator.setMaximumFrameRate(10);
+        decimator.accept(0);
+        passed &= Checks.check("frame after a pause delivered", decimator.accept(1000 * MS));
+        passed &= Checks.check("no burst after a pause", !decimator.accept(1040 * MS) && !decimator.accept(1080 * MS));
+        passed &= Checks.check("schedule resumes after a pause", decimator.accept(1120 * MS));
+
+        // A new limit starts a new schedule, rather than waiting out the old one
+        decimator = new FrameDecimator();
+        decimator.setMaximumFrameRate(1);
+        decimator.accept(0);
+        passed &= Checks.check("frame held back by the limit", !decimator.accept(500 * MS));
+        decimator.setMaximumFrameRate(10);
+        passed &= Checks.check("new limit starts a new schedule", decimator.accept(510 * MS) && !decimator.accept(550 * MS));
+        decimator.setMaximumFrameRate(0);
+        passed &= Checks.check("limit removed", decimator.accept(560 * MS) && decimator.accept(561 * MS));
+
+        // Both limits, every second frame of 50 frames per second is 25, limited to 10
+        decimator = new FrameDecimator();
+        decimator.setFrameInterval(2);
+        decimator.setMaximumFrameRate(10);
+        passed &= Checks.check("both limits applied", offer(decimator, 0, 20, 50) == 10);
+
+        passed &= Checks.check("invalid frame interval rejected", invalidFrameInterval(decimator));
+
+        Checks.exit(passed);
+    }
+
+    /**
+     * Offer frames at a regular interval.
+     *
+     * @param decimator frame decimator
+     * @param start time of the first frame, in milliseconds
+     * @param interval time between frames, in milliseconds
+     * @param frames number of frames
+     * @return number of frames delivered
+     */
+    private static int offer(FrameDecimator decimator, long start, long interval, int frames) {
+        int delivered = 0;
+        for(int i = 0; i < frames; i ++ ) {
+            if(decimator.accept((start + i * interval) * MS)) {
+                delivered++;
+            }
+        }
+        return delivered;
+    }
+
+    /**
+     * Offer frames without a frame rate limit.
+     *
+     * @param decimator frame decimator
+     * @param frames number of frames
+     * @return pattern of delivered frames, "x" for delivered and "." for skipped
+     */
+    private static String pattern(FrameDecimator decimator, int frames) {
+        StringBuilder sb = new StringBuilder(frames);
+        for(int i = 0; i < frames; i ++ ) {
+            sb.append(decimator.accept(i * 40 * MS) ? 'x' : '.');
+        }
+        return sb.toString();
+    }
+
+    private static boolean invalidFrameInterval(FrameDecimator decimator) {
+        try {
+            decimator.setFrameInterval(0);
+            return false;
+        }
+        catch(IllegalArgumentException e) {
+            return decimator.getFrameInterval() == 2;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.test;
+
+/**
+ * Reporting for the self-checking tests that exercise vlcj components without vlc.
+ * <p>
+ * Each check prints its outcome, the test finishes by calling {@link #exit(boolean)} which prints
+ * the overall result and exits with a non-zero status if any check failed.
+ */
+public final class Checks {
+
+    private Checks() {
+    }
+
+    /**
+     * Print the outcome of a named check.
+     *
+     * @param name name of the check
+     * @param passed <code>true</code> if the check passed
+     * @return <code>passed</code>
+     */
+    public static boolean check(String name, boolean passed) {
+        System.out.printf("%-45s %s%n", name, passed ? "ok" : "FAILED");
+        return passed;
+    }
+
+    /**
+     * Print a message if a condition does not hold.
+     *
+     * @param condition condition to check
+     * @param message message to print if the condition does not hold
+     * @return <code>condition</code>
+     */
+    public static boolean expect(boolean condition, String message) {
+        if(!condition) {
+            System.out.println("  FAILED: " + message);
+        }
+        return condition;
+    }
+
+    /**
+     * Print the overall result and exit.
+     *
+     * @param passed <code>true</code> if every check passed
+     */
+    public static void exit(boolean passed) {
+        System.out.println(passed ? "PASSED" : "FAILED");
+        System.exit(passed ? 0 : 1);
+    }
+}
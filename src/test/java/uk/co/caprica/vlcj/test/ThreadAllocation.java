@@ -0,0 +1,83 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.test;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the number of bytes allocated on the Java heap by the current thread.
+ * <p>
+ * This relies on the HotSpot extension of the thread management bean, which is available in the
+ * Oracle and OpenJDK virtual machines.
+ * <p>
+ * Used by tests that check a code path is allocation-free in steady state.
+ */
+public final class ThreadAllocation {
+
+    private static final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * Bytes allocated by the measurement itself, subtracted from each measurement.
+     */
+    private static final long overhead;
+
+    static {
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        long min = Long.MAX_VALUE;
+        for(int i = 0; i < 100; i ++ ) {
+            long start = allocatedBytes();
+            long end = allocatedBytes();
+            min = Math.min(min, end - start);
+        }
+        overhead = min;
+    }
+
+    private ThreadAllocation() {
+    }
+
+    /**
+     * Get the total number of bytes allocated so far by the current thread.
+     *
+     * @return allocated bytes
+     */
+    public static long allocatedBytes() {
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Run a task a number of times, after first warming it up, and return the number of bytes
+     * allocated by the current thread while running it.
+     *
+     * @param task task to run
+     * @param iterations number of times to run the task, both for warm-up and measurement
+     * @return bytes allocated during the measured iterations
+     */
+    public static long measure(Runnable task, int iterations) {
+        for(int i = 0; i < iterations; i ++ ) {
+            task.run();
+        }
+        long start = allocatedBytes();
+        for(int i = 0; i < iterations; i ++ ) {
+            task.run();
+        }
+        long end = allocatedBytes();
+        return Math.max(0, end - start - overhead);
+    }
+}
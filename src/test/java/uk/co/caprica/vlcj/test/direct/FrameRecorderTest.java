@@ -0,0 +1,128 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.test.direct;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import uk.co.caprica.vlcj.player.direct.BufferFormat;
+import uk.co.caprica.vlcj.player.direct.DirectMediaPlayer;
+import uk.co.caprica.vlcj.player.direct.FrameRecorder;
+import uk.co.caprica.vlcj.player.direct.FrameRecordingReader;
+import uk.co.caprica.vlcj.player.direct.RenderCallback;
+import uk.co.caprica.vlcj.player.direct.format.I420BufferFormat;
+import uk.co.caprica.vlcj.test.Checks;
+import uk.co.caprica.vlcj.test.ThreadAllocation;
+
+import com.sun.jna.Memory;
+
+/**
+ * Test for the {@link FrameRecorder} and {@link FrameRecordingReader}.
+ * <p>
+ * Synthetic frames are recorded into a ring smaller than the number of frames, the recording is
+ * then replayed and each frame is checked against the frames that should have survived. The heap
+ * allocation of recording a frame is also reported, it should be zero.
+ */
+public class FrameRecorderTest {
+
+    private static final int SLOTS = 4;
+
+    private static final int FRAMES = 10;
+
+    public static void main(String[] args) throws IOException {
+        final BufferFormat format = new I420BufferFormat(63, 37);
+        final Memory[] buffers = new Memory[3];
+        for(int i = 0; i < buffers.length; i ++ ) {
+            buffers[i] = new Memory(format.getPitches()[i] * format.getLines()[i]);
+        }
+        File file = File.createTempFile("vlcj-frames", ".raw");
+        file.deleteOnExit();
+        boolean passed = true;
+        final FrameRecorder recorder = new FrameRecorder(file, SLOTS, 63 * 37 * 2);
+        try {
+            for(int frame = 0; frame < FRAMES; frame ++ ) {
+                fill(buffers, frame);
+                recorder.eventListener().timeChanged(null, frame * 40L);
+                recorder.display(null, buffers, format);
+            }
+            // A frame too large for a slot is counted rather than recorded
+            recorder.display(null, new Memory[] {new Memory(640 * 480 * 4)}, new BufferFormat("RV32", 640, 480, new int[] {640 * 4}, new int[] {480}));
+            passed &= Checks.expect(recorder.recordedFrames() == FRAMES, "recorded frames");
+            passed &= Checks.expect(recorder.droppedFrames() == 1, "dropped frames");
+        }
+        finally {
+            recorder.close();
+        }
+        File allocationFile = File.createTempFile("vlcj-frames", ".raw");
+        allocationFile.deleteOnExit();
+        final FrameRecorder allocationRecorder = new FrameRecorder(allocationFile, SLOTS, 63 * 37 * 2);
+        try {
+            long allocated = ThreadAllocation.measure(new Runnable() {
+                @Override
+                public void run() {
+                    allocationRecorder.display(null, buffers, format);
+                }
+            }, 1000);
+            System.out.printf("Recording allocated %d bytes per frame%n", allocated / 1000);
+        }
+        finally {
+            allocationRecorder.close();
+        }
+        final FrameRecordingReader reader = new FrameRecordingReader(file);
+        try {
+            passed &= Checks.expect(reader.frameCount() == SLOTS, "frame count");
+            final long[] expectedSequence = {FRAMES - SLOTS};
+            final boolean[] framePassed = {true};
+            int replayed = reader.replay(new RenderCallback() {
+                @Override
+                public void display(DirectMediaPlayer mediaPlayer, Memory[] nativeBuffers, BufferFormat bufferFormat) {
+                    framePassed[0] &= Checks.expect(reader.mediaTime() == expectedSequence[0] * 40, "media time");
+                    framePassed[0] &= Checks.expect(bufferFormat.getWidth() == 63 && bufferFormat.getHeight() == 37 && "I420".equals(bufferFormat.getChroma()), "buffer format");
+                    int frame = (int) expectedSequence[0];
+                    Memory[] expected = new Memory[3];
+                    for(int i = 0; i < expected.length; i ++ ) {
+                        expected[i] = new Memory(nativeBuffers[i].size());
+                    }
+                    fill(expected, frame);
+                    for(int i = 0; i < nativeBuffers.length; i ++ ) {
+                        int length = bufferFormat.getPitches()[i] * bufferFormat.getLines()[i];
+                        framePassed[0] &= Checks.expect(Arrays.equals(nativeBuffers[i].getByteArray(0, length), expected[i].getByteArray(0, length)), "frame " + expectedSequence[0] + " plane " + i);
+                    }
+                    expectedSequence[0]++;
+                }
+            }, null, false);
+            passed &= framePassed[0];
+            passed &= Checks.expect(replayed == SLOTS, "replayed frames");
+        }
+        finally {
+            reader.close();
+        }
+        Checks.exit(passed);
+    }
+
+    private static void fill(Memory[] buffers, int frame) {
+        for(int i = 0; i < buffers.length; i ++ ) {
+            for(long j = 0; j < buffers[i].size(); j ++ ) {
+                buffers[i].setByte(j, (byte) (frame * 31 + i * 7 + j));
+            }
+        }
+    }
+}
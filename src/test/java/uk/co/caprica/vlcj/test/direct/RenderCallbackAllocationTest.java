@@ -0,0 +1,142 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.test.direct;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+
+import uk.co.caprica.vlcj.player.direct.BufferFormat;
+import uk.co.caprica.vlcj.player.direct.BufferedImageRenderCallbackAdapter;
+import uk.co.caprica.vlcj.player.direct.DirectMediaPlayer;
+import uk.co.caprica.vlcj.player.direct.PlanarRenderCallbackAdapter;
+import uk.co.caprica.vlcj.player.direct.RenderCallbackAdapter;
+import uk.co.caprica.vlcj.player.direct.format.RV32BufferFormat;
+import uk.co.caprica.vlcj.test.Checks;
+import uk.co.caprica.vlcj.test.ThreadAllocation;
+
+import com.sun.jna.Memory;
+
+/**
+ * Regression test to check that the render callback adapters do not allocate any memory on the
+ * Java heap for each frame once they have reached a steady state.
+ * <p>
+ * The test drives the render callbacks directly with native buffers in the
+ * same way as the direct media player does - including cycling through multiple frame buffers, here
+ * six frame buffers of three planes each for the planar adapter.
+ * <p>
+ * The JIT may allocate a little now and then, so the average allocation must be less than a byte
+ * per frame - creating views for each frame would allocate far more than that.
+ */
+public class RenderCallbackAllocationTest {
+
+    private static final int FRAMES = 20000;
+
+    private static final int BUFFER_COUNT = 6;
+
+    /**
+     * Maximum average allocation, in bytes per frame.
+     */
+    private static final double MAXIMUM_ALLOCATION = 1;
+
+    public static void main(String[] args) {
+        boolean passed = true;
+        passed &= testRenderCallbackAdapter();
+        passed &= testPlanarRenderCallbackAdapter();
+        passed &= testBufferedImageRenderCallbackAdapter();
+        Checks.exit(passed);
+    }
+
+    private static boolean testRenderCallbackAdapter() {
+        final BufferFormat bufferFormat = new RV32BufferFormat(64, 48);
+        final Memory[][] frames = frames(bufferFormat);
+        final RenderCallbackAdapter adapter = new RenderCallbackAdapter(new int[64 * 48]) {
+            @Override
+            protected void onDisplay(DirectMediaPlayer mediaPlayer, int[] rgbBuffer) {
+            }
+        };
+        return check("RenderCallbackAdapter", new Runnable() {
+            private int frame;
+
+            @Override
+            public void run() {
+                adapter.display(null, frames[frame++ % BUFFER_COUNT], bufferFormat);
+            }
+        });
+    }
+
+    private static boolean testPlanarRenderCallbackAdapter() {
+        final BufferFormat bufferFormat = new BufferFormat("I420", 64, 48, new int[] {64, 32, 32}, new int[] {48, 24, 24});
+        final Memory[][] frames = frames(bufferFormat);
+        final PlanarRenderCallbackAdapter adapter = new PlanarRenderCallbackAdapter() {
+            private long sum;
+
+            @Override
+            protected void onDisplay(DirectMediaPlayer mediaPlayer, ByteBuffer[] planes, BufferFormat bufferFormat) {
+                for(ByteBuffer plane : planes) {
+                    sum += plane.get(plane.limit() - 1);
+                }
+            }
+        };
+        return check("PlanarRenderCallbackAdapter", new Runnable() {
+            private int frame;
+
+            @Override
+            public void run() {
+                adapter.display(null, frames[frame++ % BUFFER_COUNT], bufferFormat);
+            }
+        });
+    }
+
+    private static boolean testBufferedImageRenderCallbackAdapter() {
+        // Padded lines, so the frame is copied a line at a time
+        final BufferFormat bufferFormat = new BufferFormat("RV32", 60, 48, new int[] {64 * 4}, new int[] {48});
+        final Memory[][] frames = frames(bufferFormat);
+        final BufferedImageRenderCallbackAdapter adapter = new BufferedImageRenderCallbackAdapter() {
+            @Override
+            protected void onDisplay(DirectMediaPlayer mediaPlayer, BufferedImage image) {
+            }
+        };
+        return check("BufferedImageRenderCallbackAdapter", new Runnable() {
+            private int frame;
+
+            @Override
+            public void run() {
+                adapter.display(null, frames[frame++ % BUFFER_COUNT], bufferFormat);
+            }
+        });
+    }
+
+    private static Memory[][] frames(BufferFormat bufferFormat) {
+        Memory[][] frames = new Memory[BUFFER_COUNT][bufferFormat.getPlaneCount()];
+        for(int i = 0; i < BUFFER_COUNT; i ++ ) {
+            for(int j = 0; j < bufferFormat.getPlaneCount(); j ++ ) {
+                frames[i][j] = new Memory(bufferFormat.getPitches()[j] * bufferFormat.getLines()[j] + 32).align(32);
+                frames[i][j].clear();
+            }
+        }
+        return frames;
+    }
+
+    private static boolean check(String name, Runnable frame) {
+        long allocated = ThreadAllocation.measure(frame, FRAMES);
+        System.out.printf("%s: %d bytes allocated for %d frames (%.3f bytes per frame)%n", name, allocated, FRAMES, (double) allocated / FRAMES);
+        return (double) allocated / FRAMES < MAXIMUM_ALLOCATION;
+    }
+}
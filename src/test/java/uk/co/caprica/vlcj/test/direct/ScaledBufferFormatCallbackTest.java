@@ -0,0 +1,113 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.test.direct;
+
+import java.util.Arrays;
+
+import uk.co.caprica.vlcj.player.direct.BufferFormat;
+import uk.co.caprica.vlcj.player.direct.format.FitWithinBufferFormatCallback;
+import uk.co.caprica.vlcj.player.direct.format.FixedWidthBufferFormatCallback;
+import uk.co.caprica.vlcj.player.direct.format.PixelBudgetBufferFormatCallback;
+import uk.co.caprica.vlcj.player.direct.format.ScaledBufferFormatCallback;
+import uk.co.caprica.vlcj.test.Checks;
+
+/**
+ * Test for the scaled buffer format callbacks.
+ * <p>
+ * The computed buffer formats are dumped for a selection of odd source sizes, and each is checked
+ * for pitch alignment, preserved aspect ratio and the limit imposed by the callback.
+ */
+public class ScaledBufferFormatCallbackTest {
+
+    private static final int[][] SOURCE_SIZES = {{1920, 1080}, {1921, 1081}, {720, 576}, {853, 481}, {353, 241}, {17, 9}, {1, 1}};
+
+    private static final String[] CHROMAS = {"RV32", "RV24", "I420", "NV12", "YUY2"};
+
+    public static void main(String[] args) {
+        boolean passed = true;
+        for(String chroma : CHROMAS) {
+            passed &= check(chroma, "fit 320x240", new FitWithinBufferFormatCallback(chroma, 320, 240, 32), 320, 240, 0);
+            passed &= check(chroma, "width 255", new FixedWidthBufferFormatCallback(chroma, 255, 32), 255, Integer.MAX_VALUE, 0);
+            passed &= check(chroma, "budget 76800", new PixelBudgetBufferFormatCallback(chroma, 76800, 32), Integer.MAX_VALUE, Integer.MAX_VALUE, 76800);
+        }
+        // The budget must hold for every size, not just those dumped
+        PixelBudgetBufferFormatCallback budget = new PixelBudgetBufferFormatCallback(76800);
+        boolean withinBudget = true;
+        for(int width = 160; width <= 4096; width += 7) {
+            for(int height = 120; height <= 2160; height += 11) {
+                BufferFormat scaled = budget.getBufferFormat(width, height);
+                withinBudget &= (long) scaled.getWidth() * scaled.getHeight() <= 76800;
+            }
+        }
+        passed &= Checks.expect(withinBudget, "pixel budget for every size");
+        // Anamorphic PAL 16:9, 720x576 with 64:45 sample aspect ratio displays as 1024x576
+        FitWithinBufferFormatCallback anamorphic = new FitWithinBufferFormatCallback(512, 512);
+        anamorphic.setSampleAspectRatio(64, 45);
+        BufferFormat format = anamorphic.getBufferFormat(720, 576);
+        System.out.printf("anamorphic 720x576 sar 64:45 -> %s%n", format);
+        passed &= Checks.expect(format.getWidth() == 512 && format.getHeight() == 288, "anamorphic size");
+        Checks.exit(passed);
+    }
+
+    private static boolean check(String chroma, String name, ScaledBufferFormatCallback callback, int maxWidth, int maxHeight, long maxPixels) {
+        boolean passed = true;
+        for(int[] size : SOURCE_SIZES) {
+            BufferFormat format = callback.getBufferFormat(size[0], size[1]);
+            int width = format.getWidth();
+            int height = format.getHeight();
+            System.out.printf("%-4s %-12s %4dx%-4d -> %4dx%-4d pitches=%-16s lines=%s%n", chroma, name, size[0], size[1], width, height, Arrays.toString(format.getPitches()), Arrays.toString(format.getLines()));
+            for(int pitch : format.getPitches()) {
+                passed &= Checks.expect(pitch % 32 == 0, "pitch alignment");
+            }
+            passed &= Checks.expect(format.getPitches()[0] >= minimumPitch(chroma, width), "pitch too small");
+            passed &= Checks.expect(format.getLines()[0] == height, "lines");
+            boolean subsampled = !chroma.startsWith("RV");
+            if(subsampled) {
+                passed &= Checks.expect(width % 2 == 0 && height % 2 == 0, "even size");
+            }
+            if(maxWidth != Integer.MAX_VALUE && maxHeight != Integer.MAX_VALUE) {
+                passed &= Checks.expect(width <= maxWidth && height <= maxHeight, "bounding box");
+            }
+            if(maxPixels > 0) {
+                passed &= Checks.expect((long) width * height <= maxPixels, "pixel budget");
+            }
+            // The aspect ratio is preserved to within the rounding of each dimension
+            double slack = subsampled ? 2 : 1;
+            double expectedHeight = (double) width * size[1] / size[0];
+            passed &= Checks.expect(Math.abs(height - expectedHeight) <= slack + slack * size[1] / size[0] || height <= 2, "aspect ratio");
+        }
+        return passed;
+    }
+
+    private static int minimumPitch(String chroma, int width) {
+        if("RV32".equals(chroma)) {
+            return width * 4;
+        }
+        else if("RV24".equals(chroma)) {
+            return width * 3;
+        }
+        else if("YUY2".equals(chroma)) {
+            return width * 2;
+        }
+        else {
+            return width;
+        }
+    }
+}
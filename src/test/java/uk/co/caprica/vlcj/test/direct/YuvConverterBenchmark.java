@@ -0,0 +1,84 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.test.direct;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import uk.co.caprica.vlcj.player.direct.BufferFormat;
+import uk.co.caprica.vlcj.player.direct.convert.YuvConverter;
+import uk.co.caprica.vlcj.player.direct.format.I420BufferFormat;
+import uk.co.caprica.vlcj.player.direct.format.NV12BufferFormat;
+import uk.co.caprica.vlcj.player.direct.format.YUY2BufferFormat;
+
+/**
+ * Simple benchmark for the {@link YuvConverter}.
+ * <p>
+ * Converts 1080p frames in each supported chroma format, first with a single thread and then with
+ * every available processor, and reports the average time per frame.
+ */
+public class YuvConverterBenchmark {
+
+    private static final int WIDTH = 1920;
+
+    private static final int HEIGHT = 1080;
+
+    private static final int WARMUP_FRAMES = 200;
+
+    private static final int FRAMES = 500;
+
+    public static void main(String[] args) {
+        BufferFormat[] formats = {new I420BufferFormat(WIDTH, HEIGHT), new NV12BufferFormat(WIDTH, HEIGHT), new YUY2BufferFormat(WIDTH, HEIGHT)};
+        int[] threadCounts = {1, Runtime.getRuntime().availableProcessors()};
+        int[] rgb = new int[WIDTH * HEIGHT];
+        for(BufferFormat format : formats) {
+            ByteBuffer[] planes = planes(format);
+            for(int threads : threadCounts) {
+                YuvConverter converter = new YuvConverter(threads);
+                try {
+                    for(int i = 0; i < WARMUP_FRAMES; i ++ ) {
+                        converter.convert(format, planes, rgb);
+                    }
+                    long start = System.nanoTime();
+                    for(int i = 0; i < FRAMES; i ++ ) {
+                        converter.convert(format, planes, rgb);
+                    }
+                    long elapsed = System.nanoTime() - start;
+                    System.out.printf("%s %dx%d threads=%d: %.3f ms per frame%n", format.getChroma(), WIDTH, HEIGHT, threads, elapsed / 1000000.0 / FRAMES);
+                }
+                finally {
+                    converter.release();
+                }
+            }
+        }
+    }
+
+    private static ByteBuffer[] planes(BufferFormat format) {
+        Random random = new Random(0);
+        ByteBuffer[] planes = new ByteBuffer[format.getPlaneCount()];
+        for(int i = 0; i < planes.length; i ++ ) {
+            planes[i] = ByteBuffer.allocateDirect(format.getPitches()[i] * format.getLines()[i]);
+            for(int j = 0; j < planes[i].capacity(); j ++ ) {
+                planes[i].put(j, (byte) random.nextInt(256));
+            }
+        }
+        return planes;
+    }
+}
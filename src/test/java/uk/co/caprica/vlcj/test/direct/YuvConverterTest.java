@@ -0,0 +1,174 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.test.direct;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import uk.co.caprica.vlcj.player.direct.BufferFormat;
+import uk.co.caprica.vlcj.player.direct.convert.YuvConverter;
+import uk.co.caprica.vlcj.player.direct.format.I420BufferFormat;
+import uk.co.caprica.vlcj.player.direct.format.NV12BufferFormat;
+import uk.co.caprica.vlcj.player.direct.format.YUY2BufferFormat;
+import uk.co.caprica.vlcj.test.Checks;
+
+/**
+ * Correctness test for the {@link YuvConverter}.
+ * <p>
+ * Random frames in each supported chroma format are converted and compared against a reference
+ * floating-point implementation of the BT.601 conversion, and the multi-threaded output is checked
+ * against the single-threaded output. Odd frame sizes are used to exercise the rounding of the
+ * chroma planes.
+ */
+public class YuvConverterTest {
+
+    /**
+     * Maximum allowed difference between the converter and reference implementation, for each
+     * colour component.
+     */
+    private static final int TOLERANCE = 2;
+
+    public static void main(String[] args) {
+        YuvConverter single = new YuvConverter(1);
+        YuvConverter parallel = new YuvConverter(4);
+        boolean passed = true;
+        try {
+            passed &= checkKnownValues(single);
+            for(int[] size : new int[][] {{64, 48}, {63, 37}, {1, 1}, {7, 3}, {320, 241}}) {
+                passed &= check(new I420BufferFormat(size[0], size[1]), single, parallel);
+                passed &= check(new BufferFormat("YV12", size[0], size[1], new I420BufferFormat(size[0], size[1]).getPitches(), new I420BufferFormat(size[0], size[1]).getLines()), single, parallel);
+                passed &= check(new NV12BufferFormat(size[0], size[1]), single, parallel);
+                passed &= check(new YUY2BufferFormat(size[0], size[1]), single, parallel);
+            }
+        }
+        finally {
+            single.release();
+            parallel.release();
+        }
+        Checks.exit(passed);
+    }
+
+    private static boolean checkKnownValues(YuvConverter converter) {
+        BufferFormat format = new I420BufferFormat(2, 2);
+        int[] expected = {0x000000, 0xffffff};
+        int[] luma = {16, 235};
+        boolean passed = true;
+        for(int i = 0; i < luma.length; i ++ ) {
+            ByteBuffer[] planes = planes(format);
+            fill(planes[0], luma[i]);
+            fill(planes[1], 128);
+            fill(planes[2], 128);
+            int[] rgb = new int[4];
+            converter.convert(format, planes, rgb);
+            for(int pixel : rgb) {
+                if(pixel != expected[i]) {
+                    System.out.printf("Y=%d: expected %06x but was %06x%n", luma[i], expected[i], pixel);
+                    passed = false;
+                }
+            }
+        }
+        return passed;
+    }
+
+    private static boolean check(BufferFormat format, YuvConverter single, YuvConverter parallel) {
+        Random random = new Random(format.getWidth() * 31 + format.getHeight());
+        ByteBuffer[] planes = planes(format);
+        for(ByteBuffer plane : planes) {
+            for(int i = 0; i < plane.capacity(); i ++ ) {
+                plane.put(i, (byte) random.nextInt(256));
+            }
+        }
+        int[] rgb = new int[format.getWidth() * format.getHeight()];
+        int[] parallelRgb = new int[rgb.length];
+        single.convert(format, planes, rgb);
+        parallel.convert(format, planes, parallelRgb);
+        boolean passed = true;
+        if(!Arrays.equals(rgb, parallelRgb)) {
+            System.out.printf("%s %dx%d: parallel output differs from single-threaded output%n", format.getChroma(), format.getWidth(), format.getHeight());
+            passed = false;
+        }
+        int worst = 0;
+        for(int y = 0; y < format.getHeight(); y ++ ) {
+            for(int x = 0; x < format.getWidth(); x ++ ) {
+                int[] yuv = sample(format, planes, x, y);
+                int expected = reference(yuv[0], yuv[1], yuv[2]);
+                int actual = rgb[y * format.getWidth() + x];
+                for(int shift = 0; shift <= 16; shift += 8) {
+                    worst = Math.max(worst, Math.abs(((expected >> shift) & 0xff) - ((actual >> shift) & 0xff)));
+                }
+            }
+        }
+        if(worst > TOLERANCE) {
+            passed = false;
+        }
+        System.out.printf("%s %dx%d: maximum difference from reference %d %s%n", format.getChroma(), format.getWidth(), format.getHeight(), worst, worst > TOLERANCE ? "FAILED" : "ok");
+        return passed;
+    }
+
+    /**
+     * Read the Y, U and V samples for a pixel, independently of the converter.
+     */
+    private static int[] sample(BufferFormat format, ByteBuffer[] planes, int x, int y) {
+        int[] pitches = format.getPitches();
+        String chroma = format.getChroma();
+        if("YUY2".equals(chroma)) {
+            int pair = y * pitches[0] + (x / 2) * 4;
+            return new int[] {planes[0].get(pair + (x % 2) * 2) & 0xff, planes[0].get(pair + 1) & 0xff, planes[0].get(pair + 3) & 0xff};
+        }
+        int luma = planes[0].get(y * pitches[0] + x) & 0xff;
+        if("NV12".equals(chroma)) {
+            int uv = (y / 2) * pitches[1] + (x / 2) * 2;
+            return new int[] {luma, planes[1].get(uv) & 0xff, planes[1].get(uv + 1) & 0xff};
+        }
+        int u = "I420".equals(chroma) ? 1 : 2;
+        int v = "I420".equals(chroma) ? 2 : 1;
+        return new int[] {luma, planes[u].get((y / 2) * pitches[u] + x / 2) & 0xff, planes[v].get((y / 2) * pitches[v] + x / 2) & 0xff};
+    }
+
+    /**
+     * Reference floating-point BT.601 limited range conversion.
+     */
+    private static int reference(int y, int u, int v) {
+        double c = 1.164 * (y - 16);
+        int r = clamp(Math.round(c + 1.596 * (v - 128)));
+        int g = clamp(Math.round(c - 0.392 * (u - 128) - 0.813 * (v - 128)));
+        int b = clamp(Math.round(c + 2.017 * (u - 128)));
+        return r << 16 | g << 8 | b;
+    }
+
+    private static int clamp(long value) {
+        return (int) Math.max(0, Math.min(255, value));
+    }
+
+    private static ByteBuffer[] planes(BufferFormat format) {
+        ByteBuffer[] planes = new ByteBuffer[format.getPlaneCount()];
+        for(int i = 0; i < planes.length; i ++ ) {
+            planes[i] = ByteBuffer.allocateDirect(format.getPitches()[i] * format.getLines()[i]);
+        }
+        return planes;
+    }
+
+    private static void fill(ByteBuffer plane, int value) {
+        for(int i = 0; i < plane.capacity(); i ++ ) {
+            plane.put(i, (byte) value);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.test.directaudio;
+
+import java.nio.ByteBuffer;
+
+import uk.co.caprica.vlcj.player.directaudio.AudioCallback;
+import uk.co.caprica.vlcj.player.directaudio.ByteBufferAudioCallbackAdapter;
+import uk.co.caprica.vlcj.player.directaudio.DefaultAudioCallbackAdapter;
+import uk.co.caprica.vlcj.player.directaudio.DirectAudioPlayer;
+import uk.co.caprica.vlcj.player.directaudio.PooledAudioCallbackAdapter;
+import uk.co.caprica.vlcj.test.ThreadAllocation;
+
+import com.sun.jna.Memory;
+
+/**
+ * Simple benchmark comparing the audio callback adapters.
+ * <p>
+ * Simulates the play callbacks for 48kHz stereo 16-bit audio, cycling through a number of native
+ * sample buffers as the native library does, and reports the average time and the heap allocation
+ * for each play callback.
+ */
+public class AudioCallbackAdapterBenchmark {
+
+    private static final int RATE = 48000;
+
+    private static final int CHANNELS = 2;
+
+    private static final int BLOCK_SIZE = CHANNELS * 2;
+
+    /**
+     * Samples per play callback, about 21ms of audio.
+     */
+    private static final int SAMPLES = 1024;
+
+    private static final int NATIVE_BUFFERS = 16;
+
+    /**
+     * About seven minutes of audio.
+     */
+    private static final int CALLS = 20000;
+
+    private static final Memory[] nativeBuffers = new Memory[NATIVE_BUFFERS];
+
+    private static volatile int sink;
+
+    public static void main(String[] args) {
+        for(int i = 0; i < NATIVE_BUFFERS; i ++ ) {
+            nativeBuffers[i] = new Memory(SAMPLES * BLOCK_SIZE);
+            for(int j = 0; j < SAMPLES * BLOCK_SIZE; j ++ ) {
+                nativeBuffers[i].setByte(j, (byte) (i + j));
+            }
+        }
+        System.out.printf("%d Hz, %d channels, %d samples per callback, %d callbacks%n", RATE, CHANNELS, SAMPLES, CALLS);
+        for(int round = 0; round < 2; round ++ ) {
+            run("DefaultAudioCallbackAdapter", new DefaultAudioCallbackAdapter(BLOCK_SIZE) {
+                @Override
+                protected void onPlay(DirectAudioPlayer mediaPlayer, byte[] data, int sampleCount, long pts) {
+                    consume(data, sampleCount * blockSize);
+                }
+            });
+            run("ByteBufferAudioCallbackAdapter", new ByteBufferAudioCallbackAdapter(BLOCK_SIZE) {
+                @Override
+                protected void onPlay(DirectAudioPlayer mediaPlayer, ByteBuffer data, int sampleCount, long pts) {
+                    int sum = 0;
+                    for(int i = 0; i < data.limit(); i += 2) {
+                        sum += data.getShort(i);
+                    }
+                    sink += sum;
+                }
+            });
+            run("PooledAudioCallbackAdapter", new PooledAudioCallbackAdapter(BLOCK_SIZE) {
+                @Override
+                protected void onPlay(DirectAudioPlayer mediaPlayer, byte[] data, int length, int sampleCount, long pts) {
+                    consume(data, length);
+                    release(data);
+                }
+            });
+        }
+    }
+
+    private static void run(String name, final AudioCallback callback) {
+        final int[] call = new int[1];
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                callback.play(null, nativeBuffers[call[0]++ % NATIVE_BUFFERS], SAMPLES, call[0]);
+            }
+        };
+        long start = System.nanoTime();
+        long allocated = ThreadAllocation.measure(task, CALLS);
+        long elapsed = (System.nanoTime() - start) / 2;
+        System.out.printf("%-32s %8.2f us/callback %8d bytes/callback%n", name, elapsed / 1000.0 / CALLS, allocated / CALLS);
+    }
+
+    private static void consume(byte[] data, int length) {
+        int sum = 0;
+        for(int i = 0; i < length; i += 2) {
+            sum += (short) ((data[i] & 0xff) | (data[i + 1] << 8));
+        }
+        sink += sum;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.test.directaudio;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+
+import uk.co.caprica.vlcj.player.directaudio.AudioBufferFormat;
+import uk.co.caprica.vlcj.player.directaudio.AudioFileSink;
+import uk.co.caprica.vlcj.player.directaudio.AudioFileType;
+import uk.co.caprica.vlcj.test.Checks;
+
+import com.sun.jna.Memory;
+
+/**
+ * Test for the {@link AudioFileSink}.
+ * <p>
+ * Synthetic 48kHz stereo samples are played into the sink as fast as possible, in the same sized
+ * pieces the native audio thread would use, then the WAV file is checked with Java Sound and the
+ * sample data is compared byte for byte.
+ */
+public class AudioFileSinkTest {
+
+    private static final int RATE = 48000;
+
+    private static final int CHANNELS = 2;
+
+    private static final int SAMPLES_PER_CALLBACK = 1024;
+
+    private static final int SECONDS = 60;
+
+    public static void main(String[] args) throws Exception {
+        File file = File.createTempFile("vlcj-audio-file-sink", ".wav");
+        file.deleteOnExit();
+        AudioBufferFormat format = new AudioBufferFormat("S16N", RATE, CHANNELS);
+        AudioFileSink sink = new AudioFileSink(file, AudioFileType.WAV, format);
+        int blockSize = format.getBlockSize();
+        Memory samples = new Memory(SAMPLES_PER_CALLBACK * blockSize);
+        byte[] data = new byte[SAMPLES_PER_CALLBACK * blockSize];
+        long total = (long) RATE * SECONDS;
+        long position = 0;
+        long start = System.nanoTime();
+        long maxCallback = 0;
+        while(position < total) {
+            int count = (int) Math.min(SAMPLES_PER_CALLBACK, total - position);
+            for(int i = 0; i < count * blockSize; i ++ ) {
+                data[i] = (byte) ((position * blockSize + i) % 251);
+            }
+            samples.write(0, data, 0, count * blockSize);
+            long before = System.nanoTime();
+            sink.play(null, samples, count, position);
+            maxCallback = Math.max(maxCallback, System.nanoTime() - before);
+            position += count;
+            if(position == total / 2) {
+                // Drain half way, the header must be patched and writing must carry on
+                sink.drain(null);
+            }
+        }
+        sink.close();
+        long elapsed = System.nanoTime() - start;
+        long dataBytes = total * blockSize;
+        System.out.printf("Wrote %d seconds of audio in %d ms (%.0fx real-time)%n", SECONDS, elapsed / 1000000, SECONDS * 1e9 / elapsed);
+        System.out.printf("Writes: %d, stalls: %d, longest callback: %d us%n", sink.writes(), sink.stalls(), maxCallback / 1000);
+
+        boolean passed = Checks.check("bytes written", sink.bytesWritten() == dataBytes);
+        passed &= Checks.check("file length", file.length() == 44 + dataBytes);
+
+        AudioFileFormat fileFormat = AudioSystem.getAudioFileFormat(file);
+        AudioFormat audioFormat = fileFormat.getFormat();
+        passed &= Checks.check("file type", fileFormat.getType() == AudioFileFormat.Type.WAVE);
+        passed &= Checks.check("sample rate", audioFormat.getSampleRate() == RATE);
+        passed &= Checks.check("channels", audioFormat.getChannels() == CHANNELS);
+        passed &= Checks.check("sample size", audioFormat.getSampleSizeInBits() == 16);
+        passed &= Checks.check("frame length", fileFormat.getFrameLength() == total);
+
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.skipBytes(44);
+            byte[] buffer = new byte[65536];
+            long offset = 0;
+            boolean matches = true;
+            while(offset < dataBytes) {
+                int length = (int) Math.min(buffer.length, dataBytes - offset);
+                in.readFully(buffer, 0, length);
+                for(int i = 0; i < length && matches; i ++ ) {
+                    matches = buffer[i] == (byte) ((offset + i) % 251);
+                }
+                offset += length;
+            }
+            passed &= Checks.check("sample data", matches);
+        }
+        finally {
+            in.close();
+        }
+        Checks.exit(passed);
+    }
+}
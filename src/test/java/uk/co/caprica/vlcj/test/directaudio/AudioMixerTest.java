@@ -0,0 +1,141 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.test.directaudio;
+
+import java.nio.ByteOrder;
+
+import uk.co.caprica.vlcj.player.directaudio.AudioMixer;
+import uk.co.caprica.vlcj.player.directaudio.AudioMixerInput;
+import uk.co.caprica.vlcj.test.Checks;
+import uk.co.caprica.vlcj.test.ThreadAllocation;
+
+import com.sun.jna.Memory;
+
+/**
+ * Test for the {@link AudioMixer}.
+ * <p>
+ * Three inputs are played with constant sample values: two start together, with different gains,
+ * and the third starts 100ms later by timestamp but is played at the same time as the others. The
+ * mixed output is checked sample by sample, so the gains and the timestamp alignment are both
+ * verified. Once warmed up, the allocation of the mixer thread is measured over the remaining
+ * periods and must average less than a few bytes per period - the JIT may allocate a little now and
+ * then, but a mixer that allocated for each period would create far more than that.
+ */
+public class AudioMixerTest {
+
+    private static final int RATE = 48000;
+
+    private static final int CHANNELS = 2;
+
+    private static final int PERIOD = 480;
+
+    private static final int TOTAL = RATE * 60;
+
+    private static final int DELAY = RATE / 10;
+
+    private static final long BASE_PTS = 1000000;
+
+    /**
+     * Number of periods mixed before allocations are measured, giving the JIT time to settle.
+     */
+    private static final int WARM_UP = 400;
+
+    /**
+     * Maximum average allocation by the mixer thread, in bytes per period.
+     */
+    private static final double MAXIMUM_ALLOCATION = 8;
+
+    public static void main(String[] args) throws Exception {
+        final short[] mixed = new short[(TOTAL + DELAY + PERIOD) * CHANNELS];
+        final int[] position = new int[1];
+        final long[] allocation = new long[3];
+        final boolean little = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+        AudioMixer mixer = new AudioMixer(RATE, CHANNELS, PERIOD) {
+            @Override
+            protected void onMix(byte[] data, int length, long pts) {
+                for(int i = 0; i < length; i += 2) {
+                    int lo = data[i + (little ? 0 : 1)] & 0xff;
+                    int hi = data[i + (little ? 1 : 0)];
+                    mixed[position[0]++] = (short) (hi << 8 | lo);
+                }
+                if(periods() == WARM_UP) {
+                    allocation[0] = ThreadAllocation.allocatedBytes();
+                }
+                allocation[1] = ThreadAllocation.allocatedBytes();
+                allocation[2] = periods();
+            }
+        };
+        AudioMixerInput a = mixer.newInput(1.0f);
+        AudioMixerInput b = mixer.newInput(0.5f);
+        AudioMixerInput c = mixer.newInput(1.0f);
+
+        Memory samplesA = constant(1000);
+        Memory samplesB = constant(2000);
+        Memory samplesC = constant(100);
+        int blockSize = mixer.format().getBlockSize();
+        for(int i = 0; i < TOTAL; i += PERIOD) {
+            long pts = BASE_PTS + i * 1000000L / RATE;
+            while(a.ringBuffer().writable() < PERIOD * blockSize || c.ringBuffer().writable() < PERIOD * blockSize) {
+                Thread.sleep(1);
+            }
+            a.play(null, samplesA, PERIOD, pts);
+            b.play(null, samplesB, PERIOD, pts);
+            c.play(null, samplesC, PERIOD, pts + DELAY * 1000000L / RATE);
+            if(i == 0) {
+                // Every input has started, otherwise the first period could be mixed without some of them
+                mixer.start();
+            }
+        }
+        a.drain(null);
+        b.drain(null);
+        c.drain(null);
+        long cpuTime = mixer.cpuTime();
+        mixer.stop();
+
+        int errors = 0;
+        for(int i = 0; i < TOTAL + DELAY; i ++ ) {
+            int expected = (i < TOTAL ? 2000 : 0) + (i >= DELAY ? 100 : 0);
+            for(int ch = 0; ch < CHANNELS; ch ++ ) {
+                if(mixed[i * CHANNELS + ch] != expected) {
+                    if(errors++ < 5) {
+                        System.out.printf("sample %d channel %d: expected %d, got %d%n", i, ch, expected, mixed[i * CHANNELS + ch]);
+                    }
+                }
+            }
+        }
+        double allocated = (allocation[1] - allocation[0]) / (double) (allocation[2] - WARM_UP);
+        System.out.printf("Periods: %d, mix time: %.1f ms, mixer CPU time: %.1f ms%n", mixer.periods(), mixer.mixTime() / 1e6, cpuTime / 1e6);
+        System.out.printf("Underruns: %d %d %d, skipped: %d %d %d%n", a.underruns(), b.underruns(), c.underruns(), a.skippedSamples(), b.skippedSamples(), c.skippedSamples());
+        System.out.printf("Allocated: %.2f bytes per period over %d periods%n", allocated, allocation[2] - WARM_UP);
+        boolean passed = Checks.check("mixed length", position[0] == (TOTAL + DELAY) * CHANNELS);
+        passed &= Checks.check("mixed samples", errors == 0);
+        passed &= Checks.check("skipped", a.skippedSamples() + b.skippedSamples() + c.skippedSamples() == 0);
+        passed &= Checks.check("allocation", allocated < MAXIMUM_ALLOCATION);
+        Checks.exit(passed);
+    }
+
+    private static Memory constant(int value) {
+        Memory memory = new Memory(PERIOD * CHANNELS * 2);
+        for(int i = 0; i < PERIOD * CHANNELS; i ++ ) {
+            memory.setShort(i * 2, (short) value);
+        }
+        return memory;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.test.directaudio;
+
+import uk.co.caprica.vlcj.player.directaudio.AudioRingBuffer;
+import uk.co.caprica.vlcj.player.directaudio.RingBufferAudioCallback;
+import uk.co.caprica.vlcj.test.Checks;
+
+import com.sun.jna.Memory;
+
+/**
+ * Test for the {@link AudioRingBuffer}.
+ * <p>
+ * A producer thread writes a known sequence of bytes from native memory, in odd sized pieces, and
+ * the main thread reads them back and checks nothing was lost, duplicated or re-ordered. The
+ * overrun, underrun and flush behaviour is then checked on a single thread, and finally the
+ * {@link RingBufferAudioCallback} is checked with a slow consumer.
+ */
+public class AudioRingBufferTest {
+
+    private static final int BLOCK_SIZE = 4;
+
+    private static final long TOTAL = 16L * 1024 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        boolean passed = checkConcurrent();
+        passed &= checkCounters();
+        passed &= checkCallback();
+        Checks.exit(passed);
+    }
+
+    private static boolean checkConcurrent() throws InterruptedException {
+        final AudioRingBuffer ring = new AudioRingBuffer(16384);
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                Memory samples = new Memory(1500 * BLOCK_SIZE);
+                byte[] pattern = new byte[1500 * BLOCK_SIZE];
+                long position = 0;
+                int blocks = 1;
+                while(position < TOTAL) {
+                    int length = (int) Math.min(blocks * BLOCK_SIZE, TOTAL - position);
+                    for(int i = 0; i < length; i ++ ) {
+                        pattern[i] = (byte) (position + i);
+                    }
+                    samples.write(0, pattern, 0, length);
+                    while(ring.writable() < length) {
+                        Thread.yield();
+                    }
+                    ring.write(samples, length, BLOCK_SIZE);
+                    position += length;
+                    blocks = blocks % 1000 + 37;
+                }
+            }
+        };
+        long start = System.nanoTime();
+        producer.start();
+        byte[] data = new byte[1000 * BLOCK_SIZE];
+        long position = 0;
+        boolean passed = true;
+        while(position < TOTAL) {
+            int length = ring.read(data, 0, data.length);
+            for(int i = 0; i < length; i ++ ) {
+                if(data[i] != (byte) (position + i)) {
+                    System.out.println("  FAILED: wrong data at " + (position + i));
+                    passed = false;
+                    break;
+                }
+            }
+            if(!passed) {
+                break;
+            }
+            position += length;
+            if(length == 0) {
+                Thread.yield();
+            }
+        }
+        producer.join();
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("Transferred %d MB in %d ms, %d underruns%n", TOTAL >> 20, elapsed / 1000000, ring.underruns());
+        passed &= Checks.expect(ring.overruns() == 0, "no overruns");
+        passed &= Checks.expect(ring.bytesRead() == TOTAL && ring.bytesWritten() == TOTAL, "byte counts");
+        return passed;
+    }
+
+    private static boolean checkCounters() {
+        boolean passed = true;
+        AudioRingBuffer ring = new AudioRingBuffer(64);
+        Memory samples = new Memory(100);
+        // 100 bytes into 64, only 16 whole blocks fit
+        passed &= Checks.expect(ring.write(samples, 100, BLOCK_SIZE) == 64, "partial write");
+        passed &= Checks.expect(ring.overruns() == 1 && ring.overrunBytes() == 36, "overrun counters");
+        byte[] data = new byte[64];
+        passed &= Checks.expect(ring.read(data, 0, 40) == 40, "read");
+        passed &= Checks.expect(ring.read(data, 0, 64) == 24, "read remaining");
+        passed &= Checks.expect(ring.read(data, 0, 64) == 0, "empty read");
+        passed &= Checks.expect(ring.read(data, 0, 64) == 0, "empty read again");
+        passed &= Checks.expect(ring.underruns() == 1, "underrun counted once");
+        ring.write(samples, 20, BLOCK_SIZE);
+        ring.flush();
+        passed &= Checks.expect(ring.available() == 0, "flushed");
+        passed &= Checks.expect(ring.flushedBytes() == 20, "flushed bytes");
+        passed &= Checks.expect(ring.drain(0), "drained after flush");
+        ring.write(samples, 8, BLOCK_SIZE);
+        passed &= Checks.expect(ring.read(data, 0, 64) == 8, "read after flush");
+        passed &= Checks.expect(!ring.drain(0) || ring.available() == 0, "drain");
+        return passed;
+    }
+
+    private static boolean checkCallback() {
+        final long[] consumed = new long[1];
+        RingBufferAudioCallback callback = new RingBufferAudioCallback(BLOCK_SIZE, 65536, 4096) {
+            @Override
+            protected void onSamples(byte[] data, int length) {
+                // Simulate a slow, blocking consumer
+                try {
+                    Thread.sleep(1);
+                }
+                catch(InterruptedException e) {
+                }
+                consumed[0] += length;
+            }
+        };
+        callback.start();
+        Memory samples = new Memory(1024 * BLOCK_SIZE);
+        for(int i = 0; i < 10; i ++ ) {
+            callback.play(null, samples, 1024, i);
+        }
+        callback.drain(null);
+        callback.stop();
+        boolean passed = Checks.expect(callback.ringBuffer().available() == 0, "callback drained");
+        passed &= Checks.expect(consumed[0] == 10 * 1024 * BLOCK_SIZE, "callback consumed");
+        return passed;
+    }
+}
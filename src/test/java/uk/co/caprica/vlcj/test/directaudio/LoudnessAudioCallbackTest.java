@@ -0,0 +1,135 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.test.directaudio;
+
+import uk.co.caprica.vlcj.player.directaudio.AudioBufferFormat;
+import uk.co.caprica.vlcj.player.directaudio.LoudnessAudioCallback;
+import uk.co.caprica.vlcj.player.directaudio.LoudnessListener;
+import uk.co.caprica.vlcj.player.directaudio.LoudnessResult;
+import uk.co.caprica.vlcj.test.Checks;
+import uk.co.caprica.vlcj.test.ThreadAllocation;
+
+import com.sun.jna.Memory;
+
+/**
+ * Test for the {@link LoudnessAudioCallback}.
+ * <p>
+ * Synthetic 48kHz stereo programmes modelled on the EBU Tech 3341 and 3342 test signals are
+ * measured and the results, delivered on drain, are checked against the expected values. The heap
+ * allocation of the play callback is then checked to be zero, and the measurement speed reported.
+ */
+public class LoudnessAudioCallbackTest {
+
+    private static final int RATE = 48000;
+
+    private static final int SAMPLES = 1024;
+
+    public static void main(String[] args) {
+        boolean passed = true;
+        // 1kHz sine at -23dBFS in both channels measures -23 LUFS
+        LoudnessResult result = measure("S16N", new double[][] {{-23, 20}}, 1000, 0);
+        passed &= check("Stereo -23dBFS sine, integrated", result.integratedLoudness(), -23, 0.1);
+        passed &= check("Stereo -23dBFS sine, short-term", result.shortTermLoudness(), -23, 0.1);
+        // Quieter passages either side fall below the relative gate
+        result = measure("S16N", new double[][] {{-36, 10}, {-23, 60}, {-36, 10}}, 1000, 0);
+        passed &= check("Gated -36/-23/-36, integrated", result.integratedLoudness(), -23, 0.1);
+        // Two levels ten LU apart have a loudness range of ten LU
+        result = measure("FL32", new double[][] {{-20, 20}, {-30, 20}}, 1000, 0);
+        passed &= check("-20/-30 loudness range", result.loudnessRange(), 10, 1);
+        // Full-scale sine at a quarter of the sample rate, sampled half way between its peaks
+        result = measure("FL32", new double[][] {{0, 5}}, RATE / 4, Math.PI / 4);
+        passed &= check("Inter-sample peak, sample peak", result.samplePeak(), -3.01, 0.05);
+        passed &= check("Inter-sample peak, true peak", result.truePeak(), 0, 0.3);
+        passed &= checkAllocation();
+        Checks.exit(passed);
+    }
+
+    /**
+     * Measure a programme of sine wave sections.
+     *
+     * @param format sample format
+     * @param sections level in dBFS and duration in seconds of each section
+     * @param frequency sine wave frequency
+     * @param phase sine wave initial phase
+     * @return measured loudness
+     */
+    private static LoudnessResult measure(String format, double[][] sections, double frequency, double phase) {
+        final LoudnessResult[] result = new LoudnessResult[1];
+        AudioBufferFormat audioFormat = new AudioBufferFormat(format, RATE, 2);
+        LoudnessAudioCallback callback = new LoudnessAudioCallback(null, audioFormat, new LoudnessListener() {
+            @Override
+            public void loudness(LoudnessAudioCallback source, LoudnessResult loudness) {
+                result[0] = loudness;
+            }
+        });
+        Memory samples = new Memory(SAMPLES * audioFormat.getBlockSize());
+        long position = 0;
+        for(double[] section : sections) {
+            double amplitude = Math.pow(10, section[0] / 20);
+            long end = position + (long) (section[1] * RATE);
+            while(position < end) {
+                int count = (int) Math.min(SAMPLES, end - position);
+                for(int i = 0; i < count; i ++ ) {
+                    double value = amplitude * Math.sin(2 * Math.PI * frequency * (position + i) / RATE + phase);
+                    if("FL32".equals(format)) {
+                        samples.setFloat(i * 8, (float) value);
+                        samples.setFloat(i * 8 + 4, (float) value);
+                    }
+                    else {
+                        short sample = (short) Math.round(value * 32767);
+                        samples.setShort(i * 4, sample);
+                        samples.setShort(i * 4 + 2, sample);
+                    }
+                }
+                callback.play(null, samples, count, 0);
+                position += count;
+            }
+        }
+        callback.drain(null);
+        System.out.println(result[0]);
+        return result[0];
+    }
+
+    private static boolean checkAllocation() {
+        AudioBufferFormat audioFormat = new AudioBufferFormat("S16N", RATE, 2);
+        final LoudnessAudioCallback callback = new LoudnessAudioCallback(null, audioFormat, null);
+        final Memory samples = new Memory(SAMPLES * audioFormat.getBlockSize());
+        for(int i = 0; i < SAMPLES * 2; i ++ ) {
+            samples.setShort(i * 2, (short) (Math.sin(i * 0.01) * 10000));
+        }
+        int calls = 20000;
+        long start = System.nanoTime();
+        long allocated = ThreadAllocation.measure(new Runnable() {
+            @Override
+            public void run() {
+                callback.play(null, samples, SAMPLES, 0);
+            }
+        }, calls);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Measured %.0fx faster than real-time, allocated %d bytes per buffer%n", 2.0 * calls * SAMPLES / RATE / seconds, allocated / calls);
+        return allocated == 0;
+    }
+
+    private static boolean check(String name, double value, double expected, double tolerance) {
+        boolean result = Math.abs(value - expected) <= tolerance;
+        System.out.printf("%-35s %7.2f (expected %.2f) %s%n", name, value, expected, result ? "ok" : "FAILED");
+        return result;
+    }
+}
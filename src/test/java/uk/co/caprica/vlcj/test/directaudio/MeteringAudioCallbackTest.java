@@ -0,0 +1,91 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.test.directaudio;
+
+import java.nio.ByteOrder;
+
+import uk.co.caprica.vlcj.player.directaudio.AudioLevels;
+import uk.co.caprica.vlcj.player.directaudio.MeteringAudioCallback;
+import uk.co.caprica.vlcj.test.Checks;
+import uk.co.caprica.vlcj.test.ThreadAllocation;
+
+import com.sun.jna.Memory;
+
+/**
+ * Test for the {@link MeteringAudioCallback}.
+ * <p>
+ * Synthetic 48kHz stereo buffers with known levels are metered in both supported sample formats and
+ * the published levels are checked, then the heap allocation of the play callback is reported, it
+ * should only be the snapshot published for each window.
+ */
+public class MeteringAudioCallbackTest {
+
+    private static final int RATE = 48000;
+
+    private static final int SAMPLES = 480;
+
+    public static void main(String[] args) {
+        boolean passed = check("S16N", 2);
+        passed &= check("FL32", 4);
+        Checks.exit(passed);
+    }
+
+    private static boolean check(String format, int sampleSize) {
+        // Left channel is a sine wave at half scale, right channel is a full scale square wave
+        final Memory samples = new Memory(SAMPLES * 2 * sampleSize);
+        for(int i = 0; i < SAMPLES; i ++ ) {
+            double left = 0.5 * Math.sin(2 * Math.PI * 1000 * i / RATE);
+            double right = i % 2 == 0 ? 1.0 : -1.0;
+            if("S16N".equals(format)) {
+                samples.setShort(i * 4, (short) Math.round(left * 32767));
+                samples.setShort(i * 4 + 2, (short) (right > 0 ? 32767 : -32768));
+            }
+            else {
+                samples.setFloat(i * 8, (float) left);
+                samples.setFloat(i * 8 + 4, (float) right);
+            }
+        }
+        // 100ms windows, ten buffers of 10ms each
+        final MeteringAudioCallback callback = new MeteringAudioCallback(null, format, 2, RATE / 10);
+        AudioLevels levels = new AudioLevels();
+        for(int i = 0; i < 9; i ++ ) {
+            callback.play(null, samples, SAMPLES, i);
+        }
+        callback.levels(levels);
+        boolean passed = Checks.expect(levels.sequence() == 0, format + " no window yet");
+        callback.play(null, samples, SAMPLES, 9);
+        callback.levels(levels);
+        System.out.printf("%s native order %s: peak %.4f/%.4f rms %.4f/%.4f (%.2f/%.2f dBFS) clips %d/%d%n", format, ByteOrder.nativeOrder(), levels.peak(0), levels.peak(1), levels.rms(0), levels.rms(1), levels.rmsDb(0), levels.rmsDb(1), levels.clips(0), levels.clips(1));
+        passed &= Checks.expect(levels.sequence() == 1 && levels.pts() == 0, format + " window");
+        passed &= Checks.expect(Math.abs(levels.peak(0) - 0.5) < 0.001, format + " sine peak");
+        passed &= Checks.expect(Math.abs(levels.rms(0) - 0.5 / Math.sqrt(2)) < 0.001, format + " sine rms");
+        passed &= Checks.expect(levels.clips(0) == 0, format + " sine clips");
+        passed &= Checks.expect(Math.abs(levels.rms(1) - 1.0) < 0.001, format + " square rms");
+        passed &= Checks.expect(levels.clips(1) == RATE / 10, format + " square clips");
+        long allocated = ThreadAllocation.measure(new Runnable() {
+            @Override
+            public void run() {
+                callback.play(null, samples, SAMPLES, 0);
+            }
+        }, 10000);
+        System.out.printf("%s metering allocated %d bytes per buffer%n", format, allocated / 10000);
+        return passed;
+    }
+}
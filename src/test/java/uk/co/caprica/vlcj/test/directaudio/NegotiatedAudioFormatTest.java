@@ -0,0 +1,93 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.test.directaudio;
+
+import java.util.concurrent.Semaphore;
+
+import uk.co.caprica.vlcj.factory.MediaPlayerFactory;
+import uk.co.caprica.vlcj.media.Media;
+import uk.co.caprica.vlcj.player.MediaPlayerEventAdapter;
+import uk.co.caprica.vlcj.player.base.MediaPlayer;
+import uk.co.caprica.vlcj.player.directaudio.AudioBufferFormat;
+import uk.co.caprica.vlcj.player.directaudio.AudioCallbackAdapter;
+import uk.co.caprica.vlcj.player.directaudio.DirectAudioPlayer;
+import uk.co.caprica.vlcj.player.directaudio.NativeAudioFormatCallback;
+import uk.co.caprica.vlcj.test.VlcjTest;
+
+import com.sun.jna.Pointer;
+
+/**
+ * Test for a {@link DirectAudioPlayer} that negotiates the audio format.
+ * <p>
+ * The sample rate and channels of the decoded audio are accepted as they are, only the sample
+ * format is fixed, so the native library does no resampling or remixing. The negotiated format and
+ * the amount of audio received are reported when the media finishes.
+ * <p>
+ * Specify an MRL and optionally a sample format, e.g. "FL32", the default is "S16N".
+ */
+public class NegotiatedAudioFormatTest extends VlcjTest {
+
+    private static final Semaphore sync = new Semaphore(0);
+
+    public static void main(String[] args) throws Exception {
+        if(args.length < 1) {
+            System.out.println("Specify an MRL [sample-format]");
+            System.exit(1);
+        }
+        final long[] samples = new long[1];
+        MediaPlayerFactory factory = new MediaPlayerFactory();
+        final DirectAudioPlayer audioPlayer = factory.mediaPlayers().newDirectAudioPlayer(new NativeAudioFormatCallback(args.length > 1 ? args[1] : "S16N"), new AudioCallbackAdapter() {
+            @Override
+            public void play(DirectAudioPlayer mediaPlayer, Pointer data, int sampleCount, long pts) {
+                samples[0] += sampleCount;
+            }
+        });
+        final AudioBufferFormat[] format = new AudioBufferFormat[1];
+        audioPlayer.events().addMediaPlayerEventListener(new MediaPlayerEventAdapter() {
+            @Override
+            public void positionChanged(MediaPlayer mediaPlayer, float newPosition) {
+                if(format[0] == null) {
+                    format[0] = audioPlayer.getAudioFormat();
+                }
+            }
+
+            @Override
+            public void finished(MediaPlayer mediaPlayer) {
+                sync.release();
+            }
+
+            @Override
+            public void error(MediaPlayer mediaPlayer) {
+                sync.release();
+            }
+        });
+        Media media = factory.media().newMedia(args[0]);
+        audioPlayer.media().set(media);
+        audioPlayer.controls().play();
+        sync.acquire();
+        System.out.printf("Negotiated format: %s%n", format[0]);
+        if(format[0] != null) {
+            System.out.printf("Received %d samples, %.1f seconds, %d bytes%n", samples[0], (double) samples[0] / format[0].getRate(), samples[0] * format[0].getBlockSize());
+        }
+        audioPlayer.release();
+        media.release();
+        factory.release();
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+package uk.co.caprica.vlcj.test.directaudio;
+
+import java.util.Random;
+
+import uk.co.caprica.vlcj.player.directaudio.AudioBufferFormat;
+import uk.co.caprica.vlcj.player.directaudio.PresentationClock;
+import uk.co.caprica.vlcj.test.Checks;
+import uk.co.caprica.vlcj.test.ThreadAllocation;
+
+/**
+ * Test for the {@link PresentationClock}.
+ * <p>
+ * A media player is simulated in real-time: 10ms buffers of audio are played 100ms ahead of their
+ * presentation time stamps, and the media time is reported four times a second with some jitter,
+ * the way the native library reports it. The interpolated time is compared with the true media
+ * time throughout normal playback, a pause, a flush followed by a seek, and a change of rate. The
+ * cost and heap allocation of reading the time are then reported.
+ * <p>
+ * The native clock is simulated with an arbitrary offset from the system clock.
+ */
+public class PresentationClockTest {
+
+    private static final int RATE = 48000;
+
+    private static final int BUFFER_SAMPLES = RATE / 100;
+
+    private static final long BUFFER_DURATION = 10000;
+
+    /**
+     * How far ahead of their presentation time the buffers are played, in microseconds.
+     */
+    private static final long LEAD = 100000;
+
+    private static final long REPORT_INTERVAL = 250000;
+
+    private static final long REPORT_JITTER = 15000;
+
+    /**
+     * Largest acceptable difference between the interpolated and true media times, in milliseconds.
+     */
+    private static final long TOLERANCE = 30;
+
+    /**
+     * Simulated native clock offset, in microseconds.
+     */
+    private static final long CLOCK_OFFSET = 987654321;
+
+    private static final Random random = new Random(1);
+
+    private static PresentationClock clock;
+
+    /**
+     * Presentation time stamp of the next buffer.
+     */
+    private static long nextPts;
+
+    private static long nextReport;
+
+    // True media time is segmentTime + (now - segmentOrigin) * segmentRate once audio presentation starts
+
+    private static long segmentOrigin;
+
+    private static long segmentTime;
+
+    private static double segmentRate = 1;
+
+    private static long maximumError;
+
+    public static void main(String[] args) throws Exception {
+        boolean passed = true;
+        clock = new PresentationClock(null, null, new AudioBufferFormat("S16N", RATE, 2)) {
+            @Override
+            protected long nativeClock() {
+                return nativeNow();
+            }
+        };
+        passed &= Checks.check("Time before first report", clock.time() == -1);
+        long now = nativeNow();
+        startSegment(now, 0);
+        nextReport = segmentOrigin;
+        run(2000, true);
+        passed &= checkError("Playback");
+
+        // Pause, the time must not move
+        now = nativeNow();
+        clock.pause(null, now);
+        long pausedTime = clock.time();
+        long pausedTruth = truth(now);
+        Thread.sleep(300);
+        passed &= Checks.check("Paused time held", clock.time() == pausedTime && clock.isPaused());
+        now = nativeNow();
+        clock.resume(null, now);
+        startSegment(now, pausedTruth);
+        run(1000, true);
+        passed &= checkError("Resumed");
+
+        // Flush, the time is held until the seek completes
+        now = nativeNow();
+        clock.flush(null, now);
+        long flushedTime = clock.time();
+        Thread.sleep(200);
+        passed &= Checks.check("Flushed time held", clock.time() == flushedTime && !clock.isSynchronised());
+        clock.sync(60000);
+        now = nativeNow();
+        startSegment(now, 60000000);
+        run(1000, true);
+        passed &= checkError("Seeked");
+        passed &= Checks.check("Seeked time", clock.time() >= 60900 && clock.time() <= 61100);
+
+        // Double speed
+        now = nativeNow();
+        clock.setRate(2.0f);
+        segmentTime = truth(now);
+        segmentOrigin = now;
+        segmentRate = 2;
+        run(1000, true);
+        passed &= checkError("Double rate");
+
+        passed &= checkRead();
+        System.out.printf("Resyncs: %d%n", clock.resyncs());
+        Checks.exit(passed);
+    }
+
+    /**
+     * Simulate playback.
+     *
+     * @param milliseconds how long to play for
+     * @param report <code>true</code> to report the media time
+     */
+    private static void run(long milliseconds, boolean report) throws InterruptedException {
+        maximumError = 0;
+        long end = nativeNow() + milliseconds * 1000;
+        long now;
+        while((now = nativeNow()) < end) {
+            while(nextPts - LEAD <= now) {
+                clock.play(null, null, BUFFER_SAMPLES, nextPts);
+                nextPts += BUFFER_DURATION;
+            }
+            if(report && now >= nextReport) {
+                long jitter = (long) ((random.nextDouble() * 2 - 1) * REPORT_JITTER);
+                clock.eventListener().timeChanged(null, Math.max(0, truth(now) + jitter) / 1000);
+                nextReport += REPORT_INTERVAL;
+            }
+            long time = clock.time();
+            if(time >= 0) {
+                maximumError = Math.max(maximumError, Math.abs(time - truth(nativeNow()) / 1000));
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    private static void startSegment(long now, long time) {
+        segmentOrigin = now + LEAD;
+        segmentTime = time;
+        nextPts = segmentOrigin;
+        nextReport = Math.max(nextReport, segmentOrigin);
+    }
+
+    private static long truth(long now) {
+        return segmentTime + (long) (Math.max(0, now - segmentOrigin) * segmentRate);
+    }
+
+    private static long nativeNow() {
+        return System.nanoTime() / 1000 + CLOCK_OFFSET;
+    }
+
+    private static boolean checkRead() {
+        final long[] sink = new long[1];
+        Runnable read = new Runnable() {
+            @Override
+            public void run() {
+                sink[0] += clock.time();
+            }
+        };
+        int iterations = 1000000;
+        long allocated = ThreadAllocation.measure(read, iterations);
+        long start = System.nanoTime();
+        for(int i = 0; i < iterations; i ++ ) {
+            read.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("Read time: %.1fns%n", elapsed / (double) iterations);
+        return Checks.check("Read time allocation " + allocated + " bytes", allocated == 0);
+    }
+
+    private static boolean checkError(String name) {
+        return Checks.check(name + " maximum error " + maximumError + "ms", maximumError <= TOLERANCE);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.test.directaudio;
+
+import uk.co.caprica.vlcj.player.directaudio.AudioBufferFormat;
+import uk.co.caprica.vlcj.player.directaudio.SpectrumAnalyser;
+import uk.co.caprica.vlcj.player.directaudio.SpectrumAudioCallback;
+import uk.co.caprica.vlcj.player.directaudio.SpectrumListener;
+import uk.co.caprica.vlcj.test.Checks;
+import uk.co.caprica.vlcj.test.ThreadAllocation;
+
+import com.sun.jna.Memory;
+
+/**
+ * Test for the {@link SpectrumAnalyser}.
+ * <p>
+ * Eight simulated media players each play a half-scale sine wave at a different frequency, in
+ * real-time, through one analyser. For each player the loudest band must contain its frequency at
+ * a level close to -6dB. The heap allocation of the play callback and, once warmed up, of the
+ * analyser thread are checked to be zero.
+ */
+public class SpectrumAnalyserTest {
+
+    private static final int RATE = 48000;
+
+    private static final int CHANNELS = 2;
+
+    private static final int SAMPLES = 480;
+
+    private static final int FFT_SIZE = 2048;
+
+    private static final int BANDS = 32;
+
+    private static final int SECONDS = 3;
+
+    /**
+     * Number of spectra produced before allocations are measured, giving the JIT time to settle.
+     */
+    private static final int WARM_UP = 400;
+
+    private static final double[] FREQUENCIES = {100, 250, 500, 1000, 2000, 4000, 8000, 12000};
+
+    public static void main(String[] args) throws Exception {
+        final int players = FREQUENCIES.length;
+        final SpectrumAudioCallback[] callbacks = new SpectrumAudioCallback[players];
+        final int[] loudestBand = new int[players];
+        final float[] loudestLevel = new float[players];
+        final long[] allocation = new long[2];
+        final SpectrumAnalyser analyser = new SpectrumAnalyser(FFT_SIZE, BANDS, 50);
+        SpectrumListener listener = new SpectrumListener() {
+            @Override
+            public void spectrum(SpectrumAudioCallback source, float[] bands, long pts) {
+                int player = 0;
+                while(callbacks[player] != source) {
+                    player++;
+                }
+                int loudest = 0;
+                for(int i = 1; i < bands.length; i ++ ) {
+                    if(bands[i] > bands[loudest]) {
+                        loudest = i;
+                    }
+                }
+                loudestBand[player] = loudest;
+                loudestLevel[player] = bands[loudest];
+                if(analyser.analyses() == WARM_UP) {
+                    allocation[0] = ThreadAllocation.allocatedBytes();
+                }
+                allocation[1] = ThreadAllocation.allocatedBytes();
+            }
+        };
+        AudioBufferFormat format = new AudioBufferFormat("S16N", RATE, CHANNELS);
+        for(int i = 0; i < players; i ++ ) {
+            callbacks[i] = analyser.newCallback(null, format, listener);
+        }
+        analyser.start();
+
+        Memory[] samples = new Memory[players];
+        for(int i = 0; i < players; i ++ ) {
+            samples[i] = new Memory(SAMPLES * format.getBlockSize());
+        }
+        long start = System.nanoTime();
+        for(long position = 0; position < (long) RATE * SECONDS; position += SAMPLES) {
+            for(int p = 0; p < players; p ++ ) {
+                for(int i = 0; i < SAMPLES; i ++ ) {
+                    short value = (short) Math.round(16384 * Math.sin(2 * Math.PI * FREQUENCIES[p] * (position + i) / RATE));
+                    samples[p].setShort(i * 4, value);
+                    samples[p].setShort(i * 4 + 2, value);
+                }
+                callbacks[p].play(null, samples[p], SAMPLES, position * 1000000 / RATE);
+            }
+            long due = start + (position + SAMPLES) * 1000000000L / RATE;
+            long wait = due - System.nanoTime();
+            if(wait > 0) {
+                Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+            }
+        }
+        analyser.stop();
+
+        boolean passed = true;
+        for(int p = 0; p < players; p ++ ) {
+            SpectrumAudioCallback callback = callbacks[p];
+            int band = loudestBand[p];
+            double binFrequency = Math.round(FREQUENCIES[p] * FFT_SIZE / RATE) * (double) RATE / FFT_SIZE;
+            boolean inBand = binFrequency >= callback.bandLowerFrequency(band) && binFrequency < callback.bandUpperFrequency(band);
+            boolean level = loudestLevel[p] > -8 && loudestLevel[p] < -5;
+            System.out.printf("%6.0f Hz: loudest band %2d (%5.0f - %5.0f Hz) at %5.1f dB%n", FREQUENCIES[p], band, callback.bandLowerFrequency(band), callback.bandUpperFrequency(band), loudestLevel[p]);
+            passed &= inBand && level;
+        }
+        final SpectrumAudioCallback callback = callbacks[0];
+        final Memory buffer = samples[0];
+        long playAllocated = ThreadAllocation.measure(new Runnable() {
+            long position;
+            @Override
+            public void run() {
+                callback.play(null, buffer, SAMPLES, position);
+                position += SAMPLES;
+            }
+        }, 10000);
+        long analyserAllocated = allocation[1] - allocation[0];
+        System.out.printf("Spectra: %d, mean analysis time: %.1f us%n", analyser.analyses(), analyser.analysisTime() / 1e3 / analyser.analyses());
+        System.out.printf("Allocated: play %d bytes per buffer, analyser %d bytes after warm-up%n", playAllocated / 10000, analyserAllocated);
+        passed &= analyser.analyses() > WARM_UP && playAllocated == 0 && analyserAllocated == 0;
+        Checks.exit(passed);
+    }
+}
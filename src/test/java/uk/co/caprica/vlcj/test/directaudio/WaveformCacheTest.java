@@ -0,0 +1,133 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.test.directaudio;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import uk.co.caprica.vlcj.player.directaudio.waveform.WaveformCache;
+import uk.co.caprica.vlcj.player.directaudio.waveform.WaveformPeaks;
+import uk.co.caprica.vlcj.test.Checks;
+
+/**
+ * Test for the {@link WaveformCache}.
+ * <p>
+ * A well-formed cache entry is written by hand and read back, then the same entry is corrupted in
+ * various ways - each corrupt entry must be treated as a cache miss rather than failing.
+ */
+public class WaveformCacheTest {
+
+    private static final String MRL = "http://example.com/stream";
+
+    private static final short[] PEAKS = {-100, 100, -200, 200, -300, 300};
+
+    public static void main(String[] args) throws Exception {
+        File directory = new File(System.getProperty("java.io.tmpdir"), "vlcj-waveform-cache-" + System.nanoTime());
+        WaveformCache cache = new WaveformCache(directory);
+        File file = new File(directory, entryName(MRL));
+        boolean passed = true;
+        try {
+            write(file, entry(PEAKS.length / 2, 1, 1, Integer.MIN_VALUE, PEAKS.length));
+            WaveformPeaks peaks = cache.get(MRL);
+            passed &= Checks.check("Valid entry", peaks != null && peaks.peakCount(0) == 3 && peaks.min(0, 2, 0) == -300 && peaks.max(0, 2, 0) == 300);
+            write(file, entry(PEAKS.length / 2, 1, 1, Integer.MAX_VALUE, PEAKS.length));
+            passed &= Checks.check("MRL length too large", cache.get(MRL) == null);
+            write(file, entry(PEAKS.length / 2, 1, 1, -1, PEAKS.length));
+            passed &= Checks.check("Negative MRL length", cache.get(MRL) == null);
+            write(file, entry(PEAKS.length / 2, 0, 1, Integer.MIN_VALUE, PEAKS.length));
+            passed &= Checks.check("No channels", cache.get(MRL) == null);
+            write(file, entry(PEAKS.length / 2, 1, Integer.MAX_VALUE, Integer.MIN_VALUE, PEAKS.length));
+            passed &= Checks.check("Level count too large", cache.get(MRL) == null);
+            write(file, entry(PEAKS.length / 2, 1, -1, Integer.MIN_VALUE, PEAKS.length));
+            passed &= Checks.check("Negative level count", cache.get(MRL) == null);
+            write(file, entry(Integer.MAX_VALUE, 1, 1, Integer.MIN_VALUE, PEAKS.length));
+            passed &= Checks.check("Peak count too large", cache.get(MRL) == null);
+            write(file, entry(-1, 1, 1, Integer.MIN_VALUE, PEAKS.length));
+            passed &= Checks.check("Negative peak count", cache.get(MRL) == null);
+            write(file, entry(PEAKS.length / 2, 1, 1, Integer.MIN_VALUE, PEAKS.length - 2));
+            passed &= Checks.check("Truncated peaks", cache.get(MRL) == null);
+            byte[] valid = entry(PEAKS.length / 2, 1, 1, Integer.MIN_VALUE, PEAKS.length);
+            write(file, Arrays.copyOf(valid, 30));
+            passed &= Checks.check("Truncated header", cache.get(MRL) == null);
+        }
+        finally {
+            cache.remove(MRL);
+            directory.delete();
+        }
+        Checks.exit(passed);
+    }
+
+    /**
+     * Create a cache entry, in the same format as the cache writes it.
+     *
+     * @param peakCount number of peaks recorded for the only level
+     * @param channels number of channels recorded
+     * @param levelCount number of levels recorded
+     * @param mrlLength MRL length recorded, or {@link Integer#MIN_VALUE} for the real length
+     * @param dataLength number of peak values actually stored
+     * @return entry
+     */
+    private static byte[] entry(int peakCount, int channels, int levelCount, int mrlLength, int dataLength) {
+        byte[] mrlBytes = MRL.getBytes(Charset.forName("UTF-8"));
+        ByteBuffer buffer = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putLong(0x564c434a504b5331L);
+        buffer.putInt(1);
+        buffer.putInt(mrlLength == Integer.MIN_VALUE ? mrlBytes.length : mrlLength);
+        buffer.put(mrlBytes);
+        buffer.putLong(-1);
+        buffer.putLong(-1);
+        buffer.putInt(channels);
+        buffer.putLong(peakCount * 1024L);
+        buffer.putLong(1000);
+        buffer.putInt(levelCount);
+        buffer.putLong(1024);
+        buffer.putInt(peakCount);
+        for(int i = 0; i < dataLength; i ++ ) {
+            buffer.putShort(PEAKS[i]);
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private static void write(File file, byte[] data) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    private static String entryName(String mrl) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-1").digest(mrl.getBytes(Charset.forName("UTF-8")));
+        StringBuilder sb = new StringBuilder();
+        for(byte b : digest) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.append(".peaks").toString();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+
+package uk.co.caprica.vlcj.test.directaudio;
+
+import java.io.File;
+
+import uk.co.caprica.vlcj.factory.MediaPlayerFactory;
+import uk.co.caprica.vlcj.player.directaudio.waveform.WaveformCache;
+import uk.co.caprica.vlcj.player.directaudio.waveform.WaveformPeaks;
+import uk.co.caprica.vlcj.player.directaudio.waveform.WaveformService;
+import uk.co.caprica.vlcj.test.VlcjTest;
+
+/**
+ * Test for the {@link WaveformService}.
+ * <p>
+ * The peaks for each media item are requested twice, the first request decodes the media unless
+ * it is already in the cache and the second is always served from the cache. The time taken for
+ * each is reported, followed by a text drawing of the waveform of the first channel.
+ * <p>
+ * Specify a cache directory and one or more MRLs.
+ */
+public class WaveformServiceTest extends VlcjTest {
+
+    private static final int WIDTH = 100;
+
+    private static final int HEIGHT = 9;
+
+    public static void main(String[] args) throws Exception {
+        if(args.length < 2) {
+            System.out.println("Specify <cache-directory> <mrl> [<mrl>...]");
+            System.exit(1);
+        }
+        MediaPlayerFactory factory = new MediaPlayerFactory();
+        WaveformService service = new WaveformService(factory, new WaveformCache(new File(args[0])));
+        for(int i = 1; i < args.length; i ++ ) {
+            long start = System.nanoTime();
+            WaveformPeaks peaks = service.peaks(args[i]);
+            long first = System.nanoTime() - start;
+            start = System.nanoTime();
+            service.peaks(args[i]);
+            long second = System.nanoTime() - start;
+            System.out.println(args[i]);
+            if(peaks == null) {
+                System.out.println("  no audio");
+                continue;
+            }
+            System.out.printf("  length %d ms, %d channels, %d samples, %d levels%n", peaks.length(), peaks.channels(), peaks.sampleCount(), peaks.levelCount());
+            System.out.printf("  first request %d ms, second request %d ms%n", first / 1000000, second / 1000000);
+            draw(peaks);
+        }
+        factory.release();
+    }
+
+    private static void draw(WaveformPeaks peaks) {
+        short[] min = new short[WIDTH];
+        short[] max = new short[WIDTH];
+        peaks.peaks(0, 0, Math.max(1, peaks.length()), WIDTH, min, max);
+        for(int row = 0; row < HEIGHT; row ++ ) {
+            double upper = 32768.0 * (HEIGHT - 2 * row) / HEIGHT;
+            double lower = 32768.0 * (HEIGHT - 2 * row - 2) / HEIGHT;
+            StringBuilder sb = new StringBuilder(WIDTH + 2);
+            sb.append("  ");
+            for(int column = 0; column < WIDTH; column ++ ) {
+                sb.append(max[column] >= lower && min[column] <= upper ? '#' : ' ');
+            }
+            System.out.println(sb);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+package uk.co.caprica.vlcj.test.mediacallback;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Random;
+
+import uk.co.caprica.vlcj.binding.support.size_t;
+import uk.co.caprica.vlcj.callbackmedia.AbstractCallbackMedia;
+import uk.co.caprica.vlcj.callbackmedia.seekable.FileChannelMedia;
+import uk.co.caprica.vlcj.callbackmedia.seekable.MappedFileMedia;
+import uk.co.caprica.vlcj.callbackmedia.seekable.RandomAccessFileMedia;
+import uk.co.caprica.vlcj.test.Checks;
+import uk.co.caprica.vlcj.test.ThreadAllocation;
+
+import com.sun.jna.CallbackReference;
+import com.sun.jna.Function;
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.LongByReference;
+import com.sun.jna.ptr.PointerByReference;
+
+/**
+ * Test the heap allocation of the native media read callback.
+ * <p>
+ * Each media is read twice, for media that does nothing but report the bytes as read and for each
+ * of the file based media implementations:
+ * <ul>
+ *   <li>by invoking the read and seek callbacks directly, which measures vlcj alone - this must be
+ *   zero, apart from boxing the result when a read returns a different number of bytes than the
+ *   last, which only happens at the end of the file here, so less than a byte per read;</li>
+ *   <li>through their native function pointers, so that JNA dispatches the callbacks just as it
+ *   does when the native library invokes them. This includes the objects JNA creates for each
+ *   call, both to make the native call and to dispatch the callback (a few hundred bytes per read
+ *   on Java 17). That is outside vlcj, and varies with the JIT, so it is only reported - it should
+ *   be much the same for every media.</li>
+ * </ul>
+ */
+public class CallbackMediaAllocationTest {
+
+    private static final int FILE_SIZE = 16 * 1024 * 1024;
+
+    private static final int READ_SIZE = 64 * 1024;
+
+    private static final int ITERATIONS = 20000;
+
+    public static void main(String[] args) throws Exception {
+        File file = File.createTempFile("vlcj-allocation-test", ".bin");
+        file.deleteOnExit();
+        byte[] data = new byte[FILE_SIZE];
+        new Random(1).nextBytes(data);
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(data);
+        out.close();
+
+        boolean passed = true;
+        passed &= check("Callback only", new NullMedia());
+        passed &= check("RandomAccessFileMedia", new RandomAccessFileMedia(file));
+        passed &= check("FileChannelMedia", new FileChannelMedia(file));
+        passed &= check("MappedFileMedia", new MappedFileMedia(file));
+        file.delete();
+        Checks.exit(passed);
+    }
+
+    /**
+     * Measure the heap allocation of reading media, seeking back to the start at the end.
+     *
+     * @param name name of the media
+     * @param media media to read
+     * @return <code>true</code> if vlcj allocated less than a byte per read
+     */
+    private static boolean check(String name, final AbstractCallbackMedia media) {
+        final Memory buffer = new Memory(READ_SIZE);
+        final size_t length = new size_t(READ_SIZE);
+        final Function read = Function.getFunction(CallbackReference.getFunctionPointer(media.getRead()));
+        final Function seek = Function.getFunction(CallbackReference.getFunctionPointer(media.getSeek()));
+        final Object[] readArgs = new Object[] {null, buffer, length};
+        final Object[] seekArgs = new Object[] {null, 0L};
+        media.getOpen().open(null, new PointerByReference(), new LongByReference());
+        double direct = ThreadAllocation.measure(new Runnable() {
+            @Override
+            public void run() {
+                if(media.getRead().read(null, buffer, length).intValue() <= 0) {
+                    media.getSeek().seek(null, 0);
+                }
+            }
+        }, ITERATIONS) / (double) ITERATIONS;
+        double dispatched = ThreadAllocation.measure(new Runnable() {
+            @Override
+            public void run() {
+                if(((size_t) read.invoke(size_t.class, readArgs)).intValue() <= 0) {
+                    seek.invokeInt(seekArgs);
+                }
+            }
+        }, ITERATIONS) / (double) ITERATIONS;
+        media.getClose().close(null);
+        boolean passed = direct < 1;
+        System.out.printf("%-25s vlcj %6.1f, through JNA %6.1f bytes per read %s%n", name, direct, dispatched, passed ? "ok" : "FAILED");
+        return passed;
+    }
+
+    /**
+     * Media that reads nothing into the buffer, so only the callback itself is measured.
+     */
+    private static final class NullMedia extends AbstractCallbackMedia {
+
+        private NullMedia() {
+            super(true);
+        }
+
+        @Override
+        protected long onGetSize() {
+            return 0;
+        }
+
+        @Override
+        protected boolean onOpen() {
+            return true;
+        }
+
+        @Override
+        protected int onRead(Pointer buffer, int bufferSize) {
+            return bufferSize;
+        }
+
+        @Override
+        protected boolean onSeek(long offset) {
+            return true;
+        }
+
+        @Override
+        protected void onClose() {
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+package uk.co.caprica.vlcj.test.mediacallback;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import uk.co.caprica.vlcj.binding.support.size_t;
+import uk.co.caprica.vlcj.callbackmedia.AbstractCallbackMedia;
+import uk.co.caprica.vlcj.callbackmedia.seekable.FileChannelMedia;
+import uk.co.caprica.vlcj.callbackmedia.seekable.MappedFileMedia;
+import uk.co.caprica.vlcj.callbackmedia.seekable.RandomAccessFileMedia;
+import uk.co.caprica.vlcj.test.Checks;
+
+import com.sun.jna.Memory;
+import com.sun.jna.ptr.LongByReference;
+import com.sun.jna.ptr.PointerByReference;
+
+/**
+ * Test for the {@link FileChannelMedia} and {@link MappedFileMedia}.
+ * <p>
+ * The native media callbacks are invoked directly, the way the native library invokes them, to
+ * read a temporary file with each of these and a {@link RandomAccessFileMedia}. The data read,
+ * including after seeking, is checked against the file. The read throughput of each implementation
+ * is then reported, both for sequential reads and for scrubbing, i.e. many small seeks and reads.
+ * <p>
+ * The mapped media is checked with small windows, so that reads cross window boundaries.
+ */
+public class ChannelCallbackMediaTest {
+
+    private static final int FILE_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Size of each read requested, a typical native read size for high bit-rate media.
+     */
+    private static final int READ_SIZE = 256 * 1024;
+
+    private static final int PASSES = 8;
+
+    /**
+     * Size of each read when scrubbing.
+     */
+    private static final int SCRUB_READ_SIZE = 4096;
+
+    private static final int SCRUB_SEEKS = 200000;
+
+    public static void main(String[] args) throws Exception {
+        File file = File.createTempFile("vlcj-channel-test", ".bin");
+        file.deleteOnExit();
+        byte[] data = new byte[FILE_SIZE];
+        new Random(1).nextBytes(data);
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(data);
+        out.close();
+
+        boolean passed = true;
+        passed &= Checks.check("FileChannelMedia contents", verify(new FileChannelMedia(file), data));
+        passed &= Checks.check("RandomAccessFileMedia contents", verify(new RandomAccessFileMedia(file), data));
+        passed &= Checks.check("MappedFileMedia contents", verify(new MappedFileMedia(file, 3 * 1024 * 1024 + 1, 3), data));
+        for(int i = 0; i < 2; i ++ ) {
+            System.out.printf("Sequential FileChannelMedia      %8.1f MB/s%n", throughput(new FileChannelMedia(file)));
+            System.out.printf("Sequential MappedFileMedia       %8.1f MB/s%n", throughput(new MappedFileMedia(file)));
+            System.out.printf("Sequential RandomAccessFileMedia %8.1f MB/s%n", throughput(new RandomAccessFileMedia(file)));
+        }
+        for(int i = 0; i < 2; i ++ ) {
+            System.out.printf("Scrubbing FileChannelMedia       %8.1f seeks/ms%n", scrub(new FileChannelMedia(file)));
+            System.out.printf("Scrubbing MappedFileMedia        %8.1f seeks/ms%n", scrub(new MappedFileMedia(file)));
+            System.out.printf("Scrubbing RandomAccessFileMedia  %8.1f seeks/ms%n", scrub(new RandomAccessFileMedia(file)));
+        }
+        file.delete();
+        Checks.exit(passed);
+    }
+
+    /**
+     * Read the whole media, then part of it again after seeking, and compare with the file data.
+     *
+     * @param media media to read
+     * @param data expected data
+     * @return <code>true</code> if the media data matched the file data
+     */
+    private static boolean verify(AbstractCallbackMedia media, byte[] data) {
+        Memory buffer = new Memory(READ_SIZE);
+        LongByReference size = new LongByReference();
+        if(media.getOpen().open(null, new PointerByReference(), size) != 0 || size.getValue() != data.length) {
+            return false;
+        }
+        byte[] bytes = new byte[READ_SIZE];
+        int position = 0;
+        int count;
+        while((count = read(media, buffer)) > 0) {
+            buffer.read(0, bytes, 0, count);
+            for(int i = 0; i < count; i ++ ) {
+                if(bytes[i] != data[position + i]) {
+                    return false;
+                }
+            }
+            position += count;
+        }
+        if(position != data.length) {
+            return false;
+        }
+        int offset = data.length / 3;
+        if(media.getSeek().seek(null, offset) != 0) {
+            return false;
+        }
+        count = read(media, buffer);
+        buffer.read(0, bytes, 0, count);
+        for(int i = 0; i < count; i ++ ) {
+            if(bytes[i] != data[offset + i]) {
+                return false;
+            }
+        }
+        media.getClose().close(null);
+        return count > 0;
+    }
+
+    /**
+     * Read the whole media a number of times.
+     *
+     * @param media media to read
+     * @return throughput, in megabytes per second
+     */
+    private static double throughput(AbstractCallbackMedia media) throws IOException {
+        Memory buffer = new Memory(READ_SIZE);
+        media.getOpen().open(null, new PointerByReference(), new LongByReference());
+        long total = 0;
+        long start = System.nanoTime();
+        for(int i = 0; i < PASSES; i ++ ) {
+            media.getSeek().seek(null, 0);
+            int count;
+            while((count = read(media, buffer)) > 0) {
+                total += count;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        media.getClose().close(null);
+        return total / (elapsed / 1000000000.0) / (1024 * 1024);
+    }
+
+    /**
+     * Seek to random positions in the media, reading a little after each seek.
+     *
+     * @param media media to read
+     * @return seeks per millisecond
+     */
+    private static double scrub(AbstractCallbackMedia media) {
+        Memory buffer = new Memory(SCRUB_READ_SIZE);
+        Random random = new Random(2);
+        media.getOpen().open(null, new PointerByReference(), new LongByReference());
+        long start = System.nanoTime();
+        for(int i = 0; i < SCRUB_SEEKS; i ++ ) {
+            media.getSeek().seek(null, random.nextInt(FILE_SIZE - SCRUB_READ_SIZE));
+            read(media, buffer);
+        }
+        long elapsed = System.nanoTime() - start;
+        media.getClose().close(null);
+        return SCRUB_SEEKS / (elapsed / 1000000.0);
+    }
+
+    private static int read(AbstractCallbackMedia media, Memory buffer) {
+        return media.getRead().read(null, buffer, new size_t(buffer.size())).intValue();
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+package uk.co.caprica.vlcj.test.mediacallback;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import uk.co.caprica.vlcj.binding.support.size_t;
+import uk.co.caprica.vlcj.callbackmedia.AbstractCallbackMedia;
+import uk.co.caprica.vlcj.callbackmedia.nonseekable.DiskCachedInputStreamMedia;
+import uk.co.caprica.vlcj.callbackmedia.nonseekable.NonSeekableInputStreamMedia;
+import uk.co.caprica.vlcj.test.Checks;
+
+import com.sun.jna.Memory;
+import com.sun.jna.ptr.LongByReference;
+import com.sun.jna.ptr.PointerByReference;
+
+/**
+ * Test for the {@link DiskCachedInputStreamMedia}.
+ * <p>
+ * A generated stream, delivered at a limited rate, is read by invoking the native media callbacks
+ * directly. Seeks back into the cached data, and forward past it, are checked with an unlimited
+ * cache file, then seeks within the retained data of a limited cache file, and that the stream is
+ * not read too far ahead of the reader. The data read is always checked, as is the deletion of the
+ * cache file.
+ */
+public class DiskCachedInputStreamMediaTest {
+
+    private static final int STREAM_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Rate at which the stream delivers data, in bytes per second.
+     */
+    private static final int STREAM_RATE = 32 * 1024 * 1024;
+
+    private static final int MAXIMUM_SIZE = 4 * 1024 * 1024;
+
+    private static final int MB = 1024 * 1024;
+
+    private static final Memory buffer = new Memory(MB);
+
+    private static final byte[] bytes = new byte[MB];
+
+    public static void main(String[] args) throws Exception {
+        File directory = new File(System.getProperty("java.io.tmpdir"), "vlcj-cache-test-" + System.nanoTime());
+        directory.mkdirs();
+        boolean passed = true;
+
+        DiskCachedInputStreamMedia media = new DiskCachedInputStreamMedia(new GeneratedMedia(), directory, 0);
+        media.getOpen().open(null, new PointerByReference(), new LongByReference());
+        passed &= Checks.check("Read from start", read(media, 0, MB));
+        passed &= Checks.check("Seek back into cache", seek(media, 100000) && read(media, 100000, MB / 4));
+        passed &= Checks.check("Seek forward past cache", seek(media, 12 * MB) && read(media, 12 * MB, MB));
+        passed &= Checks.check("Seek back to start", seek(media, 0) && read(media, 0, MB));
+        passed &= Checks.check("Read to end", seek(media, 15 * MB) && read(media, 15 * MB, MB) && read(media, STREAM_SIZE, 0));
+        media.getClose().close(null);
+        passed &= Checks.check("Cache file deleted", directory.list().length == 0);
+
+        media = new DiskCachedInputStreamMedia(new GeneratedMedia(), directory, MAXIMUM_SIZE);
+        media.getOpen().open(null, new PointerByReference(), new LongByReference());
+        passed &= Checks.check("Limited, read from start", read(media, 0, MB));
+        Thread.sleep(500);
+        System.out.println(media);
+        passed &= Checks.check("Limited, stream not read too far ahead", media.bytesCached() == MB + MAXIMUM_SIZE);
+        passed &= Checks.check("Limited, seek before earliest position fails", !seek(media, 0));
+        long earliest = media.earliestPosition();
+        passed &= Checks.check("Limited, seek to earliest position", earliest == MB && seek(media, earliest) && read(media, earliest, MB));
+        boolean ok = true;
+        for(long position = earliest + MB; position < STREAM_SIZE; position += MB) {
+            ok &= read(media, position, MB);
+        }
+        passed &= Checks.check("Limited, read to end", ok && read(media, STREAM_SIZE, 0));
+        media.getClose().close(null);
+        passed &= Checks.check("Limited, cache file deleted", directory.list().length == 0);
+
+        directory.delete();
+        Checks.exit(passed);
+    }
+
+    private static boolean seek(AbstractCallbackMedia media, long offset) {
+        return media.getSeek().seek(null, offset) == 0;
+    }
+
+    /**
+     * Read from the media and check the data.
+     *
+     * @param media media to read
+     * @param position current position of the media
+     * @param length number of bytes to read, the end of the stream must be reached if this is zero
+     * @return <code>true</code> if the data was as expected
+     */
+    private static boolean read(AbstractCallbackMedia media, long position, int length) {
+        if(length == 0) {
+            return media.getRead().read(null, buffer, new size_t(buffer.size())).intValue() == 0;
+        }
+        int filled = 0;
+        while(filled < length) {
+            int count = media.getRead().read(null, buffer.share(filled), new size_t(length - filled)).intValue();
+            if(count <= 0) {
+                return false;
+            }
+            filled += count;
+        }
+        buffer.read(0, bytes, 0, length);
+        for(int i = 0; i < length; i ++ ) {
+            if(bytes[i] != expected(position + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte expected(long position) {
+        return (byte) (position ^ (position >>> 13));
+    }
+
+    /**
+     * Media with a generated stream.
+     */
+    private static final class GeneratedMedia extends NonSeekableInputStreamMedia {
+
+        @Override
+        protected InputStream onOpenStream() {
+            return new GeneratedInputStream();
+        }
+
+        @Override
+        protected void onCloseStream(InputStream inputStream) throws IOException {
+            inputStream.close();
+        }
+
+        @Override
+        protected long onGetSize() {
+            return 0;
+        }
+    }
+
+    /**
+     * Stream that delivers generated data no faster than the stream rate.
+     */
+    private static final class GeneratedInputStream extends InputStream {
+
+        private long position;
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if(position >= STREAM_SIZE) {
+                return -1;
+            }
+            int count = (int) Math.min(len, STREAM_SIZE - position);
+            for(int i = 0; i < count; i ++ ) {
+                b[off + i] = expected(position + i);
+            }
+            position += count;
+            long wait = count * 1000000000L / STREAM_RATE;
+            try {
+                Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+            }
+            catch(InterruptedException e) {
+                throw new IOException(e.toString());
+            }
+            return count;
+        }
+    }
+}
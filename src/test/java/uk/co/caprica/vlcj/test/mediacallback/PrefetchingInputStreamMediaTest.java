@@ -0,0 +1,307 @@
+/*
+ * This file is part of VLCJ.
+ *
+ * VLCJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VLCJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VLCJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009, 2010, 2011, 2012, 2013, 2014 Caprica Software Limited.
+ */
+package uk.co.caprica.vlcj.test.mediacallback;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import uk.co.caprica.vlcj.binding.support.size_t;
+import uk.co.caprica.vlcj.callbackmedia.AbstractCallbackMedia;
+import uk.co.caprica.vlcj.callbackmedia.nonseekable.NonSeekableInputStreamMedia;
+import uk.co.caprica.vlcj.callbackmedia.nonseekable.PrefetchingInputStreamMedia;
+import uk.co.caprica.vlcj.test.Checks;
+
+import com.sun.jna.Memory;
+import com.sun.jna.ptr.LongByReference;
+import com.sun.jna.ptr.PointerByReference;
+
+/**
+ * Test for the {@link PrefetchingInputStreamMedia}.
+ * <p>
+ * A stream delivers a burst of data and then pauses, the way a network stream might, and the
+ * native media callbacks are invoked directly to play it. The stream is gated rather than timed -
+ * each burst is only released once the stream is blocked at the end of the previous one - so the
+ * outcome does not depend on thread scheduling.
+ * <p>
+ * Played without prefetching, the reader itself is blocked in the stream during every pause. With
+ * prefetching, each burst is buffered before it is played, so no read ever has to wait. The data and
+ * the end of the stream are checked.
+ */
+public class PrefetchingInputStreamMediaTest {
+
+    /**
+     * Size of each burst of data delivered by the stream.
+     */
+    private static final int BURST = 1024 * 1024;
+
+    /**
+     * Number of bursts delivered by the stream.
+     */
+    private static final int BURSTS = 16;
+
+    /**
+     * Size of each read when playing.
+     */
+    private static final int READ_SIZE = 256 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        boolean passed = true;
+        int stalls = playWithoutPrefetching();
+        System.out.printf("Without prefetching: %d stalls%n", stalls);
+        passed &= Checks.check("Stalls without prefetching", stalls == BURSTS);
+        HiccupMedia hiccupMedia = new HiccupMedia();
+        PrefetchingInputStreamMedia media = new PrefetchingInputStreamMedia(hiccupMedia, 4 * BURST, BURST, 4 * BURST);
+        stalls = playWithPrefetching(hiccupMedia, media);
+        System.out.printf("With prefetching: %d stalls, %s%n", stalls, media);
+        passed &= Checks.check("Stalls with prefetching", stalls == 0);
+        Checks.exit(passed);
+    }
+
+    /**
+     * Play the media without prefetching.
+     * <p>
+     * The media is read to the end on a separate thread, while the stream is released a burst at a
+     * time - every time the stream blocks, the reading thread is the one that is blocked.
+     *
+     * @return number of pauses that blocked the reader, or -1 if the data was wrong
+     */
+    private static int playWithoutPrefetching() throws InterruptedException {
+        final HiccupMedia media = new HiccupMedia();
+        media.getOpen().open(null, new PointerByReference(), new LongByReference());
+        final long[] length = new long[1];
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                length[0] = read(media, Long.MAX_VALUE, 0);
+            }
+        };
+        reader.start();
+        int stalls = 0;
+        for(int i = 0; i < BURSTS; i ++ ) {
+            media.stream.allow(BURST);
+            if(media.stream.awaitBlocked() == reader) {
+                stalls++;
+            }
+        }
+        media.stream.finish();
+        reader.join();
+        media.getClose().close(null);
+        return checkLength(length[0]) ? stalls : -1;
+    }
+
+    /**
+     * Play the media with prefetching.
+     * <p>
+     * Each burst is played once the stream is blocked at the end of it, i.e. once it has been
+     * buffered, so playing never has to wait for the stream.
+     *
+     * @param hiccupMedia media providing the stream
+     * @param media prefetching media wrapping the hiccup media
+     * @return number of stalls, or -1 if the data was wrong
+     */
+    private static int playWithPrefetching(HiccupMedia hiccupMedia, PrefetchingInputStreamMedia media) throws InterruptedException {
+        media.getOpen().open(null, new PointerByReference(), new LongByReference());
+        int stalls = 0;
+        long position = 0;
+        for(int i = 0; i < BURSTS; i ++ ) {
+            hiccupMedia.stream.allow(BURST);
+            if(hiccupMedia.stream.awaitBlocked() == Thread.currentThread()) {
+                stalls++;
+            }
+            long count = read(media, BURST, position);
+            if(count != BURST) {
+                return -1;
+            }
+            position += count;
+        }
+        // Only stalls while playing the bursts count, waiting for the end of the stream is fine
+        stalls += media.stalls();
+        hiccupMedia.stream.finish();
+        long count = read(media, Long.MAX_VALUE, position);
+        media.getClose().close(null);
+        return count >= 0 && checkLength(position + count) ? stalls : -1;
+    }
+
+    /**
+     * Read from the media, checking the data.
+     *
+     * @param media media to read
+     * @param length number of bytes to read, reading stops early at the end of the media
+     * @param position position in the stream of the first byte read
+     * @return number of bytes read, or -1 if the data was wrong
+     */
+    private static long read(AbstractCallbackMedia media, long length, long position) {
+        Memory buffer = new Memory(READ_SIZE);
+        byte[] bytes = new byte[READ_SIZE];
+        long total = 0;
+        while(total < length) {
+            int count = media.getRead().read(null, buffer, new size_t(Math.min(READ_SIZE, length - total))).intValue();
+            if(count <= 0) {
+                break;
+            }
+            buffer.read(0, bytes, 0, count);
+            for(int i = 0; i < count; i ++ ) {
+                if(bytes[i] != expected(position + total + i)) {
+                    System.out.printf("Wrong data at %d%n", position + total + i);
+                    return -1;
+                }
+            }
+            total += count;
+        }
+        return total;
+    }
+
+    private static boolean checkLength(long length) {
+        if(length != (long) BURST * BURSTS) {
+            System.out.printf("Wrong length %d%n", length);
+            return false;
+        }
+        return true;
+    }
+
+    private static byte expected(long position) {
+        return (byte) (position ^ (position >>> 13));
+    }
+
+    /**
+     * Media with a stream that pauses after every burst of data.
+     */
+    private static final class HiccupMedia extends NonSeekableInputStreamMedia {
+
+        private GatedInputStream stream;
+
+        @Override
+        protected InputStream onOpenStream() {
+            stream = new GatedInputStream();
+            return stream;
+        }
+
+        @Override
+        protected void onCloseStream(InputStream inputStream) throws IOException {
+            inputStream.close();
+        }
+
+        @Override
+        protected long onGetSize() {
+            return (long) BURST * BURSTS;
+        }
+    }
+
+    /**
+     * Stream that only delivers as much data as has been allowed, blocking the reading thread until
+     * more is allowed or the stream is finished.
+     */
+    private static final class GatedInputStream extends InputStream {
+
+        private final Object lock = new Object();
+
+        private long position;
+
+        private long allowed;
+
+        private boolean finished;
+
+        private boolean closed;
+
+        /**
+         * Thread currently blocked waiting for more data to be allowed, if any.
+         */
+        private Thread blocked;
+
+        /**
+         * Allow more data to be read.
+         *
+         * @param length number of bytes
+         */
+        private void allow(int length) {
+            synchronized(lock) {
+                allowed += length;
+                blocked = null;
+                lock.notifyAll();
+            }
+        }
+
+        /**
+         * Let the stream end once all of the allowed data has been read.
+         */
+        private void finish() {
+            synchronized(lock) {
+                finished = true;
+                blocked = null;
+                lock.notifyAll();
+            }
+        }
+
+        /**
+         * Wait until all of the allowed data has been read, and a thread is blocked waiting for more.
+         *
+         * @return blocked thread
+         */
+        private Thread awaitBlocked() throws InterruptedException {
+            synchronized(lock) {
+                while(blocked == null) {
+                    lock.wait();
+                }
+                return blocked;
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            synchronized(lock) {
+                while(position == allowed && !finished && !closed) {
+                    blocked = Thread.currentThread();
+                    lock.notifyAll();
+                    try {
+                        lock.wait();
+                    }
+                    catch(InterruptedException e) {
+                        throw new IOException(e.toString());
+                    }
+                }
+                if(closed) {
+                    throw new IOException("Stream closed");
+                }
+                if(position == allowed) {
+                    return -1;
+                }
+                int count = (int) Math.min(len, allowed - position);
+                for(int i = 0; i < count; i ++ ) {
+                    b[off + i] = expected(position + i);
+                }
+                position += count;
+                return count;
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized(lock) {
+                closed = true;
+                lock.notifyAll();
+            }
+        }
+    }
+}